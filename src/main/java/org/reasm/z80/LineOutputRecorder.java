@@ -0,0 +1,102 @@
+package org.reasm.z80;
+
+import java.util.ArrayList;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.reasm.source.AbstractSourceFile;
+import org.reasm.source.SourceLocation;
+
+/**
+ * Records where the logical lines of a source file were written in the output of an assembly, so that a line can later be
+ * reassembled on its own and its bytes patched in the output.
+ * <p>
+ * The lines of the last pass are kept. Only the lines of the recorder's source file that are
+ * {@linkplain Z80AssembledLine#isReassemblable() reassemblable} are recorded; lines in loops, <code>CYCLES</code> blocks,
+ * <code>TRANSFORM</code> blocks and namespaces are not, because patching them could invalidate the other iterations of the
+ * loop, the timing checked by the block, the transformed output or the symbols they use. The recorded lines are sorted by text
+ * position.
+ *
+ * @author Francis Gagné
+ */
+@NotThreadSafe
+final class LineOutputRecorder extends Z80AssemblyListener {
+
+    @Immutable
+    private static final class Line {
+
+        final int textPosition;
+        final long outputOffset;
+        final int outputLength;
+        final long programCounter;
+
+        Line(int textPosition, long outputOffset, int outputLength, long programCounter) {
+            this.textPosition = textPosition;
+            this.outputOffset = outputOffset;
+            this.outputLength = outputLength;
+            this.programCounter = programCounter;
+        }
+
+    }
+
+    @Nonnull
+    private final AbstractSourceFile<?> sourceFile;
+    @Nonnull
+    private final ArrayList<Line> lines = new ArrayList<>();
+
+    LineOutputRecorder(@Nonnull AbstractSourceFile<?> sourceFile) {
+        this.sourceFile = sourceFile;
+    }
+
+    @Override
+    public final void lineAssembled(Z80AssembledLine assembledLine) {
+        final SourceLocation sourceLocation = assembledLine.getSourceLocation();
+        if (!assembledLine.isReassemblable() || sourceLocation.getFile() != this.sourceFile) {
+            return;
+        }
+
+        final int textPosition = sourceLocation.getTextPosition();
+        if (!this.lines.isEmpty()) {
+            final int lastTextPosition = this.lines.get(this.lines.size() - 1).textPosition;
+            if (lastTextPosition >= textPosition) {
+                // Keep the lines sorted. A line that is assembled more than once cannot be patched on its own.
+                if (lastTextPosition == textPosition) {
+                    this.lines.remove(this.lines.size() - 1);
+                }
+
+                return;
+            }
+        }
+
+        this.lines.add(new Line(textPosition, assembledLine.getOutputOffset(), (int) assembledLine.getOutputLength(),
+                assembledLine.getProgramCounter()));
+    }
+
+    @Override
+    public final void passStarted() {
+        this.lines.clear();
+    }
+
+    int getNumberOfLines() {
+        return this.lines.size();
+    }
+
+    int getOutputLength(int index) {
+        return this.lines.get(index).outputLength;
+    }
+
+    long getOutputOffset(int index) {
+        return this.lines.get(index).outputOffset;
+    }
+
+    long getProgramCounter(int index) {
+        return this.lines.get(index).programCounter;
+    }
+
+    int getTextPosition(int index) {
+        return this.lines.get(index).textPosition;
+    }
+
+}
@@ -17,7 +17,8 @@ import org.reasm.expressions.EvaluationContext;
 import org.reasm.expressions.SymbolLookup;
 import org.reasm.source.AbstractSourceFile;
 import org.reasm.source.SourceNode;
-import org.reasm.z80.source.Z80Parser;
+import org.reasm.z80.source.Z80ParseCache;
+import org.reasm.z80.source.Z80Reparser;
 
 import ca.fragag.Consumer;
 import ca.fragag.text.Document;
@@ -76,14 +77,14 @@ public final class Z80Architecture extends Architecture {
     @Nonnull
     @Override
     public final SourceNode parse(@Nonnull Document text) {
-        return Z80Parser.INSTANCE.parse(text);
+        return Z80ParseCache.INSTANCE.parse(text);
     }
 
     @Nonnull
     @Override
     public final SourceNode reparse(@Nonnull Document text, @Nonnull AbstractSourceFile<?> oldSourceFile, int replaceOffset,
             int lengthToRemove, int lengthToInsert) {
-        return Z80Parser.INSTANCE.reparse(text, oldSourceFile.getParsed(this), replaceOffset, lengthToRemove, lengthToInsert);
+        return Z80Reparser.reparse(text, oldSourceFile.getParsed(this), replaceOffset, lengthToRemove, lengthToInsert);
     }
 
 }
@@ -0,0 +1,106 @@
+package org.reasm.z80;
+
+import javax.annotation.Nonnull;
+
+import org.reasm.source.SourceLocation;
+
+/**
+ * A logical line that has just been assembled, as seen by {@link Z80AssemblyListener#lineAssembled(Z80AssembledLine)}.
+ *
+ * @author Francis Gagné
+ */
+public interface Z80AssembledLine {
+
+    /**
+     * The maximum number of bytes written by a line that can be read with {@link #getByte(int)}. This is the length of the longest
+     * instruction.
+     */
+    int MAXIMUM_NUMBER_OF_BYTES = 4;
+
+    /**
+     * Gets one of the first bytes that the line wrote to the output.
+     *
+     * @param index
+     *            the index of the byte, which must be less than {@link #MAXIMUM_NUMBER_OF_BYTES} and less than the
+     *            {@linkplain #getOutputLength() output length}
+     * @return the byte
+     */
+    byte getByte(int index);
+
+    /**
+     * Gets the number of T-states taken by the line's instruction when its branch is not taken or its block instruction
+     * terminates.
+     *
+     * @return the number of T-states, or -1 if the line is not an instruction or is assembled in a <code>TRANSFORM</code> block
+     */
+    int getCycles();
+
+    /**
+     * Gets the number of bytes that the line wrote to the output. In a <code>TRANSFORM</code> block, these are the bytes that the
+     * output pipeline released while the line was assembled.
+     *
+     * @return the length of the line's output
+     */
+    long getOutputLength();
+
+    /**
+     * Gets the offset in the output of the first byte written by the line.
+     *
+     * @return the offset of the line's output
+     */
+    long getOutputOffset();
+
+    /**
+     * Gets the value of the program counter, as seen by labels and expressions, at the start of the line.
+     *
+     * @return the program counter
+     */
+    long getProgramCounter();
+
+    /**
+     * Gets the source location of the line.
+     *
+     * @return the source location
+     */
+    @Nonnull
+    SourceLocation getSourceLocation();
+
+    /**
+     * Gets the number of T-states taken by the line's instruction when its branch is taken or its block instruction repeats.
+     *
+     * @return the number of T-states, or -1 if the line is not an instruction or is assembled in a <code>TRANSFORM</code> block
+     */
+    int getTakenCycles();
+
+    /**
+     * Gets the text of the line, including its continuation characters and its line break, if any.
+     *
+     * @return the text of the line
+     */
+    @Nonnull
+    String getText();
+
+    /**
+     * Determines whether the line is assembled in a <code>TRANSFORM</code> block.
+     *
+     * @return <code>true</code> if the line is in a <code>TRANSFORM</code> block, otherwise <code>false</code>
+     */
+    boolean isInTransformBlock();
+
+    /**
+     * Determines whether the line's mnemonic is an instruction.
+     *
+     * @return <code>true</code> if the line is an instruction, otherwise <code>false</code>
+     */
+    boolean isInstruction();
+
+    /**
+     * Determines whether the line could be assembled again on its own, at the same program counter and with the same symbols,
+     * and its new output patched over its old output. This is the case for instructions and data directives that are assembled
+     * outside of any loop, <code>CYCLES</code> block, <code>TRANSFORM</code> block and namespace.
+     *
+     * @return <code>true</code> if the line can be reassembled on its own, otherwise <code>false</code>
+     */
+    boolean isReassemblable();
+
+}
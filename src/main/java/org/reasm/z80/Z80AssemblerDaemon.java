@@ -0,0 +1,429 @@
+package org.reasm.z80;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.reasm.Assembly;
+import org.reasm.AssemblyCompletionStatus;
+import org.reasm.AssemblyMessage;
+import org.reasm.Configuration;
+import org.reasm.Environment;
+import org.reasm.source.SourceFile;
+
+/**
+ * A long-running assembler that accepts assembly requests on a loopback TCP port.
+ * <p>
+ * Keeping the assembler in a single process keeps the JIT-compiled code, the process-wide
+ * {@linkplain org.reasm.z80.source.Z80ParseCache parse cache} and the daemon's cache of source files warm from one request to the
+ * next. Source files are cached by path and are read again when their modification time changes.
+ * <p>
+ * Only the processes that can read the daemon's token file may use the daemon. When the daemon is created, it generates a random
+ * token and writes it to the token file, which only the owner can read and write on file systems that support POSIX
+ * permissions. A connection starts with the token, written with {@link DataOutputStream#writeUTF(String)}; if the token is wrong,
+ * the daemon replies with an error and closes the connection.
+ * <p>
+ * A connection carries any number of requests, one after the other. A request is the path of the main source file, written with
+ * {@link DataOutputStream#writeUTF(String)}; relative paths are resolved against the daemon's working directory, and files
+ * included by the main source file are resolved against the main source file's directory. The reply starts with a boolean. If it
+ * is <code>false</code>, the file could not be read or assembled and the reason follows as a UTF string. Otherwise, the length
+ * of the output (an <code>int</code>), the output, the number of messages (an <code>int</code>) and, for each message, its
+ * gravity and its text (UTF strings) follow. {@link #request(int, Path, String)} implements the client side of the protocol.
+ *
+ * @author Francis Gagné
+ */
+@ThreadSafe
+public final class Z80AssemblerDaemon implements Closeable {
+
+    @Immutable
+    private static final class CachedSourceFile {
+
+        final long lastModified;
+        @Nonnull
+        final SourceFile sourceFile;
+
+        CachedSourceFile(long lastModified, @Nonnull SourceFile sourceFile) {
+            this.lastModified = lastModified;
+            this.sourceFile = sourceFile;
+        }
+
+    }
+
+    private final class LocalFileFetcher implements Z80LocalFileFetcher {
+
+        @Nonnull
+        private final Path directory;
+
+        LocalFileFetcher(@Nonnull Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public byte[] fetchBinaryFile(String filePath) throws IOException {
+            return Files.readAllBytes(this.getLocalPath(filePath));
+        }
+
+        @Override
+        public SourceFile fetchSourceFile(String filePath) throws IOException {
+            return Z80AssemblerDaemon.this.readSourceFile(this.directory.resolve(filePath));
+        }
+
+        @Override
+        public Path getLocalPath(String filePath) {
+            return this.directory.resolve(filePath);
+        }
+
+    }
+
+    /**
+     * The reply to an assembly request.
+     *
+     * @author Francis Gagné
+     */
+    @Immutable
+    public static final class Reply {
+
+        @CheckForNull
+        private final byte[] output;
+        @Nonnull
+        private final List<String> messages;
+        @CheckForNull
+        private final String error;
+
+        Reply(@CheckForNull byte[] output, @Nonnull List<String> messages, @CheckForNull String error) {
+            this.output = output;
+            this.messages = Collections.unmodifiableList(messages);
+            this.error = error;
+        }
+
+        /**
+         * Gets the reason why the main source file could not be read or assembled.
+         *
+         * @return the reason, or <code>null</code> if the file was assembled
+         */
+        @CheckForNull
+        public final String getError() {
+            return this.error;
+        }
+
+        /**
+         * Gets the messages that the assembly produced, each formatted as its gravity, a colon, a space and its text.
+         *
+         * @return the messages
+         */
+        @Nonnull
+        public final List<String> getMessages() {
+            return this.messages;
+        }
+
+        /**
+         * Gets the assembled data.
+         *
+         * @return a copy of the assembled data, or <code>null</code> if the main source file could not be read or assembled
+         */
+        @CheckForNull
+        public final byte[] getOutput() {
+            return this.output == null ? null : this.output.clone();
+        }
+
+    }
+
+    /**
+     * Starts a daemon on the specified port and serves requests until the process is terminated.
+     *
+     * @param args
+     *            the path of the token file, followed by the port number; if the port number is omitted, an ephemeral port is
+     *            used and printed on the standard output
+     * @throws IOException
+     *             the port cannot be bound or the token file cannot be written
+     */
+    public static void main(@Nonnull String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: Z80AssemblerDaemon <token file> [<port>]");
+            return;
+        }
+
+        final Z80AssemblerDaemon daemon = new Z80AssemblerDaemon(Environment.DEFAULT, args.length == 1 ? 0
+                : Integer.parseInt(args[1]), Paths.get(args[0]));
+        System.out.println(daemon.getPort());
+        daemon.run();
+    }
+
+    /**
+     * Sends an assembly request to a daemon on the local host and waits for the reply.
+     *
+     * @param port
+     *            the port of the daemon
+     * @param tokenFile
+     *            the path of the daemon's token file
+     * @param filePath
+     *            the path of the main source file
+     * @return the reply
+     * @throws IOException
+     *             the token file cannot be read or an I/O exception occurred while communicating with the daemon
+     */
+    @Nonnull
+    public static Reply request(int port, @Nonnull Path tokenFile, @Nonnull String filePath) throws IOException {
+        final String token = new String(Files.readAllBytes(tokenFile), StandardCharsets.UTF_8);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeUTF(token);
+            out.writeUTF(filePath);
+            out.flush();
+
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            if (!in.readBoolean()) {
+                return new Reply(null, Collections.<String> emptyList(), in.readUTF());
+            }
+
+            final byte[] output = new byte[in.readInt()];
+            in.readFully(output);
+
+            final int numberOfMessages = in.readInt();
+            final ArrayList<String> messages = new ArrayList<>(numberOfMessages);
+            for (int i = 0; i < numberOfMessages; i++) {
+                messages.add(in.readUTF() + ": " + in.readUTF());
+            }
+
+            return new Reply(output, messages, null);
+        }
+    }
+
+    // Writes a new token to the token file. The file is created again so that its permissions are set before the token is
+    // written.
+    @Nonnull
+    private static String writeToken(@Nonnull Path tokenFile) throws IOException {
+        final byte[] randomBytes = new byte[32];
+        new SecureRandom().nextBytes(randomBytes);
+        final StringBuilder sb = new StringBuilder(randomBytes.length * 2);
+        for (byte b : randomBytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+
+        final String token = sb.toString();
+        Files.deleteIfExists(tokenFile);
+        if (Files.getFileStore(tokenFile.toAbsolutePath().getParent()).supportsFileAttributeView("posix")) {
+            Files.createFile(tokenFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(tokenFile);
+        }
+
+        Files.write(tokenFile, token.getBytes(StandardCharsets.UTF_8));
+        return token;
+    }
+
+    @Nonnull
+    private final Environment environment;
+    @Nonnull
+    private final Path tokenFile;
+    @Nonnull
+    private final byte[] token;
+    @Nonnull
+    private final ServerSocket serverSocket;
+    @Nonnull
+    private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(r, "Z80 assembler daemon connection");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    @Nonnull
+    private final ConcurrentHashMap<Path, CachedSourceFile> sourceFiles = new ConcurrentHashMap<>();
+
+    /**
+     * Initializes a new Z80AssemblerDaemon, writes a new token to its token file and binds it to a port on the loopback address.
+     * Call {@link #start()} or {@link #run()} to serve requests.
+     *
+     * @param environment
+     *            the environment of the assemblies
+     * @param port
+     *            the port to bind to, or 0 to bind to an ephemeral port
+     * @param tokenFile
+     *            the path of the token file, which is replaced if it exists
+     * @throws IOException
+     *             the token file cannot be written or the port cannot be bound
+     */
+    public Z80AssemblerDaemon(@Nonnull Environment environment, int port, @Nonnull Path tokenFile) throws IOException {
+        if (environment == null) {
+            throw new NullPointerException("environment");
+        }
+
+        if (tokenFile == null) {
+            throw new NullPointerException("tokenFile");
+        }
+
+        this.environment = environment;
+        this.tokenFile = tokenFile;
+        this.token = writeToken(tokenFile).getBytes(StandardCharsets.UTF_8);
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Stops accepting connections, closes the connections that are being served and deletes the token file.
+     */
+    @Override
+    public final void close() throws IOException {
+        this.serverSocket.close();
+        this.executor.shutdownNow();
+        Files.deleteIfExists(this.tokenFile);
+    }
+
+    /**
+     * Gets the port that this daemon is bound to.
+     *
+     * @return the port
+     */
+    public final int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections on the current thread until this daemon is {@linkplain #close() closed}.
+     *
+     * @throws IOException
+     *             an I/O exception occurred while accepting a connection
+     */
+    public final void run() throws IOException {
+        for (;;) {
+            final Socket socket;
+            try {
+                socket = this.serverSocket.accept();
+            } catch (SocketException e) {
+                if (this.serverSocket.isClosed()) {
+                    return;
+                }
+
+                throw e;
+            }
+
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Z80AssemblerDaemon.this.serve(socket);
+                }
+            });
+        }
+    }
+
+    /**
+     * Accepts connections on a background thread until this daemon is {@linkplain #close() closed}.
+     */
+    public final void start() {
+        this.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Z80AssemblerDaemon.this.run();
+                } catch (IOException e) {
+                    // The daemon can no longer accept connections.
+                }
+            }
+        });
+    }
+
+    @Nonnull
+    SourceFile readSourceFile(@Nonnull Path path) throws IOException {
+        final Path absolutePath = path.toAbsolutePath().normalize();
+        final long lastModified = Files.getLastModifiedTime(absolutePath).toMillis();
+        final CachedSourceFile cachedSourceFile = this.sourceFiles.get(absolutePath);
+        if (cachedSourceFile != null && cachedSourceFile.lastModified == lastModified) {
+            return cachedSourceFile.sourceFile;
+        }
+
+        final SourceFile sourceFile = new SourceFile(new String(Files.readAllBytes(absolutePath), StandardCharsets.UTF_8),
+                absolutePath.toString());
+        this.sourceFiles.put(absolutePath, new CachedSourceFile(lastModified, sourceFile));
+        return sourceFile;
+    }
+
+    private void assemble(@Nonnull String filePath, @Nonnull DataOutputStream out) throws IOException {
+        final Path path = Paths.get(filePath).toAbsolutePath();
+        final Assembly assembly;
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            final Configuration configuration = new Configuration(this.environment, this.readSourceFile(path),
+                    Z80Architecture.INSTANCE).setFileFetcher(new LocalFileFetcher(path.getParent()));
+            assembly = new Assembly(configuration);
+            AssemblyCompletionStatus status;
+            do {
+                status = assembly.step();
+            } while (status != AssemblyCompletionStatus.COMPLETE);
+
+            assembly.writeAssembledDataTo(output);
+        } catch (IOException | RuntimeException e) {
+            // A bug in the assembler must not leave the client waiting for a reply.
+            out.writeBoolean(false);
+            out.writeUTF(String.valueOf(e));
+            return;
+        }
+
+        out.writeBoolean(true);
+        out.writeInt(output.size());
+        output.writeTo(out);
+
+        final List<AssemblyMessage> messages = assembly.getMessages();
+        out.writeInt(messages.size());
+        for (AssemblyMessage message : messages) {
+            out.writeUTF(String.valueOf(message.getGravity()));
+            out.writeUTF(message.getText());
+        }
+    }
+
+    private void serve(@Nonnull Socket socket) {
+        try (Socket s = socket) {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            if (!MessageDigest.isEqual(in.readUTF().getBytes(StandardCharsets.UTF_8), this.token)) {
+                out.writeBoolean(false);
+                out.writeUTF("Invalid token");
+                out.flush();
+                return;
+            }
+
+            for (;;) {
+                final String filePath;
+                try {
+                    filePath = in.readUTF();
+                } catch (EOFException e) {
+                    return;
+                }
+
+                this.assemble(filePath, out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The connection was closed or broken; the client will notice.
+        }
+    }
+
+}
@@ -0,0 +1,660 @@
+package org.reasm.z80;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.reasm.Assembly;
+import org.reasm.AssemblyCompletionStatus;
+import org.reasm.AssemblyMessage;
+import org.reasm.Configuration;
+import org.reasm.Environment;
+import org.reasm.FileFetcher;
+import org.reasm.SymbolContext;
+import org.reasm.UserSymbol;
+import org.reasm.Value;
+import org.reasm.source.SourceFile;
+import org.reasm.z80.assembly.internal.ExactIntegerValueVisitor;
+import org.reasm.z80.messages.FileReadErrorMessage;
+
+import ca.fragag.text.Document;
+
+/**
+ * A persistent cache of assembly results in a directory on disk, keyed by the contents of every file that the assembly reads.
+ * <p>
+ * The files that an assembly reads are only known once it has been performed, so the cache stores two kinds of files. A manifest,
+ * named after the hash of the assembler version, of the settings of the {@linkplain Z80AssemblyOptions options} and of the main
+ * source file's name and text, lists the files that the last assembly of that main source file read or tried to read, with
+ * their kind. A result, named after the hash of the manifest's key and of the contents of the files it lists, holds the assembled
+ * data, the messages and the integer symbols of the assembly. A lookup hashes the main source file, reads the manifest, hashes
+ * the listed files as the {@link FileFetcher} currently returns them (source files with
+ * {@link FileFetcher#fetchSourceFile(String)} and binary files with {@link FileFetcher#fetchBinaryFile(String)}) and loads the
+ * matching result, so a hit costs little more than hashing the inputs. The results of assemblies that failed to read a file are
+ * not stored, since the failure may be transient.
+ * <p>
+ * The total size of the files in the directory is bounded. When a result is stored and the directory exceeds the maximum size,
+ * the least recently used files are deleted; a hit marks its files as used by updating their modification time.
+ *
+ * @author Francis Gagné
+ */
+@ThreadSafe
+public final class Z80AssemblyCache {
+
+    /**
+     * A cached assembly result.
+     *
+     * @author Francis Gagné
+     */
+    @Immutable
+    public static final class Entry {
+
+        @Nonnull
+        private final byte[] output;
+        @Nonnull
+        private final List<String> messages;
+        @Nonnull
+        private final Map<String, Long> symbols;
+        private final boolean hit;
+
+        Entry(@Nonnull byte[] output, @Nonnull List<String> messages, @Nonnull Map<String, Long> symbols, boolean hit) {
+            this.output = output;
+            this.messages = Collections.unmodifiableList(messages);
+            this.symbols = Collections.unmodifiableMap(symbols);
+            this.hit = hit;
+        }
+
+        /**
+         * Gets the messages that the assembly produced, each formatted as its gravity, a colon, a space and its text.
+         *
+         * @return the messages
+         */
+        @Nonnull
+        public final List<String> getMessages() {
+            return this.messages;
+        }
+
+        /**
+         * Gets the assembled data.
+         *
+         * @return a copy of the assembled data
+         */
+        @Nonnull
+        public final byte[] getOutput() {
+            return this.output.clone();
+        }
+
+        /**
+         * Gets the symbols of the assembly that have an integer value.
+         *
+         * @return a map of the symbols' names to their values, in the order in which the assembly returned them
+         */
+        @Nonnull
+        public final Map<String, Long> getSymbols() {
+            return this.symbols;
+        }
+
+        /**
+         * Determines whether this entry was loaded from the cache.
+         *
+         * @return <code>true</code> if this entry was loaded from the cache, <code>false</code> if the assembly was performed
+         */
+        public final boolean isHit() {
+            return this.hit;
+        }
+
+    }
+
+    private interface ContentWriter {
+
+        void write(@Nonnull DataOutputStream out) throws IOException;
+
+    }
+
+    @Immutable
+    private static final class Dependency {
+
+        @Nonnull
+        final String filePath;
+        @Nonnull
+        final Z80AssemblyListener.FileKind kind;
+
+        Dependency(@Nonnull String filePath, @Nonnull Z80AssemblyListener.FileKind kind) {
+            this.filePath = filePath;
+            this.kind = kind;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof Dependency)) {
+                return false;
+            }
+
+            final Dependency other = (Dependency) obj;
+            return this.filePath.equals(other.filePath) && this.kind == other.kind;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.filePath.hashCode() * 31 + this.kind.hashCode();
+        }
+
+    }
+
+    // Records the files that an assembly reads or fails to read, in every pass, like Z80DependencyRecorder.
+    private static final class DependencyListener extends Z80AssemblyListener {
+
+        @Nonnull
+        final LinkedHashSet<Dependency> dependencies = new LinkedHashSet<>();
+
+        DependencyListener() {
+        }
+
+        @Override
+        public void fileRead(String filePath, FileKind kind) {
+            this.dependencies.add(new Dependency(filePath, kind));
+        }
+
+        @Override
+        public void fileReadFailed(String filePath, FileKind kind) {
+            this.dependencies.add(new Dependency(filePath, kind));
+        }
+
+    }
+
+    private static final int MANIFEST_MAGIC = 0x5A38304D; // "Z80M"
+    private static final int RESULT_MAGIC = 0x5A383041; // "Z80A"
+    private static final int FORMAT_VERSION = 2;
+    // Must be incremented whenever a change to the assembler can change the result of an assembly.
+    private static final int ASSEMBLER_VERSION = 1;
+    private static final String MANIFEST_FILE_EXTENSION = ".z80m";
+    private static final String RESULT_FILE_EXTENSION = ".z80a";
+
+    @Nonnull
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform implementation is required to support SHA-256.
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void hashBytes(@Nonnull MessageDigest digest, @CheckForNull byte[] bytes) {
+        if (bytes == null) {
+            digest.update((byte) 0);
+        } else {
+            digest.update((byte) 1);
+            hashInt(digest, bytes.length);
+            digest.update(bytes);
+        }
+    }
+
+    // Hashes the path, the kind and the contents of a file that an assembly depends on, as the file fetcher returns them. The
+    // INCLUDE and INCBIN directives only read files through the file fetcher, so these are the contents that the assembly would
+    // read. Like the directives, a file that the file fetcher fails to read is treated as missing.
+    private static void hashDependency(@Nonnull MessageDigest digest, @Nonnull Dependency dependency,
+            @CheckForNull FileFetcher fileFetcher) {
+        hashString(digest, dependency.filePath);
+        digest.update((byte) dependency.kind.ordinal());
+        if (dependency.kind == Z80AssemblyListener.FileKind.SOURCE) {
+            SourceFile sourceFile = null;
+            try {
+                sourceFile = fileFetcher == null ? null : fileFetcher.fetchSourceFile(dependency.filePath);
+            } catch (IOException e) {
+                // Treat the file as missing.
+            }
+
+            hashDocument(digest, sourceFile == null ? null : sourceFile.getText());
+        } else {
+            byte[] contents = null;
+            try {
+                contents = fileFetcher == null ? null : fileFetcher.fetchBinaryFile(dependency.filePath);
+            } catch (IOException e) {
+                // Treat the file as missing.
+            }
+
+            hashBytes(digest, contents);
+        }
+    }
+
+    private static void hashDocument(@Nonnull MessageDigest digest, @CheckForNull Document text) {
+        if (text == null) {
+            digest.update((byte) 0);
+        } else {
+            digest.update((byte) 1);
+            final int length = text.length();
+            hashInt(digest, length);
+            for (int i = 0; i < length; i++) {
+                final char ch = text.charAt(i);
+                digest.update((byte) (ch >>> 8));
+                digest.update((byte) ch);
+            }
+        }
+    }
+
+    private static void hashInt(@Nonnull MessageDigest digest, int value) {
+        digest.update((byte) (value >>> 24));
+        digest.update((byte) (value >>> 16));
+        digest.update((byte) (value >>> 8));
+        digest.update((byte) value);
+    }
+
+    private static void hashString(@Nonnull MessageDigest digest, @CheckForNull String value) {
+        hashBytes(digest, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Nonnull
+    private static String toHexString(@Nonnull byte[] hash) {
+        final StringBuilder sb = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >>> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return sb.toString();
+    }
+
+    private static void touch(@Nonnull Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // The file was evicted concurrently; the entry has already been loaded.
+        }
+    }
+
+    @Nonnull
+    private final Path directory;
+    private final long maximumSize;
+    @Nonnull
+    private final Object evictionLock = new Object();
+
+    /**
+     * Initializes a new Z80AssemblyCache.
+     *
+     * @param directory
+     *            the directory in which the results are stored; it is created if it doesn't exist
+     * @param maximumSize
+     *            the maximum total size, in bytes, of the files in the directory
+     */
+    public Z80AssemblyCache(@Nonnull Path directory, long maximumSize) {
+        if (directory == null) {
+            throw new NullPointerException("directory");
+        }
+
+        this.directory = directory;
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Gets the result of the assembly of a source file with the default options from this cache, or performs the assembly and
+     * stores its result in this cache.
+     *
+     * @param environment
+     *            the environment of the assembly
+     * @param text
+     *            the text of the main source file
+     * @param fileName
+     *            the name of the main source file, or <code>null</code>
+     * @param fileFetcher
+     *            the file fetcher for the files included by the main source file, or <code>null</code>
+     * @return the result of the assembly
+     * @throws IOException
+     *             an I/O exception occurred while reading a file or performing the assembly
+     */
+    @Nonnull
+    public final Entry get(@Nonnull Environment environment, @Nonnull String text, @CheckForNull String fileName,
+            @CheckForNull FileFetcher fileFetcher) throws IOException {
+        return this.get(environment, text, fileName, fileFetcher, new Z80AssemblyOptions());
+    }
+
+    /**
+     * Gets the result of the assembly of a source file from this cache, or performs the assembly and stores its result in this
+     * cache. The settings of the options are part of the key of the result; the listeners of the options are only notified
+     * when the assembly is performed.
+     *
+     * @param environment
+     *            the environment of the assembly
+     * @param text
+     *            the text of the main source file
+     * @param fileName
+     *            the name of the main source file, or <code>null</code>
+     * @param fileFetcher
+     *            the file fetcher for the files included by the main source file, or <code>null</code>
+     * @param options
+     *            the options of the assembly
+     * @return the result of the assembly
+     * @throws IOException
+     *             an I/O exception occurred while reading a file or performing the assembly
+     */
+    @Nonnull
+    public final Entry get(@Nonnull Environment environment, @Nonnull String text, @CheckForNull String fileName,
+            @CheckForNull FileFetcher fileFetcher, @Nonnull Z80AssemblyOptions options) throws IOException {
+        if (options == null) {
+            throw new NullPointerException("options");
+        }
+
+        final MessageDigest digest = createDigest();
+        hashInt(digest, ASSEMBLER_VERSION);
+        digest.update((byte) (options.isObjectFile() ? 1 : 0));
+        hashInt(digest, options.getMaximumNumberOfLoopIterations());
+        digest.update((byte) (options.isPretokenizeOperands() ? 1 : 0));
+        digest.update((byte) (options.isSizingPass() ? 1 : 0));
+        hashString(digest, fileName);
+        hashString(digest, text);
+        final byte[] manifestKey = digest.digest();
+        final Path manifestFile = this.directory.resolve(toHexString(manifestKey) + MANIFEST_FILE_EXTENSION);
+
+        final List<Dependency> dependencies = this.loadManifest(manifestFile, manifestKey);
+        if (dependencies != null) {
+            final Path resultFile = this.getResultFile(manifestKey, dependencies, fileFetcher);
+            final Entry entry = this.loadResult(resultFile);
+            if (entry != null) {
+                touch(manifestFile);
+                touch(resultFile);
+                return entry;
+            }
+        }
+
+        final Configuration configuration = new Configuration(environment, new SourceFile(text, fileName),
+                Z80Architecture.INSTANCE).setFileFetcher(fileFetcher);
+        final Assembly assembly = new Assembly(configuration);
+        final DependencyListener dependencyListener = new DependencyListener();
+        options.addListener(dependencyListener).attachTo(assembly);
+        AssemblyCompletionStatus status;
+        do {
+            status = assembly.step();
+        } while (status != AssemblyCompletionStatus.COMPLETE);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assembly.writeAssembledDataTo(out);
+
+        final ArrayList<String> messages = new ArrayList<>();
+        boolean fileReadFailed = false;
+        for (AssemblyMessage message : assembly.getMessages()) {
+            messages.add(message.getGravity() + ": " + message.getText());
+            if (message instanceof FileReadErrorMessage) {
+                fileReadFailed = true;
+            }
+        }
+
+        final LinkedHashMap<String, Long> symbols = new LinkedHashMap<>();
+        for (UserSymbol symbol : assembly.getSymbols()) {
+            if (symbol.getContext() == SymbolContext.VALUE) {
+                final Long value = Value.accept((Value) symbol.getValue(), ExactIntegerValueVisitor.INSTANCE);
+                if (value != null) {
+                    symbols.put(symbol.getName(), value);
+                }
+            }
+        }
+
+        final Entry entry = new Entry(out.toByteArray(), messages, symbols, false);
+        if (!fileReadFailed) {
+            final ArrayList<Dependency> recordedDependencies = new ArrayList<>(dependencyListener.dependencies);
+            this.storeManifest(manifestFile, manifestKey, recordedDependencies);
+            this.storeResult(this.getResultFile(manifestKey, recordedDependencies, fileFetcher), entry);
+            this.evict();
+        }
+
+        return entry;
+    }
+
+    /**
+     * Gets the directory in which the results are stored.
+     *
+     * @return the directory
+     */
+    @Nonnull
+    public final Path getDirectory() {
+        return this.directory;
+    }
+
+    private void evict() {
+        synchronized (this.evictionLock) {
+            // Map each file to its last modification time and its size.
+            final LinkedHashMap<Path, long[]> files = new LinkedHashMap<>();
+            long totalSize = 0;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+                for (Path file : stream) {
+                    final String name = file.getFileName().toString();
+                    if (name.endsWith(MANIFEST_FILE_EXTENSION) || name.endsWith(RESULT_FILE_EXTENSION)) {
+                        final long size = Files.size(file);
+                        files.put(file, new long[] { Files.getLastModifiedTime(file).toMillis(), size });
+                        totalSize += size;
+                    }
+                }
+            } catch (IOException e) {
+                // Try again when the next result is stored.
+                return;
+            }
+
+            if (totalSize <= this.maximumSize) {
+                return;
+            }
+
+            final ArrayList<Map.Entry<Path, long[]>> entries = new ArrayList<>(files.entrySet());
+            Collections.sort(entries, new Comparator<Map.Entry<Path, long[]>>() {
+                @Override
+                public int compare(Map.Entry<Path, long[]> o1, Map.Entry<Path, long[]> o2) {
+                    return Long.compare(o1.getValue()[0], o2.getValue()[0]);
+                }
+            });
+
+            for (Map.Entry<Path, long[]> entry : entries) {
+                if (totalSize <= this.maximumSize) {
+                    break;
+                }
+
+                try {
+                    Files.deleteIfExists(entry.getKey());
+                    totalSize -= entry.getValue()[1];
+                } catch (IOException e) {
+                    // Skip the file; it may be in use.
+                }
+            }
+        }
+    }
+
+    @Nonnull
+    private Path getResultFile(@Nonnull byte[] manifestKey, @Nonnull List<Dependency> dependencies,
+            @CheckForNull FileFetcher fileFetcher) {
+        final MessageDigest digest = createDigest();
+        digest.update(manifestKey);
+        for (Dependency dependency : dependencies) {
+            hashDependency(digest, dependency, fileFetcher);
+        }
+
+        return this.directory.resolve(toHexString(digest.digest()) + RESULT_FILE_EXTENSION);
+    }
+
+    @CheckForNull
+    private List<Dependency> loadManifest(@Nonnull Path file, @Nonnull byte[] manifestKey) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try (InputStream stream = Files.newInputStream(file)) {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+            if (in.readInt() != MANIFEST_MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+
+            final byte[] storedKey = new byte[manifestKey.length];
+            in.readFully(storedKey);
+            if (!MessageDigest.isEqual(storedKey, manifestKey)) {
+                return null;
+            }
+
+            final int numberOfDependencies = in.readInt();
+            if (numberOfDependencies < 0) {
+                return null;
+            }
+
+            final Z80AssemblyListener.FileKind[] kinds = Z80AssemblyListener.FileKind.values();
+            final ArrayList<Dependency> dependencies = new ArrayList<>();
+            for (int i = 0; i < numberOfDependencies; i++) {
+                final int kind = in.readUnsignedByte();
+                if (kind >= kinds.length) {
+                    return null;
+                }
+
+                dependencies.add(new Dependency(in.readUTF(), kinds[kind]));
+            }
+
+            return dependencies;
+        } catch (IOException | RuntimeException e) {
+            // The file is unreadable, truncated or corrupted; treat it as missing.
+            return null;
+        }
+    }
+
+    @CheckForNull
+    private Entry loadResult(@Nonnull Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try (InputStream stream = Files.newInputStream(file)) {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+            if (in.readInt() != RESULT_MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+
+            final int outputLength = in.readInt();
+            if (outputLength < 0) {
+                return null;
+            }
+
+            final byte[] output = new byte[outputLength];
+            in.readFully(output);
+
+            final int numberOfMessages = in.readInt();
+            if (numberOfMessages < 0) {
+                return null;
+            }
+
+            final ArrayList<String> messages = new ArrayList<>();
+            for (int i = 0; i < numberOfMessages; i++) {
+                messages.add(in.readUTF());
+            }
+
+            final int numberOfSymbols = in.readInt();
+            if (numberOfSymbols < 0) {
+                return null;
+            }
+
+            final LinkedHashMap<String, Long> symbols = new LinkedHashMap<>();
+            for (int i = 0; i < numberOfSymbols; i++) {
+                final String name = in.readUTF();
+                symbols.put(name, in.readLong());
+            }
+
+            return new Entry(output, messages, symbols, true);
+        } catch (IOException | RuntimeException e) {
+            // The file is unreadable, truncated or corrupted; treat it as missing.
+            return null;
+        }
+    }
+
+    private void store(@Nonnull Path file, @Nonnull String fileExtension, @Nonnull ContentWriter writer) {
+        Path temporaryFile = null;
+        try {
+            Files.createDirectories(this.directory);
+            temporaryFile = Files.createTempFile(this.directory, null, fileExtension + ".tmp");
+
+            try (OutputStream stream = Files.newOutputStream(temporaryFile)) {
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+                writer.write(out);
+                out.flush();
+            }
+
+            // Publish the file atomically, so that concurrent readers never see a partially written file.
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            temporaryFile = null;
+        } catch (IOException e) {
+            // The cache is only an optimization; the assembly was performed successfully, so failing to store it is not an error.
+        } finally {
+            if (temporaryFile != null) {
+                try {
+                    Files.deleteIfExists(temporaryFile);
+                } catch (IOException e) {
+                    // Ignore.
+                }
+            }
+        }
+    }
+
+    private void storeManifest(@Nonnull Path file, @Nonnull final byte[] manifestKey,
+            @Nonnull final List<Dependency> dependencies) {
+        this.store(file, MANIFEST_FILE_EXTENSION, new ContentWriter() {
+            @Override
+            public void write(DataOutputStream out) throws IOException {
+                out.writeInt(MANIFEST_MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.write(manifestKey);
+                out.writeInt(dependencies.size());
+                for (Dependency dependency : dependencies) {
+                    out.writeByte(dependency.kind.ordinal());
+                    out.writeUTF(dependency.filePath);
+                }
+            }
+        });
+    }
+
+    private void storeResult(@Nonnull Path file, @Nonnull final Entry entry) {
+        this.store(file, RESULT_FILE_EXTENSION, new ContentWriter() {
+            @Override
+            public void write(DataOutputStream out) throws IOException {
+                out.writeInt(RESULT_MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(entry.output.length);
+                out.write(entry.output);
+                out.writeInt(entry.messages.size());
+                for (String message : entry.messages) {
+                    out.writeUTF(message);
+                }
+
+                out.writeInt(entry.symbols.size());
+                for (Map.Entry<String, Long> symbol : entry.symbols.entrySet()) {
+                    out.writeUTF(symbol.getKey());
+                    out.writeLong(symbol.getValue());
+                }
+            }
+        });
+    }
+
+}
@@ -0,0 +1,127 @@
+package org.reasm.z80;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * Receives the events of a Z80 assembly. A listener is registered with {@link Z80AssemblyOptions#addListener(Z80AssemblyListener)}
+ * and is notified on the thread that steps the assembly.
+ * <p>
+ * The assembler performs as many passes as necessary; a listener that records information should discard it when a
+ * {@linkplain #passStarted() new pass starts}, so that it only keeps the information of the last pass. The default
+ * implementation of each method does nothing.
+ *
+ * @author Francis Gagné
+ */
+public abstract class Z80AssemblyListener {
+
+    /**
+     * The kinds of files that an assembly reads. Binary files are fetched with
+     * {@link org.reasm.FileFetcher#fetchBinaryFile(String)} and source files with
+     * {@link org.reasm.FileFetcher#fetchSourceFile(String)}.
+     *
+     * @author Francis Gagné
+     */
+    public enum FileKind {
+
+        /** A binary file, read with the <code>INCBIN</code> directive. */
+        BINARY,
+
+        /** A source file, read with the <code>INCLUDE</code> directive. */
+        SOURCE
+
+    }
+
+    /**
+     * Initializes a new Z80AssemblyListener.
+     */
+    protected Z80AssemblyListener() {
+    }
+
+    /**
+     * Called when the assembly is complete.
+     */
+    public void assemblyCompleted() {
+    }
+
+    /**
+     * Called when a symbol is declared with the <code>EXTERN</code> directive in an assembly that produces an object file.
+     *
+     * @param name
+     *            the fully qualified name of the symbol
+     */
+    public void externalSymbolDeclared(@Nonnull String name) {
+    }
+
+    /**
+     * Called when the assembly has read a file with the <code>INCLUDE</code> or <code>INCBIN</code> directive.
+     *
+     * @param filePath
+     *            the path of the file, as written in the source, after evaluation
+     * @param kind
+     *            the kind of the file
+     */
+    public void fileRead(@Nonnull String filePath, @Nonnull FileKind kind) {
+    }
+
+    /**
+     * Called when the assembly has failed to read a file with the <code>INCLUDE</code> or <code>INCBIN</code> directive, because
+     * the file doesn't exist or cannot be read.
+     *
+     * @param filePath
+     *            the path of the file, as written in the source, after evaluation
+     * @param kind
+     *            the kind of the file
+     */
+    public void fileReadFailed(@Nonnull String filePath, @Nonnull FileKind kind) {
+    }
+
+    /**
+     * Called when a logical line has been assembled. The line object is only valid during the call.
+     *
+     * @param line
+     *            the assembled line
+     */
+    public void lineAssembled(@Nonnull Z80AssembledLine line) {
+    }
+
+    /**
+     * Called when a new pass starts. The information recorded during the previous pass is obsolete.
+     */
+    public void passStarted() {
+    }
+
+    /**
+     * Called when a symbol is declared with the <code>PUBLIC</code> directive in an assembly that produces an object file.
+     *
+     * @param name
+     *            the fully qualified name of the symbol
+     */
+    public void publicSymbolDeclared(@Nonnull String name) {
+    }
+
+    /**
+     * Called when a label whose value is relative to the address of the section is defined in an assembly that produces an
+     * object file.
+     *
+     * @param name
+     *            the fully qualified name of the label
+     */
+    public void relocatableSymbolDefined(@Nonnull String name) {
+    }
+
+    /**
+     * Called when data that must be relocated by the linker has been written in an assembly that produces an object file.
+     *
+     * @param offset
+     *            the offset of the data in the output
+     * @param size
+     *            the size of the data: 1 for a byte, 2 for a word
+     * @param externalSymbol
+     *            the external symbol whose value is added to the data, or <code>null</code> if the address of the section is
+     *            added to the data
+     */
+    public void relocationAdded(long offset, int size, @CheckForNull String externalSymbol) {
+    }
+
+}
@@ -0,0 +1,257 @@
+package org.reasm.z80;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.reasm.Assembly;
+import org.reasm.Configuration;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * The options of Z80 assemblies that are not part of the {@link Configuration}: the {@linkplain Z80AssemblyListener listeners}
+ * that receive the events of an assembly and the settings that change how the code is assembled.
+ * <p>
+ * Options are {@linkplain #attachTo(Assembly) attached to an assembly} before its first step, or
+ * {@linkplain #attachTo(Configuration) to a configuration} to apply to every assembly created with that configuration, for
+ * example the assemblies of a {@link Z80BatchAssembler}. The options are read by the first step of the assembly, on whichever
+ * thread performs it. An assembly without options uses the options created by {@link #Z80AssemblyOptions()}.
+ * <p>
+ * Options are immutable: the <code>add</code> and <code>set</code> methods return a modified copy.
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+public final class Z80AssemblyOptions {
+
+    /** The default maximum number of iterations of a single loop. */
+    public static final int DEFAULT_MAXIMUM_NUMBER_OF_LOOP_ITERATIONS = 0x100000;
+
+    @Nonnull
+    private static final Z80AssemblyOptions DEFAULT = new Z80AssemblyOptions();
+
+    // The keys are held weakly and compared by identity.
+    @Nonnull
+    private static final ConcurrentMap<Assembly, Z80AssemblyOptions> ASSEMBLY_OPTIONS = new MapMaker().weakKeys().makeMap();
+    @Nonnull
+    private static final ConcurrentMap<Configuration, Z80AssemblyOptions> CONFIGURATION_OPTIONS = new MapMaker().weakKeys()
+            .makeMap();
+
+    /**
+     * Gets the options of an assembly: the options attached to the assembly, if any, otherwise the options attached to its
+     * configuration, if any, otherwise the default options.
+     *
+     * @param assembly
+     *            the assembly
+     * @return the options
+     */
+    @Nonnull
+    public static Z80AssemblyOptions of(@Nonnull Assembly assembly) {
+        final Z80AssemblyOptions options = ASSEMBLY_OPTIONS.get(assembly);
+        if (options != null) {
+            return options;
+        }
+
+        return of(assembly.getConfiguration());
+    }
+
+    /**
+     * Gets the options attached to a configuration.
+     *
+     * @param configuration
+     *            the configuration
+     * @return the options attached to the configuration, or the default options if no options are attached to it
+     */
+    @Nonnull
+    public static Z80AssemblyOptions of(@Nonnull Configuration configuration) {
+        final Z80AssemblyOptions options = CONFIGURATION_OPTIONS.get(configuration);
+        return options != null ? options : DEFAULT;
+    }
+
+    @Nonnull
+    private final Z80AssemblyListener[] listeners;
+    private final boolean objectFile;
+    private final int maximumNumberOfLoopIterations;
+    private final boolean pretokenizeOperands;
+    private final boolean sizingPass;
+
+    /**
+     * Initializes a new Z80AssemblyOptions with no listeners, for an assembly that produces an absolute binary, with the
+     * {@linkplain #DEFAULT_MAXIMUM_NUMBER_OF_LOOP_ITERATIONS default maximum number of loop iterations}, with pretokenized
+     * operands and without a sizing pass.
+     */
+    public Z80AssemblyOptions() {
+        this(new Z80AssemblyListener[0], false, DEFAULT_MAXIMUM_NUMBER_OF_LOOP_ITERATIONS, true, false);
+    }
+
+    private Z80AssemblyOptions(@Nonnull Z80AssemblyListener[] listeners, boolean objectFile, int maximumNumberOfLoopIterations,
+            boolean pretokenizeOperands, boolean sizingPass) {
+        this.listeners = listeners;
+        this.objectFile = objectFile;
+        this.maximumNumberOfLoopIterations = maximumNumberOfLoopIterations;
+        this.pretokenizeOperands = pretokenizeOperands;
+        this.sizingPass = sizingPass;
+    }
+
+    /**
+     * Returns a copy of these options with an additional listener.
+     *
+     * @param listener
+     *            the listener to add
+     * @return the new options
+     */
+    @Nonnull
+    public final Z80AssemblyOptions addListener(@Nonnull Z80AssemblyListener listener) {
+        if (listener == null) {
+            throw new NullPointerException("listener");
+        }
+
+        final Z80AssemblyListener[] listeners = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+        listeners[this.listeners.length] = listener;
+        return new Z80AssemblyOptions(listeners, this.objectFile, this.maximumNumberOfLoopIterations, this.pretokenizeOperands,
+                this.sizingPass);
+    }
+
+    /**
+     * Attaches these options to an assembly, replacing the options attached to the assembly or to its configuration, if any. The
+     * assembly must not have been started.
+     *
+     * @param assembly
+     *            the assembly
+     */
+    public final void attachTo(@Nonnull Assembly assembly) {
+        ASSEMBLY_OPTIONS.put(assembly, this);
+    }
+
+    /**
+     * Attaches these options to a configuration. The assemblies that are created with the configuration use these options, unless
+     * other options are attached to them.
+     *
+     * @param configuration
+     *            the configuration
+     */
+    public final void attachTo(@Nonnull Configuration configuration) {
+        CONFIGURATION_OPTIONS.put(configuration, this);
+    }
+
+    /**
+     * Gets the listeners that receive the events of the assembly.
+     *
+     * @return the listeners, in the order in which they were added
+     */
+    @Nonnull
+    public final List<Z80AssemblyListener> getListeners() {
+        return Collections.unmodifiableList(Arrays.asList(this.listeners));
+    }
+
+    /**
+     * Gets the maximum number of iterations that a single <code>WHILE</code>, <code>DO</code> or <code>FOR</code> block may
+     * perform. A loop that would perform more iterations stops with an error, so that an assembly with an infinite loop
+     * terminates.
+     *
+     * @return the maximum number of iterations
+     */
+    public final int getMaximumNumberOfLoopIterations() {
+        return this.maximumNumberOfLoopIterations;
+    }
+
+    /**
+     * Determines whether the assembly produces a relocatable object file. In that case, the <code>EXTERN</code> and
+     * <code>PUBLIC</code> directives are allowed and the listeners are notified of the relocations.
+     *
+     * @return <code>true</code> if the assembly produces an object file, otherwise <code>false</code>
+     */
+    public final boolean isObjectFile() {
+        return this.objectFile;
+    }
+
+    /**
+     * Determines whether the operands of logical lines are pretokenized. In that case, the operands of each logical line are
+     * tokenized the first time the line is assembled, and the tokens are replayed on the following passes of the assembly.
+     *
+     * @return <code>true</code> if the operands are pretokenized, otherwise <code>false</code>
+     */
+    public final boolean isPretokenizeOperands() {
+        return this.pretokenizeOperands;
+    }
+
+    /**
+     * Determines whether the first pass of the assembly is a sizing pass. The sizing pass only classifies the operands of
+     * instructions and computes their lengths and the addresses of labels, without evaluating immediate values, displacements or
+     * the operands of <code>DW</code> directives; those are evaluated in the next pass.
+     * <p>
+     * The sizing pass never reduces the number of passes: a program that defers a value always takes at least two passes, even
+     * if it has no forward references. It only makes the first pass cheaper, so it can only pay off for programs that need
+     * several passes anyway.
+     *
+     * @return <code>true</code> if the first pass is a sizing pass, otherwise <code>false</code>
+     */
+    public final boolean isSizingPass() {
+        return this.sizingPass;
+    }
+
+    /**
+     * Returns a copy of these options with a different maximum number of loop iterations.
+     *
+     * @param maximumNumberOfLoopIterations
+     *            the maximum number of iterations of a single loop
+     * @return the new options
+     * @throws IllegalArgumentException
+     *             <code>maximumNumberOfLoopIterations</code> is negative
+     */
+    @Nonnull
+    public final Z80AssemblyOptions setMaximumNumberOfLoopIterations(int maximumNumberOfLoopIterations) {
+        if (maximumNumberOfLoopIterations < 0) {
+            throw new IllegalArgumentException("maximumNumberOfLoopIterations is negative");
+        }
+
+        return new Z80AssemblyOptions(this.listeners, this.objectFile, maximumNumberOfLoopIterations, this.pretokenizeOperands,
+                this.sizingPass);
+    }
+
+    /**
+     * Returns a copy of these options that produces or doesn't produce a relocatable object file.
+     *
+     * @param objectFile
+     *            <code>true</code> to produce an object file, or <code>false</code> to produce an absolute binary
+     * @return the new options
+     */
+    @Nonnull
+    public final Z80AssemblyOptions setObjectFile(boolean objectFile) {
+        return new Z80AssemblyOptions(this.listeners, objectFile, this.maximumNumberOfLoopIterations, this.pretokenizeOperands,
+                this.sizingPass);
+    }
+
+    /**
+     * Returns a copy of these options that pretokenizes or doesn't pretokenize the operands of logical lines.
+     *
+     * @param pretokenizeOperands
+     *            <code>true</code> to tokenize the operands of each logical line once and replay the tokens on later passes, or
+     *            <code>false</code> to tokenize the operands each time they are read
+     * @return the new options
+     */
+    @Nonnull
+    public final Z80AssemblyOptions setPretokenizeOperands(boolean pretokenizeOperands) {
+        return new Z80AssemblyOptions(this.listeners, this.objectFile, this.maximumNumberOfLoopIterations, pretokenizeOperands,
+                this.sizingPass);
+    }
+
+    /**
+     * Returns a copy of these options that enables or disables the {@linkplain #isSizingPass() sizing pass}.
+     *
+     * @param sizingPass
+     *            <code>true</code> to make the first pass a sizing pass, otherwise <code>false</code>
+     * @return the new options
+     */
+    @Nonnull
+    public final Z80AssemblyOptions setSizingPass(boolean sizingPass) {
+        return new Z80AssemblyOptions(this.listeners, this.objectFile, this.maximumNumberOfLoopIterations,
+                this.pretokenizeOperands, sizingPass);
+    }
+
+}
@@ -0,0 +1,218 @@
+package org.reasm.z80;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.reasm.Assembly;
+import org.reasm.AssemblyCompletionStatus;
+import org.reasm.AssemblyMessage;
+import org.reasm.Configuration;
+
+/**
+ * Performs many independent assemblies in parallel.
+ * <p>
+ * Each assembly is a task on a work-stealing fork-join pool, so that idle workers take over the remaining assemblies and the
+ * total time approaches the total work divided by the number of workers. The assemblies share the process-wide
+ * {@linkplain org.reasm.z80.source.Z80ParseCache parse cache} and the immutable mnemonic tables, so a file that is included by
+ * several programs is only parsed once.
+ *
+ * @author Francis Gagné
+ */
+public final class Z80BatchAssembler {
+
+    private static final class AssembleTask extends RecursiveTask<Result> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Nonnull
+        private final Configuration configuration;
+
+        AssembleTask(@Nonnull Configuration configuration) {
+            this.configuration = configuration;
+        }
+
+        @Override
+        protected Result compute() {
+            final long startTime = System.nanoTime();
+            final Assembly assembly = new Assembly(this.configuration);
+            byte[] output = null;
+            Exception exception = null;
+            try {
+                AssemblyCompletionStatus status;
+                do {
+                    status = assembly.step();
+                } while (status != AssemblyCompletionStatus.COMPLETE);
+
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                assembly.writeAssembledDataTo(out);
+                output = out.toByteArray();
+            } catch (IOException | RuntimeException e) {
+                // Report the failure in this assembly's result rather than letting it abort the whole batch.
+                exception = e;
+            }
+
+            return new Result(this.configuration, output, assembly.getMessages(), exception, System.nanoTime() - startTime);
+        }
+
+    }
+
+    // Holds the default pool, so that it is only created when a batch is assembled.
+    private static final class DefaultPoolHolder {
+
+        @Nonnull
+        static final ForkJoinPool POOL = new ForkJoinPool();
+
+    }
+
+    /**
+     * The result of one assembly of a batch.
+     *
+     * @author Francis Gagné
+     */
+    @Immutable
+    public static final class Result {
+
+        @Nonnull
+        private final Configuration configuration;
+        @CheckForNull
+        private final byte[] output;
+        @Nonnull
+        private final List<AssemblyMessage> messages;
+        @CheckForNull
+        private final Exception exception;
+        private final long wallTime;
+
+        Result(@Nonnull Configuration configuration, @CheckForNull byte[] output, @Nonnull List<AssemblyMessage> messages,
+                @CheckForNull Exception exception, long wallTime) {
+            this.configuration = configuration;
+            this.output = output;
+            this.messages = Collections.unmodifiableList(new ArrayList<>(messages));
+            this.exception = exception;
+            this.wallTime = wallTime;
+        }
+
+        /**
+         * Gets the configuration of the assembly.
+         *
+         * @return the configuration
+         */
+        @Nonnull
+        public final Configuration getConfiguration() {
+            return this.configuration;
+        }
+
+        /**
+         * Gets the exception that interrupted the assembly: an {@link IOException} or an unchecked exception thrown while
+         * assembling.
+         *
+         * @return the exception, or <code>null</code> if the assembly completed
+         */
+        @CheckForNull
+        public final Exception getException() {
+            return this.exception;
+        }
+
+        /**
+         * Gets the messages that the assembly produced.
+         *
+         * @return the messages
+         */
+        @Nonnull
+        public final List<AssemblyMessage> getMessages() {
+            return this.messages;
+        }
+
+        /**
+         * Gets the assembled data.
+         *
+         * @return a copy of the assembled data, or <code>null</code> if the assembly was interrupted by an exception
+         */
+        @CheckForNull
+        public final byte[] getOutput() {
+            return this.output == null ? null : this.output.clone();
+        }
+
+        /**
+         * Gets the wall-clock time that the assembly took, from its creation to the end of its last step.
+         *
+         * @return the time, in nanoseconds
+         */
+        public final long getWallTime() {
+            return this.wallTime;
+        }
+
+    }
+
+    /**
+     * Performs assemblies on a shared fork-join pool whose parallelism is the number of available processors.
+     *
+     * @param configurations
+     *            the configurations of the assemblies
+     * @return the results of the assemblies, in the order of the configurations
+     */
+    @Nonnull
+    public static List<Result> assemble(@Nonnull List<Configuration> configurations) {
+        return assemble(configurations, DefaultPoolHolder.POOL);
+    }
+
+    /**
+     * Performs assemblies on the specified fork-join pool.
+     *
+     * @param configurations
+     *            the configurations of the assemblies
+     * @param pool
+     *            the pool on which to perform the assemblies
+     * @return the results of the assemblies, in the order of the configurations
+     */
+    @Nonnull
+    public static List<Result> assemble(@Nonnull List<Configuration> configurations, @Nonnull ForkJoinPool pool) {
+        if (configurations == null) {
+            throw new NullPointerException("configurations");
+        }
+
+        if (pool == null) {
+            throw new NullPointerException("pool");
+        }
+
+        final ArrayList<AssembleTask> tasks = new ArrayList<>(configurations.size());
+        for (Configuration configuration : configurations) {
+            if (configuration == null) {
+                throw new NullPointerException("configurations contains a null element");
+            }
+
+            tasks.add(new AssembleTask(configuration));
+        }
+
+        pool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+
+        final ArrayList<Result> results = new ArrayList<>(tasks.size());
+        for (AssembleTask task : tasks) {
+            results.add(task.join());
+        }
+
+        return Collections.unmodifiableList(results);
+    }
+
+    // This class is not meant to be instantiated.
+    private Z80BatchAssembler() {
+    }
+
+}
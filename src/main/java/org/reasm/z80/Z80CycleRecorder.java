@@ -0,0 +1,187 @@
+package org.reasm.z80;
+
+import java.util.ArrayList;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.reasm.source.AbstractSourceFile;
+import org.reasm.source.SourceLocation;
+
+/**
+ * Records the number of T-states taken by the instructions on each logical line of a source file, so that the timing of a line or
+ * of a block of lines can be reported.
+ * <p>
+ * The timings of the last pass are kept. Only the lines of the recorder's source file whose mnemonic is an instruction and that
+ * are assembled outside of any <code>TRANSFORM</code> block are recorded; the timings are looked up in {@link Z80CycleTable} from
+ * the bytes that the instruction emitted. When a line is assembled more than once, for example in a loop, the timings of all its
+ * occurrences are added up. The recorded lines are sorted by text position.
+ *
+ * @author Francis Gagné
+ */
+@NotThreadSafe
+public final class Z80CycleRecorder extends Z80AssemblyListener {
+
+    @NotThreadSafe
+    private static final class Line {
+
+        final int textPosition;
+        long cycles;
+        long takenCycles;
+
+        Line(int textPosition) {
+            this.textPosition = textPosition;
+        }
+
+    }
+
+    @Nonnull
+    private final AbstractSourceFile<?> sourceFile;
+    @Nonnull
+    private final ArrayList<Line> lines = new ArrayList<>();
+
+    /**
+     * Initializes a new Z80CycleRecorder.
+     *
+     * @param sourceFile
+     *            the source file whose lines are recorded
+     */
+    public Z80CycleRecorder(@Nonnull AbstractSourceFile<?> sourceFile) {
+        if (sourceFile == null) {
+            throw new NullPointerException("sourceFile");
+        }
+
+        this.sourceFile = sourceFile;
+    }
+
+    /**
+     * Gets the total number of T-states taken by the recorded lines in a range of text positions when no branch is taken and no
+     * block instruction repeats.
+     *
+     * @param startTextPosition
+     *            the text position of the start of the block, inclusive
+     * @param endTextPosition
+     *            the text position of the end of the block, exclusive
+     * @return the number of T-states
+     */
+    public final long getBlockCycles(int startTextPosition, int endTextPosition) {
+        long cycles = 0;
+        for (int i = this.indexOf(startTextPosition); i < this.lines.size(); i++) {
+            final Line line = this.lines.get(i);
+            if (line.textPosition >= endTextPosition) {
+                break;
+            }
+
+            cycles += line.cycles;
+        }
+
+        return cycles;
+    }
+
+    /**
+     * Gets the total number of T-states taken by the recorded lines in a range of text positions when every branch is taken and
+     * every block instruction repeats.
+     *
+     * @param startTextPosition
+     *            the text position of the start of the block, inclusive
+     * @param endTextPosition
+     *            the text position of the end of the block, exclusive
+     * @return the number of T-states
+     */
+    public final long getBlockTakenCycles(int startTextPosition, int endTextPosition) {
+        long takenCycles = 0;
+        for (int i = this.indexOf(startTextPosition); i < this.lines.size(); i++) {
+            final Line line = this.lines.get(i);
+            if (line.textPosition >= endTextPosition) {
+                break;
+            }
+
+            takenCycles += line.takenCycles;
+        }
+
+        return takenCycles;
+    }
+
+    /**
+     * Gets the number of T-states taken by a recorded line when its branch is not taken or its block instruction terminates.
+     *
+     * @param index
+     *            the index of the line
+     * @return the number of T-states
+     */
+    public final long getCycles(int index) {
+        return this.lines.get(index).cycles;
+    }
+
+    /**
+     * Gets the number of recorded lines.
+     *
+     * @return the number of lines
+     */
+    public final int getNumberOfLines() {
+        return this.lines.size();
+    }
+
+    /**
+     * Gets the number of T-states taken by a recorded line when its branch is taken or its block instruction repeats.
+     *
+     * @param index
+     *            the index of the line
+     * @return the number of T-states
+     */
+    public final long getTakenCycles(int index) {
+        return this.lines.get(index).takenCycles;
+    }
+
+    /**
+     * Gets the position of a recorded line in the text of the source file.
+     *
+     * @param index
+     *            the index of the line
+     * @return the text position of the line
+     */
+    public final int getTextPosition(int index) {
+        return this.lines.get(index).textPosition;
+    }
+
+    @Override
+    public final void lineAssembled(Z80AssembledLine assembledLine) {
+        final SourceLocation sourceLocation = assembledLine.getSourceLocation();
+        if (assembledLine.getCycles() < 0 || sourceLocation.getFile() != this.sourceFile) {
+            return;
+        }
+
+        final int textPosition = sourceLocation.getTextPosition();
+        final int index = this.indexOf(textPosition);
+        Line line = index < this.lines.size() ? this.lines.get(index) : null;
+        if (line == null || line.textPosition != textPosition) {
+            line = new Line(textPosition);
+            this.lines.add(index, line);
+        }
+
+        line.cycles += assembledLine.getCycles();
+        line.takenCycles += assembledLine.getTakenCycles();
+    }
+
+    @Override
+    public final void passStarted() {
+        this.lines.clear();
+    }
+
+    // Gets the index of the first line whose text position is greater than or equal to the specified text position.
+    private int indexOf(int textPosition) {
+        int low = 0;
+        int high = this.lines.size();
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (this.lines.get(middle).textPosition < textPosition) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+}
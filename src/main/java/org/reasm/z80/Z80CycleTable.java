@@ -0,0 +1,287 @@
+package org.reasm.z80;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The number of T-states taken by each Z80 instruction.
+ * <p>
+ * The timings are looked up in tables indexed by opcode, one table for each prefix (none, <code>CB</code>, <code>ED</code>,
+ * <code>DD</code>/<code>FD</code> and <code>DD CB</code>/<code>FD CB</code>). Conditional branches and repeating block instructions
+ * have two timings: the {@linkplain #getCycles(byte[], int) normal timing} applies when the condition is false or when the block
+ * instruction terminates, and the {@linkplain #getTakenCycles(byte[], int) taken timing} applies when the branch is taken or when
+ * the block instruction repeats. Undefined <code>ED</code> opcodes execute as two <code>NOP</code>s, and a <code>DD</code> or
+ * <code>FD</code> prefix followed by another prefix executes as a <code>NOP</code>.
+ *
+ * @author Francis Gagné
+ */
+public final class Z80CycleTable {
+
+    // Each entry packs the normal timing in bits 0-7, the taken timing in bits 8-15 and the length of the instruction in bits
+    // 16-23.
+    @Nonnull
+    private static final int[] UNPREFIXED = new int[256];
+    @Nonnull
+    private static final int[] CB_PREFIXED = new int[256];
+    @Nonnull
+    private static final int[] ED_PREFIXED = new int[256];
+    @Nonnull
+    private static final int[] INDEXED = new int[256];
+    @Nonnull
+    private static final int[] INDEXED_CB_PREFIXED = new int[256];
+
+    // The normal timings of the unprefixed opcodes; prefixes are 0.
+    @Nonnull
+    private static final byte[] UNPREFIXED_CYCLES = {
+    /*       0   1   2   3   4   5   6   7   8   9   A   B   C   D   E   F */
+    /* 0 */  4, 10,  7,  6,  4,  4,  7,  4,  4, 11,  7,  6,  4,  4,  7,  4,
+    /* 1 */  8, 10,  7,  6,  4,  4,  7,  4, 12, 11,  7,  6,  4,  4,  7,  4,
+    /* 2 */  7, 10, 16,  6,  4,  4,  7,  4,  7, 11, 16,  6,  4,  4,  7,  4,
+    /* 3 */  7, 10, 13,  6, 11, 11, 10,  4,  7, 11, 13,  6,  4,  4,  7,  4,
+    /* 4 */  4,  4,  4,  4,  4,  4,  7,  4,  4,  4,  4,  4,  4,  4,  7,  4,
+    /* 5 */  4,  4,  4,  4,  4,  4,  7,  4,  4,  4,  4,  4,  4,  4,  7,  4,
+    /* 6 */  4,  4,  4,  4,  4,  4,  7,  4,  4,  4,  4,  4,  4,  4,  7,  4,
+    /* 7 */  7,  7,  7,  7,  7,  7,  4,  7,  4,  4,  4,  4,  4,  4,  7,  4,
+    /* 8 */  4,  4,  4,  4,  4,  4,  7,  4,  4,  4,  4,  4,  4,  4,  7,  4,
+    /* 9 */  4,  4,  4,  4,  4,  4,  7,  4,  4,  4,  4,  4,  4,  4,  7,  4,
+    /* A */  4,  4,  4,  4,  4,  4,  7,  4,  4,  4,  4,  4,  4,  4,  7,  4,
+    /* B */  4,  4,  4,  4,  4,  4,  7,  4,  4,  4,  4,  4,  4,  4,  7,  4,
+    /* C */  5, 10, 10, 10, 10, 11,  7, 11,  5, 10, 10,  0, 10, 17,  7, 11,
+    /* D */  5, 10, 10, 11, 10, 11,  7, 11,  5,  4, 10, 11, 10,  0,  7, 11,
+    /* E */  5, 10, 10, 19, 10, 11,  7, 11,  5,  4, 10,  4, 10,  0,  7, 11,
+    /* F */  5, 10, 10,  4, 10, 11,  7, 11,  5,  6, 10,  4, 10,  0,  7, 11 };
+
+    static {
+        // Unprefixed opcodes.
+        for (int opcode = 0; opcode < 256; opcode++) {
+            final int cycles = UNPREFIXED_CYCLES[opcode];
+            int takenCycles = cycles;
+            int length = 1;
+            if (opcode == 0x10) {
+                // DJNZ
+                takenCycles = 13;
+                length = 2;
+            } else if (opcode == 0x18 || opcode == 0x20 || opcode == 0x28 || opcode == 0x30 || opcode == 0x38) {
+                // JR, JR cc
+                takenCycles = 12;
+                length = 2;
+            } else if ((opcode & 0xC7) == 0x06 || (opcode & 0xC7) == 0xC6 || opcode == 0xD3 || opcode == 0xDB) {
+                // LD r,n; ALU A,n; OUT (n),A; IN A,(n)
+                length = 2;
+            } else if ((opcode & 0xCF) == 0x01 || (opcode & 0xE7) == 0x22 || (opcode & 0xC7) == 0xC2 || opcode == 0xC3
+                    || opcode == 0xCD) {
+                // LD rr,nn; LD (nn),HL; LD HL,(nn); LD (nn),A; LD A,(nn); JP cc,nn; JP nn; CALL nn
+                length = 3;
+            } else if ((opcode & 0xC7) == 0xC4) {
+                // CALL cc,nn
+                takenCycles = 17;
+                length = 3;
+            } else if ((opcode & 0xC7) == 0xC0) {
+                // RET cc
+                takenCycles = 11;
+            }
+
+            UNPREFIXED[opcode] = entry(cycles, takenCycles, length);
+        }
+
+        // CB-prefixed opcodes: rotations, shifts, BIT, RES and SET.
+        for (int opcode = 0; opcode < 256; opcode++) {
+            final int cycles;
+            if ((opcode & 7) == 6) {
+                cycles = (opcode & 0xC0) == 0x40 ? 12 : 15;
+            } else {
+                cycles = 8;
+            }
+
+            CB_PREFIXED[opcode] = entry(cycles, cycles, 2);
+        }
+
+        // ED-prefixed opcodes.
+        for (int opcode = 0; opcode < 256; opcode++) {
+            int cycles = 8;
+            int takenCycles = -1;
+            int length = 2;
+            if (opcode >= 0x40 && opcode < 0x80) {
+                switch (opcode & 7) {
+                case 0: // IN r,(C)
+                case 1: // OUT (C),r
+                    cycles = 12;
+                    break;
+
+                case 2: // SBC HL,rr; ADC HL,rr
+                    cycles = 15;
+                    break;
+
+                case 3: // LD (nn),rr; LD rr,(nn)
+                    cycles = 20;
+                    length = 4;
+                    break;
+
+                case 5: // RETN; RETI
+                    cycles = 14;
+                    break;
+
+                case 7: // LD I,A; LD R,A; LD A,I; LD A,R; RRD; RLD
+                    if (opcode < 0x60) {
+                        cycles = 9;
+                    } else if (opcode < 0x70) {
+                        cycles = 18;
+                    }
+
+                    break;
+
+                default: // NEG; IM
+                    break;
+                }
+            } else if ((opcode & 0xE4) == 0xA0) {
+                // LDI, CPI, INI, OUTI, LDD, CPD, IND, OUTD and their repeating forms
+                cycles = 16;
+                if ((opcode & 0x10) != 0) {
+                    takenCycles = 21;
+                }
+            }
+
+            ED_PREFIXED[opcode] = entry(cycles, takenCycles == -1 ? cycles : takenCycles, length);
+        }
+
+        // DD- and FD-prefixed opcodes: HL is replaced with IX or IY, and (HL) is replaced with (IX+d) or (IY+d).
+        for (int opcode = 0; opcode < 256; opcode++) {
+            if (opcode == 0xCB || opcode == 0xDD || opcode == 0xED || opcode == 0xFD) {
+                // The prefix executes on its own.
+                INDEXED[opcode] = entry(4, 4, 1);
+                continue;
+            }
+
+            final int base = UNPREFIXED[opcode];
+            final int cycles = base & 0xFF;
+            final int takenCycles = (base >>> 8) & 0xFF;
+            final int length = base >>> 16;
+            if (usesIndirectHl(opcode)) {
+                final int indexedCycles = opcode == 0x36 ? 19 : cycles + 12;
+                INDEXED[opcode] = entry(indexedCycles, indexedCycles, length + 2);
+            } else {
+                INDEXED[opcode] = entry(cycles + 4, takenCycles + 4, length + 1);
+            }
+        }
+
+        // DD CB- and FD CB-prefixed opcodes, indexed by the byte after the displacement.
+        for (int opcode = 0; opcode < 256; opcode++) {
+            final int cycles = (opcode & 0xC0) == 0x40 ? 20 : 23;
+            INDEXED_CB_PREFIXED[opcode] = entry(cycles, cycles, 4);
+        }
+    }
+
+    /**
+     * Gets the number of T-states that an instruction takes when its condition is false, when it is a block instruction that
+     * terminates, or when it is any other instruction.
+     *
+     * @param code
+     *            an array that contains the instruction
+     * @param offset
+     *            the offset of the instruction in the array; bytes past the end of the array are read as 0
+     * @return the number of T-states
+     */
+    public static int getCycles(@Nonnull byte[] code, int offset) {
+        return getEntry(code, offset) & 0xFF;
+    }
+
+    /**
+     * Gets the length of an instruction.
+     *
+     * @param code
+     *            an array that contains the instruction
+     * @param offset
+     *            the offset of the instruction in the array; bytes past the end of the array are read as 0
+     * @return the length of the instruction, in bytes, from 1 to 4
+     */
+    public static int getLength(@Nonnull byte[] code, int offset) {
+        return getEntry(code, offset) >>> 16;
+    }
+
+    /**
+     * Gets the number of T-states that an instruction takes when it is a branch that is taken, when it is a block instruction that
+     * repeats, or when it is any other instruction.
+     *
+     * @param code
+     *            an array that contains the instruction
+     * @param offset
+     *            the offset of the instruction in the array; bytes past the end of the array are read as 0
+     * @return the number of T-states
+     */
+    public static int getTakenCycles(@Nonnull byte[] code, int offset) {
+        return (getEntry(code, offset) >>> 8) & 0xFF;
+    }
+
+    /**
+     * Gets the table entry of an instruction. The entry packs the normal timing in bits 0-7, the taken timing in bits 8-15 and the
+     * length of the instruction in bits 16-23.
+     *
+     * @param code
+     *            an array that contains the instruction
+     * @param offset
+     *            the offset of the instruction in the array; bytes past the end of the array are read as 0
+     * @return the table entry
+     */
+    static int getEntry(@Nonnull byte[] code, int offset) {
+        return getEntry(byteAt(code, offset), byteAt(code, offset + 1), byteAt(code, offset + 3));
+    }
+
+    /**
+     * Gets the table entry of an instruction from the bytes that determine its timing. This lets a caller that reads the
+     * instruction from memory decide how addresses past the end of the memory are read.
+     *
+     * @param opcode
+     *            the first byte of the instruction
+     * @param secondByte
+     *            the second byte of the instruction
+     * @param fourthByte
+     *            the fourth byte of the instruction
+     * @return the table entry
+     */
+    static int getEntry(int opcode, int secondByte, int fourthByte) {
+        switch (opcode) {
+        case 0xCB:
+            return CB_PREFIXED[secondByte];
+
+        case 0xED:
+            return ED_PREFIXED[secondByte];
+
+        case 0xDD:
+        case 0xFD:
+            if (secondByte == 0xCB) {
+                return INDEXED_CB_PREFIXED[fourthByte];
+            }
+
+            return INDEXED[secondByte];
+
+        default:
+            return UNPREFIXED[opcode];
+        }
+    }
+
+    private static int byteAt(@Nonnull byte[] code, int offset) {
+        return offset < code.length ? code[offset] & 0xFF : 0;
+    }
+
+    private static int entry(int cycles, int takenCycles, int length) {
+        return cycles | takenCycles << 8 | length << 16;
+    }
+
+    private static boolean usesIndirectHl(int opcode) {
+        if (opcode == 0x34 || opcode == 0x35 || opcode == 0x36) {
+            // INC (HL); DEC (HL); LD (HL),n
+            return true;
+        }
+
+        if (opcode >= 0x40 && opcode < 0xC0 && opcode != 0x76) {
+            // LD r,(HL); LD (HL),r; ALU A,(HL)
+            return (opcode & 7) == 6 || (opcode & 0xF8) == 0x70;
+        }
+
+        return false;
+    }
+
+    // This class is not meant to be instantiated.
+    private Z80CycleTable() {
+    }
+
+}
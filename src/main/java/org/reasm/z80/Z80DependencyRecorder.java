@@ -0,0 +1,191 @@
+package org.reasm.z80;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.reasm.FileFetcher;
+
+/**
+ * Records the files that an assembly reads with the <code>INCLUDE</code> and <code>INCBIN</code> directives, so that a build
+ * system can determine when the assembly's output is out of date.
+ * <p>
+ * The files are recorded in the order in which they are first read. Files that cannot be read are recorded too, since creating
+ * or fixing them changes the output of the next assembly. Unlike other listeners, the recorder keeps the files read by every
+ * pass, since any of them can change the output of the next assembly.
+ * <p>
+ * When the recorder is given the configuration's file fetcher and it is a {@link Z80LocalFileFetcher}, the recorder records the
+ * local path of each file that the file fetcher resolves to a local file. Otherwise, the paths are recorded as written in the
+ * source, after evaluation; make resolves them relative to its working directory, so they must then be absolute or relative to
+ * the directory in which make runs.
+ *
+ * @author Francis Gagné
+ */
+@NotThreadSafe
+public final class Z80DependencyRecorder extends Z80AssemblyListener {
+
+    private static void appendEscapedPath(@Nonnull Appendable out, @Nonnull String path) throws IOException {
+        for (int i = 0; i < path.length(); i++) {
+            final char ch = path.charAt(i);
+            switch (ch) {
+            case ' ':
+            case '#':
+            case '\\':
+                out.append('\\');
+                out.append(ch);
+                break;
+
+            case '$':
+                out.append("$$");
+                break;
+
+            default:
+                out.append(ch);
+                break;
+            }
+        }
+    }
+
+    @CheckForNull
+    private final Z80LocalFileFetcher fileFetcher;
+    @Nonnull
+    private final LinkedHashSet<String> filePaths = new LinkedHashSet<>();
+
+    /**
+     * Initializes a new Z80DependencyRecorder that records the paths as written in the source.
+     */
+    public Z80DependencyRecorder() {
+        this(null);
+    }
+
+    /**
+     * Initializes a new Z80DependencyRecorder that records the local paths of the files that a file fetcher resolves to local
+     * files.
+     *
+     * @param fileFetcher
+     *            the file fetcher of the assembly's configuration, or <code>null</code>; the local paths are only recorded if it
+     *            is a {@link Z80LocalFileFetcher}
+     */
+    public Z80DependencyRecorder(@CheckForNull FileFetcher fileFetcher) {
+        this.fileFetcher = fileFetcher instanceof Z80LocalFileFetcher ? (Z80LocalFileFetcher) fileFetcher : null;
+    }
+
+    @Override
+    public final void fileRead(String filePath, FileKind kind) {
+        this.filePaths.add(this.resolve(filePath));
+    }
+
+    @Override
+    public final void fileReadFailed(String filePath, FileKind kind) {
+        this.filePaths.add(this.resolve(filePath));
+    }
+
+    /**
+     * Gets the paths of the recorded files.
+     *
+     * @return the file paths, in the order in which the files were first read
+     */
+    @Nonnull
+    public final Set<String> getFilePaths() {
+        return Collections.unmodifiableSet(this.filePaths);
+    }
+
+    /**
+     * Writes a make rule that makes a target depend on the main source file and on the recorded files, followed by an empty rule
+     * for each recorded file, so that make doesn't fail when one of them is deleted. Spaces, number signs, backslashes and dollar
+     * signs in the paths are escaped.
+     *
+     * @param out
+     *            the destination of the rules, usually a <code>.d</code> file
+     * @param target
+     *            the path of the assembly's output file
+     * @param mainFilePath
+     *            the path of the main source file
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    public final void writeMakeRules(@Nonnull Appendable out, @Nonnull String target, @Nonnull String mainFilePath)
+            throws IOException {
+        appendEscapedPath(out, target);
+        out.append(':');
+        out.append(' ');
+        appendEscapedPath(out, mainFilePath);
+        for (String filePath : this.filePaths) {
+            out.append(" \\\n ");
+            appendEscapedPath(out, filePath);
+        }
+
+        out.append('\n');
+
+        for (String filePath : this.filePaths) {
+            out.append('\n');
+            appendEscapedPath(out, filePath);
+            out.append(":\n");
+        }
+    }
+
+    /**
+     * Writes the {@linkplain #writeMakeRules(Appendable, String, String) make rules} to a file, in UTF-8. The rules are written
+     * to a temporary file in the same directory, which then replaces the file atomically if the file system supports it, so
+     * that make never reads a partially written file, even if the assembler is interrupted.
+     *
+     * @param file
+     *            the path of the file, usually the path of the assembly's output file followed by <code>.d</code>
+     * @param target
+     *            the path of the assembly's output file
+     * @param mainFilePath
+     *            the path of the main source file
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    public final void writeMakeRules(@Nonnull Path file, @Nonnull String target, @Nonnull String mainFilePath)
+            throws IOException {
+        final Path absoluteFile = file.toAbsolutePath();
+        Path temporaryFile = Files.createTempFile(absoluteFile.getParent(), null, ".d.tmp");
+        try {
+            try (Writer out = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+                this.writeMakeRules(out, target, mainFilePath);
+            }
+
+            try {
+                Files.move(temporaryFile, absoluteFile, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, absoluteFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            temporaryFile = null;
+        } finally {
+            if (temporaryFile != null) {
+                Files.deleteIfExists(temporaryFile);
+            }
+        }
+    }
+
+    @Nonnull
+    private String resolve(@Nonnull String filePath) {
+        if (this.fileFetcher != null) {
+            try {
+                final Path localPath = this.fileFetcher.getLocalPath(filePath);
+                if (localPath != null) {
+                    return localPath.toString();
+                }
+            } catch (IOException e) {
+                // Record the path as written in the source.
+            }
+        }
+
+        return filePath;
+    }
+
+}
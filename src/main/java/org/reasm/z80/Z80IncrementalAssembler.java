@@ -0,0 +1,355 @@
+package org.reasm.z80;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.reasm.Assembly;
+import org.reasm.AssemblyCompletionStatus;
+import org.reasm.AssemblyMessage;
+import org.reasm.Configuration;
+import org.reasm.Environment;
+import org.reasm.FileFetcher;
+import org.reasm.PredefinedSymbol;
+import org.reasm.PredefinedSymbolTable;
+import org.reasm.SubstringBounds;
+import org.reasm.SymbolContext;
+import org.reasm.UserSymbol;
+import org.reasm.Value;
+import org.reasm.source.CompositeSourceNode;
+import org.reasm.source.SourceFile;
+import org.reasm.source.SourceNode;
+import org.reasm.z80.source.Z80LogicalLine;
+import org.reasm.z80.source.Z80ParseCache;
+import org.reasm.z80.source.Z80Reparser;
+
+import ca.fragag.text.Document;
+
+/**
+ * Assembles a Z80 source file and keeps the result up to date as the source text is edited.
+ * <p>
+ * Each edit is applied to the parsed tree with {@link Z80Reparser}. When the edit only changes the operands or the comment of a
+ * single logical line, that line is assembled again on its own, with the program counter and the symbols of the last assembly,
+ * which are provided as predefined symbols. If
+ * the line's new encoding has the same length as the old one, the addresses of all the lines, and therefore the values of all the
+ * labels, are unchanged, so the new bytes are patched in the output and no other line needs to be assembled again. In all other
+ * cases, the whole source file is assembled again.
+ * <p>
+ * Lines in loops, <code>TRANSFORM</code> blocks and namespaces, lines with a directive that affects the following lines and lines
+ * of an assembly that reported messages are always handled by assembling the whole source file.
+ *
+ * @author Francis Gagné
+ */
+@NotThreadSafe
+public final class Z80IncrementalAssembler {
+
+    private static final class LineLocation {
+
+        @Nonnull
+        final SourceNode node;
+        final int start;
+
+        LineLocation(@Nonnull SourceNode node, int start) {
+            this.node = node;
+            this.start = start;
+        }
+
+    }
+
+    @CheckForNull
+    private static LineLocation findLine(@Nonnull SourceNode root, int offset) {
+        SourceNode node = root;
+        int start = 0;
+        while (node instanceof CompositeSourceNode) {
+            SourceNode containingNode = null;
+            for (SourceNode childNode : ((CompositeSourceNode) node).getChildNodes()) {
+                final int length = childNode.getLength();
+                if (offset < start + length) {
+                    containingNode = childNode;
+                    break;
+                }
+
+                start += length;
+            }
+
+            if (containingNode == null) {
+                return null;
+            }
+
+            node = containingNode;
+        }
+
+        return new LineLocation(node, start);
+    }
+
+    private static void complete(@Nonnull Assembly assembly) throws IOException {
+        AssemblyCompletionStatus status;
+        do {
+            status = assembly.step();
+        } while (status != AssemblyCompletionStatus.COMPLETE);
+    }
+
+    @Nonnull
+    private static byte[] getAssembledData(@Nonnull Assembly assembly) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assembly.writeAssembledDataTo(out);
+        return out.toByteArray();
+    }
+
+    private static boolean isLineBreak(char ch) {
+        return ch == '\n' || ch == '\r';
+    }
+
+    @Nonnull
+    private final Environment environment;
+    @CheckForNull
+    private final String fileName;
+    @CheckForNull
+    private final FileFetcher fileFetcher;
+
+    @Nonnull
+    private String text;
+    @Nonnull
+    private SourceNode parsed;
+
+    // The result of the last assembly, patched by the lines that were assembled on their own since then.
+    private byte[] output;
+    private List<AssemblyMessage> messages;
+    private PredefinedSymbolTable symbols;
+
+    // The lines recorded during the last assembly, sorted by text position.
+    private int numberOfLines;
+    private int[] lineTextPositions;
+    private long[] lineOutputOffsets;
+    private int[] lineOutputLengths;
+    private long[] lineProgramCounters;
+
+    /**
+     * Initializes a new Z80IncrementalAssembler and assembles the source text.
+     *
+     * @param environment
+     *            the environment of the assemblies
+     * @param text
+     *            the source text
+     * @param fileName
+     *            the name of the source file, or <code>null</code>
+     * @param fileFetcher
+     *            the {@link FileFetcher} for the files included by the source file, or <code>null</code>
+     * @throws IOException
+     *             an I/O exception occurred during the assembly
+     */
+    public Z80IncrementalAssembler(@Nonnull Environment environment, @Nonnull String text, @CheckForNull String fileName,
+            @CheckForNull FileFetcher fileFetcher) throws IOException {
+        if (environment == null) {
+            throw new NullPointerException("environment");
+        }
+
+        if (text == null) {
+            throw new NullPointerException("text");
+        }
+
+        this.environment = environment;
+        this.fileName = fileName;
+        this.fileFetcher = fileFetcher;
+        this.text = text;
+        this.parsed = Z80ParseCache.INSTANCE.parse(new Document(text));
+        this.assembleFully();
+    }
+
+    /**
+     * Gets the messages of the last assembly of the whole source file.
+     *
+     * @return the messages
+     */
+    @Nonnull
+    public final List<AssemblyMessage> getMessages() {
+        return this.messages;
+    }
+
+    /**
+     * Gets the assembled data for the current source text.
+     *
+     * @return a copy of the output
+     */
+    @Nonnull
+    public final byte[] getOutput() {
+        return this.output.clone();
+    }
+
+    /**
+     * Gets the current source text.
+     *
+     * @return the source text
+     */
+    @Nonnull
+    public final String getText() {
+        return this.text;
+    }
+
+    /**
+     * Replaces a range of the source text and updates the output.
+     *
+     * @param offset
+     *            the offset of the range to replace
+     * @param lengthToRemove
+     *            the length of the range to replace
+     * @param textToInsert
+     *            the text to insert at <code>offset</code>
+     * @return <code>true</code> if the output was updated by reassembling only the edited line, or <code>false</code> if the whole
+     *         source file was assembled again
+     * @throws IOException
+     *             an I/O exception occurred during the assembly
+     */
+    public final boolean replaceText(int offset, int lengthToRemove, @Nonnull String textToInsert) throws IOException {
+        if (textToInsert == null) {
+            throw new NullPointerException("textToInsert");
+        }
+
+        if (offset < 0 || lengthToRemove < 0 || offset + lengthToRemove > this.text.length()) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        final SourceNode oldParsed = this.parsed;
+        this.text = this.text.substring(0, offset) + textToInsert + this.text.substring(offset + lengthToRemove);
+        final Document document = new Document(this.text);
+        this.parsed = Z80Reparser.reparse(document, oldParsed, offset, lengthToRemove, textToInsert.length());
+
+        if (this.reassembleLine(oldParsed, offset, lengthToRemove, textToInsert.length())) {
+            return true;
+        }
+
+        // Let the assembly find the tree we have just reparsed.
+        Z80ParseCache.INSTANCE.put(document, this.parsed);
+        this.assembleFully();
+        return false;
+    }
+
+    private void assembleFully() throws IOException {
+        final SourceFile sourceFile = new SourceFile(this.text, this.fileName);
+        final Configuration configuration = new Configuration(this.environment, sourceFile, Z80Architecture.INSTANCE)
+                .setFileFetcher(this.fileFetcher);
+        final Assembly assembly = new Assembly(configuration);
+        final LineOutputRecorder recorder = new LineOutputRecorder(sourceFile);
+        new Z80AssemblyOptions().addListener(recorder).attachTo(assembly);
+        complete(assembly);
+
+        this.output = getAssembledData(assembly);
+        this.messages = Collections.unmodifiableList(new ArrayList<>(assembly.getMessages()));
+
+        final ArrayList<PredefinedSymbol> symbols = new ArrayList<>();
+        for (UserSymbol symbol : assembly.getSymbols()) {
+            if (symbol.getContext() == SymbolContext.VALUE) {
+                symbols.add(new PredefinedSymbol(SymbolContext.VALUE, symbol.getName(), symbol.getType(),
+                        (Value) symbol.getValue()));
+            }
+        }
+
+        this.symbols = new PredefinedSymbolTable(symbols);
+
+        final int numberOfLines = recorder.getNumberOfLines();
+        this.numberOfLines = numberOfLines;
+        this.lineTextPositions = new int[numberOfLines];
+        this.lineOutputOffsets = new long[numberOfLines];
+        this.lineOutputLengths = new int[numberOfLines];
+        this.lineProgramCounters = new long[numberOfLines];
+        for (int i = 0; i < numberOfLines; i++) {
+            this.lineTextPositions[i] = recorder.getTextPosition(i);
+            this.lineOutputOffsets[i] = recorder.getOutputOffset(i);
+            this.lineOutputLengths[i] = recorder.getOutputLength(i);
+            this.lineProgramCounters[i] = recorder.getProgramCounter(i);
+        }
+    }
+
+    /**
+     * Assembles a single line on its own.
+     *
+     * @param lineText
+     *            the text of the logical line, starting at its mnemonic
+     * @param programCounter
+     *            the program counter at the start of the line
+     * @return the line's data, or <code>null</code> if the assembly reported messages
+     * @throws IOException
+     *             an I/O exception occurred during the assembly
+     */
+    @CheckForNull
+    private byte[] assembleLine(@Nonnull String lineText, long programCounter) throws IOException {
+        // Place the line at its address with a PHASE block. The line's labels are left out, since they are among the predefined
+        // symbols.
+        final StringBuilder code = new StringBuilder();
+        code.append(" PHASE ").append(programCounter).append("\n ").append(lineText);
+        if (lineText.isEmpty() || !isLineBreak(lineText.charAt(lineText.length() - 1))) {
+            code.append('\n');
+        }
+
+        code.append(" DEPHASE\n");
+
+        final SourceFile sourceFile = new SourceFile(code.toString(), this.fileName);
+        final Configuration configuration = new Configuration(this.environment, sourceFile, Z80Architecture.INSTANCE)
+                .setFileFetcher(this.fileFetcher).setPredefinedSymbols(this.symbols);
+        final Assembly assembly = new Assembly(configuration);
+        complete(assembly);
+        if (!assembly.getMessages().isEmpty()) {
+            return null;
+        }
+
+        return getAssembledData(assembly);
+    }
+
+    private boolean reassembleLine(@Nonnull SourceNode oldParsed, int offset, int lengthToRemove, int lengthToInsert)
+            throws IOException {
+        // Messages may refer to the edited line; assemble everything again to get them right.
+        if (!this.messages.isEmpty()) {
+            return false;
+        }
+
+        final LineLocation oldLocation = findLine(oldParsed, offset);
+        final LineLocation newLocation = findLine(this.parsed, offset);
+        if (oldLocation == null || newLocation == null || oldLocation.start != newLocation.start
+                || !(oldLocation.node instanceof Z80LogicalLine) || !(newLocation.node instanceof Z80LogicalLine)) {
+            return false;
+        }
+
+        // The edit must be within a single logical line, after its mnemonic, and must not change where the line ends.
+        final Z80LogicalLine oldLine = (Z80LogicalLine) oldLocation.node;
+        final Z80LogicalLine newLine = (Z80LogicalLine) newLocation.node;
+        final SubstringBounds oldMnemonicBounds = oldLine.getMnemonicBounds();
+        final SubstringBounds newMnemonicBounds = newLine.getMnemonicBounds();
+        final int start = oldLocation.start;
+        if (oldMnemonicBounds == null || newMnemonicBounds == null || offset < start + oldMnemonicBounds.getEnd()
+                || offset + lengthToRemove > start + oldLine.getLength()
+                || newLine.getLength() != oldLine.getLength() - lengthToRemove + lengthToInsert
+                || newLine.getNumberOfLabels() != oldLine.getNumberOfLabels()
+                || newMnemonicBounds.getStart() != oldMnemonicBounds.getStart()
+                || newMnemonicBounds.getEnd() != oldMnemonicBounds.getEnd()) {
+            return false;
+        }
+
+        final int index = Arrays.binarySearch(this.lineTextPositions, 0, this.numberOfLines, start);
+        if (index < 0) {
+            return false;
+        }
+
+        final String lineText = this.text.substring(start + newMnemonicBounds.getStart(), start + newLine.getLength());
+        final byte[] data = this.assembleLine(lineText, this.lineProgramCounters[index]);
+        if (data == null || data.length != this.lineOutputLengths[index]) {
+            return false;
+        }
+
+        System.arraycopy(data, 0, this.output, (int) this.lineOutputOffsets[index], data.length);
+
+        final int delta = lengthToInsert - lengthToRemove;
+        for (int i = index + 1; i < this.numberOfLines; i++) {
+            this.lineTextPositions[i] += delta;
+        }
+
+        return true;
+    }
+
+}
@@ -0,0 +1,193 @@
+package org.reasm.z80;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Writes a listing of an assembly to a file: for each logical line that is assembled, the value of the program counter, the first
+ * bytes that the line wrote to the output, the number of T-states taken by the line's instruction, if any, and the text of the
+ * line. A logical line that spans several physical lines with continuation characters is written as one record per physical line;
+ * the records of the following physical lines only contain the text, aligned with the text of the first one.
+ * <p>
+ * The records are written through a buffered {@link Writer} as the lines are assembled; nothing is kept in memory. Since the
+ * assembler only knows that a pass is the last one once it has completed it, the file is truncated when a new pass starts, so that
+ * the file only contains the records of the last pass when the assembly is complete. The whole listing is therefore written again
+ * on every pass: an assembly that takes several passes writes the listing that many times.
+ *
+ * @author Francis Gagné
+ */
+@NotThreadSafe
+public final class Z80ListingWriter extends Z80AssemblyListener implements Closeable {
+
+    @Nonnull
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final int BYTES_COLUMN_WIDTH = Z80AssembledLine.MAXIMUM_NUMBER_OF_BYTES * 3 + 1;
+    private static final int CYCLES_COLUMN_WIDTH = 8;
+
+    private static void writePadding(@Nonnull Writer writer, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            writer.write(' ');
+        }
+    }
+
+    @Nonnull
+    private final FileChannel channel;
+    @Nonnull
+    private final Writer writer;
+    @CheckForNull
+    private IOException exception;
+
+    /**
+     * Initializes a new Z80ListingWriter. The file is created if it doesn't exist, and truncated if it exists.
+     *
+     * @param file
+     *            the path of the listing file
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    public Z80ListingWriter(@Nonnull Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(this.channel), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes the buffered records to the listing file. If an I/O exception occurs, it is thrown by {@link #close()}.
+     */
+    @Override
+    public final void assemblyCompleted() {
+        try {
+            this.writer.flush();
+        } catch (IOException e) {
+            this.exception = e;
+        }
+    }
+
+    /**
+     * Writes the buffered records to the listing file and closes it.
+     *
+     * @throws IOException
+     *             an I/O exception occurred, either now or when the listing file was written, truncated or flushed during the
+     *             assembly
+     */
+    @Override
+    public final void close() throws IOException {
+        this.writer.close();
+        if (this.exception != null) {
+            throw this.exception;
+        }
+    }
+
+    /**
+     * Writes the record of a logical line. If an I/O exception occurs, it is thrown by {@link #close()}.
+     */
+    @Override
+    public final void lineAssembled(Z80AssembledLine line) {
+        try {
+            this.write(line);
+        } catch (IOException e) {
+            this.exception = e;
+        }
+    }
+
+    /**
+     * Discards the records that have been written. If an I/O exception occurs, it is thrown by {@link #close()}.
+     */
+    @Override
+    public final void passStarted() {
+        try {
+            this.writer.flush();
+            this.channel.truncate(0);
+            this.channel.position(0);
+        } catch (IOException e) {
+            this.exception = e;
+        }
+    }
+
+    private void write(@Nonnull Z80AssembledLine line) throws IOException {
+        final Writer writer = this.writer;
+
+        // Program counter, with at least 4 digits.
+        final long programCounter = line.getProgramCounter();
+        int shift = 12;
+        while (shift < 60 && programCounter >>> (shift + 4) != 0) {
+            shift += 4;
+        }
+
+        final int programCounterColumnWidth = shift / 4 + 3;
+        for (; shift >= 0; shift -= 4) {
+            writer.write(HEX_DIGITS[(int) (programCounter >>> shift) & 0xF]);
+        }
+
+        writer.write("  ");
+
+        // Bytes.
+        final long length = line.getOutputLength();
+        final int numberOfBytes = (int) Math.min(length, Z80AssembledLine.MAXIMUM_NUMBER_OF_BYTES);
+        for (int i = 0; i < numberOfBytes; i++) {
+            final byte by = line.getByte(i);
+            writer.write(HEX_DIGITS[(by >>> 4) & 0xF]);
+            writer.write(HEX_DIGITS[by & 0xF]);
+            writer.write(' ');
+        }
+
+        int column = numberOfBytes * 3;
+        if (length > numberOfBytes) {
+            writer.write('+');
+            column++;
+        }
+
+        writePadding(writer, BYTES_COLUMN_WIDTH - column);
+
+        // T-states.
+        final int cycles = line.getCycles();
+        final int takenCycles = line.getTakenCycles();
+        column = 0;
+        if (cycles >= 0) {
+            final String cyclesText = cycles == takenCycles ? Integer.toString(cycles) : cycles + "/" + takenCycles;
+            writer.write(cyclesText);
+            column = cyclesText.length();
+        }
+
+        writePadding(writer, CYCLES_COLUMN_WIDTH - column);
+
+        // Source text, one record per physical line, without the line breaks.
+        final String text = line.getText();
+        final int textLength = text.length();
+        int start = 0;
+        for (;;) {
+            int end = start;
+            while (end < textLength && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+                end++;
+            }
+
+            writer.write(text, start, end - start);
+            writer.write('\n');
+
+            // Skip the line break. A CR LF pair is a single line break.
+            if (end < textLength && text.charAt(end) == '\r' && end + 1 < textLength && text.charAt(end + 1) == '\n') {
+                end++;
+            }
+
+            start = end + 1;
+            if (start >= textLength) {
+                break;
+            }
+
+            writePadding(writer, programCounterColumnWidth + BYTES_COLUMN_WIDTH + CYCLES_COLUMN_WIDTH);
+        }
+    }
+
+}
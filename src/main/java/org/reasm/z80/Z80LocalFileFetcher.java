@@ -0,0 +1,35 @@
+package org.reasm.z80;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.reasm.FileFetcher;
+
+/**
+ * A {@link FileFetcher} that reads files from the local file system and can tell which file it would read for a path.
+ * <p>
+ * The <code>INCBIN</code> directive memory-maps the binary files that the configuration's file fetcher resolves to local files,
+ * and maps them again when their modification time changes. Binary files are only read through
+ * {@link #fetchBinaryFile(String)} when the file fetcher doesn't implement this interface or doesn't resolve the path to a local
+ * file.
+ *
+ * @author Francis Gagné
+ */
+public interface Z80LocalFileFetcher extends FileFetcher {
+
+    /**
+     * Gets the local file that {@link #fetchBinaryFile(String)} would read for a path.
+     *
+     * @param filePath
+     *            the path of the file, as written in the source, after evaluation
+     * @return the path of the local file, or <code>null</code> if the file is not a local file
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    @CheckForNull
+    Path getLocalPath(@Nonnull String filePath) throws IOException;
+
+}
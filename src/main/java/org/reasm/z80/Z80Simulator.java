@@ -0,0 +1,1472 @@
+package org.reasm.z80;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.reasm.source.AbstractSourceFile;
+
+/**
+ * A Z80 CPU simulator that executes an assembled program and profiles it.
+ * <p>
+ * The simulator has 64 KiB of flat RAM and a port stub; interrupts are not simulated. The documented instruction set is
+ * implemented, as well as the undocumented instructions that operate on the halves of IX and IY, <code>SLL</code> and the
+ * undocumented <code>DD CB</code>/<code>FD CB</code> forms that copy their result to a register. The T-states of each instruction
+ * are taken from {@link Z80CycleTable}, and the flags are computed with lookup tables.
+ * <p>
+ * For each address, the simulator counts the number of times an instruction starting at that address was executed and the
+ * T-states it took. With a {@link Z80SourceMapRecorder} that listened to the assembly of the program, the counts can be
+ * {@linkplain #getHotSpots(Z80SourceMapRecorder, int) reported by source line}.
+ *
+ * @author Francis Gagné
+ */
+@NotThreadSafe
+public final class Z80Simulator {
+
+    /**
+     * The line of a source file in which the simulated program spent time.
+     *
+     * @author Francis Gagné
+     */
+    @Immutable
+    public static final class HotSpot {
+
+        @Nonnull
+        private final AbstractSourceFile<?> file;
+        private final int textPosition;
+        private final long executionCount;
+        private final long cycles;
+
+        HotSpot(@Nonnull AbstractSourceFile<?> file, int textPosition, long executionCount, long cycles) {
+            this.file = file;
+            this.textPosition = textPosition;
+            this.executionCount = executionCount;
+            this.cycles = cycles;
+        }
+
+        /**
+         * Gets the number of T-states taken by the instructions of the line.
+         *
+         * @return the number of T-states
+         */
+        public final long getCycles() {
+            return this.cycles;
+        }
+
+        /**
+         * Gets the number of times the instructions of the line were executed.
+         *
+         * @return the execution count
+         */
+        public final long getExecutionCount() {
+            return this.executionCount;
+        }
+
+        /**
+         * Gets the source file that contains the line.
+         *
+         * @return the source file
+         */
+        @Nonnull
+        public final AbstractSourceFile<?> getFile() {
+            return this.file;
+        }
+
+        /**
+         * Gets the position of the line in the text of its source file.
+         *
+         * @return the text position of the line
+         */
+        public final int getTextPosition() {
+            return this.textPosition;
+        }
+
+    }
+
+    /**
+     * The I/O ports seen by a simulator.
+     *
+     * @author Francis Gagné
+     */
+    public interface Ports {
+
+        /**
+         * Reads a byte from a port.
+         *
+         * @param port
+         *            the 16-bit port address, as put on the address bus by the CPU
+         * @return the byte read, from 0 to 255
+         */
+        int in(int port);
+
+        /**
+         * Writes a byte to a port.
+         *
+         * @param port
+         *            the 16-bit port address, as put on the address bus by the CPU
+         * @param value
+         *            the byte to write, from 0 to 255
+         */
+        void out(int port, int value);
+
+    }
+
+    /** A port stub: reads return 0FFh, as on a floating bus, and writes are ignored. */
+    @Nonnull
+    public static final Ports NO_PORTS = new Ports() {
+        @Override
+        public int in(int port) {
+            return 0xFF;
+        }
+
+        @Override
+        public void out(int port, int value) {
+        }
+    };
+
+    private static final int MEMORY_SIZE = 0x10000;
+
+    private static final int FLAG_C = 0x01;
+    private static final int FLAG_N = 0x02;
+    private static final int FLAG_PV = 0x04;
+    private static final int FLAG_X = 0x08;
+    private static final int FLAG_H = 0x10;
+    private static final int FLAG_Y = 0x20;
+    private static final int FLAG_Z = 0x40;
+    private static final int FLAG_S = 0x80;
+    private static final int FLAGS_XY = FLAG_X | FLAG_Y;
+    private static final int FLAGS_SZPV = FLAG_S | FLAG_Z | FLAG_PV;
+
+    private static final int PREFIX_NONE = 0;
+    private static final int PREFIX_IX = 0xDD;
+    private static final int PREFIX_IY = 0xFD;
+
+    // The S, Z, Y and X flags for each 8-bit result, and the same with the parity flag.
+    @Nonnull
+    private static final int[] SZ = new int[256];
+    @Nonnull
+    private static final int[] SZP = new int[256];
+
+    @Nonnull
+    private static final Comparator<HotSpot> HOT_SPOT_COMPARATOR = new Comparator<HotSpot>() {
+        @Override
+        public int compare(HotSpot o1, HotSpot o2) {
+            return Long.compare(o2.cycles, o1.cycles);
+        }
+    };
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            SZ[i] = (i & (FLAG_S | FLAGS_XY)) | (i == 0 ? FLAG_Z : 0);
+            SZP[i] = SZ[i] | ((Integer.bitCount(i) & 1) == 0 ? FLAG_PV : 0);
+        }
+    }
+
+    @Nonnull
+    private final byte[] memory = new byte[MEMORY_SIZE];
+    @Nonnull
+    private final long[] executionCounts = new long[MEMORY_SIZE];
+    @Nonnull
+    private final long[] cycleCounts = new long[MEMORY_SIZE];
+    @Nonnull
+    private final Ports ports;
+
+    private int a, f, b, c, d, e, h, l;
+    private int alternateAf, alternateBc, alternateDe, alternateHl;
+    private int ix, iy, sp, pc, i, r;
+    private boolean iff1, iff2;
+    private int interruptMode;
+    private boolean halted;
+
+    // The index register prefix of the instruction being executed, and whether its branch was taken or its block instruction
+    // repeated.
+    private int prefix;
+    private boolean taken;
+
+    private long totalCycles;
+    private long instructionCount;
+
+    /**
+     * Initializes a new Z80Simulator with the {@linkplain #NO_PORTS port stub}.
+     */
+    public Z80Simulator() {
+        this(NO_PORTS);
+    }
+
+    /**
+     * Initializes a new Z80Simulator.
+     *
+     * @param ports
+     *            the I/O ports
+     */
+    public Z80Simulator(@Nonnull Ports ports) {
+        if (ports == null) {
+            throw new NullPointerException("ports");
+        }
+
+        this.ports = ports;
+        this.a = 0xFF;
+        this.f = 0xFF;
+        this.sp = 0xFFFF;
+    }
+
+    /**
+     * Gets the value of the AF register pair.
+     *
+     * @return the value of AF
+     */
+    public final int getAF() {
+        return this.a << 8 | this.f;
+    }
+
+    /**
+     * Gets the value of the BC register pair.
+     *
+     * @return the value of BC
+     */
+    public final int getBC() {
+        return this.b << 8 | this.c;
+    }
+
+    /**
+     * Gets the number of T-states taken by the instructions at an address.
+     *
+     * @param address
+     *            the address of the first byte of the instructions
+     * @return the number of T-states
+     */
+    public final long getCycles(int address) {
+        return this.cycleCounts[address & 0xFFFF];
+    }
+
+    /**
+     * Gets the value of the DE register pair.
+     *
+     * @return the value of DE
+     */
+    public final int getDE() {
+        return this.d << 8 | this.e;
+    }
+
+    /**
+     * Gets the number of times an instruction starting at an address was executed.
+     *
+     * @param address
+     *            the address of the first byte of the instruction
+     * @return the execution count
+     */
+    public final long getExecutionCount(int address) {
+        return this.executionCounts[address & 0xFFFF];
+    }
+
+    /**
+     * Gets the value of the HL register pair.
+     *
+     * @return the value of HL
+     */
+    public final int getHL() {
+        return this.h << 8 | this.l;
+    }
+
+    /**
+     * Gets the lines of the simulated program in which the most T-states were spent.
+     *
+     * @param sourceMap
+     *            the source map recorded while the program was assembled
+     * @param maximumCount
+     *            the maximum number of hot spots to return
+     * @return the hot spots, sorted by decreasing number of T-states; lines whose instructions were never executed are omitted
+     */
+    @Nonnull
+    public final List<HotSpot> getHotSpots(@Nonnull Z80SourceMapRecorder sourceMap, int maximumCount) {
+        // The same line may be recorded several times, e.g. when it is in a macro. Combine its occurrences.
+        final HashMap<AbstractSourceFile<?>, HashMap<Integer, long[]>> totalsByFile = new HashMap<>();
+        for (int index = 0; index < sourceMap.getNumberOfLines(); index++) {
+            final long address = sourceMap.getAddress(index);
+            final long length = Math.min(sourceMap.getLength(index), MEMORY_SIZE);
+            long executionCount = 0;
+            long cycles = 0;
+            for (long offset = 0; offset < length; offset++) {
+                final int byteAddress = (int) (address + offset) & 0xFFFF;
+                executionCount += this.executionCounts[byteAddress];
+                cycles += this.cycleCounts[byteAddress];
+            }
+
+            if (executionCount == 0) {
+                continue;
+            }
+
+            final AbstractSourceFile<?> file = sourceMap.getFile(index);
+            HashMap<Integer, long[]> totals = totalsByFile.get(file);
+            if (totals == null) {
+                totals = new HashMap<>();
+                totalsByFile.put(file, totals);
+            }
+
+            final Integer textPosition = sourceMap.getTextPosition(index);
+            long[] lineTotals = totals.get(textPosition);
+            if (lineTotals == null) {
+                lineTotals = new long[2];
+                totals.put(textPosition, lineTotals);
+            }
+
+            lineTotals[0] += executionCount;
+            lineTotals[1] += cycles;
+        }
+
+        final ArrayList<HotSpot> hotSpots = new ArrayList<>();
+        for (Map.Entry<AbstractSourceFile<?>, HashMap<Integer, long[]>> fileEntry : totalsByFile.entrySet()) {
+            for (Map.Entry<Integer, long[]> lineEntry : fileEntry.getValue().entrySet()) {
+                final long[] lineTotals = lineEntry.getValue();
+                hotSpots.add(new HotSpot(fileEntry.getKey(), lineEntry.getKey(), lineTotals[0], lineTotals[1]));
+            }
+        }
+
+        Collections.sort(hotSpots, HOT_SPOT_COMPARATOR);
+        if (hotSpots.size() > maximumCount) {
+            return new ArrayList<>(hotSpots.subList(0, maximumCount));
+        }
+
+        return hotSpots;
+    }
+
+    /**
+     * Gets the number of instructions executed since the simulator was created.
+     *
+     * @return the instruction count
+     */
+    public final long getInstructionCount() {
+        return this.instructionCount;
+    }
+
+    /**
+     * Gets the value of the IX register.
+     *
+     * @return the value of IX
+     */
+    public final int getIX() {
+        return this.ix;
+    }
+
+    /**
+     * Gets the value of the IY register.
+     *
+     * @return the value of IY
+     */
+    public final int getIY() {
+        return this.iy;
+    }
+
+    /**
+     * Gets the simulator's memory. Changes to the array are seen by the simulated program.
+     *
+     * @return the 64 KiB memory
+     */
+    @Nonnull
+    public final byte[] getMemory() {
+        return this.memory;
+    }
+
+    /**
+     * Gets the value of the program counter.
+     *
+     * @return the address of the next instruction
+     */
+    public final int getPC() {
+        return this.pc;
+    }
+
+    /**
+     * Gets the value of the stack pointer.
+     *
+     * @return the value of SP
+     */
+    public final int getSP() {
+        return this.sp;
+    }
+
+    /**
+     * Gets the number of T-states taken by the instructions executed since the simulator was created.
+     *
+     * @return the number of T-states
+     */
+    public final long getTotalCycles() {
+        return this.totalCycles;
+    }
+
+    /**
+     * Determines whether the CPU has executed a <code>HALT</code> instruction. The simulator doesn't execute further instructions
+     * until the program counter is {@linkplain #setPC(int) set}.
+     *
+     * @return <code>true</code> if the CPU is halted, otherwise <code>false</code>
+     */
+    public final boolean isHalted() {
+        return this.halted;
+    }
+
+    /**
+     * Copies a program or data into the simulator's memory. Bytes past address 0FFFFh wrap around to address 0.
+     *
+     * @param data
+     *            the bytes to copy, e.g. the output of an assembly
+     * @param address
+     *            the address of the first byte
+     */
+    public final void load(@Nonnull byte[] data, int address) {
+        for (int index = 0; index < data.length; index++) {
+            this.memory[(address + index) & 0xFFFF] = data[index];
+        }
+    }
+
+    /**
+     * Executes instructions until the CPU is halted or until a number of instructions have been executed.
+     *
+     * @param maximumInstructions
+     *            the maximum number of instructions to execute
+     * @return the number of instructions executed
+     */
+    public final long run(long maximumInstructions) {
+        long count = 0;
+        while (count < maximumInstructions && !this.halted) {
+            this.step();
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Sets the value of the program counter. This also resumes a halted CPU.
+     *
+     * @param pc
+     *            the address of the next instruction
+     */
+    public final void setPC(int pc) {
+        this.pc = pc & 0xFFFF;
+        this.halted = false;
+    }
+
+    /**
+     * Sets the value of the stack pointer.
+     *
+     * @param sp
+     *            the new value of SP
+     */
+    public final void setSP(int sp) {
+        this.sp = sp & 0xFFFF;
+    }
+
+    /**
+     * Executes one instruction, unless the CPU is halted.
+     */
+    public final void step() {
+        if (this.halted) {
+            return;
+        }
+
+        // The instruction wraps around to address 0 like the program counter.
+        final int address = this.pc;
+        final byte[] memory = this.memory;
+        final int entry = Z80CycleTable.getEntry(memory[address] & 0xFF, memory[(address + 1) & 0xFFFF] & 0xFF,
+                memory[(address + 3) & 0xFFFF] & 0xFF);
+        this.taken = false;
+
+        final int opcode = this.fetchOpcode();
+        switch (opcode) {
+        case 0xCB:
+            this.executeCb();
+            break;
+
+        case 0xED:
+            this.executeEd();
+            break;
+
+        case 0xDD:
+        case 0xFD:
+            this.executeIndexed(opcode);
+            break;
+
+        default:
+            this.executeMain(opcode);
+            break;
+        }
+
+        final int cycles = this.taken ? (entry >>> 8) & 0xFF : entry & 0xFF;
+        this.executionCounts[address]++;
+        this.cycleCounts[address] += cycles;
+        this.totalCycles += cycles;
+        this.instructionCount++;
+    }
+
+    private void add16ToIndex(int value) {
+        final int hl = this.getIndexRegister();
+        final int result = hl + value;
+        this.f = (this.f & FLAGS_SZPV) | ((result >>> 16) & FLAG_C) | (((hl ^ value ^ result) >>> 8) & FLAG_H)
+                | ((result >>> 8) & FLAGS_XY);
+        this.setIndexRegister(result & 0xFFFF);
+    }
+
+    private void adc16(int value) {
+        final int hl = this.getHL();
+        final int result = hl + value + (this.f & FLAG_C);
+        this.f = ((result >>> 16) & FLAG_C) | (((hl ^ value ^ result) >>> 8) & FLAG_H)
+                | ((((value ^ hl ^ 0x8000) & (value ^ result) & 0x8000) >>> 13)) | ((result >>> 8) & (FLAG_S | FLAGS_XY))
+                | ((result & 0xFFFF) == 0 ? FLAG_Z : 0);
+        this.setHL(result & 0xFFFF);
+    }
+
+    private void alu(int operation, int value) {
+        switch (operation) {
+        case 0: // ADD A,
+            this.a = this.add8(value, 0);
+            break;
+
+        case 1: // ADC A,
+            this.a = this.add8(value, this.f & FLAG_C);
+            break;
+
+        case 2: // SUB
+            this.a = this.sub8(value, 0);
+            break;
+
+        case 3: // SBC A,
+            this.a = this.sub8(value, this.f & FLAG_C);
+            break;
+
+        case 4: // AND
+            this.a &= value;
+            this.f = SZP[this.a] | FLAG_H;
+            break;
+
+        case 5: // XOR
+            this.a ^= value;
+            this.f = SZP[this.a];
+            break;
+
+        case 6: // OR
+            this.a |= value;
+            this.f = SZP[this.a];
+            break;
+
+        default: // CP
+            this.sub8(value, 0);
+            this.f = (this.f & ~FLAGS_XY) | (value & FLAGS_XY);
+            break;
+        }
+    }
+
+    private int add8(int value, int carry) {
+        final int result = this.a + value + carry;
+        this.f = SZ[result & 0xFF] | ((result >>> 8) & FLAG_C) | ((this.a ^ value ^ result) & FLAG_H)
+                | (((value ^ this.a ^ 0x80) & (value ^ result) & 0x80) >>> 5);
+        return result & 0xFF;
+    }
+
+    private void blockInstruction(int y, int z) {
+        final int delta = (y & 1) == 0 ? 1 : -1;
+        final boolean repeat = y >= 6;
+        final int hl = this.getHL();
+        switch (z) {
+        case 0: { // LDI, LDD, LDIR, LDDR
+            final int value = this.read(hl);
+            this.write(this.getDE(), value);
+            this.setHL((hl + delta) & 0xFFFF);
+            this.setDE((this.getDE() + delta) & 0xFFFF);
+            final int bc = (this.getBC() - 1) & 0xFFFF;
+            this.setBC(bc);
+            final int n = value + this.a;
+            this.f = (this.f & (FLAG_S | FLAG_Z | FLAG_C)) | (bc != 0 ? FLAG_PV : 0) | (n & FLAG_X) | ((n << 4) & FLAG_Y);
+            if (repeat && bc != 0) {
+                this.repeat();
+            }
+
+            break;
+        }
+
+        case 1: { // CPI, CPD, CPIR, CPDR
+            final int value = this.read(hl);
+            final int result = (this.a - value) & 0xFF;
+            this.setHL((hl + delta) & 0xFFFF);
+            final int bc = (this.getBC() - 1) & 0xFFFF;
+            this.setBC(bc);
+            final int halfCarry = (this.a ^ value ^ result) & FLAG_H;
+            final int n = result - (halfCarry >>> 4);
+            this.f = (this.f & FLAG_C) | FLAG_N | (SZ[result] & (FLAG_S | FLAG_Z)) | halfCarry | (bc != 0 ? FLAG_PV : 0)
+                    | (n & FLAG_X) | ((n << 4) & FLAG_Y);
+            if (repeat && bc != 0 && result != 0) {
+                this.repeat();
+            }
+
+            break;
+        }
+
+        case 2: { // INI, IND, INIR, INDR
+            final int value = this.ports.in(this.getBC());
+            this.write(hl, value);
+            this.setHL((hl + delta) & 0xFFFF);
+            this.b = (this.b - 1) & 0xFF;
+            this.f = SZ[this.b] | FLAG_N;
+            if (repeat && this.b != 0) {
+                this.repeat();
+            }
+
+            break;
+        }
+
+        default: { // OUTI, OUTD, OTIR, OTDR
+            final int value = this.read(hl);
+            this.b = (this.b - 1) & 0xFF;
+            this.ports.out(this.getBC(), value);
+            this.setHL((hl + delta) & 0xFFFF);
+            this.f = SZ[this.b] | FLAG_N;
+            if (repeat && this.b != 0) {
+                this.repeat();
+            }
+
+            break;
+        }
+        }
+    }
+
+    private boolean condition(int condition) {
+        switch (condition) {
+        case 0: // NZ
+            return (this.f & FLAG_Z) == 0;
+        case 1: // Z
+            return (this.f & FLAG_Z) != 0;
+        case 2: // NC
+            return (this.f & FLAG_C) == 0;
+        case 3: // C
+            return (this.f & FLAG_C) != 0;
+        case 4: // PO
+            return (this.f & FLAG_PV) == 0;
+        case 5: // PE
+            return (this.f & FLAG_PV) != 0;
+        case 6: // P
+            return (this.f & FLAG_S) == 0;
+        default: // M
+            return (this.f & FLAG_S) != 0;
+        }
+    }
+
+    private void daa() {
+        int correction = 0;
+        int carry = this.f & FLAG_C;
+        if ((this.f & FLAG_H) != 0 || (this.a & 0x0F) > 9) {
+            correction = 0x06;
+        }
+
+        if (carry != 0 || this.a > 0x99) {
+            correction |= 0x60;
+            carry = FLAG_C;
+        }
+
+        final int halfCarry;
+        if ((this.f & FLAG_N) != 0) {
+            halfCarry = (this.f & FLAG_H) != 0 && (this.a & 0x0F) < 6 ? FLAG_H : 0;
+            this.a = (this.a - correction) & 0xFF;
+        } else {
+            halfCarry = (this.a & 0x0F) > 9 ? FLAG_H : 0;
+            this.a = (this.a + correction) & 0xFF;
+        }
+
+        this.f = SZP[this.a] | carry | halfCarry | (this.f & FLAG_N);
+    }
+
+    private int dec8(int value) {
+        final int result = (value - 1) & 0xFF;
+        this.f = (this.f & FLAG_C) | FLAG_N | SZ[result] | (result == 0x7F ? FLAG_PV : 0)
+                | ((result & 0x0F) == 0x0F ? FLAG_H : 0);
+        return result;
+    }
+
+    private void executeCb() {
+        final int opcode = this.fetchOpcode();
+        final int z = opcode & 7;
+        final int value = z == 6 ? this.read(this.getHL()) : this.getRegister(z);
+        final int result = this.executeCbOperation(opcode, value);
+        if ((opcode & 0xC0) != 0x40) {
+            if (z == 6) {
+                this.write(this.getHL(), result);
+            } else {
+                this.setRegister(z, result);
+            }
+        }
+    }
+
+    // Executes a rotation, a shift, BIT, RES or SET on a value and returns the result.
+    private int executeCbOperation(int opcode, int value) {
+        final int y = (opcode >>> 3) & 7;
+        switch (opcode >>> 6) {
+        case 0: {
+            final int result;
+            final int carry;
+            switch (y) {
+            case 0: // RLC
+                result = ((value << 1) | (value >>> 7)) & 0xFF;
+                carry = value >>> 7;
+                break;
+            case 1: // RRC
+                result = (value >>> 1) | ((value & 1) << 7);
+                carry = value & 1;
+                break;
+            case 2: // RL
+                result = ((value << 1) | (this.f & FLAG_C)) & 0xFF;
+                carry = value >>> 7;
+                break;
+            case 3: // RR
+                result = (value >>> 1) | ((this.f & FLAG_C) << 7);
+                carry = value & 1;
+                break;
+            case 4: // SLA
+                result = (value << 1) & 0xFF;
+                carry = value >>> 7;
+                break;
+            case 5: // SRA
+                result = (value >>> 1) | (value & 0x80);
+                carry = value & 1;
+                break;
+            case 6: // SLL
+                result = ((value << 1) | 1) & 0xFF;
+                carry = value >>> 7;
+                break;
+            default: // SRL
+                result = value >>> 1;
+                carry = value & 1;
+                break;
+            }
+
+            this.f = SZP[result] | carry;
+            return result;
+        }
+
+        case 1: { // BIT
+            final int bit = value & (1 << y);
+            this.f = (this.f & FLAG_C) | FLAG_H | (value & FLAGS_XY) | (bit == 0 ? FLAG_Z | FLAG_PV : 0) | (bit & FLAG_S);
+            return value;
+        }
+
+        case 2: // RES
+            return value & ~(1 << y);
+
+        default: // SET
+            return value | (1 << y);
+        }
+    }
+
+    private void executeEd() {
+        final int opcode = this.fetchOpcode();
+        final int x = opcode >>> 6;
+        final int y = (opcode >>> 3) & 7;
+        final int z = opcode & 7;
+        if (x == 2 && z <= 3 && y >= 4) {
+            this.blockInstruction(y, z);
+            return;
+        }
+
+        if (x != 1) {
+            // Undefined opcodes execute as two NOPs.
+            return;
+        }
+
+        switch (z) {
+        case 0: { // IN r,(C)
+            final int value = this.ports.in(this.getBC());
+            if (y != 6) {
+                this.setRegister(y, value);
+            }
+
+            this.f = (this.f & FLAG_C) | SZP[value];
+            break;
+        }
+
+        case 1: // OUT (C),r
+            this.ports.out(this.getBC(), y == 6 ? 0 : this.getRegister(y));
+            break;
+
+        case 2: // SBC HL,rr; ADC HL,rr
+            if ((y & 1) == 0) {
+                this.sbc16(this.getRegisterPair(y >>> 1));
+            } else {
+                this.adc16(this.getRegisterPair(y >>> 1));
+            }
+
+            break;
+
+        case 3: { // LD (nn),rr; LD rr,(nn)
+            final int address = this.fetchWord();
+            if ((y & 1) == 0) {
+                this.writeWord(address, this.getRegisterPair(y >>> 1));
+            } else {
+                this.setRegisterPair(y >>> 1, this.readWord(address));
+            }
+
+            break;
+        }
+
+        case 4: { // NEG
+            final int value = this.a;
+            this.a = 0;
+            this.a = this.sub8(value, 0);
+            break;
+        }
+
+        case 5: // RETN; RETI
+            this.pc = this.pop();
+            this.iff1 = this.iff2;
+            break;
+
+        case 6: // IM
+            this.interruptMode = (y & 3) == 0 || (y & 3) == 1 ? 0 : (y & 3) - 1;
+            break;
+
+        default:
+            this.executeEdMisc(y);
+            break;
+        }
+    }
+
+    private void executeEdMisc(int y) {
+        switch (y) {
+        case 0: // LD I,A
+            this.i = this.a;
+            break;
+
+        case 1: // LD R,A
+            this.r = this.a;
+            break;
+
+        case 2: // LD A,I
+            this.a = this.i;
+            this.f = (this.f & FLAG_C) | SZ[this.a] | (this.iff2 ? FLAG_PV : 0);
+            break;
+
+        case 3: // LD A,R
+            this.a = this.r;
+            this.f = (this.f & FLAG_C) | SZ[this.a] | (this.iff2 ? FLAG_PV : 0);
+            break;
+
+        case 4: { // RRD
+            final int hl = this.getHL();
+            final int value = this.read(hl);
+            this.write(hl, ((this.a << 4) | (value >>> 4)) & 0xFF);
+            this.a = (this.a & 0xF0) | (value & 0x0F);
+            this.f = (this.f & FLAG_C) | SZP[this.a];
+            break;
+        }
+
+        case 5: { // RLD
+            final int hl = this.getHL();
+            final int value = this.read(hl);
+            this.write(hl, ((value << 4) | (this.a & 0x0F)) & 0xFF);
+            this.a = (this.a & 0xF0) | (value >>> 4);
+            this.f = (this.f & FLAG_C) | SZP[this.a];
+            break;
+        }
+
+        default: // undefined
+            break;
+        }
+    }
+
+    private void executeIndexed(int prefix) {
+        final int opcode = this.memory[this.pc] & 0xFF;
+        if (opcode == 0xDD || opcode == 0xED || opcode == 0xFD) {
+            // The prefix executes as a NOP; the next prefix starts a new instruction and is fetched by the next step.
+            return;
+        }
+
+        // The byte after the prefix is fetched by an M1 cycle, even in DD CB and FD CB instructions; the displacement and the
+        // last byte of those are read like operands.
+        this.fetchOpcode();
+
+        this.prefix = prefix;
+        try {
+            if (opcode == 0xCB) {
+                this.executeIndexedCb();
+            } else {
+                this.executeMain(opcode);
+            }
+        } finally {
+            this.prefix = PREFIX_NONE;
+        }
+    }
+
+    private void executeIndexedCb() {
+        final int address = (this.getIndexRegister() + (byte) this.fetch()) & 0xFFFF;
+        final int opcode = this.fetch();
+        final int result = this.executeCbOperation(opcode, this.read(address));
+        if ((opcode & 0xC0) != 0x40) {
+            this.write(address, result);
+            final int z = opcode & 7;
+            if (z != 6) {
+                // Undocumented: the result is also copied to a register.
+                this.setRegister(z, result);
+            }
+        }
+    }
+
+    private void executeMain(int opcode) {
+        final int y = (opcode >>> 3) & 7;
+        final int z = opcode & 7;
+        switch (opcode >>> 6) {
+        case 0:
+            this.executeMain0(y, z);
+            break;
+
+        case 1: // LD r,r'; HALT
+            if (opcode == 0x76) {
+                this.halted = true;
+            } else if (y == 6) {
+                this.write(this.getMemoryOperandAddress(), this.getRegister(z));
+            } else if (z == 6) {
+                this.setRegister(y, this.read(this.getMemoryOperandAddress()));
+            } else {
+                this.setIndexedRegister(y, this.getIndexedRegister(z));
+            }
+
+            break;
+
+        case 2: // ALU A,r
+            this.alu(y, z == 6 ? this.read(this.getMemoryOperandAddress()) : this.getIndexedRegister(z));
+            break;
+
+        default:
+            this.executeMain3(y, z);
+            break;
+        }
+    }
+
+    private void executeMain0(int y, int z) {
+        final int p = y >>> 1;
+        switch (z) {
+        case 0:
+            if (y == 0) {
+                // NOP
+            } else if (y == 1) {
+                // EX AF,AF'
+                final int af = this.getAF();
+                this.a = this.alternateAf >>> 8;
+                this.f = this.alternateAf & 0xFF;
+                this.alternateAf = af;
+            } else {
+                final int displacement = (byte) this.fetch();
+                final boolean jump;
+                if (y == 2) {
+                    // DJNZ
+                    this.b = (this.b - 1) & 0xFF;
+                    jump = this.b != 0;
+                } else {
+                    // JR; JR cc
+                    jump = y == 3 || this.condition(y - 4);
+                }
+
+                if (jump) {
+                    this.pc = (this.pc + displacement) & 0xFFFF;
+                    this.taken = true;
+                }
+            }
+
+            break;
+
+        case 1:
+            if ((y & 1) == 0) {
+                // LD rr,nn
+                this.setIndexedRegisterPair(p, this.fetchWord());
+            } else {
+                // ADD HL,rr
+                this.add16ToIndex(this.getIndexedRegisterPair(p));
+            }
+
+            break;
+
+        case 2:
+            switch (y) {
+            case 0: // LD (BC),A
+                this.write(this.getBC(), this.a);
+                break;
+            case 1: // LD A,(BC)
+                this.a = this.read(this.getBC());
+                break;
+            case 2: // LD (DE),A
+                this.write(this.getDE(), this.a);
+                break;
+            case 3: // LD A,(DE)
+                this.a = this.read(this.getDE());
+                break;
+            case 4: // LD (nn),HL
+                this.writeWord(this.fetchWord(), this.getIndexRegister());
+                break;
+            case 5: // LD HL,(nn)
+                this.setIndexRegister(this.readWord(this.fetchWord()));
+                break;
+            case 6: // LD (nn),A
+                this.write(this.fetchWord(), this.a);
+                break;
+            default: // LD A,(nn)
+                this.a = this.read(this.fetchWord());
+                break;
+            }
+
+            break;
+
+        case 3:
+            // INC rr; DEC rr
+            this.setIndexedRegisterPair(p, (this.getIndexedRegisterPair(p) + ((y & 1) == 0 ? 1 : -1)) & 0xFFFF);
+            break;
+
+        case 4:
+        case 5:
+            // INC r; DEC r
+            if (y == 6) {
+                final int address = this.getMemoryOperandAddress();
+                final int value = this.read(address);
+                this.write(address, z == 4 ? this.inc8(value) : this.dec8(value));
+            } else {
+                final int value = this.getIndexedRegister(y);
+                this.setIndexedRegister(y, z == 4 ? this.inc8(value) : this.dec8(value));
+            }
+
+            break;
+
+        case 6:
+            // LD r,n
+            if (y == 6) {
+                final int address = this.getMemoryOperandAddress();
+                this.write(address, this.fetch());
+            } else {
+                this.setIndexedRegister(y, this.fetch());
+            }
+
+            break;
+
+        default:
+            this.executeMain0Accumulator(y);
+            break;
+        }
+    }
+
+    private void executeMain0Accumulator(int y) {
+        switch (y) {
+        case 0: // RLCA
+            this.a = ((this.a << 1) | (this.a >>> 7)) & 0xFF;
+            this.f = (this.f & FLAGS_SZPV) | (this.a & (FLAGS_XY | FLAG_C));
+            break;
+
+        case 1: { // RRCA
+            final int carry = this.a & 1;
+            this.a = (this.a >>> 1) | (carry << 7);
+            this.f = (this.f & FLAGS_SZPV) | (this.a & FLAGS_XY) | carry;
+            break;
+        }
+
+        case 2: { // RLA
+            final int carry = this.a >>> 7;
+            this.a = ((this.a << 1) | (this.f & FLAG_C)) & 0xFF;
+            this.f = (this.f & FLAGS_SZPV) | (this.a & FLAGS_XY) | carry;
+            break;
+        }
+
+        case 3: { // RRA
+            final int carry = this.a & 1;
+            this.a = (this.a >>> 1) | ((this.f & FLAG_C) << 7);
+            this.f = (this.f & FLAGS_SZPV) | (this.a & FLAGS_XY) | carry;
+            break;
+        }
+
+        case 4: // DAA
+            this.daa();
+            break;
+
+        case 5: // CPL
+            this.a ^= 0xFF;
+            this.f = (this.f & (FLAGS_SZPV | FLAG_C)) | FLAG_H | FLAG_N | (this.a & FLAGS_XY);
+            break;
+
+        case 6: // SCF
+            this.f = (this.f & FLAGS_SZPV) | FLAG_C | (this.a & FLAGS_XY);
+            break;
+
+        default: // CCF
+            this.f = (this.f & FLAGS_SZPV) | ((this.f & FLAG_C) << 4) | ((this.f & FLAG_C) ^ FLAG_C) | (this.a & FLAGS_XY);
+            break;
+        }
+    }
+
+    private void executeMain3(int y, int z) {
+        final int p = y >>> 1;
+        switch (z) {
+        case 0: // RET cc
+            if (this.condition(y)) {
+                this.pc = this.pop();
+                this.taken = true;
+            }
+
+            break;
+
+        case 1:
+            if ((y & 1) == 0) {
+                // POP rr
+                final int value = this.pop();
+                if (p == 3) {
+                    this.a = value >>> 8;
+                    this.f = value & 0xFF;
+                } else {
+                    this.setIndexedRegisterPair(p, value);
+                }
+            } else if (p == 0) {
+                // RET
+                this.pc = this.pop();
+            } else if (p == 1) {
+                // EXX
+                final int bc = this.getBC();
+                final int de = this.getDE();
+                final int hl = this.getHL();
+                this.setBC(this.alternateBc);
+                this.setDE(this.alternateDe);
+                this.setHL(this.alternateHl);
+                this.alternateBc = bc;
+                this.alternateDe = de;
+                this.alternateHl = hl;
+            } else if (p == 2) {
+                // JP (HL)
+                this.pc = this.getIndexRegister();
+            } else {
+                // LD SP,HL
+                this.sp = this.getIndexRegister();
+            }
+
+            break;
+
+        case 2: { // JP cc,nn
+            final int address = this.fetchWord();
+            if (this.condition(y)) {
+                this.pc = address;
+                this.taken = true;
+            }
+
+            break;
+        }
+
+        case 3:
+            this.executeMain3Misc(y);
+            break;
+
+        case 4: { // CALL cc,nn
+            final int address = this.fetchWord();
+            if (this.condition(y)) {
+                this.push(this.pc);
+                this.pc = address;
+                this.taken = true;
+            }
+
+            break;
+        }
+
+        case 5:
+            if ((y & 1) == 0) {
+                // PUSH rr
+                this.push(p == 3 ? this.getAF() : this.getIndexedRegisterPair(p));
+            } else {
+                // CALL nn (the other opcodes in this column are prefixes)
+                final int address = this.fetchWord();
+                this.push(this.pc);
+                this.pc = address;
+            }
+
+            break;
+
+        case 6: // ALU A,n
+            this.alu(y, this.fetch());
+            break;
+
+        default: // RST
+            this.push(this.pc);
+            this.pc = y << 3;
+            break;
+        }
+    }
+
+    private void executeMain3Misc(int y) {
+        switch (y) {
+        case 0: // JP nn
+            this.pc = this.fetchWord();
+            break;
+
+        case 2: // OUT (n),A
+            this.ports.out(this.a << 8 | this.fetch(), this.a);
+            break;
+
+        case 3: // IN A,(n)
+            this.a = this.ports.in(this.a << 8 | this.fetch());
+            break;
+
+        case 4: { // EX (SP),HL
+            final int value = this.readWord(this.sp);
+            this.writeWord(this.sp, this.getIndexRegister());
+            this.setIndexRegister(value);
+            break;
+        }
+
+        case 5: { // EX DE,HL
+            final int de = this.getDE();
+            this.setDE(this.getHL());
+            this.setHL(de);
+            break;
+        }
+
+        case 6: // DI
+            this.iff1 = false;
+            this.iff2 = false;
+            break;
+
+        case 7: // EI
+            this.iff1 = true;
+            this.iff2 = true;
+            break;
+
+        default: // CB prefix, handled in step()
+            break;
+        }
+    }
+
+    private int fetch() {
+        final int value = this.memory[this.pc] & 0xFF;
+        this.pc = (this.pc + 1) & 0xFFFF;
+        return value;
+    }
+
+    // Fetches an opcode or a prefix with an M1 cycle, which increments the lower 7 bits of R.
+    private int fetchOpcode() {
+        this.r = (this.r & 0x80) | ((this.r + 1) & 0x7F);
+        return this.fetch();
+    }
+
+    private int fetchWord() {
+        final int low = this.fetch();
+        return this.fetch() << 8 | low;
+    }
+
+    // Gets HL, IX or IY, depending on the prefix of the current instruction.
+    private int getIndexRegister() {
+        switch (this.prefix) {
+        case PREFIX_IX:
+            return this.ix;
+        case PREFIX_IY:
+            return this.iy;
+        default:
+            return this.getHL();
+        }
+    }
+
+    // Gets B, C, D, E, H, L or A. The halves of IX or IY replace H and L, depending on the prefix of the current instruction.
+    private int getIndexedRegister(int register) {
+        if (this.prefix != PREFIX_NONE && (register == 4 || register == 5)) {
+            final int indexRegister = this.getIndexRegister();
+            return register == 4 ? indexRegister >>> 8 : indexRegister & 0xFF;
+        }
+
+        return this.getRegister(register);
+    }
+
+    // Gets BC, DE, SP, or HL, IX or IY, depending on the prefix of the current instruction.
+    private int getIndexedRegisterPair(int registerPair) {
+        return registerPair == 2 ? this.getIndexRegister() : this.getRegisterPair(registerPair);
+    }
+
+    // Gets the address of the (HL), (IX+d) or (IY+d) operand, reading the displacement if there is one.
+    private int getMemoryOperandAddress() {
+        if (this.prefix == PREFIX_NONE) {
+            return this.getHL();
+        }
+
+        return (this.getIndexRegister() + (byte) this.fetch()) & 0xFFFF;
+    }
+
+    // Gets B, C, D, E, H, L or A.
+    private int getRegister(int register) {
+        switch (register) {
+        case 0:
+            return this.b;
+        case 1:
+            return this.c;
+        case 2:
+            return this.d;
+        case 3:
+            return this.e;
+        case 4:
+            return this.h;
+        case 5:
+            return this.l;
+        default:
+            return this.a;
+        }
+    }
+
+    // Gets BC, DE, HL or SP.
+    private int getRegisterPair(int registerPair) {
+        switch (registerPair) {
+        case 0:
+            return this.getBC();
+        case 1:
+            return this.getDE();
+        case 2:
+            return this.getHL();
+        default:
+            return this.sp;
+        }
+    }
+
+    private int inc8(int value) {
+        final int result = (value + 1) & 0xFF;
+        this.f = (this.f & FLAG_C) | SZ[result] | (result == 0x80 ? FLAG_PV : 0) | ((result & 0x0F) == 0 ? FLAG_H : 0);
+        return result;
+    }
+
+    private int pop() {
+        final int value = this.readWord(this.sp);
+        this.sp = (this.sp + 2) & 0xFFFF;
+        return value;
+    }
+
+    private void push(int value) {
+        this.sp = (this.sp - 2) & 0xFFFF;
+        this.writeWord(this.sp, value);
+    }
+
+    private int read(int address) {
+        return this.memory[address] & 0xFF;
+    }
+
+    private int readWord(int address) {
+        return this.read(address) | this.read((address + 1) & 0xFFFF) << 8;
+    }
+
+    // Executes the current block instruction again.
+    private void repeat() {
+        this.pc = (this.pc - 2) & 0xFFFF;
+        this.taken = true;
+    }
+
+    private void sbc16(int value) {
+        final int hl = this.getHL();
+        final int result = hl - value - (this.f & FLAG_C);
+        this.f = FLAG_N | ((result >>> 16) & FLAG_C) | (((hl ^ value ^ result) >>> 8) & FLAG_H)
+                | (((value ^ hl) & (hl ^ result) & 0x8000) >>> 13) | ((result >>> 8) & (FLAG_S | FLAGS_XY))
+                | ((result & 0xFFFF) == 0 ? FLAG_Z : 0);
+        this.setHL(result & 0xFFFF);
+    }
+
+    private void setBC(int value) {
+        this.b = value >>> 8;
+        this.c = value & 0xFF;
+    }
+
+    private void setDE(int value) {
+        this.d = value >>> 8;
+        this.e = value & 0xFF;
+    }
+
+    private void setHL(int value) {
+        this.h = value >>> 8;
+        this.l = value & 0xFF;
+    }
+
+    private void setIndexRegister(int value) {
+        switch (this.prefix) {
+        case PREFIX_IX:
+            this.ix = value;
+            break;
+        case PREFIX_IY:
+            this.iy = value;
+            break;
+        default:
+            this.setHL(value);
+            break;
+        }
+    }
+
+    private void setIndexedRegister(int register, int value) {
+        if (this.prefix != PREFIX_NONE && (register == 4 || register == 5)) {
+            final int indexRegister = this.getIndexRegister();
+            this.setIndexRegister(register == 4 ? value << 8 | (indexRegister & 0xFF) : (indexRegister & 0xFF00) | value);
+        } else {
+            this.setRegister(register, value);
+        }
+    }
+
+    private void setIndexedRegisterPair(int registerPair, int value) {
+        if (registerPair == 2) {
+            this.setIndexRegister(value);
+        } else {
+            this.setRegisterPair(registerPair, value);
+        }
+    }
+
+    private void setRegister(int register, int value) {
+        switch (register) {
+        case 0:
+            this.b = value;
+            break;
+        case 1:
+            this.c = value;
+            break;
+        case 2:
+            this.d = value;
+            break;
+        case 3:
+            this.e = value;
+            break;
+        case 4:
+            this.h = value;
+            break;
+        case 5:
+            this.l = value;
+            break;
+        default:
+            this.a = value;
+            break;
+        }
+    }
+
+    private void setRegisterPair(int registerPair, int value) {
+        switch (registerPair) {
+        case 0:
+            this.setBC(value);
+            break;
+        case 1:
+            this.setDE(value);
+            break;
+        case 2:
+            this.setHL(value);
+            break;
+        default:
+            this.sp = value;
+            break;
+        }
+    }
+
+    private int sub8(int value, int carry) {
+        final int result = this.a - value - carry;
+        this.f = SZ[result & 0xFF] | ((result >>> 8) & FLAG_C) | FLAG_N | ((this.a ^ value ^ result) & FLAG_H)
+                | (((value ^ this.a) & (this.a ^ result) & 0x80) >>> 5);
+        return result & 0xFF;
+    }
+
+    private void write(int address, int value) {
+        this.memory[address] = (byte) value;
+    }
+
+    private void writeWord(int address, int value) {
+        this.write(address, value & 0xFF);
+        this.write((address + 1) & 0xFFFF, value >>> 8);
+    }
+
+}
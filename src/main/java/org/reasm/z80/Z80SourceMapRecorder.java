@@ -0,0 +1,177 @@
+package org.reasm.z80;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.reasm.source.AbstractSourceFile;
+import org.reasm.source.SourceLocation;
+
+/**
+ * Records the addresses of the code and data written by the logical lines of an assembly, so that an address in the assembled
+ * program can be mapped back to the line that produced it.
+ * <p>
+ * The lines of the last pass are kept. Every line that writes at least one byte to the output outside of a <code>TRANSFORM</code>
+ * block is recorded, in any source file, at the value of the program counter seen by labels and expressions; code in a
+ * <code>PHASE</code> block is therefore recorded at the address it is meant to run at. The output of a <code>TRANSFORM</code>
+ * block that is only released when the block ends is recorded on the <code>ENDTRANSFORM</code> line.
+ *
+ * @author Francis Gagné
+ */
+@NotThreadSafe
+public final class Z80SourceMapRecorder extends Z80AssemblyListener {
+
+    @Immutable
+    private static final class Line {
+
+        @Nonnull
+        final AbstractSourceFile<?> file;
+        final int textPosition;
+        final long address;
+        final long length;
+
+        Line(@Nonnull AbstractSourceFile<?> file, int textPosition, long address, long length) {
+            this.file = file;
+            this.textPosition = textPosition;
+            this.address = address;
+            this.length = length;
+        }
+
+    }
+
+    @Nonnull
+    private static final Comparator<Line> ADDRESS_COMPARATOR = new Comparator<Line>() {
+        @Override
+        public int compare(Line o1, Line o2) {
+            return Long.compare(o1.address, o2.address);
+        }
+    };
+
+    @Nonnull
+    private final ArrayList<Line> lines = new ArrayList<>();
+    private boolean sorted = true;
+
+    /**
+     * Gets the address of the first byte written by a recorded line.
+     *
+     * @param index
+     *            the index of the line
+     * @return the address of the line
+     */
+    public final long getAddress(int index) {
+        return this.sortedLines().get(index).address;
+    }
+
+    /**
+     * Gets the source file that contains a recorded line.
+     *
+     * @param index
+     *            the index of the line
+     * @return the source file
+     */
+    @Nonnull
+    public final AbstractSourceFile<?> getFile(int index) {
+        return this.sortedLines().get(index).file;
+    }
+
+    /**
+     * Gets the number of bytes written by a recorded line.
+     *
+     * @param index
+     *            the index of the line
+     * @return the length of the line's output
+     */
+    public final long getLength(int index) {
+        return this.sortedLines().get(index).length;
+    }
+
+    /**
+     * Gets the number of recorded lines.
+     *
+     * @return the number of lines
+     */
+    public final int getNumberOfLines() {
+        return this.lines.size();
+    }
+
+    /**
+     * Gets the position of a recorded line in the text of its source file.
+     *
+     * @param index
+     *            the index of the line
+     * @return the text position of the line
+     */
+    public final int getTextPosition(int index) {
+        return this.sortedLines().get(index).textPosition;
+    }
+
+    /**
+     * Finds the recorded line that wrote the byte at an address.
+     *
+     * @param address
+     *            the address
+     * @return the index of the line, or -1 if no recorded line wrote a byte at that address. The lines are sorted by address.
+     */
+    public final int indexOf(long address) {
+        final ArrayList<Line> lines = this.sortedLines();
+
+        // Find the last line that starts at or before the address.
+        int low = 0;
+        int high = lines.size();
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (lines.get(middle).address <= address) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        final int index = low - 1;
+        if (index >= 0) {
+            final Line line = lines.get(index);
+            if (address - line.address < line.length) {
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public final void lineAssembled(Z80AssembledLine assembledLine) {
+        final long length = assembledLine.getOutputLength();
+        if (length == 0 || assembledLine.isInTransformBlock()) {
+            return;
+        }
+
+        final long address = assembledLine.getProgramCounter();
+        if (this.sorted && !this.lines.isEmpty() && this.lines.get(this.lines.size() - 1).address > address) {
+            this.sorted = false;
+        }
+
+        final SourceLocation sourceLocation = assembledLine.getSourceLocation();
+        this.lines.add(new Line(sourceLocation.getFile(), sourceLocation.getTextPosition(), address, length));
+    }
+
+    @Override
+    public final void passStarted() {
+        this.lines.clear();
+        this.sorted = true;
+    }
+
+    @Nonnull
+    private ArrayList<Line> sortedLines() {
+        if (!this.sorted) {
+            Collections.sort(this.lines, ADDRESS_COMPARATOR);
+            this.sorted = true;
+        }
+
+        return this.lines;
+    }
+
+}
@@ -0,0 +1,444 @@
+package org.reasm.z80;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.reasm.Assembly;
+import org.reasm.AssemblyCompletionStatus;
+import org.reasm.AssemblyMessage;
+import org.reasm.Configuration;
+import org.reasm.Environment;
+import org.reasm.source.SourceFile;
+import org.reasm.source.SourceNode;
+import org.reasm.z80.source.Z80ParseCache;
+
+import ca.fragag.text.Document;
+
+/**
+ * Assembles a source file again whenever it or one of the files it includes changes.
+ * <p>
+ * The watcher monitors the directories of the main source file and of every file fetched by the last assembly with a
+ * {@link WatchService}. Changes that arrive in quick succession are debounced: the watcher waits until no change has been
+ * reported for the debounce delay before it assembles again. A modified source file is reparsed with
+ * {@link Z80Architecture#reparse(Document, org.reasm.source.AbstractSourceFile, int, int, int)} from its previous tree, using the
+ * span between the common prefix and the common suffix of the old and new texts as the edit, and the new tree is put in the
+ * {@linkplain Z80ParseCache#INSTANCE process-wide parse cache}; unmodified source files are reused as is.
+ * <p>
+ * The directories of new dependencies are watched before the result of the assembly is reported, and the files read from them
+ * are checked for modifications made before the directories were watched.
+ * <p>
+ * The {@linkplain Listener listener} is invoked on the thread that runs the watcher.
+ *
+ * @author Francis Gagné
+ */
+@ThreadSafe
+public final class Z80Watcher implements Closeable {
+
+    /**
+     * Receives the results of the assemblies performed by a {@link Z80Watcher}.
+     *
+     * @author Francis Gagné
+     */
+    public interface Listener {
+
+        /**
+         * Called after the watched source file has been assembled.
+         *
+         * @param result
+         *            the result of the assembly
+         */
+        void assembled(@Nonnull Z80BatchAssembler.Result result);
+
+    }
+
+    // Binary files are memory-mapped by the INCBIN directive after being resolved with getLocalPath(String), so that method
+    // records them as dependencies too.
+    private final class RecordingFileFetcher implements Z80LocalFileFetcher {
+
+        @Nonnull
+        private final Path directory;
+
+        RecordingFileFetcher(@Nonnull Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public byte[] fetchBinaryFile(String filePath) throws IOException {
+            return Files.readAllBytes(this.getLocalPath(filePath));
+        }
+
+        @Override
+        public SourceFile fetchSourceFile(String filePath) throws IOException {
+            return Z80Watcher.this.getSourceFile(this.directory.resolve(filePath).toAbsolutePath().normalize());
+        }
+
+        @Override
+        public Path getLocalPath(String filePath) {
+            final Path path = this.directory.resolve(filePath).toAbsolutePath().normalize();
+            Z80Watcher.this.addDependency(path);
+            return path;
+        }
+
+    }
+
+    @Immutable
+    private static final class WatchedSourceFile {
+
+        @Nonnull
+        final String text;
+        @Nonnull
+        final SourceFile sourceFile;
+
+        WatchedSourceFile(@Nonnull String text, @Nonnull SourceFile sourceFile) {
+            this.text = text;
+            this.sourceFile = sourceFile;
+        }
+
+    }
+
+    /** The default debounce delay, in milliseconds. */
+    public static final long DEFAULT_DEBOUNCE_DELAY = 25;
+
+    @CheckForNull
+    private static FileTime getLastModifiedTime(@Nonnull Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            // The file doesn't exist or cannot be accessed.
+            return null;
+        }
+    }
+
+    @Nonnull
+    private static SourceFile reparse(@Nonnull WatchedSourceFile oldFile, @Nonnull String newText, @Nonnull String fileName) {
+        final String oldText = oldFile.text;
+        final int maximumLength = Math.min(oldText.length(), newText.length());
+        int prefixLength = 0;
+        while (prefixLength < maximumLength && oldText.charAt(prefixLength) == newText.charAt(prefixLength)) {
+            prefixLength++;
+        }
+
+        int suffixLength = 0;
+        while (suffixLength < maximumLength - prefixLength
+                && oldText.charAt(oldText.length() - 1 - suffixLength) == newText.charAt(newText.length() - 1 - suffixLength)) {
+            suffixLength++;
+        }
+
+        final Document document = new Document(newText);
+        final SourceNode parsed = Z80Architecture.INSTANCE.reparse(document, oldFile.sourceFile, prefixLength, oldText.length()
+                - prefixLength - suffixLength, newText.length() - prefixLength - suffixLength);
+        Z80ParseCache.INSTANCE.put(document, parsed);
+        return new SourceFile(newText, fileName);
+    }
+
+    @Nonnull
+    private final Environment environment;
+    @Nonnull
+    private final Path mainFile;
+    @Nonnull
+    private final Listener listener;
+    private final long debounceDelay;
+    @Nonnull
+    private final WatchService watchService;
+
+    // The following fields are only accessed by the thread that runs the watcher.
+    @Nonnull
+    private final HashMap<Path, WatchedSourceFile> sourceFiles = new HashMap<>();
+    @Nonnull
+    private final HashSet<Path> changedFiles = new HashSet<>();
+    @Nonnull
+    private final HashSet<Path> dependencies = new HashSet<>();
+    // The last modification times of the dependencies when they were first read by the last assembly (null for files that
+    // didn't exist).
+    @Nonnull
+    private final HashMap<Path, FileTime> readTimes = new HashMap<>();
+    @Nonnull
+    private final HashSet<Path> watchedDirectories = new HashSet<>();
+
+    /**
+     * Initializes a new Z80Watcher with the {@linkplain #DEFAULT_DEBOUNCE_DELAY default debounce delay}.
+     *
+     * @param environment
+     *            the environment of the assemblies
+     * @param mainFile
+     *            the path of the main source file
+     * @param listener
+     *            the listener that receives the results of the assemblies
+     * @throws IOException
+     *             the watch service cannot be created
+     */
+    public Z80Watcher(@Nonnull Environment environment, @Nonnull Path mainFile, @Nonnull Listener listener) throws IOException {
+        this(environment, mainFile, listener, DEFAULT_DEBOUNCE_DELAY);
+    }
+
+    /**
+     * Initializes a new Z80Watcher.
+     *
+     * @param environment
+     *            the environment of the assemblies
+     * @param mainFile
+     *            the path of the main source file
+     * @param listener
+     *            the listener that receives the results of the assemblies
+     * @param debounceDelay
+     *            the time, in milliseconds, during which no change must be reported before the source file is assembled again
+     * @throws IOException
+     *             the watch service cannot be created
+     */
+    public Z80Watcher(@Nonnull Environment environment, @Nonnull Path mainFile, @Nonnull Listener listener, long debounceDelay)
+            throws IOException {
+        if (environment == null) {
+            throw new NullPointerException("environment");
+        }
+
+        if (mainFile == null) {
+            throw new NullPointerException("mainFile");
+        }
+
+        if (listener == null) {
+            throw new NullPointerException("listener");
+        }
+
+        this.environment = environment;
+        this.mainFile = mainFile.toAbsolutePath().normalize();
+        this.listener = listener;
+        this.debounceDelay = debounceDelay;
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Stops watching the files. If an assembly is in progress, it completes and its result is reported.
+     */
+    @Override
+    public final void close() throws IOException {
+        this.watchService.close();
+    }
+
+    /**
+     * Assembles the main source file, then assembles it again whenever one of its files changes, on the current thread, until
+     * this watcher is {@linkplain #close() closed}.
+     *
+     * @throws IOException
+     *             a directory cannot be watched
+     */
+    public final void run() throws IOException {
+        try {
+            for (;;) {
+                this.assemble();
+                this.waitForChanges();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // The watcher was closed.
+        }
+    }
+
+    /**
+     * Runs this watcher on a new daemon thread.
+     *
+     * @return the thread
+     */
+    @Nonnull
+    public final Thread start() {
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Z80Watcher.this.run();
+                } catch (IOException e) {
+                    // The files can no longer be watched. The error was reported with the result of the last assembly.
+                }
+            }
+        }, "Z80 watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    @Nonnull
+    SourceFile getSourceFile(@Nonnull Path path) throws IOException {
+        this.addDependency(path);
+
+        final WatchedSourceFile oldFile = this.sourceFiles.get(path);
+        if (oldFile != null && !this.changedFiles.contains(path)) {
+            return oldFile.sourceFile;
+        }
+
+        final String text;
+        try {
+            text = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            // Read the file again on the next assembly.
+            this.sourceFiles.remove(path);
+            throw e;
+        }
+
+        final SourceFile sourceFile;
+        if (oldFile == null) {
+            sourceFile = new SourceFile(text, path.toString());
+        } else if (oldFile.text.equals(text)) {
+            sourceFile = oldFile.sourceFile;
+        } else {
+            sourceFile = reparse(oldFile, text, path.toString());
+        }
+
+        this.sourceFiles.put(path, new WatchedSourceFile(text, sourceFile));
+        this.changedFiles.remove(path);
+        return sourceFile;
+    }
+
+    private void addDependency(@Nonnull Path path) {
+        // Record the modification time before the file is read, so that a change made while the file is being read is detected
+        // by watchDependencies().
+        if (this.dependencies.add(path)) {
+            this.readTimes.put(path, getLastModifiedTime(path));
+        }
+    }
+
+    private void assemble() throws IOException {
+        final long startTime = System.nanoTime();
+        this.dependencies.clear();
+        this.readTimes.clear();
+
+        SourceFile mainSourceFile;
+        Exception exception = null;
+        try {
+            mainSourceFile = this.getSourceFile(this.mainFile);
+        } catch (IOException | RuntimeException e) {
+            // The main file may be in the middle of being saved. Report the error and wait for the next change.
+            mainSourceFile = new SourceFile("", this.mainFile.toString());
+            exception = e;
+        }
+
+        final Configuration configuration = new Configuration(this.environment, mainSourceFile, Z80Architecture.INSTANCE)
+                .setFileFetcher(new RecordingFileFetcher(this.mainFile.getParent()));
+        List<AssemblyMessage> messages = Collections.emptyList();
+        byte[] output = null;
+        if (exception == null) {
+            final Assembly assembly = new Assembly(configuration);
+            try {
+                AssemblyCompletionStatus status;
+                do {
+                    status = assembly.step();
+                } while (status != AssemblyCompletionStatus.COMPLETE);
+
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                assembly.writeAssembledDataTo(out);
+                output = out.toByteArray();
+            } catch (IOException | RuntimeException e) {
+                // Report the failure and wait for the next change rather than stopping the watcher.
+                exception = e;
+            }
+
+            messages = assembly.getMessages();
+        }
+
+        // Every changed dependency has been read again. Forget the files that are no longer included.
+        this.changedFiles.clear();
+        this.sourceFiles.keySet().retainAll(this.dependencies);
+
+        // Watch the directories before reporting the result, so that a change made by the listener, or right after it is
+        // notified, is not missed.
+        IOException watchException = null;
+        try {
+            this.watchDependencies();
+        } catch (IOException e) {
+            watchException = e;
+            if (exception == null) {
+                exception = e;
+            }
+        }
+
+        this.listener.assembled(new Z80BatchAssembler.Result(configuration, output, messages, exception, System.nanoTime()
+                - startTime));
+
+        if (watchException != null) {
+            throw watchException;
+        }
+    }
+
+    private boolean processEvents(@CheckForNull WatchKey key) {
+        if (key == null) {
+            return false;
+        }
+
+        final Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Some events were lost, so consider every dependency changed.
+                this.changedFiles.addAll(this.dependencies);
+            } else {
+                this.changedFiles.add(directory.resolve((Path) event.context()).toAbsolutePath().normalize());
+            }
+        }
+
+        key.reset();
+        return true;
+    }
+
+    private void waitForChanges() throws InterruptedException {
+        for (;;) {
+            // watchDependencies() may already have detected changes, for which no event will be reported.
+            if (this.changedFiles.isEmpty()) {
+                this.processEvents(this.watchService.take());
+            }
+
+            // Wait until the changes settle down.
+            while (this.processEvents(this.watchService.poll(this.debounceDelay, TimeUnit.MILLISECONDS))) {
+                // Keep polling.
+            }
+
+            for (Path changedFile : this.changedFiles) {
+                if (this.dependencies.contains(changedFile)) {
+                    return;
+                }
+            }
+
+            // Only unrelated files changed.
+            this.changedFiles.clear();
+        }
+    }
+
+    private void watchDependencies() throws IOException {
+        final HashSet<Path> newDirectories = new HashSet<>();
+        for (Path dependency : this.dependencies) {
+            final Path directory = dependency.getParent();
+            if (directory != null && !this.watchedDirectories.contains(directory)) {
+                directory.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                this.watchedDirectories.add(directory);
+                newDirectories.add(directory);
+            }
+        }
+
+        // The watch service doesn't report the changes made to the files of a directory before the directory was registered, so
+        // check whether the files read from the new directories were modified since they were read.
+        for (Path dependency : this.dependencies) {
+            if (newDirectories.contains(dependency.getParent())
+                    && !Objects.equals(getLastModifiedTime(dependency), this.readTimes.get(dependency))) {
+                this.changedFiles.add(dependency);
+            }
+        }
+    }
+
+}
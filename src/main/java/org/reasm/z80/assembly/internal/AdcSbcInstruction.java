@@ -14,7 +14,7 @@ import com.google.common.collect.ImmutableList;
  * @author Francis Gagné
  */
 @Immutable
-class AdcSbcInstruction extends Mnemonic {
+class AdcSbcInstruction extends Instruction {
 
     @Nonnull
     static final AdcSbcInstruction ADC = new AdcSbcInstruction(BinaryArithmeticLogicalInstruction.ADC, 0b01_001_010);
@@ -14,7 +14,7 @@ import com.google.common.collect.ImmutableList;
  * @author Francis Gagné
  */
 @Immutable
-class AddInstruction extends Mnemonic {
+class AddInstruction extends Instruction {
 
     @Nonnull
     static final AddInstruction ADD = new AddInstruction();
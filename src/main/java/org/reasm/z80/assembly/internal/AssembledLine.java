@@ -0,0 +1,103 @@
+package org.reasm.z80.assembly.internal;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.reasm.source.SourceLocation;
+import org.reasm.z80.Z80AssembledLine;
+
+/**
+ * The implementation of {@link Z80AssembledLine}. A single instance is reused for every line of an assembly; it reads the state of
+ * the current assembly step from the {@link Z80AssemblyContext}, and only reads the text of the line if a listener requests it.
+ *
+ * @author Francis Gagné
+ */
+@NotThreadSafe
+final class AssembledLine implements Z80AssembledLine {
+
+    @Nonnull
+    private final Z80AssemblyContext context;
+    private boolean instruction;
+    private boolean reassemblable;
+    private int cycles;
+    private int takenCycles;
+    @CheckForNull
+    private String text;
+
+    AssembledLine(@Nonnull Z80AssemblyContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public final byte getByte(int index) {
+        if (index < 0 || index >= this.getOutputLength()) {
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        }
+
+        return this.context.lineBytes[index];
+    }
+
+    @Override
+    public final int getCycles() {
+        return this.cycles;
+    }
+
+    @Override
+    public final long getOutputLength() {
+        return this.context.getOutputLength() - this.context.lineOutputOffset;
+    }
+
+    @Override
+    public final long getOutputOffset() {
+        return this.context.lineOutputOffset;
+    }
+
+    @Override
+    public final long getProgramCounter() {
+        return this.context.programCounter;
+    }
+
+    @Override
+    public final SourceLocation getSourceLocation() {
+        return this.context.sourceLocation;
+    }
+
+    @Override
+    public final int getTakenCycles() {
+        return this.takenCycles;
+    }
+
+    @Override
+    public final String getText() {
+        if (this.text == null) {
+            this.text = this.context.getLineText();
+        }
+
+        return this.text;
+    }
+
+    @Override
+    public final boolean isInTransformBlock() {
+        return this.context.transformStage != null;
+    }
+
+    @Override
+    public final boolean isInstruction() {
+        return this.instruction;
+    }
+
+    @Override
+    public final boolean isReassemblable() {
+        return this.reassemblable;
+    }
+
+    void set(boolean instruction, boolean reassemblable, int cycles, int takenCycles) {
+        this.instruction = instruction;
+        this.reassemblable = reassemblable;
+        this.cycles = cycles;
+        this.takenCycles = takenCycles;
+        this.text = null;
+    }
+
+}
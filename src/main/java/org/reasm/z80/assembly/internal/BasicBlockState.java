@@ -0,0 +1,96 @@
+package org.reasm.z80.assembly.internal;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.reasm.source.SourceLocation;
+
+/**
+ * The state of a block that consists of a directive, a body and an optional closing directive, and whose body is assembled exactly
+ * once.
+ *
+ * @author Francis Gagné
+ */
+class BasicBlockState extends BlockState {
+
+    private enum Position {
+        HEADER, BODY, FOOTER, DONE
+    }
+
+    @Nonnull
+    private final SourceLocation header;
+    @CheckForNull
+    private final SourceLocation body;
+    @CheckForNull
+    private final SourceLocation footer;
+    @Nonnull
+    private Position position = Position.HEADER;
+    @Nonnull
+    private Iterator<SourceLocation> bodyIterator = Collections.emptyIterator();
+
+    BasicBlockState(@Nonnull Z80AssemblyContext context, @Nonnull SourceLocation sourceLocation) {
+        super(context);
+        final List<SourceLocation> childNodes = getChildNodes(sourceLocation);
+        this.header = childNodes.get(0);
+        this.body = getChildNode(childNodes, 1);
+        this.footer = getChildNode(childNodes, 2);
+    }
+
+    @Override
+    final boolean hasNextCore() {
+        for (;;) {
+            switch (this.position) {
+            case HEADER:
+                return true;
+
+            case BODY:
+                if (this.bodyIterator.hasNext()) {
+                    return true;
+                }
+
+                this.position = Position.FOOTER;
+                break;
+
+            case FOOTER:
+                if (this.footer != null) {
+                    return true;
+                }
+
+                this.position = Position.DONE;
+                break;
+
+            default:
+                return false;
+            }
+        }
+    }
+
+    @Override
+    final SourceLocation nextCore() {
+        switch (this.position) {
+        case HEADER:
+            if (this.body != null) {
+                this.bodyIterator = this.body.getChildNodes().iterator();
+            }
+
+            this.position = Position.BODY;
+            return this.header;
+
+        case BODY:
+            return this.bodyIterator.next();
+
+        case FOOTER:
+            this.position = Position.DONE;
+            assert this.footer != null;
+            return this.footer;
+
+        default:
+            throw new AssertionError(); // unreachable
+        }
+    }
+
+}
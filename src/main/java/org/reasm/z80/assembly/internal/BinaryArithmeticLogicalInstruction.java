@@ -12,7 +12,7 @@ import javax.annotation.concurrent.Immutable;
  * @author Francis Gagné
  */
 @Immutable
-class BinaryArithmeticLogicalInstruction extends Mnemonic {
+class BinaryArithmeticLogicalInstruction extends Instruction {
 
     @Nonnull
     static final BinaryArithmeticLogicalInstruction ADD = new BinaryArithmeticLogicalInstruction(0b10_000_000);
@@ -83,7 +83,7 @@ class BinaryArithmeticLogicalInstruction extends Mnemonic {
             // ADD/ADC/SBC A, n
             // SUB/AND/XOR/OR/CP n
             context.appendByte((byte) (this.opcode | 0b11_000_110));
-            context.appendByte(valueToByte(ea.immediate, context));
+            context.appendImmediateByte(ea);
             return true;
         }
 
@@ -0,0 +1,113 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.reasm.FileFetcher;
+import org.reasm.z80.Z80LocalFileFetcher;
+
+/**
+ * Caches the contents of the binary files included by <code>INCBIN</code> directives across the passes of an assembly.
+ * <p>
+ * Files that the configuration's file fetcher {@linkplain Z80LocalFileFetcher#getLocalPath(String) resolves to local files} are
+ * memory-mapped and are keyed by path and modification time, so a file that changes between passes is mapped again. Other files
+ * are read once through the file fetcher. Paths are never resolved by the cache itself, so a file is only read if the file
+ * fetcher would read it.
+ *
+ * @author Francis Gagné
+ */
+final class BinaryFileCache {
+
+    private static final class Entry {
+
+        final long lastModified;
+        @Nonnull
+        final ByteBuffer contents;
+
+        Entry(long lastModified, @Nonnull ByteBuffer contents) {
+            this.lastModified = lastModified;
+            this.contents = contents;
+        }
+
+    }
+
+    private static final long NOT_LOCAL = Long.MIN_VALUE;
+
+    @CheckForNull
+    private static Path getLocalPath(@Nonnull String filePath, @Nonnull FileFetcher fileFetcher) throws IOException {
+        if (!(fileFetcher instanceof Z80LocalFileFetcher)) {
+            return null;
+        }
+
+        final Path path = ((Z80LocalFileFetcher) fileFetcher).getLocalPath(filePath);
+        return path != null && Files.isRegularFile(path) ? path : null;
+    }
+
+    @Nonnull
+    private static ByteBuffer map(@Nonnull Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // FileChannel.map throws IllegalArgumentException for regions larger than Integer.MAX_VALUE bytes; report these files
+            // as unreadable instead.
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to be mapped: " + path);
+            }
+
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    @Nonnull
+    private final HashMap<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Gets the contents of a binary file.
+     *
+     * @param filePath
+     *            the path of the file
+     * @param fileFetcher
+     *            the configuration's file fetcher, or <code>null</code> if there is none
+     * @return a read-only buffer containing the contents of the file, positioned at the start of the file, or <code>null</code> if
+     *         the file cannot be found
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    @CheckForNull
+    ByteBuffer get(@Nonnull String filePath, @CheckForNull FileFetcher fileFetcher) throws IOException {
+        if (fileFetcher == null) {
+            return null;
+        }
+
+        final Path localPath = getLocalPath(filePath, fileFetcher);
+        final long lastModified = localPath == null ? NOT_LOCAL : Files.getLastModifiedTime(localPath).toMillis();
+
+        Entry entry = this.entries.get(filePath);
+        if (entry == null || entry.lastModified != lastModified) {
+            final ByteBuffer contents;
+            if (localPath != null) {
+                contents = map(localPath);
+            } else {
+                final byte[] data = fileFetcher.fetchBinaryFile(filePath);
+                if (data == null) {
+                    return null;
+                }
+
+                contents = ByteBuffer.wrap(data);
+            }
+
+            entry = new Entry(lastModified, contents.asReadOnlyBuffer());
+            this.entries.put(filePath, entry);
+        }
+
+        // Return a view so that the caller's position and limit don't affect the cached buffer.
+        return entry.contents.duplicate();
+    }
+
+}
@@ -13,7 +13,7 @@ import org.reasm.commons.messages.ValueOutOfRangeErrorMessage;
  * @author Francis Gagné
  */
 @Immutable
-class BitManipulationInstruction extends Mnemonic {
+class BitManipulationInstruction extends Instruction {
 
     @Nonnull
     static final BitManipulationInstruction BIT = new BitManipulationInstruction(0b01_000_000);
@@ -0,0 +1,38 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Directive that delimits a block and takes no operands. The block's behavior is implemented by the block's state and by the
+ * directive that starts or continues the block.
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+class BlockDelimiterDirective extends Mnemonic {
+
+    @Nonnull
+    static final BlockDelimiterDirective DEPHASE = new BlockDelimiterDirective();
+    @Nonnull
+    static final BlockDelimiterDirective DO = new BlockDelimiterDirective();
+    @Nonnull
+    static final BlockDelimiterDirective ENDIF = new BlockDelimiterDirective();
+    @Nonnull
+    static final BlockDelimiterDirective ENDNS = new BlockDelimiterDirective();
+    @Nonnull
+    static final BlockDelimiterDirective ENDW = new BlockDelimiterDirective();
+    @Nonnull
+    static final BlockDelimiterDirective NEXT = new BlockDelimiterDirective();
+
+    private BlockDelimiterDirective() {
+    }
+
+    @Override
+    void assemble(Z80AssemblyContext context) throws IOException {
+        context.requireNumberOfOperands(0);
+    }
+
+}
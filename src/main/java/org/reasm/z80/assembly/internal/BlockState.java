@@ -0,0 +1,103 @@
+package org.reasm.z80.assembly.internal;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.reasm.source.SourceLocation;
+
+/**
+ * Base class for the state of a block that is being assembled.
+ * <p>
+ * A block state is also the sequence of source locations that the assembler steps through while the block is being assembled.
+ * The sequence is produced lazily, so the directives of the block can decide, as they are assembled, which child nodes are visited
+ * next. When the sequence is exhausted, the block state removes itself from the context's block stack.
+ *
+ * @author Francis Gagné
+ */
+abstract class BlockState implements Iterable<SourceLocation>, Iterator<SourceLocation> {
+
+    @Nonnull
+    static List<SourceLocation> getChildNodes(@Nonnull SourceLocation sourceLocation) {
+        final ArrayList<SourceLocation> childNodes = new ArrayList<>();
+        for (SourceLocation childNode : sourceLocation.getChildNodes()) {
+            childNodes.add(childNode);
+        }
+
+        return childNodes;
+    }
+
+    @CheckForNull
+    static SourceLocation getChildNode(@Nonnull List<SourceLocation> childNodes, int index) {
+        return index < childNodes.size() ? childNodes.get(index) : null;
+    }
+
+    @Nonnull
+    final Z80AssemblyContext context;
+    private boolean exited;
+
+    BlockState(@Nonnull Z80AssemblyContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public final boolean hasNext() {
+        if (this.exited) {
+            return false;
+        }
+
+        if (this.hasNextCore()) {
+            return true;
+        }
+
+        this.exited = true;
+        this.exit();
+        this.context.exitBlock(this);
+        return false;
+    }
+
+    @Override
+    public final Iterator<SourceLocation> iterator() {
+        return this;
+    }
+
+    @Override
+    public final SourceLocation next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        return this.nextCore();
+    }
+
+    @Override
+    public final void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Called when the block has no more source locations to assemble, before the block state is removed from the block stack.
+     */
+    void exit() {
+    }
+
+    /**
+     * Determines whether the block has more source locations to assemble.
+     *
+     * @return <code>true</code> if {@link #nextCore()} can be called, otherwise <code>false</code>
+     */
+    abstract boolean hasNextCore();
+
+    /**
+     * Gets the next source location to assemble in this block.
+     *
+     * @return the next source location
+     */
+    @Nonnull
+    abstract SourceLocation nextCore();
+
+}
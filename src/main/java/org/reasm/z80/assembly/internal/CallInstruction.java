@@ -13,7 +13,7 @@ import org.reasm.z80.messages.InvalidConditionErrorMessage;
  * @author Francis Gagné
  */
 @Immutable
-class CallInstruction extends Mnemonic {
+class CallInstruction extends Instruction {
 
     @Nonnull
     static final CallInstruction CALL = new CallInstruction();
@@ -44,7 +44,7 @@ class CallInstruction extends Mnemonic {
             }
 
             context.appendByte((byte) (0b11_000_100 | (condition == null ? 0 : condition.ordinal() << 3)));
-            context.appendWord(valueToWord(ea.immediate, context));
+            context.appendImmediateWord(ea);
         } else if (context.numberOfOperands >= 1) {
             // CALL nn
             final EffectiveAddress ea = context.ea0;
@@ -56,7 +56,7 @@ class CallInstruction extends Mnemonic {
             }
 
             context.appendByte((byte) 0b11_001_101);
-            context.appendWord(valueToWord(ea.immediate, context));
+            context.appendImmediateWord(ea);
         } else {
             context.appendByte((byte) 0x00);
         }
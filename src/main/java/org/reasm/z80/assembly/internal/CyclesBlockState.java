@@ -0,0 +1,59 @@
+package org.reasm.z80.assembly.internal;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.reasm.source.SourceLocation;
+import org.reasm.z80.messages.CycleBudgetErrorMessage;
+
+/**
+ * The state of a <code>CYCLES</code> block. The block adds up the T-states of the instructions assembled in it, including those
+ * in nested blocks, and checks the total against the budget set by the <code>CYCLES</code> directive when the
+ * <code>ENDCYCLES</code> directive is reached.
+ *
+ * @author Francis Gagné
+ */
+final class CyclesBlockState extends BasicBlockState {
+
+    @CheckForNull
+    final CyclesBlockState previousCyclesBlock;
+    long cycles;
+    private boolean hasBudget;
+    private long minimum;
+    private long maximum;
+
+    CyclesBlockState(@Nonnull Z80AssemblyContext context, @Nonnull SourceLocation sourceLocation) {
+        super(context, sourceLocation);
+        this.previousCyclesBlock = context.cyclesBlock;
+        context.cyclesBlock = this;
+    }
+
+    @Override
+    void exit() {
+        this.context.cyclesBlock = this.previousCyclesBlock;
+    }
+
+    /**
+     * Reports an error if the T-states taken by the instructions in the block are outside of the block's budget.
+     */
+    void check() {
+        if (this.hasBudget && (this.cycles < this.minimum || this.cycles > this.maximum)) {
+            this.context.addTentativeMessage(new CycleBudgetErrorMessage(this.cycles, this.minimum, this.maximum));
+        }
+    }
+
+    /**
+     * Sets the budget of the block.
+     *
+     * @param minimum
+     *            the minimum number of T-states
+     * @param maximum
+     *            the maximum number of T-states
+     */
+    void setBudget(long minimum, long maximum) {
+        this.hasBudget = true;
+        this.minimum = minimum;
+        this.maximum = maximum;
+    }
+
+}
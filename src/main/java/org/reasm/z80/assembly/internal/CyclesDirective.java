@@ -0,0 +1,69 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.reasm.expressions.Expression;
+import org.reasm.z80.messages.InvalidCycleBudgetErrorMessage;
+
+/**
+ * The <code>CYCLES</code> directive.
+ * <p>
+ * A <code>CYCLES</code> block checks the number of T-states taken by the straight-line code in it. With one operand, the
+ * instructions in the block must take at most that many T-states; with two operands, they must take between the first and the
+ * second operand, inclusive, so <code>CYCLES n,n</code> requires exactly <code>n</code> T-states; the first operand must not be
+ * greater than the second. Conditional branches are counted as not taken and repeating block instructions are counted as
+ * terminating, i.e. the block is timed along its fall-through path. Instructions in a <code>TRANSFORM</code> block are not
+ * counted.
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+class CyclesDirective extends Mnemonic {
+
+    @Nonnull
+    static final CyclesDirective CYCLES = new CyclesDirective();
+
+    private CyclesDirective() {
+    }
+
+    @Override
+    void assemble(Z80AssemblyContext context) throws IOException {
+        final CyclesBlockState cyclesBlock = context.getCurrentBlock(CyclesBlockState.class);
+        if (cyclesBlock == null) {
+            return;
+        }
+
+        if (context.numberOfOperands < 1 || context.numberOfOperands > 2) {
+            context.addWrongNumberOfOperandsErrorMessage();
+            return;
+        }
+
+        final Expression first = context.parseExpression(0);
+        if (first == null) {
+            return;
+        }
+
+        final long firstValue = valueToQword(first.evaluate(context.getEvaluationContext()), context);
+        if (context.numberOfOperands == 1) {
+            cyclesBlock.setBudget(0, firstValue);
+            return;
+        }
+
+        final Expression second = context.parseExpression(1);
+        if (second == null) {
+            return;
+        }
+
+        final long secondValue = valueToQword(second.evaluate(context.getEvaluationContext()), context);
+        if (firstValue > secondValue) {
+            context.addTentativeMessage(new InvalidCycleBudgetErrorMessage(firstValue, secondValue));
+            return;
+        }
+
+        cyclesBlock.setBudget(firstValue, secondValue);
+    }
+
+}
@@ -0,0 +1,96 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * A reusable buffer that accumulates the data emitted by a data directive, so that the data for the whole line can be appended to
+ * the output at once.
+ *
+ * @author Francis Gagné
+ */
+final class DataBuffer {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    @Nonnull
+    private byte[] data = new byte[INITIAL_CAPACITY];
+    private int length;
+    @CheckForNull
+    private CharsetEncoder encoder;
+
+    /**
+     * Appends the data in this buffer to the output of the specified context and clears the buffer.
+     *
+     * @param context
+     *            the assembly context
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    void appendTo(@Nonnull Z80AssemblyContext context) throws IOException {
+        if (this.length != 0) {
+            context.appendBytes(this.data, 0, this.length);
+            this.length = 0;
+        }
+    }
+
+    void clear() {
+        this.length = 0;
+    }
+
+    int getLength() {
+        return this.length;
+    }
+
+    void put(byte value) {
+        if (this.length == this.data.length) {
+            this.ensureCapacity(this.length + 1);
+        }
+
+        this.data[this.length++] = value;
+    }
+
+    void putString(@Nonnull String value, @Nonnull Charset encoding) {
+        // The encoder is kept for as long as the encoding doesn't change.
+        CharsetEncoder encoder = this.encoder;
+        if (encoder == null || !encoder.charset().equals(encoding)) {
+            encoder = encoding.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.encoder = encoder;
+        }
+
+        encoder.reset();
+        final CharBuffer in = CharBuffer.wrap(value);
+        this.ensureCapacity(this.length + (int) (value.length() * encoder.maxBytesPerChar()));
+
+        final ByteBuffer out = ByteBuffer.wrap(this.data, this.length, this.data.length - this.length);
+        CoderResult result = encoder.encode(in, out, true);
+        if (result.isUnderflow()) {
+            result = encoder.flush(out);
+        }
+
+        assert !result.isOverflow() : "The capacity was computed from maxBytesPerChar()";
+        this.length = out.position();
+    }
+
+    void putWord(short value) {
+        this.put((byte) value);
+        this.put((byte) (value >>> 8));
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > this.data.length) {
+            this.data = Arrays.copyOf(this.data, Math.max(minCapacity, this.data.length * 2));
+        }
+    }
+
+}
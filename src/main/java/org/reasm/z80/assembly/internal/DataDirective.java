@@ -0,0 +1,89 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.reasm.Value;
+import org.reasm.commons.messages.ValueOutOfRangeErrorMessage;
+import org.reasm.expressions.Expression;
+
+/**
+ * The <code>DB</code>, <code>DEFB</code>, <code>DEFM</code>, <code>DW</code> and <code>DEFW</code> directives.
+ * <p>
+ * Each operand is evaluated and converted to data of the directive's element size. For byte-sized directives, a string operand
+ * emits all of its characters, encoded with the current encoding. The data for the whole line is accumulated in the context's
+ * {@link DataBuffer} and appended to the output at once.
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+class DataDirective extends Mnemonic {
+
+    @Nonnull
+    static final DataDirective BYTE = new DataDirective(false);
+    @Nonnull
+    static final DataDirective WORD = new DataDirective(true);
+
+    private final boolean word;
+
+    private DataDirective(boolean word) {
+        this.word = word;
+    }
+
+    @Override
+    void assemble(final Z80AssemblyContext context) throws IOException {
+        if (context.numberOfOperands == 0) {
+            context.addWrongNumberOfOperandsErrorMessage();
+            return;
+        }
+
+        final DataBuffer buffer = context.dataBuffer;
+        buffer.clear();
+
+        for (int i = 0; i < context.numberOfOperands; i++) {
+            final Expression expression = context.parseExpression(i);
+            final Value value;
+            if (expression == null || this.word && context.deferEvaluation()) {
+                // In the sizing pass, words are emitted as 0; their values are evaluated in the emission pass.
+                value = null;
+            } else {
+                value = expression.evaluate(context.getEvaluationContext());
+            }
+
+            context.addRelocation(expression, context.getOutputLength() + buffer.getLength(), this.word ? 2 : 1);
+
+            if (this.word) {
+                buffer.putWord(value == null ? 0 : valueToWord(value, context));
+            } else {
+                Value.accept(value, new IntegerValueVisitor<Void>(context) {
+                    @Override
+                    public Void visitString(String value) {
+                        buffer.putString(value, context.encoding);
+                        return null;
+                    }
+
+                    @Override
+                    public Void visitUndetermined() {
+                        buffer.put((byte) 0);
+                        return null;
+                    }
+
+                    @Override
+                    public Void visitUnsignedInt(long value) {
+                        if (value < -0x80 || value > 0xFF) {
+                            this.assemblyMessageConsumer.accept(new ValueOutOfRangeErrorMessage(value));
+                        }
+
+                        buffer.put((byte) value);
+                        return null;
+                    }
+                });
+            }
+        }
+
+        buffer.appendTo(context);
+    }
+
+}
@@ -11,7 +11,7 @@ import javax.annotation.concurrent.Immutable;
  * @author Francis Gagné
  */
 @Immutable
-class DjnzInstruction extends Mnemonic {
+class DjnzInstruction extends Instruction {
 
     @Nonnull
     static final DjnzInstruction DJNZ = new DjnzInstruction();
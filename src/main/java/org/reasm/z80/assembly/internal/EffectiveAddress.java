@@ -79,10 +79,38 @@ final class EffectiveAddress {
     static void getEffectiveAddress(@Nonnull Tokenizer tokenizer, @CheckForNull SymbolLookup symbolLookup,
             @Nonnull EvaluationContext evaluationContext, @Nonnull Charset encoding,
             @Nonnull Consumer<AssemblyMessage> assemblyMessageConsumer, @Nonnull EffectiveAddress result) {
+        getEffectiveAddress(tokenizer, symbolLookup, evaluationContext, encoding, assemblyMessageConsumer, false, result);
+    }
+
+    /**
+     * Identifies the effective address of an operand.
+     *
+     * @param tokenizer
+     *            the tokenizer to read the operand's tokens from
+     * @param symbolLookup
+     *            an object that looks up symbols by name
+     * @param evaluationContext
+     *            the context in which the immediate value or displacement is evaluated
+     * @param encoding
+     *            the encoding used to convert strings to integers
+     * @param assemblyMessageConsumer
+     *            a {@link Consumer} that will receive the {@link AssemblyMessage}s generated while parsing and evaluating the
+     *            operand
+     * @param sizeOnly
+     *            <code>true</code> to only classify the operand, without evaluating its immediate value or displacement;
+     *            {@link #deferred} is then set if a value was left unevaluated
+     * @param result
+     *            the {@link EffectiveAddress} that receives the result
+     */
+    static void getEffectiveAddress(@Nonnull Tokenizer tokenizer, @CheckForNull SymbolLookup symbolLookup,
+            @Nonnull EvaluationContext evaluationContext, @Nonnull Charset encoding,
+            @Nonnull Consumer<AssemblyMessage> assemblyMessageConsumer, boolean sizeOnly, @Nonnull EffectiveAddress result) {
         // Clear the result.
         result.addressingMode = null;
         result.immediate = null;
         result.displacement = 0;
+        result.deferred = false;
+        result.expression = null;
 
         // Parse the expression as an operand.
         final Expression expression;
@@ -128,6 +156,11 @@ final class EffectiveAddress {
                         final boolean ix = identifier.equalsIgnoreCase("IX");
                         if (ix || identifier.equalsIgnoreCase("IY")) {
                             result.addressingMode = ix ? AddressingMode.REGISTER_IX_INDEXED : AddressingMode.REGISTER_IY_INDEXED;
+                            if (sizeOnly) {
+                                result.deferred = true;
+                                return;
+                            }
+
                             result.displacement = getDisplacement(binaryOperatorExpression.getOperand2()
                                     .evaluate(evaluationContext), subtraction, encoding, assemblyMessageConsumer);
                             return;
@@ -137,12 +170,23 @@ final class EffectiveAddress {
             }
 
             result.addressingMode = AddressingMode.IMMEDIATE_INDIRECT;
-            result.immediate = expression.evaluate(evaluationContext);
+            evaluateImmediate(expression, evaluationContext, sizeOnly, result);
             return;
         }
 
         result.addressingMode = AddressingMode.IMMEDIATE;
-        result.immediate = expression.evaluate(evaluationContext);
+        evaluateImmediate(expression, evaluationContext, sizeOnly, result);
+    }
+
+    private static void evaluateImmediate(@Nonnull Expression expression, @Nonnull EvaluationContext evaluationContext,
+            boolean sizeOnly, @Nonnull EffectiveAddress result) {
+        result.expression = expression;
+        if (sizeOnly) {
+            // The size of an instruction never depends on the value of its immediate operand, so the value is left undetermined.
+            result.deferred = true;
+        } else {
+            result.immediate = expression.evaluate(evaluationContext);
+        }
     }
 
     private static byte getDisplacement(@CheckForNull Value value, final boolean negate, @Nonnull final Charset encoding,
@@ -184,5 +228,9 @@ final class EffectiveAddress {
     AddressingMode addressingMode;
     Value immediate;
     byte displacement;
+    // Indicates that the immediate value or the displacement was not evaluated.
+    boolean deferred;
+    // The expression of the immediate value, used to determine its relocation in object files.
+    Expression expression;
 
 }
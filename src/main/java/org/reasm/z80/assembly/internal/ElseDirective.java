@@ -0,0 +1,33 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The <code>ELSE</code> directive.
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+class ElseDirective extends Mnemonic {
+
+    @Nonnull
+    static final ElseDirective ELSE = new ElseDirective();
+
+    private ElseDirective() {
+    }
+
+    @Override
+    void assemble(Z80AssemblyContext context) throws IOException {
+        context.requireNumberOfOperands(0);
+
+        // The ELSE clause is only reached when no other clause was met.
+        final IfBlockState ifBlock = context.getCurrentBlock(IfBlockState.class);
+        if (ifBlock != null) {
+            ifBlock.conditionMet = true;
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The <code>ENDCYCLES</code> directive.
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+class EndCyclesDirective extends Mnemonic {
+
+    @Nonnull
+    static final EndCyclesDirective ENDCYCLES = new EndCyclesDirective();
+
+    private EndCyclesDirective() {
+    }
+
+    @Override
+    void assemble(Z80AssemblyContext context) throws IOException {
+        context.requireNumberOfOperands(0);
+
+        final CyclesBlockState cyclesBlock = context.getCurrentBlock(CyclesBlockState.class);
+        if (cyclesBlock != null) {
+            cyclesBlock.check();
+        }
+    }
+
+}
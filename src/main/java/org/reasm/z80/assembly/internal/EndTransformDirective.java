@@ -0,0 +1,32 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The <code>ENDTRANSFORM</code> directive.
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+class EndTransformDirective extends Mnemonic {
+
+    @Nonnull
+    static final EndTransformDirective ENDTRANSFORM = new EndTransformDirective();
+
+    private EndTransformDirective() {
+    }
+
+    @Override
+    void assemble(Z80AssemblyContext context) throws IOException {
+        context.requireNumberOfOperands(0);
+
+        final TransformBlockState transformBlock = context.getCurrentBlock(TransformBlockState.class);
+        if (transformBlock != null) {
+            transformBlock.finish();
+        }
+    }
+
+}
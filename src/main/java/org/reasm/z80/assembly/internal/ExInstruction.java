@@ -11,7 +11,7 @@ import javax.annotation.concurrent.Immutable;
  * @author Francis Gagné
  */
 @Immutable
-class ExInstruction extends Mnemonic {
+class ExInstruction extends Instruction {
 
     @Nonnull
     static final ExInstruction EX = new ExInstruction();
@@ -0,0 +1,55 @@
+package org.reasm.z80.assembly.internal;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.reasm.Function;
+import org.reasm.ValueVisitor;
+
+/**
+ * Gets the value of a signed or unsigned integer value. Unlike {@link IntegerValueVisitor}, other kinds of values are not
+ * converted: the visitor returns <code>null</code> for them, and doesn't generate messages.
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+public final class ExactIntegerValueVisitor implements ValueVisitor<Long> {
+
+    /** The single instance of this class. */
+    @Nonnull
+    public static final ExactIntegerValueVisitor INSTANCE = new ExactIntegerValueVisitor();
+
+    private ExactIntegerValueVisitor() {
+    }
+
+    @Override
+    public final Long visitFloat(double value) {
+        return null;
+    }
+
+    @Override
+    public final Long visitFunction(Function value) {
+        return null;
+    }
+
+    @Override
+    public final Long visitSignedInt(long value) {
+        return value;
+    }
+
+    @Override
+    public final Long visitString(String value) {
+        return null;
+    }
+
+    @Override
+    public final Long visitUndetermined() {
+        return null;
+    }
+
+    @Override
+    public final Long visitUnsignedInt(long value) {
+        return value;
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.reasm.SignedIntValue;
+import org.reasm.SymbolContext;
+import org.reasm.SymbolType;
+import org.reasm.UnsignedIntValue;
+import org.reasm.Value;
+import org.reasm.expressions.Expression;
+
+/**
+ * The <code>FOR</code> directive.
+ * <p>
+ * The syntax is <code>counter FOR start, end[, step]</code>. The labels on the line name the counter variables. The start, end and
+ * step values are evaluated once when the loop is entered.
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+class ForDirective extends Mnemonic {
+
+    @Nonnull
+    static final ForDirective FOR = new ForDirective();
+
+    private ForDirective() {
+    }
+
+    @Override
+    void assemble(Z80AssemblyContext context) throws IOException {
+        final LoopBlockState loop = context.getCurrentBlock(LoopBlockState.class);
+        if (loop == null) {
+            return;
+        }
+
+        if (!loop.initialized) {
+            loop.initialized = true;
+            if (context.numberOfOperands != 2 && context.numberOfOperands != 3) {
+                context.addWrongNumberOfOperandsErrorMessage();
+                return;
+            }
+
+            final Expression start = context.parseExpression(0);
+            final Expression end = context.parseExpression(1);
+            final Expression step = context.numberOfOperands >= 3 ? context.parseExpression(2) : null;
+            if (start == null || end == null || context.numberOfOperands >= 3 && step == null) {
+                return;
+            }
+
+            final String[] counterNames = new String[context.numberOfLabels];
+            for (int i = 0; i < counterNames.length; i++) {
+                counterNames[i] = context.getLabelText(i);
+            }
+
+            loop.counterNames = counterNames;
+            loop.counter = valueToQword(start.evaluate(context.getEvaluationContext()), context);
+            loop.counterEnd = valueToQword(end.evaluate(context.getEvaluationContext()), context);
+            loop.counterStep = step == null ? 1 : valueToQword(step.evaluate(context.getEvaluationContext()), context);
+        } else {
+            if (loop.counterNames == null) {
+                return;
+            }
+
+            loop.counter += loop.counterStep;
+        }
+
+        final long counter = loop.counter;
+        if (loop.counterStep >= 0 ? counter > loop.counterEnd : counter < loop.counterEnd) {
+            return;
+        }
+
+        loop.continueLoop = loop.startIteration();
+        if (loop.continueLoop) {
+            final Value value = counter < 0 ? new SignedIntValue(counter) : new UnsignedIntValue(counter);
+            for (String counterName : loop.counterNames) {
+                context.defineSymbol(SymbolContext.VALUE, counterName, SymbolType.VARIABLE, value);
+            }
+        }
+    }
+
+    @Override
+    void defineLabels(Z80AssemblyContext context) {
+        // The labels are the counter variables; they are defined in assemble().
+    }
+
+}
@@ -0,0 +1,112 @@
+package org.reasm.z80.assembly.internal;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.reasm.source.SourceLocation;
+
+/**
+ * The state of an <code>IF</code> block.
+ * <p>
+ * The child nodes of an <code>IF</code> block alternate between a directive (<code>IF</code>, <code>ELSEIF</code> or
+ * <code>ELSE</code>) and the body of that clause, and end with the <code>ENDIF</code> directive if the block is closed. The
+ * directives of the clauses are assembled in order until one of them is met; only the body of that clause is visited. The bodies
+ * of the other clauses are skipped as whole subtrees.
+ *
+ * @author Francis Gagné
+ */
+final class IfBlockState extends BlockState {
+
+    private enum Position {
+        CLAUSE, AFTER_CLAUSE, BODY, END, DONE
+    }
+
+    @Nonnull
+    private final List<SourceLocation> childNodes;
+    @Nonnull
+    private Position position = Position.CLAUSE;
+    private int clauseIndex;
+    @Nonnull
+    private Iterator<SourceLocation> bodyIterator = Collections.emptyIterator();
+
+    // Set by the directive of the current clause.
+    boolean conditionMet;
+
+    IfBlockState(@Nonnull Z80AssemblyContext context, @Nonnull SourceLocation sourceLocation) {
+        super(context);
+        this.childNodes = getChildNodes(sourceLocation);
+    }
+
+    @Override
+    boolean hasNextCore() {
+        final int numberOfChildNodes = this.childNodes.size();
+        for (;;) {
+            switch (this.position) {
+            case CLAUSE:
+                // A clause directive is always followed by its body.
+                if (this.clauseIndex + 1 < numberOfChildNodes) {
+                    return true;
+                }
+
+                this.position = Position.END;
+                break;
+
+            case AFTER_CLAUSE:
+                if (this.conditionMet) {
+                    this.bodyIterator = this.childNodes.get(this.clauseIndex + 1).getChildNodes().iterator();
+                    this.position = Position.BODY;
+                } else {
+                    this.clauseIndex += 2;
+                    this.position = Position.CLAUSE;
+                }
+
+                break;
+
+            case BODY:
+                if (this.bodyIterator.hasNext()) {
+                    return true;
+                }
+
+                this.position = Position.END;
+                break;
+
+            case END:
+                // The ENDIF directive is present if there is an odd number of child nodes.
+                if ((numberOfChildNodes & 1) != 0) {
+                    return true;
+                }
+
+                this.position = Position.DONE;
+                break;
+
+            default:
+                return false;
+            }
+        }
+    }
+
+    @Override
+    SourceLocation nextCore() {
+        switch (this.position) {
+        case CLAUSE:
+            // The directive of the clause decides whether the clause's body is assembled.
+            this.position = Position.AFTER_CLAUSE;
+            this.conditionMet = false;
+            return this.childNodes.get(this.clauseIndex);
+
+        case BODY:
+            return this.bodyIterator.next();
+
+        case END:
+            this.position = Position.DONE;
+            return this.childNodes.get(this.childNodes.size() - 1);
+
+        default:
+            throw new AssertionError(); // unreachable
+        }
+    }
+
+}
@@ -0,0 +1,217 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.reasm.SignedIntValue;
+import org.reasm.Symbol;
+import org.reasm.SymbolType;
+import org.reasm.UnsignedIntValue;
+import org.reasm.Value;
+import org.reasm.expressions.BinaryOperatorExpression;
+import org.reasm.expressions.Expression;
+import org.reasm.expressions.GroupingExpression;
+import org.reasm.expressions.IdentifierExpression;
+import org.reasm.expressions.SymbolLookup;
+import org.reasm.expressions.UnaryOperatorExpression;
+import org.reasm.expressions.ValueExpression;
+import org.reasm.source.SourceNode;
+
+/**
+ * The <code>IF</code> and <code>ELSEIF</code> directives.
+ * <p>
+ * When the condition only consists of literals, operators and identifiers that refer to constants with an integer value, its
+ * result can only change from one pass to the next if the value of one of the constants changes. The result is remembered for the
+ * directive's source node with the values of the constants; as long as the constants keep the same values, the condition is not
+ * parsed or evaluated again.
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+class IfDirective extends Mnemonic {
+
+    /**
+     * The result of a condition that only consists of literals, operators and constants, with the values of the constants that
+     * were read to evaluate it.
+     */
+    @Immutable
+    static final class ConstantCondition {
+
+        final boolean result;
+        @Nonnull
+        private final String[] identifiers;
+        @Nonnull
+        private final Value[] values;
+
+        ConstantCondition(boolean result, @Nonnull String[] identifiers, @Nonnull Value[] values) {
+            this.result = result;
+            this.identifiers = identifiers;
+            this.values = values;
+        }
+
+        /**
+         * Determines whether the constants of the condition still have the same values. The constants are looked up like the
+         * evaluation of the condition would look them up.
+         *
+         * @param context
+         *            the assembly context
+         * @return <code>true</code> if the result of the condition can be reused, otherwise <code>false</code>
+         */
+        boolean isUpToDate(@Nonnull Z80AssemblyContext context) {
+            if (this.identifiers.length == 0) {
+                return true;
+            }
+
+            final SymbolLookup symbolLookup = context.createSymbolLookup();
+            for (int i = 0; i < this.identifiers.length; i++) {
+                final Value value = getConstantValue(symbolLookup.getSymbol(this.identifiers[i]));
+                if (value == null || value.getClass() != this.values[i].getClass()
+                        || !Value.accept(value, ExactIntegerValueVisitor.INSTANCE).equals(
+                                Value.accept(this.values[i], ExactIntegerValueVisitor.INSTANCE))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+    }
+
+    // Records the symbols that are looked up while a condition is evaluated.
+    @NotThreadSafe
+    private static final class RecordingSymbolLookup implements SymbolLookup {
+
+        @Nonnull
+        final SymbolLookup symbolLookup;
+        @Nonnull
+        final ArrayList<String> identifiers = new ArrayList<>();
+        @Nonnull
+        final ArrayList<Symbol> symbols = new ArrayList<>();
+
+        RecordingSymbolLookup(@Nonnull SymbolLookup symbolLookup) {
+            this.symbolLookup = symbolLookup;
+        }
+
+        @Override
+        public final Symbol getSymbol(String name) {
+            final Symbol symbol = this.symbolLookup.getSymbol(name);
+            this.identifiers.add(name);
+            this.symbols.add(symbol);
+            return symbol;
+        }
+
+    }
+
+    @Nonnull
+    static final IfDirective ELSEIF = new IfDirective();
+    @Nonnull
+    static final IfDirective IF = new IfDirective();
+
+    private static boolean evaluateCondition(@Nonnull Z80AssemblyContext context) {
+        final SourceNode sourceNode = context.sourceLocation.getSourceNode();
+        final ConstantCondition constantCondition = context.constantConditions.get(sourceNode);
+        if (constantCondition != null && constantCondition.isUpToDate(context)) {
+            return constantCondition.result;
+        }
+
+        if (!context.requireNumberOfOperands(1)) {
+            return false;
+        }
+
+        final RecordingSymbolLookup symbolLookup = new RecordingSymbolLookup(context.createSymbolLookup());
+        final Expression condition = context.parseExpression(0, symbolLookup);
+        if (condition == null) {
+            return false;
+        }
+
+        final Value value = condition.evaluate(context.getEvaluationContext());
+        final boolean result = valueToBoolean(value, context);
+
+        // Integer values convert to a boolean without generating messages, so the result can be reused as is. Every identifier
+        // must have been looked up during the evaluation; otherwise, the result might depend on a symbol that is not checked.
+        final ArrayList<String> identifiers = new ArrayList<>();
+        if ((value instanceof UnsignedIntValue || value instanceof SignedIntValue) && isConstant(condition, identifiers)
+                && symbolLookup.identifiers.containsAll(identifiers)) {
+            final int numberOfSymbols = symbolLookup.symbols.size();
+            final Value[] values = new Value[numberOfSymbols];
+            for (int i = 0; i < numberOfSymbols; i++) {
+                values[i] = getConstantValue(symbolLookup.symbols.get(i));
+                if (values[i] == null) {
+                    context.constantConditions.remove(sourceNode);
+                    return result;
+                }
+            }
+
+            context.constantConditions.put(sourceNode,
+                    new ConstantCondition(result, symbolLookup.identifiers.toArray(new String[numberOfSymbols]), values));
+        } else {
+            context.constantConditions.remove(sourceNode);
+        }
+
+        return result;
+    }
+
+    // Gets the value of a symbol if it is a constant with an integer value.
+    @CheckForNull
+    private static Value getConstantValue(@CheckForNull Symbol symbol) {
+        if (symbol == null || symbol.getType() != SymbolType.CONSTANT) {
+            return null;
+        }
+
+        final Object value = symbol.getValue();
+        if (value instanceof UnsignedIntValue || value instanceof SignedIntValue) {
+            return (Value) value;
+        }
+
+        return null;
+    }
+
+    // Determines whether an expression only consists of literals, operators and identifiers, and collects its identifiers. The
+    // symbols referenced by the identifiers are checked after the evaluation.
+    private static boolean isConstant(@CheckForNull Expression expression, @Nonnull ArrayList<String> identifiers) {
+        if (expression instanceof ValueExpression) {
+            return true;
+        }
+
+        if (expression instanceof IdentifierExpression) {
+            identifiers.add(((IdentifierExpression) expression).getIdentifier());
+            return true;
+        }
+
+        if (expression instanceof GroupingExpression) {
+            return isConstant(((GroupingExpression) expression).getChildExpression(), identifiers);
+        }
+
+        if (expression instanceof UnaryOperatorExpression) {
+            return isConstant(((UnaryOperatorExpression) expression).getOperand(), identifiers);
+        }
+
+        if (expression instanceof BinaryOperatorExpression) {
+            final BinaryOperatorExpression binaryOperatorExpression = (BinaryOperatorExpression) expression;
+            return isConstant(binaryOperatorExpression.getOperand1(), identifiers)
+                    && isConstant(binaryOperatorExpression.getOperand2(), identifiers);
+        }
+
+        // The program counter and function calls may evaluate differently on each pass.
+        return false;
+    }
+
+    private IfDirective() {
+    }
+
+    @Override
+    void assemble(Z80AssemblyContext context) throws IOException {
+        final boolean conditionMet = evaluateCondition(context);
+
+        final IfBlockState ifBlock = context.getCurrentBlock(IfBlockState.class);
+        if (ifBlock != null) {
+            ifBlock.conditionMet = conditionMet;
+        }
+    }
+
+}
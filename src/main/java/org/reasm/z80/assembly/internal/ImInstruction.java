@@ -13,7 +13,7 @@ import org.reasm.z80.messages.InvalidImmediateModeErrorMessage;
  * @author Francis Gagné
  */
 @Immutable
-class ImInstruction extends Mnemonic {
+class ImInstruction extends Instruction {
 
     @Nonnull
     static final ImInstruction IM = new ImInstruction();
@@ -11,7 +11,7 @@ import javax.annotation.concurrent.Immutable;
  * @author Francis Gagné
  */
 @Immutable
-class InOutInstruction extends Mnemonic {
+class InOutInstruction extends Instruction {
 
     @Nonnull
     static final InOutInstruction IN = new InOutInstruction(0b11_011_011, 0b01_000_000, 0, 1);
@@ -47,7 +47,7 @@ class InOutInstruction extends Mnemonic {
             // IN A, (n)
             // OUT (n), A
             context.appendByte((byte) this.fixedPortOpcode);
-            context.appendByte(valueToByte(ea1.immediate, context));
+            context.appendImmediateByte(ea1);
             return;
         }
 
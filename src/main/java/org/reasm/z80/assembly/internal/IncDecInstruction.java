@@ -14,7 +14,7 @@ import com.google.common.collect.ImmutableList;
  * @author Francis Gagné
  */
 @Immutable
-class IncDecInstruction extends Mnemonic {
+class IncDecInstruction extends Instruction {
 
     @Nonnull
     static final IncDecInstruction INC = new IncDecInstruction(0b00_000_100, 0b00_000_011);
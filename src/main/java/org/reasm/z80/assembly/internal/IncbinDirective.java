@@ -0,0 +1,112 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.reasm.commons.messages.ValueOutOfRangeErrorMessage;
+import org.reasm.expressions.Expression;
+import org.reasm.z80.Z80AssemblyListener;
+import org.reasm.z80.messages.FileReadErrorMessage;
+
+/**
+ * The <code>INCBIN</code> directive.
+ * <p>
+ * The syntax is <code>INCBIN "file"[, offset[, length]]</code>. The directive emits the contents of the file, starting at
+ * <code>offset</code> (default: 0) and spanning <code>length</code> bytes (default: up to the end of the file).
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+class IncbinDirective extends Mnemonic {
+
+    @Nonnull
+    static final IncbinDirective INCBIN = new IncbinDirective();
+
+    private IncbinDirective() {
+    }
+
+    @CheckForNull
+    private static Long evaluateBound(@Nonnull Z80AssemblyContext context, int operandIndex) {
+        final Expression expression = context.parseExpression(operandIndex);
+        if (expression == null) {
+            return null;
+        }
+
+        final long value = valueToQword(expression.evaluate(context.getEvaluationContext()), context);
+        if (value < 0) {
+            context.addMessage(new ValueOutOfRangeErrorMessage(value));
+            return null;
+        }
+
+        return value;
+    }
+
+    @Override
+    void assemble(Z80AssemblyContext context) throws IOException {
+        if (context.numberOfOperands < 1 || context.numberOfOperands > 3) {
+            context.addWrongNumberOfOperandsErrorMessage();
+            return;
+        }
+
+        final String filePath = context.evaluateFilePath(0);
+        if (filePath == null) {
+            return;
+        }
+
+        ByteBuffer contents;
+        try {
+            contents = context.binaryFileCache.get(filePath, context.builder.getAssembly().getConfiguration().getFileFetcher());
+        } catch (IOException e) {
+            contents = null;
+        }
+
+        if (contents == null) {
+            context.fileReadFailed(filePath, Z80AssemblyListener.FileKind.BINARY);
+            context.addMessage(new FileReadErrorMessage(filePath));
+            return;
+        }
+
+        context.fileRead(filePath, Z80AssemblyListener.FileKind.BINARY);
+
+        long offset = 0;
+        if (context.numberOfOperands >= 2) {
+            final Long value = evaluateBound(context, 1);
+            if (value == null) {
+                return;
+            }
+
+            offset = value;
+        }
+
+        long length = contents.limit() - offset;
+        if (context.numberOfOperands >= 3) {
+            final Long value = evaluateBound(context, 2);
+            if (value == null) {
+                return;
+            }
+
+            length = value;
+        }
+
+        if (offset > contents.limit()) {
+            context.addMessage(new ValueOutOfRangeErrorMessage(offset));
+            return;
+        }
+
+        // offset <= limit at this point, so the subtraction cannot overflow (unlike offset + length).
+        if (length > contents.limit() - offset) {
+            context.addMessage(new ValueOutOfRangeErrorMessage(length));
+            return;
+        }
+
+        // Select the requested region on the cached buffer's view; the data is passed on without being copied.
+        contents.position((int) offset);
+        contents.limit((int) (offset + length));
+        context.appendBuffer(contents);
+    }
+
+}
@@ -0,0 +1,70 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.reasm.FileFetcher;
+import org.reasm.source.SourceFile;
+import org.reasm.z80.Z80AssemblyListener;
+import org.reasm.z80.messages.FileReadErrorMessage;
+import org.reasm.z80.source.Z80ParseCache;
+
+/**
+ * The <code>INCLUDE</code> directive.
+ * <p>
+ * The syntax is <code>INCLUDE "file"</code>. The file is fetched through the configuration's {@link FileFetcher} and assembled as a
+ * child of the current file. Parsing the file goes through {@link Z80ParseCache}, so a file that is included by several assemblies
+ * is only parsed once.
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+class IncludeDirective extends Mnemonic {
+
+    @Nonnull
+    static final IncludeDirective INCLUDE = new IncludeDirective();
+
+    private IncludeDirective() {
+    }
+
+    @Override
+    void assemble(Z80AssemblyContext context) throws IOException {
+        if (!context.requireNumberOfOperands(1)) {
+            return;
+        }
+
+        final String filePath = context.evaluateFilePath(0);
+        if (filePath == null) {
+            return;
+        }
+
+        final FileFetcher fileFetcher = context.builder.getAssembly().getConfiguration().getFileFetcher();
+        SourceFile sourceFile = null;
+        if (fileFetcher != null) {
+            try {
+                sourceFile = fileFetcher.fetchSourceFile(filePath);
+            } catch (IOException e) {
+                sourceFile = null;
+            }
+        }
+
+        if (sourceFile == null) {
+            context.fileReadFailed(filePath, Z80AssemblyListener.FileKind.SOURCE);
+            context.addMessage(new FileReadErrorMessage(filePath));
+            return;
+        }
+
+        context.fileRead(filePath, Z80AssemblyListener.FileKind.SOURCE);
+
+        context.builder.enterChildFile(sourceFile, context.sourceLocation.getArchitecture());
+    }
+
+    @Override
+    boolean canReassembleInIsolation() {
+        // The lines of the included file follow this line in the assembly.
+        return false;
+    }
+
+}
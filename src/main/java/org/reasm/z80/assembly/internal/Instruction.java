@@ -0,0 +1,13 @@
+package org.reasm.z80.assembly.internal;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Base class for the Z80 instructions. The code emitted by an instruction is timed, and its timing is reported to the listeners
+ * of the assembly with the line.
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+abstract class Instruction extends Mnemonic {
+}
@@ -13,7 +13,7 @@ import org.reasm.z80.messages.InvalidConditionErrorMessage;
  * @author Francis Gagné
  */
 @Immutable
-class JpInstruction extends Mnemonic {
+class JpInstruction extends Instruction {
 
     @Nonnull
     static final JpInstruction JP = new JpInstruction();
@@ -44,7 +44,7 @@ class JpInstruction extends Mnemonic {
             }
 
             context.appendByte((byte) (0b11_000_010 | (condition == null ? 0 : condition.ordinal() << 3)));
-            context.appendWord(valueToWord(ea.immediate, context));
+            context.appendImmediateWord(ea);
         } else if (context.numberOfOperands >= 1) {
             final EffectiveAddress ea = context.ea0;
 
@@ -54,7 +54,7 @@ class JpInstruction extends Mnemonic {
             case IMMEDIATE:
                 // JP nn
                 context.appendByte((byte) 0b11_000_011);
-                context.appendWord(valueToWord(ea.immediate, context));
+                context.appendImmediateWord(ea);
                 return;
 
             case REGISTER_HL_INDIRECT:
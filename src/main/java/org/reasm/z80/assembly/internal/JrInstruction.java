@@ -14,12 +14,14 @@ import org.reasm.z80.messages.InvalidConditionErrorMessage;
  * @author Francis Gagné
  */
 @Immutable
-class JrInstruction extends Mnemonic {
+class JrInstruction extends Instruction {
 
     @Nonnull
     static final JrInstruction JR = new JrInstruction();
 
     static void appendJumpDisplacement(@Nonnull Z80AssemblyContext context, @Nonnull EffectiveAddress ea) throws IOException {
+        context.checkRelativeBranchTarget(ea);
+
         final long branchTarget = valueToQword(ea.immediate, context);
         final long branchDisplacement = branchTarget - context.programCounter - 2;
         if (branchDisplacement < -0x80 || branchDisplacement > 0x7F) {
@@ -12,7 +12,7 @@ import com.google.common.collect.ImmutableList;
  *
  * @author Francis Gagné
  */
-class LdInstruction extends Mnemonic {
+class LdInstruction extends Instruction {
 
     @Nonnull
     static final LdInstruction LD = new LdInstruction();
@@ -75,7 +75,7 @@ class LdInstruction extends Mnemonic {
                 // LD r, n
                 // LD (HL), n
                 context.appendByte((byte) (0b00_000_110 | addressingMode0.value << 3));
-                context.appendByte(valueToByte(ea1.immediate, context));
+                context.appendImmediateByte(ea1);
                 return;
             }
         }
@@ -102,7 +102,7 @@ class LdInstruction extends Mnemonic {
                 context.appendByte((byte) addressingMode0.value);
                 context.appendByte((byte) 0b00_110_110);
                 context.appendByte(ea0.displacement);
-                context.appendByte(valueToByte(ea1.immediate, context));
+                context.appendImmediateByte(ea1);
                 return;
             }
         }
@@ -123,7 +123,7 @@ class LdInstruction extends Mnemonic {
             if (addressingMode1 == AddressingMode.IMMEDIATE_INDIRECT) {
                 // LD A, (nn)
                 context.appendByte((byte) 0b00_111_010);
-                context.appendWord(valueToWord(ea1.immediate, context));
+                context.appendImmediateWord(ea1);
                 return;
             }
 
@@ -158,7 +158,7 @@ class LdInstruction extends Mnemonic {
             if (addressingMode0 == AddressingMode.IMMEDIATE_INDIRECT) {
                 // LD (nn), A
                 context.appendByte((byte) 0b00_110_010);
-                context.appendWord(valueToWord(ea0.immediate, context));
+                context.appendImmediateWord(ea0);
                 return;
             }
 
@@ -182,7 +182,7 @@ class LdInstruction extends Mnemonic {
             if (registerPair != -1) {
                 // LD dd, nn
                 context.appendByte((byte) (0b00_000_001 | registerPair << 4));
-                context.appendWord(valueToWord(ea1.immediate, context));
+                context.appendImmediateWord(ea1);
                 return;
             }
 
@@ -191,7 +191,7 @@ class LdInstruction extends Mnemonic {
                 // LD IY, nn
                 context.appendByte((byte) addressingMode0.value);
                 context.appendByte((byte) 0b00_100_001);
-                context.appendWord(valueToWord(ea1.immediate, context));
+                context.appendImmediateWord(ea1);
                 return;
             }
         }
@@ -200,7 +200,7 @@ class LdInstruction extends Mnemonic {
             if (addressingMode0 == AddressingMode.REGISTER_HL) {
                 // LD HL, (nn)
                 context.appendByte((byte) 0b00_101_010);
-                context.appendWord(valueToWord(ea1.immediate, context));
+                context.appendImmediateWord(ea1);
                 return;
             }
 
@@ -209,7 +209,7 @@ class LdInstruction extends Mnemonic {
                 // LD dd, (nn)
                 context.appendByte((byte) 0b11_101_101);
                 context.appendByte((byte) (0b01_001_011 | registerPair << 4));
-                context.appendWord(valueToWord(ea1.immediate, context));
+                context.appendImmediateWord(ea1);
                 return;
             }
 
@@ -218,7 +218,7 @@ class LdInstruction extends Mnemonic {
                 // LD IY, (nn)
                 context.appendByte((byte) addressingMode0.value);
                 context.appendByte((byte) 0b00_101_010);
-                context.appendWord(valueToWord(ea1.immediate, context));
+                context.appendImmediateWord(ea1);
                 return;
             }
         }
@@ -227,7 +227,7 @@ class LdInstruction extends Mnemonic {
             if (addressingMode1 == AddressingMode.REGISTER_HL) {
                 // LD (nn), HL
                 context.appendByte((byte) 0b00_100_010);
-                context.appendWord(valueToWord(ea0.immediate, context));
+                context.appendImmediateWord(ea0);
                 return;
             }
 
@@ -236,7 +236,7 @@ class LdInstruction extends Mnemonic {
                 // LD (nn), dd
                 context.appendByte((byte) 0b11_101_101);
                 context.appendByte((byte) (0b01_000_011 | registerPair << 4));
-                context.appendWord(valueToWord(ea0.immediate, context));
+                context.appendImmediateWord(ea0);
                 return;
             }
 
@@ -245,7 +245,7 @@ class LdInstruction extends Mnemonic {
                 // LD (nn), IY
                 context.appendByte((byte) addressingMode1.value);
                 context.appendByte((byte) 0b00_100_010);
-                context.appendWord(valueToWord(ea0.immediate, context));
+                context.appendImmediateWord(ea0);
                 return;
             }
         }
@@ -0,0 +1,75 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.reasm.SymbolContext;
+import org.reasm.SymbolType;
+import org.reasm.UnsignedIntValue;
+import org.reasm.z80.messages.ObjectFileDirectiveErrorMessage;
+
+/**
+ * The <code>EXTERN</code> and <code>PUBLIC</code> directives.
+ * <p>
+ * The syntax is <code>EXTERN name[,name...]</code> and <code>PUBLIC name[,name...]</code>. <code>EXTERN</code> declares symbols
+ * that are defined by another object file; they have the value 0 in this assembly, and the data that depends on them is relocated
+ * by the linker. <code>PUBLIC</code> exports symbols defined in this assembly to the other object files. These directives are only
+ * allowed in assemblies that produce an object file.
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+class LinkageDirective extends Mnemonic {
+
+    @Nonnull
+    static final LinkageDirective EXTERN = new LinkageDirective(Mnemonics.EXTERN, true);
+    @Nonnull
+    static final LinkageDirective PUBLIC = new LinkageDirective(Mnemonics.PUBLIC, false);
+
+    @Nonnull
+    private static final UnsignedIntValue ZERO = new UnsignedIntValue(0);
+
+    @Nonnull
+    private final String name;
+    private final boolean extern;
+
+    private LinkageDirective(@Nonnull String name, boolean extern) {
+        this.name = name;
+        this.extern = extern;
+    }
+
+    @Override
+    void assemble(Z80AssemblyContext context) throws IOException {
+        if (context.numberOfOperands == 0) {
+            context.addWrongNumberOfOperandsErrorMessage();
+            return;
+        }
+
+        final boolean objectFile = context.objectFileSymbols != null;
+        if (!objectFile) {
+            context.addMessage(new ObjectFileDirectiveErrorMessage(this.name));
+        }
+
+        for (int i = 0; i < context.numberOfOperands; i++) {
+            final String symbolName = context.getOperandText(i).trim();
+            if (this.extern) {
+                // Define the symbol, so that references to it are not reported as undefined.
+                final String fullyQualifiedName = context.defineSymbol(SymbolContext.VALUE, symbolName, SymbolType.CONSTANT, ZERO);
+                if (objectFile) {
+                    context.addExternalSymbol(fullyQualifiedName);
+                }
+            } else if (objectFile) {
+                context.addPublicSymbol(context.namespace.resolve(symbolName));
+            }
+        }
+    }
+
+    @Override
+    boolean canReassembleInIsolation() {
+        // EXTERN defines symbols.
+        return false;
+    }
+
+}
@@ -0,0 +1,170 @@
+package org.reasm.z80.assembly.internal;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.reasm.expressions.Expression;
+import org.reasm.source.SourceLocation;
+import org.reasm.z80.Z80AssemblyOptions;
+import org.reasm.z80.messages.LoopIterationLimitExceededErrorMessage;
+
+/**
+ * The state of a <code>WHILE</code>, <code>DO</code> or <code>FOR</code> block.
+ * <p>
+ * The expressions of the loop are parsed by the loop's directives the first time they are assembled and are stored in the block
+ * state, so that each subsequent iteration only needs to evaluate them again.
+ *
+ * @author Francis Gagné
+ */
+final class LoopBlockState extends BlockState {
+
+    private enum Position {
+        HEADER, AFTER_HEADER, BODY, FOOTER, AFTER_FOOTER, DONE
+    }
+
+    @Nonnull
+    private final SourceLocation header;
+    @CheckForNull
+    private final SourceLocation body;
+    @CheckForNull
+    private final SourceLocation footer;
+    private final boolean testAtEnd;
+    @Nonnull
+    private Position position = Position.HEADER;
+    @Nonnull
+    private Iterator<SourceLocation> bodyIterator = Collections.emptyIterator();
+    private int iterations;
+
+    // Set by the loop's directives.
+    boolean initialized;
+    boolean continueLoop;
+    @CheckForNull
+    Expression condition;
+    @CheckForNull
+    String[] counterNames;
+    long counter;
+    long counterEnd;
+    long counterStep;
+
+    /**
+     * Initializes a new LoopBlockState.
+     *
+     * @param context
+     *            the assembly context
+     * @param sourceLocation
+     *            the source location of the loop block
+     * @param testAtEnd
+     *            <code>true</code> if the loop's condition is on the directive that ends the block (<code>DO</code> blocks), or
+     *            <code>false</code> if the loop's condition is on the directive that starts the block (<code>WHILE</code> and
+     *            <code>FOR</code> blocks)
+     */
+    LoopBlockState(@Nonnull Z80AssemblyContext context, @Nonnull SourceLocation sourceLocation, boolean testAtEnd) {
+        super(context);
+        final List<SourceLocation> childNodes = getChildNodes(sourceLocation);
+        this.header = childNodes.get(0);
+        this.body = getChildNode(childNodes, 1);
+        this.footer = getChildNode(childNodes, 2);
+        this.testAtEnd = testAtEnd;
+
+        // The first iteration of a DO block is performed unconditionally.
+        this.iterations = testAtEnd ? 1 : 0;
+    }
+
+    @Override
+    boolean hasNextCore() {
+        for (;;) {
+            switch (this.position) {
+            case HEADER:
+                return true;
+
+            case AFTER_HEADER:
+                if (this.testAtEnd || this.continueLoop) {
+                    this.startBody();
+                } else {
+                    this.position = Position.FOOTER;
+                }
+
+                break;
+
+            case BODY:
+                if (this.bodyIterator.hasNext()) {
+                    return true;
+                }
+
+                this.position = this.testAtEnd ? Position.FOOTER : Position.HEADER;
+                break;
+
+            case FOOTER:
+                if (this.footer != null) {
+                    return true;
+                }
+
+                this.position = Position.DONE;
+                break;
+
+            case AFTER_FOOTER:
+                if (this.testAtEnd && this.continueLoop) {
+                    this.startBody();
+                } else {
+                    this.position = Position.DONE;
+                }
+
+                break;
+
+            default:
+                return false;
+            }
+        }
+    }
+
+    @Override
+    SourceLocation nextCore() {
+        switch (this.position) {
+        case HEADER:
+            // The directive on the header decides whether the loop continues.
+            this.position = Position.AFTER_HEADER;
+            this.continueLoop = false;
+            return this.header;
+
+        case BODY:
+            return this.bodyIterator.next();
+
+        case FOOTER:
+            // The directive on the footer decides whether the loop continues.
+            this.position = Position.AFTER_FOOTER;
+            this.continueLoop = false;
+            assert this.footer != null;
+            return this.footer;
+
+        default:
+            throw new AssertionError(); // unreachable
+        }
+    }
+
+    /**
+     * Counts a new iteration of the loop, reporting an error if the loop exceeds the
+     * {@linkplain Z80AssemblyOptions#getMaximumNumberOfLoopIterations() maximum number of iterations}.
+     *
+     * @return <code>true</code> if the iteration may proceed, or <code>false</code> if the iteration limit has been reached
+     */
+    boolean startIteration() {
+        final int maximumNumberOfIterations = this.context.maximumNumberOfLoopIterations;
+        if (this.iterations >= maximumNumberOfIterations) {
+            this.context.addMessage(new LoopIterationLimitExceededErrorMessage(maximumNumberOfIterations));
+            return false;
+        }
+
+        this.iterations++;
+        return true;
+    }
+
+    private void startBody() {
+        this.bodyIterator = this.body == null ? Collections.<SourceLocation> emptyIterator() : this.body.getChildNodes().iterator();
+        this.position = Position.BODY;
+    }
+
+}
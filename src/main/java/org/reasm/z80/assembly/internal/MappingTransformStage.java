@@ -0,0 +1,88 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * A transform stage that replaces each byte with the corresponding entry of a 256-byte table. Transformations such as XOR
+ * encryption or nibble swapping are implemented this way. The transformed bytes are accumulated in a fixed-size chunk that is
+ * passed to the next stage when it is full or at the end of each line.
+ *
+ * @author Francis Gagné
+ */
+final class MappingTransformStage extends TransformStage {
+
+    private static final int CHUNK_SIZE = 4096;
+
+    @Nonnull
+    static byte[] nibbleSwapTable() {
+        final byte[] table = new byte[256];
+        for (int i = 0; i < 256; i++) {
+            table[i] = (byte) (i << 4 | i >>> 4);
+        }
+
+        return table;
+    }
+
+    @Nonnull
+    static byte[] xorTable(byte key) {
+        final byte[] table = new byte[256];
+        for (int i = 0; i < 256; i++) {
+            table[i] = (byte) (i ^ key);
+        }
+
+        return table;
+    }
+
+    @Nonnull
+    private final byte[] table;
+    @Nonnull
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private int chunkLength;
+
+    MappingTransformStage(@Nonnull Z80AssemblyContext context, @CheckForNull TransformStage downstream, @Nonnull byte[] table) {
+        super(context, downstream);
+        this.table = table;
+    }
+
+    @Override
+    void flush() throws IOException {
+        if (this.chunkLength != 0) {
+            final int length = this.chunkLength;
+            this.chunkLength = 0;
+            this.emit(this.chunk, 0, length);
+        }
+    }
+
+    @Override
+    void write(byte value) throws IOException {
+        this.chunk[this.chunkLength++] = this.table[value & 0xFF];
+        if (this.chunkLength == CHUNK_SIZE) {
+            this.flush();
+        }
+    }
+
+    @Override
+    void write(byte[] data, int offset, int length) throws IOException {
+        final byte[] table = this.table;
+        final byte[] chunk = this.chunk;
+        while (length != 0) {
+            final int count = Math.min(length, CHUNK_SIZE - this.chunkLength);
+            int chunkLength = this.chunkLength;
+            for (int i = 0; i < count; i++) {
+                chunk[chunkLength++] = table[data[offset + i] & 0xFF];
+            }
+
+            this.chunkLength = chunkLength;
+            offset += count;
+            length -= count;
+
+            if (chunkLength == CHUNK_SIZE) {
+                this.flush();
+            }
+        }
+    }
+
+}
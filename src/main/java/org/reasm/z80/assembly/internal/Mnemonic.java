@@ -44,6 +44,30 @@ abstract class Mnemonic {
         return result;
     }
 
+    static boolean valueToBoolean(@CheckForNull Value value, @Nonnull final Z80AssemblyContext context) {
+        return Value.accept(value, new IntegerValueVisitor<Boolean>(context) {
+            @Override
+            public Boolean visitFloat(double value) {
+                return value != 0;
+            }
+
+            @Override
+            public Boolean visitString(String value) {
+                return !value.isEmpty();
+            }
+
+            @Override
+            public Boolean visitUndetermined() {
+                return false;
+            }
+
+            @Override
+            public Boolean visitUnsignedInt(long value) {
+                return value != 0;
+            }
+        });
+    }
+
     static byte valueToByte(@CheckForNull Value value, @Nonnull final Z80AssemblyContext context) {
         return Value.accept(value, new IntegerValueVisitor<Byte>(context) {
             @Override
@@ -142,6 +166,16 @@ abstract class Mnemonic {
      */
     abstract void assemble(@Nonnull Z80AssemblyContext context) throws IOException;
 
+    /**
+     * Determines whether a logical line with this mnemonic can be reassembled on its own, with the symbols of the assembly it was
+     * part of, as long as its length doesn't change. This is the case when the operands only affect the emitted data.
+     *
+     * @return <code>true</code> if the line can be reassembled in isolation, otherwise <code>false</code>
+     */
+    boolean canReassembleInIsolation() {
+        return true;
+    }
+
     void defineLabels(@Nonnull Z80AssemblyContext context) {
         context.defineLabels();
     }
@@ -101,22 +101,35 @@ public final class Mnemonics {
     public static final String SUB = "SUB";
     public static final String XOR = "XOR";
 
+    public static final String CYCLES = "CYCLES";
+    public static final String DB = "DB";
+    public static final String DEFB = "DEFB";
+    public static final String DEFM = "DEFM";
+    public static final String DEFS = "DEFS";
+    public static final String DEFW = "DEFW";
     public static final String DEPHASE = "DEPHASE";
     public static final String DO = "DO";
+    public static final String DS = "DS";
+    public static final String DW = "DW";
     public static final String ELSE = "ELSE";
     public static final String ELSEIF = "ELSEIF";
+    public static final String ENDCYCLES = "ENDCYCLES";
     public static final String ENDIF = "ENDIF";
     public static final String ENDM = "ENDM";
     public static final String ENDNS = "ENDNS";
     public static final String ENDR = "ENDR";
     public static final String ENDTRANSFORM = "ENDTRANSFORM";
     public static final String ENDW = "ENDW";
+    public static final String EXTERN = "EXTERN";
     public static final String FOR = "FOR";
     public static final String IF = "IF";
+    public static final String INCBIN = "INCBIN";
+    public static final String INCLUDE = "INCLUDE";
     public static final String MACRO = "MACRO";
     public static final String NAMESPACE = "NAMESPACE";
     public static final String NEXT = "NEXT";
     public static final String PHASE = "PHASE";
+    public static final String PUBLIC = "PUBLIC";
     public static final String REPT = "REPT";
     public static final String TRANSFORM = "TRANSFORM";
     public static final String UNTIL = "UNTIL";
@@ -200,7 +213,35 @@ public final class Mnemonics {
         map.put(XOR, BinaryArithmeticLogicalInstruction.XOR);
 
         // Put the directives in the dispatch map.
-        // TODO
+        map.put(DB, DataDirective.BYTE);
+        map.put(DEFB, DataDirective.BYTE);
+        map.put(DEFM, DataDirective.BYTE);
+        map.put(DEFS, SpaceDirective.DS);
+        map.put(DEFW, DataDirective.WORD);
+        map.put(CYCLES, CyclesDirective.CYCLES);
+        map.put(DEPHASE, BlockDelimiterDirective.DEPHASE);
+        map.put(DO, BlockDelimiterDirective.DO);
+        map.put(DS, SpaceDirective.DS);
+        map.put(DW, DataDirective.WORD);
+        map.put(ELSE, ElseDirective.ELSE);
+        map.put(ELSEIF, IfDirective.ELSEIF);
+        map.put(ENDCYCLES, EndCyclesDirective.ENDCYCLES);
+        map.put(ENDIF, BlockDelimiterDirective.ENDIF);
+        map.put(ENDNS, BlockDelimiterDirective.ENDNS);
+        map.put(ENDTRANSFORM, EndTransformDirective.ENDTRANSFORM);
+        map.put(ENDW, BlockDelimiterDirective.ENDW);
+        map.put(EXTERN, LinkageDirective.EXTERN);
+        map.put(FOR, ForDirective.FOR);
+        map.put(IF, IfDirective.IF);
+        map.put(INCBIN, IncbinDirective.INCBIN);
+        map.put(INCLUDE, IncludeDirective.INCLUDE);
+        map.put(NAMESPACE, NamespaceDirective.NAMESPACE);
+        map.put(NEXT, BlockDelimiterDirective.NEXT);
+        map.put(PHASE, PhaseDirective.PHASE);
+        map.put(PUBLIC, LinkageDirective.PUBLIC);
+        map.put(TRANSFORM, TransformDirective.TRANSFORM);
+        map.put(UNTIL, UntilDirective.UNTIL);
+        map.put(WHILE, WhileDirective.WHILE);
 
         MAP = map;
 
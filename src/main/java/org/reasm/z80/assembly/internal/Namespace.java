@@ -0,0 +1,234 @@
+package org.reasm.z80.assembly.internal;
+
+import java.util.HashMap;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * A scope for symbols, introduced by a <code>NAMESPACE</code> block.
+ * <p>
+ * A symbol defined in a namespace is stored in the assembly under its fully qualified name (e.g. <code>outer.inner.symbol</code>).
+ * A reference to a symbol from a namespace resolves to the innermost enclosing namespace in which the name is defined; the name
+ * may itself be partially qualified (e.g. <code>inner.symbol</code> from <code>outer</code>).
+ * <p>
+ * Each namespace keeps a hash map of the relative names that are defined in it or in its descendants, which is populated when
+ * symbols are defined, and caches the fully qualified names it builds as well as the result of name resolutions, so that resolving
+ * a name again is a single hash lookup regardless of the depth of the namespace or the number of symbols. The tree is kept from one
+ * pass to the next, but the definitions are keyed by pass: a name is defined in a namespace if it was defined there in the current
+ * pass or, so that forward references resolve to it, in the previous pass. A definition that is not repeated therefore stops
+ * shadowing the symbols of the enclosing namespaces after one pass.
+ * <p>
+ * A reference that is resolved before the name is defined in an inner namespace resolves to a symbol of an enclosing namespace;
+ * the definition then shadows that symbol. Each namespace remembers the names that resolutions skipped because they were not
+ * defined in it. When such a name becomes defined in the namespace, the {@linkplain #getGeneration() generation} of the tree
+ * changes, which invalidates the cached resolutions and tells the caller that the references must be resolved again in another
+ * pass.
+ *
+ * @author Francis Gagné
+ */
+final class Namespace {
+
+    private static final class Resolution {
+
+        @Nonnull
+        final String qualifiedName;
+        final int generation;
+
+        Resolution(@Nonnull String qualifiedName, int generation) {
+            this.qualifiedName = qualifiedName;
+            this.generation = generation;
+        }
+
+    }
+
+    @CheckForNull
+    private final Namespace parent;
+    @Nonnull
+    private final Namespace root;
+    @Nonnull
+    private final String name;
+    @Nonnull
+    private final String prefix;
+    @Nonnull
+    private final HashMap<String, Namespace> children = new HashMap<>();
+
+    // The names that are defined in this namespace or in its descendants, with the last pass in which they were defined.
+    @Nonnull
+    private final HashMap<String, Integer> definedNames = new HashMap<>();
+    @Nonnull
+    private final HashMap<String, String> qualifiedNames = new HashMap<>();
+    @Nonnull
+    private final HashMap<String, Resolution> resolutions = new HashMap<>();
+
+    // The names that resolutions skipped because they were not defined in this namespace, with the last pass in which they were
+    // skipped.
+    @Nonnull
+    private final HashMap<String, Integer> skippedNames = new HashMap<>();
+
+    // Only meaningful on the root namespace.
+    private int generation;
+    private int pass;
+
+    /**
+     * Initializes a new root Namespace.
+     */
+    Namespace() {
+        this.parent = null;
+        this.root = this;
+        this.name = "";
+        this.prefix = "";
+    }
+
+    private Namespace(@Nonnull Namespace parent, @Nonnull String name) {
+        this.parent = parent;
+        this.root = parent.root;
+        this.name = name;
+        this.prefix = parent.prefix + name + ".";
+    }
+
+    /**
+     * Registers a symbol name as defined in this namespace. If a name that was previously resolved to a symbol of an enclosing
+     * namespace becomes defined, the {@linkplain #getGeneration() generation} of the tree changes.
+     *
+     * @param name
+     *            the name of the symbol, relative to this namespace
+     * @return the fully qualified name of the symbol
+     */
+    @Nonnull
+    String define(@Nonnull String name) {
+        if (!this.isDefinedInCurrentPass(name)) {
+            boolean shadowing = this.markDefined(name);
+
+            // Make the name visible from the ancestors with a partially qualified name.
+            String relativeName = name;
+            for (Namespace namespace = this; namespace.parent != null; namespace = namespace.parent) {
+                relativeName = namespace.name + "." + relativeName;
+                if (namespace.parent.markDefined(relativeName)) {
+                    shadowing = true;
+                }
+            }
+
+            if (shadowing) {
+                this.root.generation++;
+            }
+        }
+
+        return this.qualify(name);
+    }
+
+    /**
+     * Gets a child namespace of this namespace, creating it if necessary.
+     *
+     * @param name
+     *            the name of the child namespace, which may contain periods to denote nested namespaces
+     * @return the child namespace
+     */
+    @Nonnull
+    Namespace getChild(@Nonnull String name) {
+        Namespace namespace = this;
+        for (String component : name.split("\\.", -1)) {
+            Namespace child = namespace.children.get(component);
+            if (child == null) {
+                child = new Namespace(namespace, component);
+                namespace.children.put(component, child);
+            }
+
+            namespace = child;
+        }
+
+        return namespace;
+    }
+
+    /**
+     * Gets the generation of the tree of namespaces, which changes when a definition shadows a symbol to which a name was
+     * previously resolved.
+     *
+     * @return the generation
+     */
+    int getGeneration() {
+        return this.root.generation;
+    }
+
+    /**
+     * Resolves a symbol name referenced from this namespace to the fully qualified name of the symbol.
+     *
+     * @param name
+     *            the name of the symbol, relative to this namespace or to one of its ancestors
+     * @return the fully qualified name of the symbol
+     */
+    @Nonnull
+    String resolve(@Nonnull String name) {
+        if (this.parent == null) {
+            return name;
+        }
+
+        final int generation = this.root.generation;
+        final Resolution cachedResolution = this.resolutions.get(name);
+        if (cachedResolution != null && cachedResolution.generation == generation) {
+            return cachedResolution.qualifiedName;
+        }
+
+        final Integer pass = this.root.pass;
+        Namespace namespace = this;
+        while (namespace.parent != null && !namespace.isDefined(name)) {
+            namespace.skippedNames.put(name, pass);
+            namespace = namespace.parent;
+        }
+
+        final String qualifiedName = namespace.qualify(name);
+        this.resolutions.put(name, new Resolution(qualifiedName, generation));
+        return qualifiedName;
+    }
+
+    /**
+     * Starts a new pass. This must be called on the root namespace. The names that are not defined again in the new pass stop
+     * being defined at the end of the new pass.
+     */
+    void startedNewPass() {
+        this.pass++;
+
+        // The cached resolutions may refer to names that are no longer defined.
+        this.generation++;
+    }
+
+    // Determines whether a name is defined in this namespace in the current pass or in the previous pass.
+    private boolean isDefined(@Nonnull String name) {
+        final Integer pass = this.definedNames.get(name);
+        return pass != null && pass.intValue() >= this.root.pass - 1;
+    }
+
+    private boolean isDefinedInCurrentPass(@Nonnull String name) {
+        final Integer pass = this.definedNames.get(name);
+        return pass != null && pass.intValue() == this.root.pass;
+    }
+
+    // Records that a name is defined in this namespace in the current pass. Returns true if the name was not defined before and a
+    // resolution skipped it in the current pass, i.e. if the definition shadows a symbol to which the name was resolved.
+    private boolean markDefined(@Nonnull String name) {
+        final boolean defined = this.isDefined(name);
+        this.definedNames.put(name, this.root.pass);
+        if (defined) {
+            return false;
+        }
+
+        final Integer skippedPass = this.skippedNames.get(name);
+        return skippedPass != null && skippedPass.intValue() == this.root.pass;
+    }
+
+    @Nonnull
+    private String qualify(@Nonnull String name) {
+        if (this.parent == null) {
+            return name;
+        }
+
+        String qualifiedName = this.qualifiedNames.get(name);
+        if (qualifiedName == null) {
+            qualifiedName = this.prefix + name;
+            this.qualifiedNames.put(name, qualifiedName);
+        }
+
+        return qualifiedName;
+    }
+
+}
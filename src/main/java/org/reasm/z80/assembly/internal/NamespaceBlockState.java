@@ -0,0 +1,28 @@
+package org.reasm.z80.assembly.internal;
+
+import javax.annotation.Nonnull;
+
+import org.reasm.source.SourceLocation;
+
+/**
+ * The state of a <code>NAMESPACE</code> block. The namespace that was current when the block was entered is restored when the
+ * block is exited.
+ *
+ * @author Francis Gagné
+ */
+final class NamespaceBlockState extends BasicBlockState {
+
+    @Nonnull
+    private final Namespace previousNamespace;
+
+    NamespaceBlockState(@Nonnull Z80AssemblyContext context, @Nonnull SourceLocation sourceLocation) {
+        super(context, sourceLocation);
+        this.previousNamespace = context.namespace;
+    }
+
+    @Override
+    void exit() {
+        this.context.namespace = this.previousNamespace;
+    }
+
+}
@@ -0,0 +1,70 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.reasm.commons.source.Syntax;
+import org.reasm.z80.messages.InvalidNamespaceNameErrorMessage;
+import org.reasm.z80.source.Z80Parser;
+
+/**
+ * The <code>NAMESPACE</code> directive.
+ * <p>
+ * The operand is the name of the namespace, which may contain periods to denote nested namespaces. Each component of the name
+ * must be an identifier.
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+class NamespaceDirective extends Mnemonic {
+
+    @Nonnull
+    static final NamespaceDirective NAMESPACE = new NamespaceDirective();
+
+    private static boolean isValidName(@Nonnull String name) {
+        for (String component : name.split("\\.", -1)) {
+            if (component.isEmpty()) {
+                return false;
+            }
+
+            final int firstCodePoint = component.codePointAt(0);
+            if (Syntax.isDigit(firstCodePoint) || !Z80Parser.SYNTAX.isValidIdentifierInitialCodePoint(firstCodePoint)) {
+                return false;
+            }
+
+            for (int i = 0; i < component.length();) {
+                final int codePoint = component.codePointAt(i);
+                if (!Z80Parser.SYNTAX.isValidIdentifierCodePoint(codePoint)) {
+                    return false;
+                }
+
+                i += Character.charCount(codePoint);
+            }
+        }
+
+        return true;
+    }
+
+    private NamespaceDirective() {
+    }
+
+    @Override
+    void assemble(Z80AssemblyContext context) throws IOException {
+        if (!context.requireNumberOfOperands(1)) {
+            return;
+        }
+
+        final String name = context.getOperandText(0).trim();
+        if (!isValidName(name)) {
+            context.addMessage(new InvalidNamespaceNameErrorMessage(name));
+            return;
+        }
+
+        if (context.getCurrentBlock(NamespaceBlockState.class) != null) {
+            context.namespace = context.namespace.getChild(name);
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+package org.reasm.z80.assembly.internal;
+
+import java.util.HashSet;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Classifies the symbols of an assembly that produces a relocatable object file: the external symbols, declared with the
+ * <code>EXTERN</code> directive, and the labels whose value is relative to the address of the section.
+ * <p>
+ * The symbol sets are kept from one pass to the next, so that forward references are classified correctly.
+ *
+ * @author Francis Gagné
+ */
+@NotThreadSafe
+final class ObjectFileSymbols {
+
+    @Nonnull
+    private final HashSet<String> externalSymbols = new HashSet<>();
+    @Nonnull
+    private final HashSet<String> relocatableSymbols = new HashSet<>();
+
+    void addExternalSymbol(@Nonnull String name) {
+        this.externalSymbols.add(name);
+    }
+
+    void addRelocatableSymbol(@Nonnull String name) {
+        this.relocatableSymbols.add(name);
+    }
+
+    boolean isExternalSymbol(@Nonnull String name) {
+        return this.externalSymbols.contains(name);
+    }
+
+    boolean isRelocatableSymbol(@Nonnull String name) {
+        return this.relocatableSymbols.contains(name);
+    }
+
+}
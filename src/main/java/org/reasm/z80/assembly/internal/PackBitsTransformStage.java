@@ -0,0 +1,84 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * A transform stage that compresses data with the PackBits run-length encoding. Each packet starts with a header byte
+ * <var>n</var>: if <var>n</var> is between 0 and 127, <var>n</var>+1 literal bytes follow; if <var>n</var> is between -127 and
+ * -1, the following byte is repeated 1-<var>n</var> times.
+ * <p>
+ * The encoder works on the data as it is written and holds at most one pending packet. Since the compressed size is only known as
+ * packets are completed, the program counter within a compressing <code>TRANSFORM</code> block does not reflect the position of
+ * the source data.
+ *
+ * @author Francis Gagné
+ */
+final class PackBitsTransformStage extends TransformStage {
+
+    private static final int MAX_PACKET_LENGTH = 128;
+    private static final int MIN_RUN_LENGTH = 3;
+
+    @Nonnull
+    private final byte[] literals = new byte[MAX_PACKET_LENGTH + 1];
+    private int literalsLength;
+    private byte runValue;
+    private int runLength;
+
+    PackBitsTransformStage(@Nonnull Z80AssemblyContext context, @CheckForNull TransformStage downstream) {
+        super(context, downstream);
+    }
+
+    @Override
+    void finish() throws IOException {
+        this.endRun();
+        this.flushLiterals();
+        super.finish();
+    }
+
+    @Override
+    void flush() {
+        // Pending data can only be written when the stream ends; see finish().
+    }
+
+    @Override
+    void write(byte value) throws IOException {
+        if (this.runLength != 0 && value == this.runValue && this.runLength < MAX_PACKET_LENGTH) {
+            this.runLength++;
+            return;
+        }
+
+        this.endRun();
+        this.runValue = value;
+        this.runLength = 1;
+    }
+
+    private void endRun() throws IOException {
+        if (this.runLength >= MIN_RUN_LENGTH) {
+            this.flushLiterals();
+            this.emit((byte) (1 - this.runLength));
+            this.emit(this.runValue);
+        } else {
+            for (int i = 0; i < this.runLength; i++) {
+                this.literals[this.literalsLength + 1] = this.runValue;
+                if (++this.literalsLength == MAX_PACKET_LENGTH) {
+                    this.flushLiterals();
+                }
+            }
+        }
+
+        this.runLength = 0;
+    }
+
+    private void flushLiterals() throws IOException {
+        if (this.literalsLength != 0) {
+            // The header is stored just before the literals, so that the packet can be written at once.
+            this.literals[0] = (byte) (this.literalsLength - 1);
+            this.emit(this.literals, 0, this.literalsLength + 1);
+            this.literalsLength = 0;
+        }
+    }
+
+}
@@ -0,0 +1,27 @@
+package org.reasm.z80.assembly.internal;
+
+import javax.annotation.Nonnull;
+
+import org.reasm.source.SourceLocation;
+
+/**
+ * The state of a <code>PHASE</code> block. The phase offset that was in effect when the block was entered is restored when the
+ * block is exited, which makes nested phases work.
+ *
+ * @author Francis Gagné
+ */
+final class PhaseBlockState extends BasicBlockState {
+
+    private final long previousPhaseOffset;
+
+    PhaseBlockState(@Nonnull Z80AssemblyContext context, @Nonnull SourceLocation sourceLocation) {
+        super(context, sourceLocation);
+        this.previousPhaseOffset = context.phaseOffset;
+    }
+
+    @Override
+    void exit() {
+        this.context.phaseOffset = this.previousPhaseOffset;
+    }
+
+}
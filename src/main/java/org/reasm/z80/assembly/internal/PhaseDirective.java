@@ -0,0 +1,45 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.reasm.expressions.Expression;
+
+/**
+ * The <code>PHASE</code> directive.
+ * <p>
+ * Within a <code>PHASE</code> block, the program counter seen by labels and expressions starts at the directive's operand, while
+ * the assembled data is still written at the physical position in the output. This is implemented as an offset between the
+ * logical and the physical program counter; no data is copied.
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+class PhaseDirective extends Mnemonic {
+
+    @Nonnull
+    static final PhaseDirective PHASE = new PhaseDirective();
+
+    private PhaseDirective() {
+    }
+
+    @Override
+    void assemble(Z80AssemblyContext context) throws IOException {
+        if (!context.requireNumberOfOperands(1)) {
+            return;
+        }
+
+        final Expression address = context.parseExpression(0);
+        if (address == null) {
+            return;
+        }
+
+        if (context.getCurrentBlock(PhaseBlockState.class) != null) {
+            final long logicalAddress = valueToQword(address.evaluate(context.getEvaluationContext()), context);
+            context.phaseOffset = logicalAddress - context.step.getProgramCounter();
+        }
+    }
+
+}
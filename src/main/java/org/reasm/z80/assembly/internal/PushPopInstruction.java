@@ -14,7 +14,7 @@ import com.google.common.collect.ImmutableList;
  * @author Francis Gagné
  */
 @Immutable
-class PushPopInstruction extends Mnemonic {
+class PushPopInstruction extends Instruction {
 
     @Nonnull
     static final PushPopInstruction POP = new PushPopInstruction(0b11_000_001);
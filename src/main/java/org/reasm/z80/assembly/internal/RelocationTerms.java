@@ -0,0 +1,167 @@
+package org.reasm.z80.assembly.internal;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.reasm.expressions.BinaryOperator;
+import org.reasm.expressions.BinaryOperatorExpression;
+import org.reasm.expressions.Expression;
+import org.reasm.expressions.GroupingExpression;
+import org.reasm.expressions.IdentifierExpression;
+import org.reasm.expressions.ProgramCounterExpression;
+import org.reasm.expressions.UnaryOperator;
+import org.reasm.expressions.UnaryOperatorExpression;
+import org.reasm.expressions.ValueExpression;
+
+/**
+ * Determines how the value of an expression depends on the address of the section and on external symbols, in order to describe
+ * it with a relocation.
+ * <p>
+ * The expression is decomposed in a sum of terms. Labels and the program counter (<code>*</code>) contribute the address of the
+ * section and external symbols contribute their value, each with a coefficient of 1 or -1 depending on the additions,
+ * subtractions and negations that apply to them; the other terms are constants. In a <code>PHASE</code> block, the program
+ * counter is absolute, like the labels defined in the block. A relocation can represent an expression whose terms add up to
+ * either nothing (the expression is absolute), the address of the section once, or the value of a single external symbol once.
+ * Other operators are only allowed on absolute operands. Expressions of other kinds, such as conditional expressions and function
+ * calls, cannot be inspected and are not relocatable.
+ *
+ * @author Francis Gagné
+ */
+final class RelocationTerms {
+
+    @Nonnull
+    private final ObjectFileSymbols symbols;
+    @Nonnull
+    private final Namespace namespace;
+    private final boolean programCounterRelocatable;
+
+    // The coefficients of the address of the section and of the external symbol.
+    private int sectionCoefficient;
+    @CheckForNull
+    private String externalSymbol;
+    private int externalSymbolCoefficient;
+    private boolean valid = true;
+
+    RelocationTerms(@Nonnull ObjectFileSymbols symbols, @Nonnull Namespace namespace, boolean programCounterRelocatable) {
+        this.symbols = symbols;
+        this.namespace = namespace;
+        this.programCounterRelocatable = programCounterRelocatable;
+    }
+
+    /**
+     * Adds the terms of an expression.
+     *
+     * @param expression
+     *            the expression
+     * @param sign
+     *            1 to add the expression, -1 to subtract it
+     */
+    void add(@Nonnull Expression expression, int sign) {
+        if (expression instanceof ValueExpression) {
+            return;
+        }
+
+        if (expression instanceof GroupingExpression) {
+            this.add(((GroupingExpression) expression).getChildExpression(), sign);
+            return;
+        }
+
+        if (expression instanceof ProgramCounterExpression) {
+            if (this.programCounterRelocatable) {
+                this.sectionCoefficient += sign;
+            }
+
+            return;
+        }
+
+        if (expression instanceof IdentifierExpression) {
+            final String name = this.namespace.resolve(((IdentifierExpression) expression).getIdentifier());
+            if (this.symbols.isExternalSymbol(name)) {
+                if (this.externalSymbol != null && !this.externalSymbol.equals(name)) {
+                    this.valid = false;
+                }
+
+                this.externalSymbol = name;
+                this.externalSymbolCoefficient += sign;
+            } else if (this.symbols.isRelocatableSymbol(name)) {
+                this.sectionCoefficient += sign;
+            }
+
+            return;
+        }
+
+        if (expression instanceof BinaryOperatorExpression) {
+            final BinaryOperatorExpression binaryOperatorExpression = (BinaryOperatorExpression) expression;
+            final BinaryOperator operator = binaryOperatorExpression.getOperator();
+            if (operator == BinaryOperator.ADDITION || operator == BinaryOperator.SUBTRACTION) {
+                this.add(binaryOperatorExpression.getOperand1(), sign);
+                this.add(binaryOperatorExpression.getOperand2(), operator == BinaryOperator.ADDITION ? sign : -sign);
+            } else {
+                this.requireAbsolute(binaryOperatorExpression.getOperand1());
+                this.requireAbsolute(binaryOperatorExpression.getOperand2());
+            }
+
+            return;
+        }
+
+        if (expression instanceof UnaryOperatorExpression) {
+            final UnaryOperatorExpression unaryOperatorExpression = (UnaryOperatorExpression) expression;
+            if (unaryOperatorExpression.getOperator() == UnaryOperator.NEGATION) {
+                this.add(unaryOperatorExpression.getOperand(), -sign);
+            } else {
+                this.requireAbsolute(unaryOperatorExpression.getOperand());
+            }
+
+            return;
+        }
+
+        // The operands of other kinds of expressions cannot be inspected.
+        this.valid = false;
+    }
+
+    /**
+     * Gets the external symbol whose value the expression depends on.
+     *
+     * @return the name of the external symbol, or <code>null</code> if the expression doesn't depend on an external symbol
+     */
+    @CheckForNull
+    String getExternalSymbol() {
+        return this.externalSymbolCoefficient == 0 ? null : this.externalSymbol;
+    }
+
+    /**
+     * Determines whether the value of the expression doesn't depend on the address of the section or on external symbols.
+     *
+     * @return <code>true</code> if the expression is absolute, otherwise <code>false</code>
+     */
+    boolean isAbsolute() {
+        return this.valid && this.sectionCoefficient == 0 && this.externalSymbolCoefficient == 0;
+    }
+
+    /**
+     * Determines whether the expression can be described with a relocation.
+     *
+     * @return <code>true</code> if the expression is absolute, or depends on the address of the section or on the value of a
+     *         single external symbol, otherwise <code>false</code>
+     */
+    boolean isRelocatable() {
+        if (!this.valid) {
+            return false;
+        }
+
+        if (this.externalSymbolCoefficient == 0) {
+            return this.sectionCoefficient == 0 || this.sectionCoefficient == 1;
+        }
+
+        return this.externalSymbolCoefficient == 1 && this.sectionCoefficient == 0;
+    }
+
+    private void requireAbsolute(@Nonnull Expression expression) {
+        final RelocationTerms terms = new RelocationTerms(this.symbols, this.namespace, this.programCounterRelocatable);
+        terms.add(expression, 1);
+        if (!terms.isAbsolute()) {
+            this.valid = false;
+        }
+    }
+
+}
@@ -13,7 +13,7 @@ import org.reasm.z80.messages.InvalidConditionErrorMessage;
  * @author Francis Gagné
  */
 @Immutable
-class RetInstruction extends Mnemonic {
+class RetInstruction extends Instruction {
 
     @Nonnull
     static final RetInstruction RET = new RetInstruction();
@@ -12,7 +12,7 @@ import javax.annotation.concurrent.Immutable;
  * @author Francis Gagné
  */
 @Immutable
-class RotateShiftInstruction extends Mnemonic {
+class RotateShiftInstruction extends Instruction {
 
     @Nonnull
     static final RotateShiftInstruction RLC = new RotateShiftInstruction(0b00_000_000);
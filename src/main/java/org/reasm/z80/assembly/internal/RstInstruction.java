@@ -13,7 +13,7 @@ import org.reasm.z80.messages.InvalidRestartTargetErrorMessage;
  * @author Francis Gagné
  */
 @Immutable
-class RstInstruction extends Mnemonic {
+class RstInstruction extends Instruction {
 
     @Nonnull
     static final RstInstruction RST = new RstInstruction();
@@ -11,7 +11,7 @@ import javax.annotation.concurrent.Immutable;
  * @author Francis Gagné
  */
 @Immutable
-class SimpleInstruction extends Mnemonic {
+class SimpleInstruction extends Instruction {
 
     @Nonnull
     static final SimpleInstruction CCF = new SimpleInstruction(0x3F);
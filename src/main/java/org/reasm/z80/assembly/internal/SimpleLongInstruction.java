@@ -9,7 +9,7 @@ import javax.annotation.Nonnull;
  *
  * @author Francis Gagné
  */
-class SimpleLongInstruction extends Mnemonic {
+class SimpleLongInstruction extends Instruction {
 
     @Nonnull
     static final SimpleLongInstruction CPD = new SimpleLongInstruction(0xA9);
@@ -36,6 +36,19 @@ public final class SourceNodesImpl {
         }
 
         assembleMnemonic(context, Mnemonics.MAP.get(mnemonicName), true);
+        context.endOfLine();
+        context.lineAssembled(false, false);
+    }
+
+    /**
+     * Assembles a <code>CYCLES</code> block.
+     *
+     * @param builder
+     *            an assembly builder
+     */
+    public static void assembleCyclesBlock(@Nonnull AssemblyBuilder builder) {
+        final Z80AssemblyContext context = Z80AssemblyContext.getAssemblyContext(builder);
+        context.enterBlock(new CyclesBlockState(context, context.sourceLocation));
     }
 
     /**
@@ -45,7 +58,7 @@ public final class SourceNodesImpl {
      *            an assembly builder
      */
     public static void assembleDoBlock(@Nonnull AssemblyBuilder builder) {
-        throw new RuntimeException("Not implemented");
+        enterLoopBlock(builder, true);
     }
 
     /**
@@ -55,7 +68,7 @@ public final class SourceNodesImpl {
      *            an assembly builder
      */
     public static void assembleForBlock(@Nonnull AssemblyBuilder builder) {
-        throw new RuntimeException("Not implemented");
+        enterLoopBlock(builder, false);
     }
 
     /**
@@ -65,7 +78,8 @@ public final class SourceNodesImpl {
      *            an assembly builder
      */
     public static void assembleIfBlock(@Nonnull AssemblyBuilder builder) {
-        throw new RuntimeException("Not implemented");
+        final Z80AssemblyContext context = Z80AssemblyContext.getAssemblyContext(builder);
+        context.enterBlock(new IfBlockState(context, context.sourceLocation));
     }
 
     /**
@@ -93,9 +107,12 @@ public final class SourceNodesImpl {
                 builtInMnemonic = false;
             }
 
-            assembleMnemonic(context, mnemonicSymbol, builtInMnemonic);
+            final Mnemonic mnemonic = assembleMnemonic(context, mnemonicSymbol, builtInMnemonic);
+            context.endOfLine();
+            context.lineAssembled(mnemonic instanceof Instruction, mnemonic != null && mnemonic.canReassembleInIsolation());
         } else {
             context.defineLabels();
+            context.lineAssembled(false, false);
         }
     }
 
@@ -116,7 +133,8 @@ public final class SourceNodesImpl {
      *            an assembly builder
      */
     public static void assembleNamespaceBlock(@Nonnull AssemblyBuilder builder) {
-        throw new RuntimeException("Not implemented");
+        final Z80AssemblyContext context = Z80AssemblyContext.getAssemblyContext(builder);
+        context.enterBlock(new NamespaceBlockState(context, context.sourceLocation));
     }
 
     /**
@@ -126,7 +144,8 @@ public final class SourceNodesImpl {
      *            an assembly builder
      */
     public static void assemblePhaseBlock(@Nonnull AssemblyBuilder builder) {
-        throw new RuntimeException("Not implemented");
+        final Z80AssemblyContext context = Z80AssemblyContext.getAssemblyContext(builder);
+        context.enterBlock(new PhaseBlockState(context, context.sourceLocation));
     }
 
     /**
@@ -156,7 +175,8 @@ public final class SourceNodesImpl {
      *            an assembly builder
      */
     public static void assembleTransformBlock(@Nonnull AssemblyBuilder builder) {
-        throw new RuntimeException("Not implemented");
+        final Z80AssemblyContext context = Z80AssemblyContext.getAssemblyContext(builder);
+        context.enterBlock(new TransformBlockState(context, context.sourceLocation));
     }
 
     /**
@@ -166,10 +186,11 @@ public final class SourceNodesImpl {
      *            an assembly builder
      */
     public static void assembleWhileBlock(@Nonnull AssemblyBuilder builder) {
-        throw new RuntimeException("Not implemented");
+        enterLoopBlock(builder, false);
     }
 
-    private static void assembleMnemonic(@Nonnull Z80AssemblyContext context, @CheckForNull Symbol mnemonicSymbol,
+    @CheckForNull
+    private static Mnemonic assembleMnemonic(@Nonnull Z80AssemblyContext context, @CheckForNull Symbol mnemonicSymbol,
             boolean builtInMnemonic) throws IOException {
         final Mnemonic mnemonic;
         if (mnemonicSymbol != null && mnemonicSymbol.getValue() != null) {
@@ -188,6 +209,13 @@ public final class SourceNodesImpl {
 
             context.defineLabels();
         }
+
+        return mnemonic;
+    }
+
+    private static void enterLoopBlock(@Nonnull AssemblyBuilder builder, boolean testAtEnd) {
+        final Z80AssemblyContext context = Z80AssemblyContext.getAssemblyContext(builder);
+        context.enterBlock(new LoopBlockState(context, context.sourceLocation, testAtEnd));
     }
 
     // This class is not meant to be instantiated.
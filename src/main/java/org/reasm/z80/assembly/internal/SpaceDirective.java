@@ -0,0 +1,57 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.reasm.commons.messages.ValueOutOfRangeErrorMessage;
+import org.reasm.expressions.Expression;
+
+/**
+ * The <code>DS</code> and <code>DEFS</code> directives.
+ * <p>
+ * The syntax is <code>DS count[, fill]</code>. The directive emits <code>count</code> copies of the <code>fill</code> byte, which
+ * defaults to 0.
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+class SpaceDirective extends Mnemonic {
+
+    @Nonnull
+    static final SpaceDirective DS = new SpaceDirective();
+
+    private SpaceDirective() {
+    }
+
+    @Override
+    void assemble(Z80AssemblyContext context) throws IOException {
+        if (context.numberOfOperands != 1 && context.numberOfOperands != 2) {
+            context.addWrongNumberOfOperandsErrorMessage();
+            return;
+        }
+
+        final Expression countExpression = context.parseExpression(0);
+        if (countExpression == null) {
+            return;
+        }
+
+        final long count = valueToQword(countExpression.evaluate(context.getEvaluationContext()), context);
+        if (count < 0) {
+            context.addMessage(new ValueOutOfRangeErrorMessage(count));
+            return;
+        }
+
+        byte fill = 0;
+        if (context.numberOfOperands == 2) {
+            final Expression fillExpression = context.parseExpression(1);
+            if (fillExpression != null) {
+                fill = valueToByte(fillExpression.evaluate(context.getEvaluationContext()), context);
+            }
+        }
+
+        context.appendFill(fill, count);
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.reasm.source.SourceLocation;
+import org.reasm.z80.messages.OutputWriteErrorMessage;
+
+/**
+ * The state of a <code>TRANSFORM</code> block.
+ *
+ * @author Francis Gagné
+ */
+final class TransformBlockState extends BasicBlockState {
+
+    @CheckForNull
+    private final TransformStage previousTransformStage;
+    @CheckForNull
+    private TransformStage transformStage;
+
+    TransformBlockState(@Nonnull Z80AssemblyContext context, @Nonnull SourceLocation sourceLocation) {
+        super(context, sourceLocation);
+        this.previousTransformStage = context.transformStage;
+    }
+
+    @Override
+    void exit() {
+        // A block without an ENDTRANSFORM directive still writes the data that is held by its transform stage.
+        try {
+            this.finish();
+        } catch (IOException e) {
+            this.context.addMessage(new OutputWriteErrorMessage(e));
+        }
+
+        this.context.transformStage = this.previousTransformStage;
+    }
+
+    /**
+     * Writes the data that is still held by the block's transform stage and removes the stage from the output pipeline.
+     *
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    void finish() throws IOException {
+        final TransformStage transformStage = this.transformStage;
+        if (transformStage != null) {
+            this.transformStage = null;
+            this.context.transformStage = this.previousTransformStage;
+            transformStage.finish();
+        }
+    }
+
+    /**
+     * Inserts a transform stage in the output pipeline for the rest of the block.
+     *
+     * @param transformStage
+     *            the transform stage
+     */
+    void start(@Nonnull TransformStage transformStage) {
+        this.transformStage = transformStage;
+        this.context.transformStage = transformStage;
+    }
+
+}
@@ -0,0 +1,68 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.reasm.expressions.Expression;
+import org.reasm.z80.messages.UnknownTransformationErrorMessage;
+
+/**
+ * The <code>TRANSFORM</code> directive.
+ * <p>
+ * The first operand names the transformation that is applied to the data emitted in the block:
+ * <ul>
+ * <li><code>XOR, key</code>: each byte is XORed with <code>key</code></li>
+ * <li><code>NIBBLESWAP</code>: the high and low nibbles of each byte are swapped</li>
+ * <li><code>PACKBITS</code>: the data is compressed with the PackBits run-length encoding</li>
+ * </ul>
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+class TransformDirective extends Mnemonic {
+
+    @Nonnull
+    static final TransformDirective TRANSFORM = new TransformDirective();
+
+    private TransformDirective() {
+    }
+
+    @Override
+    void assemble(Z80AssemblyContext context) throws IOException {
+        final TransformBlockState transformBlock = context.getCurrentBlock(TransformBlockState.class);
+        if (transformBlock == null) {
+            return;
+        }
+
+        if (context.numberOfOperands < 1) {
+            context.addWrongNumberOfOperandsErrorMessage();
+            return;
+        }
+
+        final String transformation = context.getOperandText(0).trim();
+        final TransformStage downstream = context.transformStage;
+        if ("XOR".equalsIgnoreCase(transformation)) {
+            if (!context.requireNumberOfOperands(2)) {
+                return;
+            }
+
+            final Expression key = context.parseExpression(1);
+            if (key != null) {
+                final byte[] table = MappingTransformStage.xorTable(valueToByte(key.evaluate(context.getEvaluationContext()),
+                        context));
+                transformBlock.start(new MappingTransformStage(context, downstream, table));
+            }
+        } else if ("NIBBLESWAP".equalsIgnoreCase(transformation)) {
+            context.requireNumberOfOperands(1);
+            transformBlock.start(new MappingTransformStage(context, downstream, MappingTransformStage.nibbleSwapTable()));
+        } else if ("PACKBITS".equalsIgnoreCase(transformation)) {
+            context.requireNumberOfOperands(1);
+            transformBlock.start(new PackBitsTransformStage(context, downstream));
+        } else {
+            context.addMessage(new UnknownTransformationErrorMessage(transformation));
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * A stage of the output pipeline of a <code>TRANSFORM</code> block. The bytes emitted by the instructions and directives in the
+ * block are written to the innermost stage as they are emitted; each stage transforms the bytes it receives and passes the result to
+ * the next stage, or to the assembly builder for the outermost stage. Stages only hold a bounded amount of data at any time.
+ *
+ * @author Francis Gagné
+ */
+abstract class TransformStage {
+
+    @Nonnull
+    final Z80AssemblyContext context;
+    @CheckForNull
+    final TransformStage downstream;
+
+    TransformStage(@Nonnull Z80AssemblyContext context, @CheckForNull TransformStage downstream) {
+        this.context = context;
+        this.downstream = downstream;
+    }
+
+    /**
+     * Called after each line has been assembled. Stages that don't change the length of the data pass their pending data along,
+     * so that the program counter is up to date at the start of the next line.
+     *
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    final void endOfLine() throws IOException {
+        this.flush();
+        if (this.downstream != null) {
+            this.downstream.endOfLine();
+        }
+    }
+
+    /**
+     * Called at the end of the <code>TRANSFORM</code> block. Writes all the data that is still held by this stage to the next stage.
+     *
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    void finish() throws IOException {
+        this.endOfLine();
+    }
+
+    /**
+     * Writes the data that this stage has buffered, if it can do so without affecting its output, to the next stage.
+     *
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    abstract void flush() throws IOException;
+
+    /**
+     * Writes a byte to this stage.
+     *
+     * @param value
+     *            the byte to write
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    abstract void write(byte value) throws IOException;
+
+    /**
+     * Writes a range of bytes to this stage.
+     *
+     * @param data
+     *            an array containing the bytes to write
+     * @param offset
+     *            the offset of the first byte to write
+     * @param length
+     *            the number of bytes to write
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    void write(@Nonnull byte[] data, int offset, int length) throws IOException {
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            this.write(data[i]);
+        }
+    }
+
+    /**
+     * Passes a byte to the next stage.
+     *
+     * @param value
+     *            the byte to pass
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    final void emit(byte value) throws IOException {
+        if (this.downstream != null) {
+            this.downstream.write(value);
+        } else {
+            this.context.appendByteToBuilder(value);
+        }
+    }
+
+    /**
+     * Passes a range of bytes to the next stage.
+     *
+     * @param data
+     *            an array containing the bytes to pass
+     * @param offset
+     *            the offset of the first byte to pass
+     * @param length
+     *            the number of bytes to pass
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    final void emit(@Nonnull byte[] data, int offset, int length) throws IOException {
+        if (this.downstream != null) {
+            this.downstream.write(data, offset, length);
+        } else {
+            this.context.appendToBuilder(data, offset, length);
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.reasm.expressions.Expression;
+
+/**
+ * The <code>UNTIL</code> directive.
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+class UntilDirective extends Mnemonic {
+
+    @Nonnull
+    static final UntilDirective UNTIL = new UntilDirective();
+
+    private UntilDirective() {
+    }
+
+    @Override
+    void assemble(Z80AssemblyContext context) throws IOException {
+        final LoopBlockState loop = context.getCurrentBlock(LoopBlockState.class);
+        if (loop == null) {
+            context.defineLabels();
+            return;
+        }
+
+        if (!loop.initialized) {
+            // Parse the condition only once per block.
+            loop.initialized = true;
+            if (context.requireNumberOfOperands(1)) {
+                loop.condition = context.parseExpression(0);
+            }
+        }
+
+        final Expression condition = loop.condition;
+        if (condition != null && !valueToBoolean(condition.evaluate(context.getEvaluationContext()), context)) {
+            loop.continueLoop = loop.startIteration();
+        }
+
+        if (!loop.continueLoop) {
+            // Define the labels when the loop ends only.
+            context.defineLabels();
+        }
+    }
+
+    @Override
+    void defineLabels(Z80AssemblyContext context) {
+        // Labels are defined in assemble().
+    }
+
+}
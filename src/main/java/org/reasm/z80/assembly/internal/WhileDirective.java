@@ -0,0 +1,54 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.reasm.expressions.Expression;
+
+/**
+ * The <code>WHILE</code> directive.
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+class WhileDirective extends Mnemonic {
+
+    @Nonnull
+    static final WhileDirective WHILE = new WhileDirective();
+
+    private WhileDirective() {
+    }
+
+    @Override
+    void assemble(Z80AssemblyContext context) throws IOException {
+        final LoopBlockState loop = context.getCurrentBlock(LoopBlockState.class);
+        if (loop == null) {
+            return;
+        }
+
+        if (!loop.initialized) {
+            // Parse the condition only once per block.
+            loop.initialized = true;
+            if (context.requireNumberOfOperands(1)) {
+                loop.condition = context.parseExpression(0);
+            }
+        }
+
+        final Expression condition = loop.condition;
+        if (condition != null && valueToBoolean(condition.evaluate(context.getEvaluationContext()), context)) {
+            loop.continueLoop = loop.startIteration();
+        }
+    }
+
+    @Override
+    void defineLabels(Z80AssemblyContext context) {
+        // Define the labels on the first iteration only.
+        final LoopBlockState loop = context.getCurrentBlock(LoopBlockState.class);
+        if (loop == null || !loop.initialized) {
+            context.defineLabels();
+        }
+    }
+
+}
@@ -1,7 +1,12 @@
 package org.reasm.z80.assembly.internal;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -12,10 +17,22 @@ import org.reasm.commons.source.LogicalLine;
 import org.reasm.commons.source.LogicalLineReader;
 import org.reasm.commons.source.SourceLocationUtils;
 import org.reasm.expressions.EvaluationContext;
+import org.reasm.expressions.Expression;
 import org.reasm.expressions.SymbolLookup;
 import org.reasm.messages.WrongNumberOfOperandsErrorMessage;
 import org.reasm.source.SourceLocation;
+import org.reasm.source.SourceNode;
+import org.reasm.z80.Z80AssembledLine;
+import org.reasm.z80.Z80AssemblyListener;
+import org.reasm.z80.Z80AssemblyOptions;
+import org.reasm.z80.Z80CycleTable;
+import org.reasm.z80.expressions.internal.ExpressionParser;
+import org.reasm.z80.expressions.internal.InvalidTokenException;
+import org.reasm.z80.expressions.internal.TokenType;
+import org.reasm.z80.expressions.internal.TokenizedOperand;
 import org.reasm.z80.expressions.internal.Tokenizer;
+import org.reasm.z80.messages.InvalidExpressionErrorMessage;
+import org.reasm.z80.messages.NonRelocatableExpressionErrorMessage;
 
 import ca.fragag.Consumer;
 
@@ -32,6 +49,43 @@ final class Z80AssemblyContext implements Consumer<AssemblyMessage>, CustomAssem
     @Nonnull
     static final SymbolContext<Mnemonic> MNEMONIC = new SymbolContext<>(Mnemonic.class);
 
+    // The symbol context of the symbol that is referenced, then defined, to request another pass.
+    @Nonnull
+    private static final SymbolContext<Integer> PASS_REQUEST = new SymbolContext<>(Integer.class);
+
+    @Nonnull
+    private static final ValueVisitor<String> STRING_VALUE_VISITOR = new ValueVisitor<String>() {
+        @Override
+        public String visitFloat(double value) {
+            return null;
+        }
+
+        @Override
+        public String visitFunction(Function value) {
+            return null;
+        }
+
+        @Override
+        public String visitSignedInt(long value) {
+            return null;
+        }
+
+        @Override
+        public String visitString(String value) {
+            return value;
+        }
+
+        @Override
+        public String visitUndetermined() {
+            return null;
+        }
+
+        @Override
+        public String visitUnsignedInt(long value) {
+            return null;
+        }
+    };
+
     @Nonnull
     static Z80AssemblyContext getAssemblyContext(@Nonnull AssemblyBuilder builder) {
         Z80AssemblyContext context = (Z80AssemblyContext) builder.getCustomAssemblyData(KEY);
@@ -70,12 +124,90 @@ final class Z80AssemblyContext implements Consumer<AssemblyMessage>, CustomAssem
     @Nonnull
     final Tokenizer tokenizer = new Tokenizer();
     @Nonnull
+    final DataBuffer dataBuffer = new DataBuffer();
+    @Nonnull
+    final BinaryFileCache binaryFileCache = new BinaryFileCache();
+    @Nonnull
     final EffectiveAddress ea0 = new EffectiveAddress();
     @Nonnull
     final EffectiveAddress ea1 = new EffectiveAddress();
 
+    // The difference between the logical program counter, seen by labels and expressions, and the physical program counter.
+    // It is non-zero in PHASE blocks.
+    long phaseOffset;
+
+    // The innermost stage of the output pipeline of the current TRANSFORM block, or null if data is written directly to the
+    // assembly builder.
+    @CheckForNull
+    TransformStage transformStage;
+
+    // The root namespace and the namespace in which symbols are currently defined.
+    @Nonnull
+    final Namespace rootNamespace = new Namespace();
+    @Nonnull
+    Namespace namespace = this.rootNamespace;
+
+    // The results of conditions that only consist of literals, operators and constants, by the source node of their directive.
+    // They are kept from one pass to the next.
+    @Nonnull
+    final IdentityHashMap<SourceNode, IfDirective.ConstantCondition> constantConditions = new IdentityHashMap<>();
+
+    // The tokens of the operands of the logical lines, by logical line, if the operands are pretokenized. They are kept from one
+    // pass to the next.
+    @CheckForNull
+    private final IdentityHashMap<SourceNode, TokenizedOperand[]> tokenizedOperands;
+
+    // The states of the blocks that are being assembled, innermost block first.
+    @Nonnull
+    private final ArrayDeque<BlockState> blockStates = new ArrayDeque<>();
+    @Nonnull
+    private final byte[] chunk = new byte[4096];
+
+    // Indicates whether the current pass is the sizing pass.
+    private boolean sizingPass;
+
+    // The number of the current pass, starting at 0, and whether the current pass has requested another pass.
+    private int passNumber;
+    private boolean anotherPassRequested;
+
+    // The number of bytes written to the assembly builder in the current pass.
+    private long outputLength;
+
+    // The listeners of the assembly, from its options, and the line that is passed to them.
+    @Nonnull
+    private final Z80AssemblyListener[] listeners;
+    @Nonnull
+    private final AssembledLine assembledLine = new AssembledLine(this);
+
+    // The classification of the symbols of the object file that this assembly produces, or null if the assembly doesn't produce
+    // an object file.
+    @CheckForNull
+    final ObjectFileSymbols objectFileSymbols;
+
+    // The maximum number of iterations of a single loop.
+    final int maximumNumberOfLoopIterations;
+
+    // The innermost CYCLES block, if any.
+    @CheckForNull
+    CyclesBlockState cyclesBlock;
+
+    // The output length at the start of the current assembly step, and the first bytes written to the assembly builder by the
+    // current step. The array is as long as the longest instruction.
+    long lineOutputOffset;
+    @Nonnull
+    final byte[] lineBytes = new byte[Z80AssembledLine.MAXIMUM_NUMBER_OF_BYTES];
+
     private Z80AssemblyContext(@Nonnull AssemblyBuilder builder) {
         this.builder = builder;
+
+        // The options are read once, when the context is created during the first pass.
+        final Z80AssemblyOptions options = Z80AssemblyOptions.of(builder.getAssembly());
+        final List<Z80AssemblyListener> listeners = options.getListeners();
+        this.listeners = listeners.toArray(new Z80AssemblyListener[listeners.size()]);
+        this.objectFileSymbols = options.isObjectFile() ? new ObjectFileSymbols() : null;
+        this.maximumNumberOfLoopIterations = options.getMaximumNumberOfLoopIterations();
+        this.tokenizedOperands = options.isPretokenizeOperands() ? new IdentityHashMap<SourceNode, TokenizedOperand[]>() : null;
+        this.sizingPass = options.isSizingPass();
     }
 
     @Override
@@ -85,6 +217,9 @@ final class Z80AssemblyContext implements Consumer<AssemblyMessage>, CustomAssem
 
     @Override
     public void completed() {
+        for (Z80AssemblyListener listener : this.listeners) {
+            listener.assemblyCompleted();
+        }
     }
 
     @Override
@@ -95,21 +230,94 @@ final class Z80AssemblyContext implements Consumer<AssemblyMessage>, CustomAssem
 
     @Override
     public void startedNewPass() {
+        this.blockStates.clear();
+        this.rootNamespace.startedNewPass();
+        this.namespace = this.rootNamespace;
+        this.phaseOffset = 0;
+        this.transformStage = null;
+        this.cyclesBlock = null;
+        this.sizingPass = false;
+        this.passNumber++;
+        this.anotherPassRequested = false;
+        this.outputLength = 0;
+        for (Z80AssemblyListener listener : this.listeners) {
+            listener.passStarted();
+        }
     }
 
     void addAddressingModeNotAllowedHereErrorMessage() {
         this.addMessage(new AddressingModeNotAllowedHereErrorMessage());
     }
 
+    /**
+     * Declares an external symbol of the object file that this assembly produces.
+     *
+     * @param name
+     *            the fully qualified name of the symbol
+     */
+    void addExternalSymbol(@Nonnull String name) {
+        this.objectFileSymbols.addExternalSymbol(name);
+        for (Z80AssemblyListener listener : this.listeners) {
+            listener.externalSymbolDeclared(name);
+        }
+    }
+
     void addMessage(@Nonnull AssemblyMessage message) {
         this.builder.addMessage(message);
     }
 
+    /**
+     * Declares a symbol that the object file that this assembly produces exports.
+     *
+     * @param name
+     *            the fully qualified name of the symbol
+     */
+    void addPublicSymbol(@Nonnull String name) {
+        for (Z80AssemblyListener listener : this.listeners) {
+            listener.publicSymbolDeclared(name);
+        }
+    }
+
     void addressingModeNotAllowed() throws IOException {
         this.appendByte((byte) 0x00);
         this.addAddressingModeNotAllowedHereErrorMessage();
     }
 
+    /**
+     * Records a relocation for data that is about to be written to the output, if the assembly produces an object file and the
+     * value of the data's expression depends on the address of a label or on an external symbol. If the expression cannot be
+     * described with a relocation, an error message is added to the assembly.
+     *
+     * @param expression
+     *            the expression of the data, or <code>null</code>
+     * @param offset
+     *            the offset of the data in the output
+     * @param size
+     *            the size of the data: 1 for a byte, 2 for a word
+     */
+    void addRelocation(@CheckForNull Expression expression, long offset, int size) {
+        if (this.objectFileSymbols == null || expression == null) {
+            return;
+        }
+
+        final RelocationTerms terms = new RelocationTerms(this.objectFileSymbols, this.namespace, this.phaseOffset == 0);
+        terms.add(expression, 1);
+        if (terms.isAbsolute()) {
+            return;
+        }
+
+        // The offsets of the data written in a TRANSFORM block are not known.
+        if (!terms.isRelocatable() || this.transformStage != null) {
+            this.addMessage(new NonRelocatableExpressionErrorMessage());
+            return;
+        }
+
+        final String externalSymbol = terms.getExternalSymbol();
+        for (Z80AssemblyListener listener : this.listeners) {
+            listener.relocationAdded(offset, size, externalSymbol);
+        }
+    }
+
     void addTentativeMessage(@Nonnull AssemblyMessage message) {
         this.builder.addTentativeMessage(message);
     }
@@ -119,17 +327,184 @@ final class Z80AssemblyContext implements Consumer<AssemblyMessage>, CustomAssem
     }
 
     void appendByte(byte by) throws IOException {
+        if (this.transformStage != null) {
+            this.transformStage.write(by);
+        } else {
+            this.appendByteToBuilder(by);
+        }
+    }
+
+    /**
+     * Writes the remaining bytes of a buffer to the output. When there is no enclosing <code>TRANSFORM</code> block, the buffer is
+     * passed to the assembly builder as is, without copying its contents.
+     *
+     * @param buffer
+     *            the buffer containing the bytes to write
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    void appendBuffer(@Nonnull ByteBuffer buffer) throws IOException {
+        if (this.transformStage == null) {
+            final long index = this.outputLength - this.lineOutputOffset;
+            if (index < this.lineBytes.length) {
+                final int count = (int) Math.min(buffer.remaining(), this.lineBytes.length - index);
+                for (int i = 0; i < count; i++) {
+                    this.lineBytes[(int) index + i] = buffer.get(buffer.position() + i);
+                }
+            }
+
+            this.outputLength += buffer.remaining();
+            this.builder.appendAssembledData(buffer);
+            return;
+        }
+
+        final byte[] chunk = this.chunk;
+        while (buffer.hasRemaining()) {
+            final int length = Math.min(buffer.remaining(), chunk.length);
+            buffer.get(chunk, 0, length);
+            this.transformStage.write(chunk, 0, length);
+        }
+    }
+
+    /**
+     * Writes a byte directly to the assembly builder, bypassing the output pipeline of <code>TRANSFORM</code> blocks.
+     *
+     * @param by
+     *            the byte to write
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    void appendByteToBuilder(byte by) throws IOException {
+        final long index = this.outputLength - this.lineOutputOffset;
+        if (index < this.lineBytes.length) {
+            this.lineBytes[(int) index] = by;
+        }
+
+        ++this.outputLength;
         this.builder.appendAssembledData(by);
     }
 
+    /**
+     * Writes a range of bytes to the output, through the output pipeline of the enclosing <code>TRANSFORM</code> block, if any.
+     *
+     * @param data
+     *            an array containing the bytes to write
+     * @param offset
+     *            the offset of the first byte to write
+     * @param length
+     *            the number of bytes to write
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    void appendBytes(@Nonnull byte[] data, int offset, int length) throws IOException {
+        if (this.transformStage != null) {
+            this.transformStage.write(data, offset, length);
+        } else {
+            this.appendToBuilder(data, offset, length);
+        }
+    }
+
+    /**
+     * Writes a byte repeatedly to the output.
+     *
+     * @param by
+     *            the byte to write
+     * @param count
+     *            the number of times to write the byte
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    void appendFill(byte by, long count) throws IOException {
+        if (count <= 0) {
+            return;
+        }
+
+        final byte[] chunk = this.chunk;
+        final int chunkLength = (int) Math.min(count, chunk.length);
+        Arrays.fill(chunk, 0, chunkLength, by);
+        while (count > 0) {
+            final int length = (int) Math.min(count, chunkLength);
+            this.appendBytes(chunk, 0, length);
+            count -= length;
+        }
+    }
+
+    /**
+     * Writes the immediate value of an operand to the output as a byte, with a relocation if necessary.
+     *
+     * @param ea
+     *            the effective address of the operand
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    void appendImmediateByte(@Nonnull EffectiveAddress ea) throws IOException {
+        this.addRelocation(ea.expression, this.outputLength, 1);
+        this.appendByte(Mnemonic.valueToByte(ea.immediate, this));
+    }
+
+    /**
+     * Writes the immediate value of an operand to the output as a word, with a relocation if necessary.
+     *
+     * @param ea
+     *            the effective address of the operand
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    void appendImmediateWord(@Nonnull EffectiveAddress ea) throws IOException {
+        this.addRelocation(ea.expression, this.outputLength, 2);
+        this.appendWord(Mnemonic.valueToWord(ea.immediate, this));
+    }
+
+    /**
+     * Writes a range of bytes directly to the assembly builder, bypassing the output pipeline of <code>TRANSFORM</code> blocks.
+     *
+     * @param data
+     *            an array containing the bytes to write
+     * @param offset
+     *            the offset of the first byte to write
+     * @param length
+     *            the number of bytes to write
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    void appendToBuilder(@Nonnull byte[] data, int offset, int length) throws IOException {
+        final long index = this.outputLength - this.lineOutputOffset;
+        if (index < this.lineBytes.length) {
+            System.arraycopy(data, offset, this.lineBytes, (int) index, (int) Math.min(length, this.lineBytes.length - index));
+        }
+
+        this.outputLength += length;
+        this.builder.appendAssembledData(ByteBuffer.wrap(data, offset, length));
+    }
+
     void appendWord(short word) throws IOException {
-        this.builder.appendAssembledData((byte) word);
-        this.builder.appendAssembledData((byte) (word >>> 8));
+        this.appendByte((byte) word);
+        this.appendByte((byte) (word >>> 8));
+    }
+
+    /**
+     * Checks that the target of a relative branch doesn't depend on an external symbol when the assembly produces an object file.
+     * The displacement to an external symbol cannot be described with a relocation. If the target is invalid, an error message is
+     * added to the assembly.
+     *
+     * @param ea
+     *            the effective address of the branch target
+     */
+    void checkRelativeBranchTarget(@Nonnull EffectiveAddress ea) {
+        if (this.objectFileSymbols == null || ea.expression == null) {
+            return;
+        }
+
+        final RelocationTerms terms = new RelocationTerms(this.objectFileSymbols, this.namespace, this.phaseOffset == 0);
+        terms.add(ea.expression, 1);
+        if (!terms.isRelocatable() || terms.getExternalSymbol() != null) {
+            this.addMessage(new NonRelocatableExpressionErrorMessage());
+        }
     }
 
     @Nonnull
     SymbolLookup createSymbolLookup() {
-        return new Z80SymbolLookup(this, this.builder.getAssembly().getCurrentSymbolLookupContext());
+        return new Z80SymbolLookup(this, this.builder.getAssembly().getCurrentSymbolLookupContext(), this.namespace);
     }
 
     /**
@@ -142,15 +517,151 @@ final class Z80AssemblyContext implements Consumer<AssemblyMessage>, CustomAssem
         }
     }
 
-    <TValue> void defineSymbol(@Nonnull SymbolContext<TValue> symbolContext, @Nonnull String symbolName,
+    @Nonnull
+    <TValue> String defineSymbol(@Nonnull SymbolContext<TValue> symbolContext, @Nonnull String symbolName,
             @Nonnull SymbolType symbolType, @CheckForNull TValue value) {
+        if (symbolContext == SymbolContext.VALUE) {
+            final int generation = this.rootNamespace.getGeneration();
+            symbolName = this.namespace.define(symbolName);
+            if (this.rootNamespace.getGeneration() != generation) {
+                // The symbol shadows a symbol of an enclosing namespace that was referenced earlier from this namespace, so
+                // that reference must be resolved again.
+                this.requestAnotherPass();
+            }
+        }
+
         this.builder.defineSymbol(symbolContext, symbolName, false, symbolType, value);
+        return symbolName;
+    }
+
+    /**
+     * Determines whether the evaluation of a value whose result doesn't affect the size of the code can be deferred to the next
+     * pass. This is the case during the sizing pass; the first time a value is deferred, another pass is requested from the
+     * assembler.
+     *
+     * @return <code>true</code> if the value must not be evaluated, or <code>false</code> if it must be evaluated now
+     */
+    boolean deferEvaluation() {
+        if (!this.sizingPass) {
+            return false;
+        }
+
+        // The deferred values are evaluated and encoded in the next pass.
+        this.requestAnotherPass();
+        return true;
+    }
+
+    /**
+     * Notifies the output pipeline that the current line has been assembled.
+     *
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    void endOfLine() throws IOException {
+        if (this.transformStage != null) {
+            this.transformStage.endOfLine();
+        }
+    }
+
+    /**
+     * Enters a block: the assembler will step through the source locations produced by the specified block state.
+     *
+     * @param blockState
+     *            the state of the block to enter
+     */
+    void enterBlock(@Nonnull BlockState blockState) {
+        this.blockStates.push(blockState);
+        this.builder.enterBlock(blockState, blockState);
+    }
+
+    /**
+     * Evaluates an operand that specifies the path of a file.
+     *
+     * @param operandIndex
+     *            the index of the operand to evaluate
+     * @return the file path, or <code>null</code> if the operand is not a valid expression or doesn't evaluate to a string
+     */
+    @CheckForNull
+    String evaluateFilePath(int operandIndex) {
+        final Expression expression = this.parseExpression(operandIndex);
+        if (expression == null) {
+            return null;
+        }
+
+        final String filePath = Value.accept(expression.evaluate(this.getEvaluationContext()), STRING_VALUE_VISITOR);
+        if (filePath == null) {
+            this.addMessage(new InvalidExpressionErrorMessage(this.getOperandText(operandIndex)));
+        }
+
+        return filePath;
+    }
+
+    /**
+     * Removes a block state from the block stack. This is called by the block state when it has no more source locations to
+     * produce.
+     *
+     * @param blockState
+     *            the state of the block to exit
+     */
+    void exitBlock(@Nonnull BlockState blockState) {
+        if (this.blockStates.peek() == blockState) {
+            this.blockStates.pop();
+        }
+    }
+
+    /**
+     * Notifies the listeners of the assembly that it has read a file.
+     *
+     * @param filePath
+     *            the path of the file
+     * @param kind
+     *            the kind of the file
+     */
+    void fileRead(@Nonnull String filePath, @Nonnull Z80AssemblyListener.FileKind kind) {
+        for (Z80AssemblyListener listener : this.listeners) {
+            listener.fileRead(filePath, kind);
+        }
+    }
+
+    /**
+     * Notifies the listeners of the assembly that it has failed to read a file.
+     *
+     * @param filePath
+     *            the path of the file
+     * @param kind
+     *            the kind of the file
+     */
+    void fileReadFailed(@Nonnull String filePath, @Nonnull Z80AssemblyListener.FileKind kind) {
+        for (Z80AssemblyListener listener : this.listeners) {
+            listener.fileReadFailed(filePath, kind);
+        }
+    }
+
+    /**
+     * Gets the state of the innermost block that is being assembled, if it is of the specified type.
+     *
+     * @param type
+     *            the type of block state to get
+     * @return the state of the innermost block, or <code>null</code> if there is no block or if the innermost block's state is
+     *         not of the specified type
+     */
+    @CheckForNull
+    <T extends BlockState> T getCurrentBlock(@Nonnull Class<T> type) {
+        final BlockState blockState = this.blockStates.peek();
+        if (type.isInstance(blockState)) {
+            return type.cast(blockState);
+        }
+
+        return null;
     }
 
     void getEffectiveAddress(int operandIndex, @Nonnull EffectiveAddress ea) {
-        this.tokenizer.setCharSequence(this.getOperandText(operandIndex));
+        this.setTokenizerOperand(operandIndex);
         EffectiveAddress.getEffectiveAddress(this.tokenizer, this.createSymbolLookup(), this.getEvaluationContext(), this.encoding,
-                this, ea);
+                this, this.sizingPass, ea);
+        if (ea.deferred) {
+            this.deferEvaluation();
+        }
     }
 
     @Nonnull
@@ -173,11 +684,114 @@ final class Z80AssemblyContext implements Consumer<AssemblyMessage>, CustomAssem
         return this.getSymbolByContextAndName(MNEMONIC, name, Mnemonics.SYMBOL_RESOLUTION_FALLBACK);
     }
 
+    /**
+     * Gets the text of the logical line of the current assembly step.
+     *
+     * @return the text of the line, or an empty string if the step has no logical line
+     */
+    @Nonnull
+    String getLineText() {
+        if (this.logicalLine == null) {
+            return "";
+        }
+
+        this.logicalLineReader.setRange(this.sourceLocation, new SubstringBounds(0, this.logicalLine.getLength()));
+        return this.logicalLineReader.readToString();
+    }
+
     String getOperandText(int operandIndex) {
         this.logicalLineReader.setRange(this.sourceLocation, this.logicalLine.getOperandBounds(operandIndex));
         return this.logicalLineReader.readToString();
     }
 
+    /**
+     * Gets the number of bytes written to the assembly builder since the start of the current pass.
+     *
+     * @return the output length
+     */
+    long getOutputLength() {
+        return this.outputLength;
+    }
+
+    /**
+     * Adds the timing of the instruction on the logical line of the current assembly step to the enclosing <code>CYCLES</code>
+     * blocks and notifies the listeners of the assembly that the line has been assembled.
+     *
+     * @param instruction
+     *            <code>true</code> if the line's mnemonic is an instruction, otherwise <code>false</code>
+     * @param canReassembleInIsolation
+     *            <code>true</code> if the line's mnemonic {@linkplain Mnemonic#canReassembleInIsolation() can be reassembled in
+     *            isolation}, otherwise <code>false</code>
+     */
+    void lineAssembled(boolean instruction, boolean canReassembleInIsolation) {
+        // Instructions that are assembled in a TRANSFORM block are not timed.
+        int cycles = -1;
+        int takenCycles = -1;
+        if (instruction && this.transformStage == null && this.hasSingleInstruction()) {
+            cycles = Z80CycleTable.getCycles(this.lineBytes, 0);
+            takenCycles = Z80CycleTable.getTakenCycles(this.lineBytes, 0);
+
+            CyclesBlockState cyclesBlock = this.cyclesBlock;
+            while (cyclesBlock != null) {
+                cyclesBlock.cycles += cycles;
+                cyclesBlock = cyclesBlock.previousCyclesBlock;
+            }
+        }
+
+        if (this.listeners.length == 0) {
+            return;
+        }
+
+        final AssembledLine line = this.assembledLine;
+        line.set(instruction, canReassembleInIsolation && this.isReassemblable(), cycles, takenCycles);
+        for (Z80AssemblyListener listener : this.listeners) {
+            listener.lineAssembled(line);
+        }
+    }
+
+    /**
+     * Parses the specified operand as an expression. If the operand is not a valid expression, an error message is added to the
+     * assembly.
+     *
+     * @param operandIndex
+     *            the index of the operand to parse
+     * @return the parsed expression, or <code>null</code> if the operand is not a valid expression
+     */
+    @CheckForNull
+    Expression parseExpression(int operandIndex) {
+        return this.parseExpression(operandIndex, this.createSymbolLookup());
+    }
+
+    /**
+     * Parses the specified operand as an expression whose identifiers are looked up with the specified symbol lookup. If the
+     * operand is not a valid expression, an error message is added to the assembly.
+     *
+     * @param operandIndex
+     *            the index of the operand to parse
+     * @param symbolLookup
+     *            the symbol lookup
+     * @return the parsed expression, or <code>null</code> if the operand is not a valid expression
+     */
+    @CheckForNull
+    Expression parseExpression(int operandIndex, @Nonnull SymbolLookup symbolLookup) {
+        final String operandText = this.setTokenizerOperand(operandIndex);
+
+        final Expression expression;
+        try {
+            expression = ExpressionParser.parse(this.tokenizer, symbolLookup, this);
+        } catch (InvalidTokenException e) {
+            this.addMessage(e.createAssemblyErrorMessage());
+            return null;
+        }
+
+        if (expression == null || this.tokenizer.getTokenType() != TokenType.END) {
+            this.addMessage(new InvalidExpressionErrorMessage(operandText));
+            return null;
+        }
+
+        return expression;
+    }
+
     boolean requireNumberOfOperands(int requiredNumberOfOperands) {
         if (this.numberOfOperands != requiredNumberOfOperands) {
             this.addWrongNumberOfOperandsErrorMessage();
@@ -194,7 +808,16 @@ final class Z80AssemblyContext implements Consumer<AssemblyMessage>, CustomAssem
      */
     private void defineLabel(int index) {
         final String label = this.getLabelText(index);
-        this.defineSymbol(SymbolContext.VALUE, label, SymbolType.CONSTANT, new UnsignedIntValue(this.programCounter));
+        final String name = this.defineSymbol(SymbolContext.VALUE, label, SymbolType.CONSTANT,
+                new UnsignedIntValue(this.programCounter));
+
+        // In object files, labels are relative to the address of the section, except in PHASE blocks.
+        if (this.objectFileSymbols != null && this.phaseOffset == 0) {
+            this.objectFileSymbols.addRelocatableSymbol(name);
+            for (Z80AssemblyListener listener : this.listeners) {
+                listener.relocatableSymbolDefined(name);
+            }
+        }
     }
 
     @CheckForNull
@@ -214,10 +837,18 @@ final class Z80AssemblyContext implements Consumer<AssemblyMessage>, CustomAssem
         return this.builder.resolveSymbolReference(context, name, false, null, symbolResolutionFallback).getSymbol();
     }
 
+    // Determines whether the current assembly step wrote a single instruction to the assembly builder, in which case the
+    // instruction is entirely in lineBytes.
+    private boolean hasSingleInstruction() {
+        final long length = this.outputLength - this.lineOutputOffset;
+        return length > 0 && length <= this.lineBytes.length;
+    }
+
     private void initialize(@Nonnull AssemblyStep step) {
         this.step = step;
-        this.programCounter = step.getProgramCounter();
+        this.programCounter = step.getProgramCounter() + this.phaseOffset;
         this.sourceLocation = step.getLocation().getSourceLocation();
+        this.lineOutputOffset = this.outputLength;
 
         final LogicalLine logicalLine = SourceLocationUtils.getLogicalLine(this.sourceLocation);
         if (logicalLine != null) {
@@ -236,4 +867,59 @@ final class Z80AssemblyContext implements Consumer<AssemblyMessage>, CustomAssem
         this.evaluationContext = null;
     }
 
+    // Determines whether the line of the current assembly step is assembled outside of any loop, CYCLES block, TRANSFORM block
+    // and namespace, so that it is assembled exactly once, with the symbols of the root namespace, and so that no block depends
+    // on its output or its timing.
+    private boolean isReassemblable() {
+        if (this.transformStage != null || this.cyclesBlock != null || this.namespace != this.rootNamespace) {
+            return false;
+        }
+
+        for (BlockState blockState : this.blockStates) {
+            if (blockState instanceof LoopBlockState) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Makes the assembler perform another pass after the current one, if the current pass hasn't requested it already.
+    private void requestAnotherPass() {
+        if (!this.anotherPassRequested) {
+            this.anotherPassRequested = true;
+
+            // Reference a symbol before defining it with a value that differs from the previous pass. Like any forward reference
+            // whose value changes, this makes the assembler perform another pass.
+            this.builder.resolveSymbolReference(PASS_REQUEST, "", false, null, this);
+            this.builder.defineSymbol(PASS_REQUEST, "", false, SymbolType.CONSTANT, Integer.valueOf(this.passNumber));
+        }
+    }
+
+    // Makes the tokenizer read the specified operand and returns the operand's text. If the operands are pretokenized, the operands
+    // of each logical line are tokenized the first time the line is assembled, and the tokens are replayed on later passes.
+    @Nonnull
+    private String setTokenizerOperand(int operandIndex) {
+        final IdentityHashMap<SourceNode, TokenizedOperand[]> tokenizedOperands = this.tokenizedOperands;
+        if (tokenizedOperands == null) {
+            final String operandText = this.getOperandText(operandIndex);
+            this.tokenizer.setCharSequence(operandText);
+            return operandText;
+        }
+
+        TokenizedOperand[] lineOperands = tokenizedOperands.get(this.logicalLine);
+        if (lineOperands == null) {
+            lineOperands = new TokenizedOperand[this.numberOfOperands];
+            for (int i = 0; i < lineOperands.length; i++) {
+                lineOperands[i] = TokenizedOperand.tokenize(this.getOperandText(i));
+            }
+
+            tokenizedOperands.put(this.logicalLine, lineOperands);
+        }
+
+        final TokenizedOperand operand = lineOperands[operandIndex];
+        this.tokenizer.setTokenizedOperand(operand);
+        return operand.getText();
+    }
+
 }
@@ -10,7 +10,7 @@ import org.reasm.SymbolLookupContext;
 import org.reasm.expressions.SymbolLookup;
 
 /**
- * Provides symbol lookup in a particular {@link SymbolLookupContext}.
+ * Provides symbol lookup in a particular {@link SymbolLookupContext} and {@link Namespace}.
  *
  * @author Francis Gagné
  */
@@ -21,10 +21,14 @@ final class Z80SymbolLookup implements SymbolLookup {
     private final Z80AssemblyContext context;
     @Nonnull
     private final SymbolLookupContext symbolLookupContext;
+    @Nonnull
+    private final Namespace namespace;
 
-    Z80SymbolLookup(@Nonnull Z80AssemblyContext context, @Nonnull SymbolLookupContext symbolLookupContext) {
+    Z80SymbolLookup(@Nonnull Z80AssemblyContext context, @Nonnull SymbolLookupContext symbolLookupContext,
+            @Nonnull Namespace namespace) {
         this.context = context;
         this.symbolLookupContext = symbolLookupContext;
+        this.namespace = namespace;
     }
 
     @Override
@@ -50,13 +54,17 @@ final class Z80SymbolLookup implements SymbolLookup {
             return false;
         }
 
+        if (this.namespace != other.namespace) {
+            return false;
+        }
+
         return true;
     }
 
     @Override
     public final Symbol getSymbol(String name) {
-        return this.context.builder
-                .resolveSymbolReference(SymbolContext.VALUE, name, false, this.symbolLookupContext, this.context).getSymbol();
+        return this.context.builder.resolveSymbolReference(SymbolContext.VALUE, this.namespace.resolve(name), false,
+                this.symbolLookupContext, this.context).getSymbol();
     }
 
     @Override
@@ -65,6 +73,7 @@ final class Z80SymbolLookup implements SymbolLookup {
         int result = 1;
         result = prime * result + this.context.hashCode();
         result = prime * result + this.symbolLookupContext.hashCode();
+        result = prime * result + this.namespace.hashCode();
         return result;
     }
 
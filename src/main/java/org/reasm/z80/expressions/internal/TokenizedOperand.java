@@ -0,0 +1,93 @@
+package org.reasm.z80.expressions.internal;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The text of an operand and the tokens that {@link Tokenizer} reads from it, so that the operand can be tokenized once and
+ * replayed in every pass.
+ * <p>
+ * The tokens are stored in a single array, as triples of the token type's ordinal, the token's start and the token's end. The
+ * final {@link TokenType#END} token is included.
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+public final class TokenizedOperand {
+
+    @Nonnull
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    /**
+     * Tokenizes an operand.
+     *
+     * @param text
+     *            the text of the operand
+     * @return the tokenized operand
+     */
+    @Nonnull
+    public static TokenizedOperand tokenize(@Nonnull String text) {
+        final Tokenizer tokenizer = new Tokenizer();
+        tokenizer.setCharSequence(text);
+
+        int[] tokens = new int[3 * 4];
+        int length = 0;
+        for (;;) {
+            if (length == tokens.length) {
+                tokens = Arrays.copyOf(tokens, length * 2);
+            }
+
+            tokens[length++] = tokenizer.getTokenType().ordinal();
+            tokens[length++] = tokenizer.getTokenStart();
+            tokens[length++] = tokenizer.getTokenEnd();
+
+            if (tokenizer.getTokenType() == TokenType.END) {
+                break;
+            }
+
+            tokenizer.advance();
+        }
+
+        return new TokenizedOperand(text, Arrays.copyOf(tokens, length));
+    }
+
+    @Nonnull
+    private final String text;
+    @Nonnull
+    private final int[] tokens;
+
+    private TokenizedOperand(@Nonnull String text, @Nonnull int[] tokens) {
+        this.text = text;
+        this.tokens = tokens;
+    }
+
+    /**
+     * Gets the text of the operand.
+     *
+     * @return the text
+     */
+    @Nonnull
+    public final String getText() {
+        return this.text;
+    }
+
+    final int getNumberOfTokens() {
+        return this.tokens.length / 3;
+    }
+
+    final int getTokenEnd(int index) {
+        return this.tokens[index * 3 + 2];
+    }
+
+    final int getTokenStart(int index) {
+        return this.tokens[index * 3 + 1];
+    }
+
+    @Nonnull
+    final TokenType getTokenType(int index) {
+        return TOKEN_TYPES[this.tokens[index * 3]];
+    }
+
+}
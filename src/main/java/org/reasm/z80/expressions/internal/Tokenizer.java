@@ -19,6 +19,9 @@ public final class Tokenizer {
     private static final int INTEGER_TYPE_HEXADECIMAL = 2;
 
     private CharSequenceParserReader reader;
+    @CheckForNull
+    private TokenizedOperand tokenizedOperand;
+    private int tokenIndex;
     private int endOfBrokenSequence;
     private TokenType tokenType;
     private int tokenStart;
@@ -38,6 +41,8 @@ public final class Tokenizer {
      */
     private Tokenizer(@Nonnull Tokenizer tokenizer) {
         this.reader = tokenizer.reader.duplicate();
+        this.tokenizedOperand = tokenizer.tokenizedOperand;
+        this.tokenIndex = tokenizer.tokenIndex;
         this.endOfBrokenSequence = tokenizer.endOfBrokenSequence;
         this.tokenType = tokenizer.tokenType;
         this.tokenStart = tokenizer.tokenStart;
@@ -64,6 +69,21 @@ public final class Tokenizer {
             this.endOfBrokenSequence = -1;
         }
 
+        final TokenizedOperand tokenizedOperand = this.tokenizedOperand;
+        if (tokenizedOperand != null) {
+            // Replay the next pre-tokenized token.
+            final int index = this.tokenIndex;
+            if (index < tokenizedOperand.getNumberOfTokens()) {
+                this.tokenIndex = index + 1;
+                this.setToken(tokenizedOperand.getTokenType(index), tokenizedOperand.getTokenStart(index),
+                        tokenizedOperand.getTokenEnd(index));
+            } else {
+                this.setToken(TokenType.END, this.tokenEnd, this.tokenEnd);
+            }
+
+            return;
+        }
+
         this.setToken(TokenType.END, this.tokenEnd, this.tokenEnd);
 
         while (Syntax.isWhitespace(this.reader.getCurrentCodePoint())) {
@@ -447,6 +467,8 @@ public final class Tokenizer {
      */
     public final void copyFrom(@Nonnull Tokenizer other) {
         this.reader.copyFrom(other.reader);
+        this.tokenizedOperand = other.tokenizedOperand;
+        this.tokenIndex = other.tokenIndex;
         this.endOfBrokenSequence = other.endOfBrokenSequence;
         this.tokenType = other.tokenType;
         this.tokenStart = other.tokenStart;
@@ -524,6 +546,27 @@ public final class Tokenizer {
         }
 
         this.reader = new CharSequenceParserReader(charSequence);
+        this.tokenizedOperand = null;
+        this.endOfBrokenSequence = -1;
+        this.setToken(TokenType.END, 0, 0);
+        this.advance();
+    }
+
+    /**
+     * Sets the pre-tokenized operand this tokenizer will read from. The tokens are replayed from the operand instead of being
+     * parsed from its text again. The first token is read.
+     *
+     * @param tokenizedOperand
+     *            the {@link TokenizedOperand} to read from
+     */
+    public final void setTokenizedOperand(@Nonnull TokenizedOperand tokenizedOperand) {
+        if (tokenizedOperand == null) {
+            throw new NullPointerException("tokenizedOperand");
+        }
+
+        this.reader = new CharSequenceParserReader(tokenizedOperand.getText());
+        this.tokenizedOperand = tokenizedOperand;
+        this.tokenIndex = 0;
         this.endOfBrokenSequence = -1;
         this.setToken(TokenType.END, 0, 0);
         this.advance();
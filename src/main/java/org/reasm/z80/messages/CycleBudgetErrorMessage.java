@@ -0,0 +1,39 @@
+package org.reasm.z80.messages;
+
+import org.reasm.AssemblyErrorMessage;
+
+/**
+ * An error message that is generated during an assembly when the instructions in a <code>CYCLES</code> block take a number of
+ * T-states that is outside of the block's budget.
+ *
+ * @author Francis Gagné
+ */
+public class CycleBudgetErrorMessage extends AssemblyErrorMessage {
+
+    private static String getText(long cycles, long minimum, long maximum) {
+        if (minimum == maximum) {
+            return "Timed block takes " + cycles + " T-states instead of " + maximum;
+        }
+
+        if (cycles > maximum) {
+            return "Timed block takes " + cycles + " T-states, which exceeds its budget of " + maximum;
+        }
+
+        return "Timed block takes " + cycles + " T-states, which is less than its minimum of " + minimum;
+    }
+
+    /**
+     * Initializes a new CycleBudgetErrorMessage.
+     *
+     * @param cycles
+     *            the number of T-states taken by the instructions in the block
+     * @param minimum
+     *            the minimum number of T-states allowed in the block
+     * @param maximum
+     *            the maximum number of T-states allowed in the block
+     */
+    public CycleBudgetErrorMessage(long cycles, long minimum, long maximum) {
+        super(getText(cycles, minimum, maximum));
+    }
+
+}
@@ -0,0 +1,38 @@
+package org.reasm.z80.messages;
+
+import javax.annotation.Nonnull;
+
+import org.reasm.AssemblyErrorMessage;
+
+/**
+ * An error message that is generated during an assembly when a file referenced by a directive cannot be read.
+ *
+ * @author Francis Gagné
+ */
+public class FileReadErrorMessage extends AssemblyErrorMessage {
+
+    @Nonnull
+    private final String filePath;
+
+    /**
+     * Initializes a new FileReadErrorMessage.
+     *
+     * @param filePath
+     *            the path of the file that cannot be read
+     */
+    public FileReadErrorMessage(@Nonnull String filePath) {
+        super("Cannot read file: " + filePath);
+        this.filePath = filePath;
+    }
+
+    /**
+     * Gets the path of the file that cannot be read.
+     *
+     * @return the file path
+     */
+    @Nonnull
+    public final String getFilePath() {
+        return this.filePath;
+    }
+
+}
@@ -0,0 +1,25 @@
+package org.reasm.z80.messages;
+
+import org.reasm.AssemblyErrorMessage;
+
+/**
+ * An error message that is generated during an assembly when the minimum number of T-states given to a <code>CYCLES</code>
+ * directive is greater than the maximum number of T-states.
+ *
+ * @author Francis Gagné
+ */
+public class InvalidCycleBudgetErrorMessage extends AssemblyErrorMessage {
+
+    /**
+     * Initializes a new InvalidCycleBudgetErrorMessage.
+     *
+     * @param minimum
+     *            the minimum number of T-states
+     * @param maximum
+     *            the maximum number of T-states
+     */
+    public InvalidCycleBudgetErrorMessage(long minimum, long maximum) {
+        super("Minimum number of T-states (" + minimum + ") is greater than the maximum (" + maximum + ")");
+    }
+
+}
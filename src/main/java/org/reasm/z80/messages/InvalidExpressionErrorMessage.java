@@ -0,0 +1,27 @@
+package org.reasm.z80.messages;
+
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+import org.reasm.AssemblyErrorMessage;
+
+/**
+ * An error message that is generated during an assembly when an operand that must contain an expression cannot be parsed as an
+ * expression.
+ *
+ * @author Francis Gagné
+ */
+public class InvalidExpressionErrorMessage extends AssemblyErrorMessage {
+
+    /**
+     * Initializes a new InvalidExpressionErrorMessage.
+     *
+     * @param expression
+     *            the text of the invalid expression
+     */
+    public InvalidExpressionErrorMessage(@Nonnull String expression) {
+        super("Invalid expression: " + Objects.requireNonNull(expression, "expression"));
+    }
+
+}
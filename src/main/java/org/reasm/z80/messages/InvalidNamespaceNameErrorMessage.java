@@ -0,0 +1,27 @@
+package org.reasm.z80.messages;
+
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+import org.reasm.AssemblyErrorMessage;
+
+/**
+ * An error message that is generated during an assembly when the operand of a <code>NAMESPACE</code> directive is not a valid
+ * namespace name.
+ *
+ * @author Francis Gagné
+ */
+public class InvalidNamespaceNameErrorMessage extends AssemblyErrorMessage {
+
+    /**
+     * Initializes a new InvalidNamespaceNameErrorMessage.
+     *
+     * @param name
+     *            the invalid namespace name
+     */
+    public InvalidNamespaceNameErrorMessage(@Nonnull String name) {
+        super("Invalid namespace name: " + Objects.requireNonNull(name, "name"));
+    }
+
+}
@@ -0,0 +1,35 @@
+package org.reasm.z80.messages;
+
+import org.reasm.AssemblyErrorMessage;
+
+/**
+ * An error message that is generated during an assembly when a <code>WHILE</code>, <code>DO</code> or <code>FOR</code> block
+ * performs more iterations than the maximum allowed number of iterations.
+ *
+ * @author Francis Gagné
+ */
+public class LoopIterationLimitExceededErrorMessage extends AssemblyErrorMessage {
+
+    private final int limit;
+
+    /**
+     * Initializes a new LoopIterationLimitExceededErrorMessage.
+     *
+     * @param limit
+     *            the maximum number of iterations that was exceeded
+     */
+    public LoopIterationLimitExceededErrorMessage(int limit) {
+        super("Loop exceeded the maximum number of iterations (" + limit + ")");
+        this.limit = limit;
+    }
+
+    /**
+     * Gets the maximum number of iterations that was exceeded.
+     *
+     * @return the iteration limit
+     */
+    public final int getLimit() {
+        return this.limit;
+    }
+
+}
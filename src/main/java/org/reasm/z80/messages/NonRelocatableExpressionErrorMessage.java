@@ -0,0 +1,21 @@
+package org.reasm.z80.messages;
+
+import org.reasm.AssemblyErrorMessage;
+
+/**
+ * An error message that is generated during the assembly of an object file when the value of an expression depends on the
+ * address of a label or on an external symbol in a way that cannot be represented by a relocation. A relocation can only add the
+ * address of the section or the value of a single external symbol to a constant.
+ *
+ * @author Francis Gagné
+ */
+public class NonRelocatableExpressionErrorMessage extends AssemblyErrorMessage {
+
+    /**
+     * Initializes a new NonRelocatableExpressionErrorMessage.
+     */
+    public NonRelocatableExpressionErrorMessage() {
+        super("Expression cannot be relocated");
+    }
+
+}
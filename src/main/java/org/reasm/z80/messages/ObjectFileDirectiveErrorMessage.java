@@ -0,0 +1,27 @@
+package org.reasm.z80.messages;
+
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+import org.reasm.AssemblyErrorMessage;
+
+/**
+ * An error message that is generated during an assembly when a directive that declares imported or exported symbols is used in an
+ * assembly that doesn't produce an object file.
+ *
+ * @author Francis Gagné
+ */
+public class ObjectFileDirectiveErrorMessage extends AssemblyErrorMessage {
+
+    /**
+     * Initializes a new ObjectFileDirectiveErrorMessage.
+     *
+     * @param directive
+     *            the name of the directive
+     */
+    public ObjectFileDirectiveErrorMessage(@Nonnull String directive) {
+        super(Objects.requireNonNull(directive, "directive") + " is only allowed when assembling an object file");
+    }
+
+}
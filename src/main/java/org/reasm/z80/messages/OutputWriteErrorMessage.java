@@ -0,0 +1,40 @@
+package org.reasm.z80.messages;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+
+import org.reasm.AssemblyErrorMessage;
+
+/**
+ * An error message that is generated during an assembly when assembled data cannot be written to the output.
+ *
+ * @author Francis Gagné
+ */
+public class OutputWriteErrorMessage extends AssemblyErrorMessage {
+
+    @Nonnull
+    private final IOException exception;
+
+    /**
+     * Initializes a new OutputWriteErrorMessage.
+     *
+     * @param exception
+     *            the I/O exception that occurred while the data was written
+     */
+    public OutputWriteErrorMessage(@Nonnull IOException exception) {
+        super("Cannot write the output: " + exception.getMessage());
+        this.exception = exception;
+    }
+
+    /**
+     * Gets the I/O exception that occurred while the data was written.
+     *
+     * @return the I/O exception
+     */
+    @Nonnull
+    public final IOException getException() {
+        return this.exception;
+    }
+
+}
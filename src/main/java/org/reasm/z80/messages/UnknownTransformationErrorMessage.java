@@ -0,0 +1,27 @@
+package org.reasm.z80.messages;
+
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+import org.reasm.AssemblyErrorMessage;
+
+/**
+ * An error message that is generated during an assembly when the operand of a <code>TRANSFORM</code> directive does not name a
+ * known transformation.
+ *
+ * @author Francis Gagné
+ */
+public class UnknownTransformationErrorMessage extends AssemblyErrorMessage {
+
+    /**
+     * Initializes a new UnknownTransformationErrorMessage.
+     *
+     * @param transformation
+     *            the name of the unknown transformation
+     */
+    public UnknownTransformationErrorMessage(@Nonnull String transformation) {
+        super("Unknown transformation: " + Objects.requireNonNull(transformation, "transformation"));
+    }
+
+}
@@ -0,0 +1,24 @@
+package org.reasm.z80.object;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The exception that is thrown when an object file cannot be produced from an assembly or when object files cannot be linked.
+ *
+ * @author Francis Gagné
+ */
+public class ObjectFileException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Initializes a new ObjectFileException.
+     *
+     * @param message
+     *            the message that describes the error
+     */
+    public ObjectFileException(@Nonnull String message) {
+        super(message);
+    }
+
+}
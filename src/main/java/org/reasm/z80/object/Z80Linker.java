@@ -0,0 +1,157 @@
+package org.reasm.z80.object;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Links {@linkplain Z80ObjectFile object files} into a program.
+ * <p>
+ * The sections that have the same name are placed next to each other, in the order of the object files; groups of sections are
+ * placed in the order in which their name first appears. The first section is placed at the base address. The exported symbols
+ * of all the object files are then resolved, and the relocations are applied by adding the address of the section or the value
+ * of the imported symbol to the byte or little-endian word at the relocation's offset. Relocated values wrap around on 8 or 16
+ * bits, like the values that the assembler writes for negative operands.
+ *
+ * @author Francis Gagné
+ */
+public final class Z80Linker {
+
+    /**
+     * Links object files.
+     *
+     * @param objectFiles
+     *            the object files to link
+     * @param baseAddress
+     *            the address of the first byte of the program
+     * @return the linked program
+     * @throws ObjectFileException
+     *             a symbol is exported by more than one object file or refers to a section that doesn't exist, an imported symbol
+     *             is not exported by any object file, or a relocation is outside of its section or refers to a symbol that is not
+     *             imported
+     */
+    @Nonnull
+    public static byte[] link(@Nonnull List<Z80ObjectFile> objectFiles, long baseAddress) throws ObjectFileException {
+        if (objectFiles == null) {
+            throw new NullPointerException("objectFiles");
+        }
+
+        // Group the sections by name.
+        final LinkedHashMap<String, ArrayList<int[]>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < objectFiles.size(); i++) {
+            final List<Z80ObjectFile.Section> sections = objectFiles.get(i).getSections();
+            for (int j = 0; j < sections.size(); j++) {
+                final String name = sections.get(j).getName();
+                ArrayList<int[]> group = groups.get(name);
+                if (group == null) {
+                    group = new ArrayList<>();
+                    groups.put(name, group);
+                }
+
+                group.add(new int[] { i, j });
+            }
+        }
+
+        // Lay out the sections.
+        final int[][] sectionOffsets = new int[objectFiles.size()][];
+        for (int i = 0; i < objectFiles.size(); i++) {
+            sectionOffsets[i] = new int[objectFiles.get(i).getSections().size()];
+        }
+
+        int length = 0;
+        for (ArrayList<int[]> group : groups.values()) {
+            for (int[] location : group) {
+                sectionOffsets[location[0]][location[1]] = length;
+                length += objectFiles.get(location[0]).getSections().get(location[1]).getLength();
+            }
+        }
+
+        // Resolve the exported symbols.
+        final HashMap<String, Long> symbols = new HashMap<>();
+        for (int i = 0; i < objectFiles.size(); i++) {
+            for (Z80ObjectFile.Export export : objectFiles.get(i).getExports()) {
+                long value = export.getValue();
+                final int sectionIndex = export.getSectionIndex();
+                if (sectionIndex >= 0) {
+                    if (sectionIndex >= sectionOffsets[i].length) {
+                        throw new ObjectFileException("Symbol \"" + export.getName() + "\" refers to section " + sectionIndex
+                                + ", which doesn't exist");
+                    }
+
+                    value += baseAddress + sectionOffsets[i][sectionIndex];
+                }
+
+                if (symbols.put(export.getName(), value) != null) {
+                    throw new ObjectFileException("Symbol \"" + export.getName() + "\" is exported by more than one object file");
+                }
+            }
+        }
+
+        for (Z80ObjectFile objectFile : objectFiles) {
+            for (String name : objectFile.getImports()) {
+                if (!symbols.containsKey(name)) {
+                    throw new ObjectFileException("Unresolved external symbol \"" + name + "\"");
+                }
+            }
+        }
+
+        // Copy the sections and apply the relocations.
+        final byte[] program = new byte[length];
+        for (int i = 0; i < objectFiles.size(); i++) {
+            final Z80ObjectFile objectFile = objectFiles.get(i);
+            final List<Z80ObjectFile.Section> sections = objectFile.getSections();
+            for (int j = 0; j < sections.size(); j++) {
+                final Z80ObjectFile.Section section = sections.get(j);
+                final int sectionOffset = sectionOffsets[i][j];
+                System.arraycopy(section.getData(), 0, program, sectionOffset, section.getLength());
+
+                for (Z80ObjectFile.Relocation relocation : section.getRelocations()) {
+                    final long addend = getRelocationAddend(relocation, objectFile, symbols, baseAddress + sectionOffset);
+                    final int offset = relocation.getOffset();
+                    if (offset < 0 || offset + relocation.getSize() > section.getLength()) {
+                        throw new ObjectFileException("Relocation at offset " + offset + " is outside of section \""
+                                + section.getName() + "\"");
+                    }
+
+                    relocate(program, sectionOffset + offset, relocation.getSize(), addend);
+                }
+            }
+        }
+
+        return program;
+    }
+
+    private static long getRelocationAddend(@Nonnull Z80ObjectFile.Relocation relocation, @Nonnull Z80ObjectFile objectFile,
+            @Nonnull Map<String, Long> symbols, long sectionAddress) throws ObjectFileException {
+        final String symbolName = relocation.getSymbolName();
+        if (symbolName == null) {
+            return sectionAddress;
+        }
+
+        final Long value = symbols.get(symbolName);
+        if (value == null || !objectFile.getImports().contains(symbolName)) {
+            throw new ObjectFileException("Relocation refers to symbol \"" + symbolName + "\", which is not imported");
+        }
+
+        return value;
+    }
+
+    private static void relocate(@Nonnull byte[] program, int offset, int size, long addend) {
+        if (size == 1) {
+            program[offset] += (byte) addend;
+        } else {
+            final int word = (program[offset] & 0xFF | (program[offset + 1] & 0xFF) << 8) + (int) addend;
+            program[offset] = (byte) word;
+            program[offset + 1] = (byte) (word >> 8);
+        }
+    }
+
+    // This class is not meant to be instantiated.
+    private Z80Linker() {
+    }
+
+}
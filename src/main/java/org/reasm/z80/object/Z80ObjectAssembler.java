@@ -0,0 +1,139 @@
+package org.reasm.z80.object;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.reasm.Assembly;
+import org.reasm.AssemblyCompletionStatus;
+import org.reasm.SymbolContext;
+import org.reasm.UserSymbol;
+import org.reasm.Value;
+import org.reasm.z80.Z80AssemblyListener;
+import org.reasm.z80.Z80AssemblyOptions;
+import org.reasm.z80.assembly.internal.ExactIntegerValueVisitor;
+
+/**
+ * Assembles a source file into a relocatable {@link Z80ObjectFile}.
+ * <p>
+ * The code is assembled as if it started at address 0 and is placed in a single section named {@value #SECTION_NAME}. Symbols
+ * declared with the <code>EXTERN</code> directive are imported and symbols declared with the <code>PUBLIC</code> directive are
+ * exported.
+ *
+ * @author Francis Gagné
+ */
+public final class Z80ObjectAssembler {
+
+    // Collects the information of the object file during the last pass of the assembly.
+    @NotThreadSafe
+    private static final class Collector extends Z80AssemblyListener {
+
+        @Nonnull
+        final LinkedHashSet<String> externalSymbols = new LinkedHashSet<>();
+        @Nonnull
+        final LinkedHashSet<String> publicSymbols = new LinkedHashSet<>();
+        @Nonnull
+        final HashSet<String> relocatableSymbols = new HashSet<>();
+        @Nonnull
+        final ArrayList<Z80ObjectFile.Relocation> relocations = new ArrayList<>();
+
+        Collector() {
+        }
+
+        @Override
+        public void externalSymbolDeclared(String name) {
+            this.externalSymbols.add(name);
+        }
+
+        @Override
+        public void passStarted() {
+            this.externalSymbols.clear();
+            this.publicSymbols.clear();
+            this.relocatableSymbols.clear();
+            this.relocations.clear();
+        }
+
+        @Override
+        public void publicSymbolDeclared(String name) {
+            this.publicSymbols.add(name);
+        }
+
+        @Override
+        public void relocatableSymbolDefined(String name) {
+            this.relocatableSymbols.add(name);
+        }
+
+        @Override
+        public void relocationAdded(long offset, int size, @CheckForNull String externalSymbol) {
+            this.relocations.add(new Z80ObjectFile.Relocation((int) offset, size, externalSymbol));
+        }
+
+    }
+
+    /** The name of the section that contains the assembled code. */
+    @Nonnull
+    public static final String SECTION_NAME = "CODE";
+
+    /**
+     * Performs an assembly and produces an object file from its output. The assembly must not have been started; the options of
+     * the assembly are replaced with a copy of its current {@linkplain Z80AssemblyOptions options} that produces an object file.
+     * The caller should check the assembly's messages for errors before using the object file.
+     *
+     * @param assembly
+     *            the assembly to perform
+     * @return the object file
+     * @throws IOException
+     *             an I/O error occurred during the assembly
+     * @throws ObjectFileException
+     *             a symbol declared with the <code>PUBLIC</code> directive is not defined or doesn't have an integer value
+     */
+    @Nonnull
+    public static Z80ObjectFile assemble(@Nonnull Assembly assembly) throws IOException, ObjectFileException {
+        final Collector collector = new Collector();
+        Z80AssemblyOptions.of(assembly).setObjectFile(true).addListener(collector).attachTo(assembly);
+        AssemblyCompletionStatus status;
+        do {
+            status = assembly.step();
+        } while (status != AssemblyCompletionStatus.COMPLETE);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assembly.writeAssembledDataTo(out);
+
+        final ArrayList<Z80ObjectFile.Section> sections = new ArrayList<>();
+        sections.add(new Z80ObjectFile.Section(SECTION_NAME, out.toByteArray(), collector.relocations));
+
+        final HashMap<String, Long> values = new HashMap<>();
+        for (UserSymbol symbol : assembly.getSymbols()) {
+            if (symbol.getContext() == SymbolContext.VALUE) {
+                final Long value = Value.accept((Value) symbol.getValue(), ExactIntegerValueVisitor.INSTANCE);
+                if (value != null) {
+                    values.put(symbol.getName(), value);
+                }
+            }
+        }
+
+        final ArrayList<Z80ObjectFile.Export> exports = new ArrayList<>();
+        for (String name : collector.publicSymbols) {
+            final Long value = values.get(name);
+            if (value == null) {
+                throw new ObjectFileException("Public symbol \"" + name + "\" is not defined or is not an integer");
+            }
+
+            exports.add(new Z80ObjectFile.Export(name, collector.relocatableSymbols.contains(name) ? 0 : -1, value));
+        }
+
+        return new Z80ObjectFile(sections, exports, new ArrayList<>(collector.externalSymbols));
+    }
+
+    // This class is not meant to be instantiated.
+    private Z80ObjectAssembler() {
+    }
+
+}
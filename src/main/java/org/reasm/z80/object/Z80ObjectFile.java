@@ -0,0 +1,433 @@
+package org.reasm.z80.object;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A relocatable object file produced by {@link Z80ObjectAssembler}. An object file contains sections of code, the relocations to
+ * apply to each section when it is placed at its final address, the symbols that it exports and the symbols that it imports.
+ * <p>
+ * Object files are combined into a program with {@link Z80Linker}.
+ *
+ * @author Francis Gagné
+ */
+@Immutable
+public final class Z80ObjectFile {
+
+    /**
+     * A symbol exported by an object file.
+     *
+     * @author Francis Gagné
+     */
+    @Immutable
+    public static final class Export {
+
+        @Nonnull
+        private final String name;
+        private final int sectionIndex;
+        private final long value;
+
+        /**
+         * Initializes a new Export.
+         *
+         * @param name
+         *            the name of the symbol
+         * @param sectionIndex
+         *            the index of the section that the value is relative to, or -1 if the value is absolute
+         * @param value
+         *            the value of the symbol
+         */
+        public Export(@Nonnull String name, int sectionIndex, long value) {
+            if (name == null) {
+                throw new NullPointerException("name");
+            }
+
+            this.name = name;
+            this.sectionIndex = sectionIndex;
+            this.value = value;
+        }
+
+        /**
+         * Gets the name of the symbol.
+         *
+         * @return the name
+         */
+        @Nonnull
+        public final String getName() {
+            return this.name;
+        }
+
+        /**
+         * Gets the index of the section that the value of the symbol is relative to.
+         *
+         * @return the index of the section, or -1 if the value is absolute
+         */
+        public final int getSectionIndex() {
+            return this.sectionIndex;
+        }
+
+        /**
+         * Gets the value of the symbol.
+         *
+         * @return the value
+         */
+        public final long getValue() {
+            return this.value;
+        }
+
+    }
+
+    /**
+     * A relocation to apply to the data of a section.
+     *
+     * @author Francis Gagné
+     */
+    @Immutable
+    public static final class Relocation {
+
+        private final int offset;
+        private final int size;
+        @CheckForNull
+        private final String symbolName;
+
+        /**
+         * Initializes a new Relocation.
+         *
+         * @param offset
+         *            the offset of the data to relocate in the section
+         * @param size
+         *            1 to relocate a byte, 2 to relocate a little-endian word
+         * @param symbolName
+         *            the name of the imported symbol whose value is added to the data, or <code>null</code> to add the address
+         *            of the section
+         */
+        public Relocation(int offset, int size, @CheckForNull String symbolName) {
+            if (size != 1 && size != 2) {
+                throw new IllegalArgumentException("size must be 1 or 2");
+            }
+
+            this.offset = offset;
+            this.size = size;
+            this.symbolName = symbolName;
+        }
+
+        /**
+         * Gets the offset of the data to relocate in the section.
+         *
+         * @return the offset
+         */
+        public final int getOffset() {
+            return this.offset;
+        }
+
+        /**
+         * Gets the size of the data to relocate.
+         *
+         * @return 1 for a byte, 2 for a word
+         */
+        public final int getSize() {
+            return this.size;
+        }
+
+        /**
+         * Gets the name of the imported symbol whose value is added to the data.
+         *
+         * @return the name of the symbol, or <code>null</code> if the address of the section is added to the data
+         */
+        @CheckForNull
+        public final String getSymbolName() {
+            return this.symbolName;
+        }
+
+    }
+
+    /**
+     * A section of an object file.
+     *
+     * @author Francis Gagné
+     */
+    @Immutable
+    public static final class Section {
+
+        @Nonnull
+        private final String name;
+        @Nonnull
+        private final byte[] data;
+        @Nonnull
+        private final List<Relocation> relocations;
+
+        /**
+         * Initializes a new Section.
+         *
+         * @param name
+         *            the name of the section; the linker places the sections that have the same name next to each other
+         * @param data
+         *            the data of the section
+         * @param relocations
+         *            the relocations to apply to the data
+         */
+        public Section(@Nonnull String name, @Nonnull byte[] data, @Nonnull List<Relocation> relocations) {
+            if (name == null) {
+                throw new NullPointerException("name");
+            }
+
+            if (data == null) {
+                throw new NullPointerException("data");
+            }
+
+            if (relocations == null) {
+                throw new NullPointerException("relocations");
+            }
+
+            this.name = name;
+            this.data = data.clone();
+            this.relocations = Collections.unmodifiableList(new ArrayList<>(relocations));
+        }
+
+        /**
+         * Gets the data of the section.
+         *
+         * @return a copy of the data
+         */
+        @Nonnull
+        public final byte[] getData() {
+            return this.data.clone();
+        }
+
+        /**
+         * Gets the length of the data of the section.
+         *
+         * @return the length
+         */
+        public final int getLength() {
+            return this.data.length;
+        }
+
+        /**
+         * Gets the name of the section.
+         *
+         * @return the name
+         */
+        @Nonnull
+        public final String getName() {
+            return this.name;
+        }
+
+        /**
+         * Gets the relocations to apply to the data of the section.
+         *
+         * @return the relocations
+         */
+        @Nonnull
+        public final List<Relocation> getRelocations() {
+            return this.relocations;
+        }
+
+    }
+
+    /** "Z80O" */
+    private static final int MAGIC = 0x5A38304F;
+    private static final int VERSION = 1;
+
+    /**
+     * Reads an object file from a stream.
+     *
+     * @param in
+     *            the stream to read from
+     * @return the object file
+     * @throws IOException
+     *             an I/O error occurred, or the stream doesn't contain a valid object file
+     */
+    @Nonnull
+    public static Z80ObjectFile read(@Nonnull InputStream in) throws IOException {
+        final DataInputStream dataIn = new DataInputStream(in);
+        if (dataIn.readInt() != MAGIC) {
+            throw new IOException("The stream doesn't contain an object file.");
+        }
+
+        final int version = dataIn.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported object file version: " + version);
+        }
+
+        final int numberOfSections = readCount(dataIn);
+        final ArrayList<Section> sections = new ArrayList<>();
+        for (int i = 0; i < numberOfSections; i++) {
+            final String name = dataIn.readUTF();
+            final byte[] data = new byte[readCount(dataIn)];
+            dataIn.readFully(data);
+
+            final int numberOfRelocations = readCount(dataIn);
+            final ArrayList<Relocation> relocations = new ArrayList<>();
+            for (int j = 0; j < numberOfRelocations; j++) {
+                final int offset = dataIn.readInt();
+                final int size = dataIn.readUnsignedByte();
+                if (size != 1 && size != 2) {
+                    throw new IOException("Invalid relocation size: " + size);
+                }
+
+                if (offset < 0 || offset > data.length - size) {
+                    throw new IOException("Relocation at offset " + offset + " is outside of section \"" + name + "\"");
+                }
+
+                final String symbolName = dataIn.readBoolean() ? dataIn.readUTF() : null;
+                relocations.add(new Relocation(offset, size, symbolName));
+            }
+
+            sections.add(new Section(name, data, relocations));
+        }
+
+        final int numberOfExports = readCount(dataIn);
+        final ArrayList<Export> exports = new ArrayList<>();
+        for (int i = 0; i < numberOfExports; i++) {
+            final String name = dataIn.readUTF();
+            final int sectionIndex = dataIn.readInt();
+            if (sectionIndex < -1 || sectionIndex >= numberOfSections) {
+                throw new IOException("Symbol \"" + name + "\" refers to section " + sectionIndex + ", which doesn't exist");
+            }
+
+            final long value = dataIn.readLong();
+            exports.add(new Export(name, sectionIndex, value));
+        }
+
+        final int numberOfImports = readCount(dataIn);
+        final ArrayList<String> imports = new ArrayList<>();
+        for (int i = 0; i < numberOfImports; i++) {
+            imports.add(dataIn.readUTF());
+        }
+
+        return new Z80ObjectFile(sections, exports, imports);
+    }
+
+    // The lists are not presized with the counts read from the stream, so that a corrupted count cannot cause a huge allocation
+    // before the end of the stream is detected.
+    private static int readCount(@Nonnull DataInputStream dataIn) throws IOException {
+        final int count = dataIn.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid count: " + count);
+        }
+
+        return count;
+    }
+
+    @Nonnull
+    private final List<Section> sections;
+    @Nonnull
+    private final List<Export> exports;
+    @Nonnull
+    private final List<String> imports;
+
+    /**
+     * Initializes a new Z80ObjectFile.
+     *
+     * @param sections
+     *            the sections of the object file
+     * @param exports
+     *            the symbols exported by the object file
+     * @param imports
+     *            the names of the symbols imported by the object file
+     */
+    public Z80ObjectFile(@Nonnull List<Section> sections, @Nonnull List<Export> exports, @Nonnull List<String> imports) {
+        if (sections == null) {
+            throw new NullPointerException("sections");
+        }
+
+        if (exports == null) {
+            throw new NullPointerException("exports");
+        }
+
+        if (imports == null) {
+            throw new NullPointerException("imports");
+        }
+
+        this.sections = Collections.unmodifiableList(new ArrayList<>(sections));
+        this.exports = Collections.unmodifiableList(new ArrayList<>(exports));
+        this.imports = Collections.unmodifiableList(new ArrayList<>(imports));
+    }
+
+    /**
+     * Gets the symbols exported by this object file.
+     *
+     * @return the exported symbols
+     */
+    @Nonnull
+    public final List<Export> getExports() {
+        return this.exports;
+    }
+
+    /**
+     * Gets the names of the symbols imported by this object file.
+     *
+     * @return the names of the imported symbols
+     */
+    @Nonnull
+    public final List<String> getImports() {
+        return this.imports;
+    }
+
+    /**
+     * Gets the sections of this object file.
+     *
+     * @return the sections
+     */
+    @Nonnull
+    public final List<Section> getSections() {
+        return this.sections;
+    }
+
+    /**
+     * Writes this object file to a stream.
+     *
+     * @param out
+     *            the stream to write to
+     * @throws IOException
+     *             an I/O error occurred
+     */
+    public final void writeTo(@Nonnull OutputStream out) throws IOException {
+        final DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(MAGIC);
+        dataOut.writeInt(VERSION);
+
+        dataOut.writeInt(this.sections.size());
+        for (Section section : this.sections) {
+            dataOut.writeUTF(section.name);
+            dataOut.writeInt(section.data.length);
+            dataOut.write(section.data);
+
+            dataOut.writeInt(section.relocations.size());
+            for (Relocation relocation : section.relocations) {
+                dataOut.writeInt(relocation.offset);
+                dataOut.writeByte(relocation.size);
+                dataOut.writeBoolean(relocation.symbolName != null);
+                if (relocation.symbolName != null) {
+                    dataOut.writeUTF(relocation.symbolName);
+                }
+            }
+        }
+
+        dataOut.writeInt(this.exports.size());
+        for (Export export : this.exports) {
+            dataOut.writeUTF(export.name);
+            dataOut.writeInt(export.sectionIndex);
+            dataOut.writeLong(export.value);
+        }
+
+        dataOut.writeInt(this.imports.size());
+        for (String name : this.imports) {
+            dataOut.writeUTF(name);
+        }
+
+        dataOut.flush();
+    }
+
+}
@@ -12,6 +12,8 @@ import org.reasm.source.SourceNode;
 
 final class BlockParsers {
 
+    @Nonnull
+    static final Set<Class<? extends SourceNode>> CYCLES_BLOCK_TYPES = singleType(CyclesBlock.class);
     @Nonnull
     static final Set<Class<? extends SourceNode>> DO_BLOCK_TYPES = singleType(DoBlock.class);
     @Nonnull
@@ -31,6 +33,19 @@ final class BlockParsers {
     @Nonnull
     static final Set<Class<? extends SourceNode>> WHILE_BLOCK_TYPES = singleType(WhileBlock.class);
 
+    @Nonnull
+    static final BlockParser CYCLES = new BasicBlockParser(Z80BlockDirectives.ENDCYCLES) {
+        @Override
+        public Iterable<Class<? extends SourceNode>> getOutputNodeTypes() {
+            return CYCLES_BLOCK_TYPES;
+        }
+
+        @Override
+        protected SourceNode createBlock(Iterable<? extends SourceNode> childNodes, ParseError parseError) {
+            return new CyclesBlock(childNodes, parseError);
+        }
+    };
+
     @Nonnull
     static final BlockParser DO = new BasicBlockParser(Z80BlockDirectives.UNTIL) {
         @Override
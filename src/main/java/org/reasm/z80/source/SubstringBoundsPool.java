@@ -0,0 +1,71 @@
+package org.reasm.z80.source;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.reasm.SubstringBounds;
+
+/**
+ * A pool of shared {@link SubstringBounds} objects for the small bounds that make up the vast majority of the bounds of labels,
+ * mnemonics, operands and comments in logical lines.
+ * <p>
+ * {@link SubstringBounds} is immutable, so the same object can be used by any number of logical lines, in any number of trees.
+ *
+ * @author Francis Gagné
+ */
+@ThreadSafe
+final class SubstringBoundsPool {
+
+    /** Bounds whose start is less than this value and whose length is less than this value are pooled. */
+    static final int LIMIT = 128;
+
+    // The entries are created lazily. Two threads may create the same entry concurrently; this is harmless, since both objects are
+    // equivalent and immutable.
+    @Nonnull
+    private static final SubstringBounds[] POOL = new SubstringBounds[LIMIT * LIMIT];
+
+    @CheckForNull
+    static SubstringBounds canonicalize(@CheckForNull SubstringBounds bounds) {
+        if (bounds == null) {
+            return null;
+        }
+
+        final int start = bounds.getStart();
+        final int length = bounds.getEnd() - start;
+        if (start >= LIMIT || length >= LIMIT) {
+            return bounds;
+        }
+
+        final int index = start * LIMIT + length;
+        final SubstringBounds pooled = POOL[index];
+        if (pooled != null) {
+            return pooled;
+        }
+
+        POOL[index] = bounds;
+        return bounds;
+    }
+
+    @Nonnull
+    static SubstringBounds get(int start, int end) {
+        final int length = end - start;
+        if (start >= LIMIT || length >= LIMIT) {
+            return new SubstringBounds(start, end);
+        }
+
+        final int index = start * LIMIT + length;
+        SubstringBounds pooled = POOL[index];
+        if (pooled == null) {
+            pooled = new SubstringBounds(start, end);
+            POOL[index] = pooled;
+        }
+
+        return pooled;
+    }
+
+    // This class is not meant to be instantiated.
+    private SubstringBoundsPool() {
+    }
+
+}
@@ -17,6 +17,10 @@ import org.reasm.z80.assembly.internal.Mnemonics;
  */
 public final class Z80BlockDirectives {
 
+    /** The <code>CYCLES</code> directive. */
+    @Nonnull
+    public static final BlockDirective CYCLES;
+
     /** The <code>DEPHASE</code> directive. */
     @Nonnull
     public static final BlockDirective DEPHASE;
@@ -33,6 +37,10 @@ public final class Z80BlockDirectives {
     @Nonnull
     public static final BlockDirective ELSEIF;
 
+    /** The <code>ENDCYCLES</code> directive. */
+    @Nonnull
+    public static final BlockDirective ENDCYCLES;
+
     /** The <code>ENDIF</code> directive. */
     @Nonnull
     public static final BlockDirective ENDIF;
@@ -104,10 +112,12 @@ public final class Z80BlockDirectives {
     static {
         final Map<String, BlockDirective> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
 
+        CYCLES = define(map, Mnemonics.CYCLES);
         DEPHASE = define(map, Mnemonics.DEPHASE);
         DO = define(map, Mnemonics.DO);
         ELSE = define(map, Mnemonics.ELSE);
         ELSEIF = define(map, Mnemonics.ELSEIF);
+        ENDCYCLES = define(map, Mnemonics.ENDCYCLES);
         ENDIF = define(map, Mnemonics.ENDIF);
         ENDM = define(map, Mnemonics.ENDM);
         ENDNS = define(map, Mnemonics.ENDNS);
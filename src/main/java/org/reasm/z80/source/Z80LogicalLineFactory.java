@@ -3,6 +3,7 @@ package org.reasm.z80.source;
 import javax.annotation.Nonnull;
 import javax.annotation.concurrent.Immutable;
 
+import org.reasm.SubstringBounds;
 import org.reasm.commons.source.LogicalLine;
 import org.reasm.commons.source.LogicalLineAttributes;
 import org.reasm.commons.source.LogicalLineFactory;
@@ -14,12 +15,81 @@ final class Z80LogicalLineFactory implements LogicalLineFactory {
     @Nonnull
     static final Z80LogicalLineFactory INSTANCE = new Z80LogicalLineFactory();
 
+    @Nonnull
+    private static final SubstringBounds[] NO_BOUNDS = new SubstringBounds[0];
+    @Nonnull
+    private static final int[] NO_CONTINUATION_CHARACTERS = new int[0];
+
+    /**
+     * Creates compact attributes for a logical line: the bounds are taken from {@link SubstringBoundsPool} and empty arrays are
+     * shared, so that most lines only own their attributes object and their operand array.
+     *
+     * @param line
+     *            the logical line
+     * @return the compact attributes
+     */
+    @Nonnull
+    static LogicalLineAttributes compact(@Nonnull LogicalLine line) {
+        return new LogicalLineAttributes(line.getLength(), line.getParseError(), compactLabels(line),
+                SubstringBoundsPool.canonicalize(line.getMnemonicBounds()), compactOperands(line),
+                SubstringBoundsPool.canonicalize(line.getCommentBounds()), compactContinuationCharacters(line));
+    }
+
+    @Nonnull
+    private static int[] compactContinuationCharacters(@Nonnull LogicalLine line) {
+        final int numberOfContinuationCharacters = line.getNumberOfContinuationCharacters();
+        if (numberOfContinuationCharacters == 0) {
+            return NO_CONTINUATION_CHARACTERS;
+        }
+
+        final int[] continuationCharacters = new int[numberOfContinuationCharacters];
+        for (int i = 0; i < numberOfContinuationCharacters; i++) {
+            continuationCharacters[i] = line.getContinuationCharacter(i);
+        }
+
+        return continuationCharacters;
+    }
+
+    @Nonnull
+    private static SubstringBounds[] compactLabels(@Nonnull LogicalLine line) {
+        final int numberOfLabels = line.getNumberOfLabels();
+        if (numberOfLabels == 0) {
+            return NO_BOUNDS;
+        }
+
+        final SubstringBounds[] labels = new SubstringBounds[numberOfLabels];
+        for (int i = 0; i < numberOfLabels; i++) {
+            labels[i] = SubstringBoundsPool.canonicalize(line.getLabelBounds(i));
+        }
+
+        return labels;
+    }
+
+    @Nonnull
+    private static SubstringBounds[] compactOperands(@Nonnull LogicalLine line) {
+        final int numberOfOperands = line.getNumberOfOperands();
+        if (numberOfOperands == 0) {
+            return NO_BOUNDS;
+        }
+
+        final SubstringBounds[] operands = new SubstringBounds[numberOfOperands];
+        for (int i = 0; i < numberOfOperands; i++) {
+            operands[i] = SubstringBoundsPool.canonicalize(line.getOperandBounds(i));
+        }
+
+        return operands;
+    }
+
     private Z80LogicalLineFactory() {
     }
 
     @Override
     public final LogicalLine createLogicalLine(LogicalLineAttributes attributes) {
-        return new Z80LogicalLine(attributes);
+        // The parser creates new bounds objects for every line; replace them with shared ones. LogicalLineAttributes doesn't expose
+        // its values, so they can only be read through a line: the line built from the parser's attributes is short-lived, and
+        // only the line built from the compacted attributes is kept in the tree.
+        final LogicalLine parsedLine = new Z80LogicalLine(attributes);
+        return new Z80LogicalLine(compact(parsedLine));
     }
 
     @Override
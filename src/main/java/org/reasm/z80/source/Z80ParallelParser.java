@@ -0,0 +1,304 @@
+package org.reasm.z80.source;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.reasm.commons.parseerrors.UnclosedBlockParseError;
+import org.reasm.commons.source.BlockDirective;
+import org.reasm.source.CompositeSourceNode;
+import org.reasm.source.SimpleCompositeSourceNode;
+import org.reasm.source.SourceNode;
+
+import ca.fragag.text.Document;
+
+/**
+ * Parses large Z80 source documents on several threads.
+ * <p>
+ * The document is first scanned for physical lines and block directives, and is split into chunks at lines where no block is
+ * open. The chunks are parsed independently with {@link Z80Parser#INSTANCE} on a fork-join pool, then the top-level nodes of the
+ * chunks are concatenated. The scan is only a heuristic: if a chunk turns out to end inside a block, the split was wrong and the
+ * whole document is parsed sequentially instead, so the result is always identical to the result of the sequential parser.
+ * <p>
+ * The document is scanned in place; the text of each chunk is copied once, by the task that parses it. {@link Z80ParseCache}
+ * parses the documents it doesn't have with this parser, so {@link org.reasm.z80.Z80Architecture#parse(Document)} benefits from
+ * it.
+ *
+ * @author Francis Gagné
+ */
+public final class Z80ParallelParser {
+
+    // Holds the default pool, so that it is only created when a document is parsed in parallel.
+    private static final class DefaultPoolHolder {
+
+        @Nonnull
+        static final ForkJoinPool POOL = new ForkJoinPool();
+
+    }
+
+    private static final class ParseTask extends RecursiveTask<SourceNode> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Nonnull
+        private final Document text;
+        private final int start;
+        private final int end;
+
+        ParseTask(@Nonnull Document text, int start, int end) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected SourceNode compute() {
+            final StringBuilder sb = new StringBuilder(this.end - this.start);
+            for (int i = this.start; i < this.end; i++) {
+                sb.append(this.text.charAt(i));
+            }
+
+            return Z80Parser.INSTANCE.parse(new Document(sb.toString()));
+        }
+
+    }
+
+    /** Documents shorter than this number of characters are parsed sequentially. */
+    static final int MINIMUM_CHUNK_LENGTH = 64 * 1024;
+
+    /**
+     * Parses a document on a shared fork-join pool whose parallelism is the number of available processors.
+     *
+     * @param text
+     *            the document to parse
+     * @return the parsed tree, identical to the tree produced by {@link Z80Parser#INSTANCE}
+     */
+    @Nonnull
+    public static SourceNode parse(@Nonnull Document text) {
+        return parse(text, DefaultPoolHolder.POOL);
+    }
+
+    /**
+     * Parses a document on the specified fork-join pool.
+     *
+     * @param text
+     *            the document to parse
+     * @param pool
+     *            the pool on which to parse the chunks of the document
+     * @return the parsed tree, identical to the tree produced by {@link Z80Parser#INSTANCE}
+     */
+    @Nonnull
+    public static SourceNode parse(@Nonnull Document text, @Nonnull ForkJoinPool pool) {
+        return parse(text, pool, MINIMUM_CHUNK_LENGTH);
+    }
+
+    @Nonnull
+    static SourceNode parse(@Nonnull Document text, @Nonnull ForkJoinPool pool, int minimumChunkLength) {
+        final int length = text.length();
+        if (length < minimumChunkLength * 2) {
+            return Z80Parser.INSTANCE.parse(text);
+        }
+
+        final int chunkLength = Math.max(minimumChunkLength, length / (pool.getParallelism() * 4));
+        final List<Integer> boundaries = findChunkBoundaries(text, chunkLength);
+        if (boundaries.size() <= 2) {
+            return Z80Parser.INSTANCE.parse(text);
+        }
+
+        final ArrayList<ParseTask> tasks = new ArrayList<>(boundaries.size() - 1);
+        for (int i = 1; i < boundaries.size(); i++) {
+            tasks.add(new ParseTask(text, boundaries.get(i - 1), boundaries.get(i)));
+        }
+
+        final List<SourceNode> childNodes = pool.invoke(new RecursiveTask<List<SourceNode>>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected List<SourceNode> compute() {
+                return stitch(ForkJoinTask.invokeAll(tasks));
+            }
+        });
+
+        if (childNodes == null) {
+            return Z80Parser.INSTANCE.parse(text);
+        }
+
+        return new SimpleCompositeSourceNode(childNodes, null);
+    }
+
+    /**
+     * Scans the document and finds the offsets at which it can be split into chunks of about the specified length.
+     *
+     * @return the list of offsets, starting with 0 and ending with the length of the document
+     */
+    @Nonnull
+    private static List<Integer> findChunkBoundaries(@Nonnull Document text, int chunkLength) {
+        final int length = text.length();
+        final ArrayList<Integer> boundaries = new ArrayList<>();
+        boundaries.add(0);
+
+        int depth = 0;
+        int lineStart = 0;
+        int chunkStart = 0;
+        while (lineStart < length) {
+            // Find the end of the physical line.
+            int lineEnd = lineStart;
+            while (lineEnd < length && text.charAt(lineEnd) != '\n' && text.charAt(lineEnd) != '\r') {
+                lineEnd++;
+            }
+
+            int nextLineStart = lineEnd;
+            if (nextLineStart < length) {
+                if (text.charAt(nextLineStart) == '\r' && nextLineStart + 1 < length && text.charAt(nextLineStart + 1) == '\n') {
+                    nextLineStart++;
+                }
+
+                nextLineStart++;
+            }
+
+            final BlockDirective blockDirective = getBlockDirective(text, lineStart, lineEnd);
+            if (blockDirective != null) {
+                if (isBlockStart(blockDirective)) {
+                    depth++;
+                } else if (isBlockEnd(blockDirective) && depth > 0) {
+                    depth--;
+                }
+            }
+
+            // A line ending with a continuation character continues on the next physical line, so don't split after it.
+            if (depth == 0 && !endsWithContinuationCharacter(text, lineStart, lineEnd) && nextLineStart - chunkStart >= chunkLength
+                    && length - nextLineStart >= chunkLength) {
+                boundaries.add(nextLineStart);
+                chunkStart = nextLineStart;
+            }
+
+            lineStart = nextLineStart;
+        }
+
+        boundaries.add(length);
+        return boundaries;
+    }
+
+    private static boolean endsWithContinuationCharacter(@Nonnull Document text, int lineStart, int lineEnd) {
+        int i = lineEnd - 1;
+        while (i >= lineStart && Character.isWhitespace(text.charAt(i))) {
+            i--;
+        }
+
+        return i >= lineStart && text.charAt(i) == '&';
+    }
+
+    /**
+     * Gets the block directive on a physical line, if any. Labels are skipped: a word at the start of the line or a word that ends
+     * with a colon is a label.
+     */
+    @CheckForNull
+    private static BlockDirective getBlockDirective(@Nonnull Document text, int lineStart, int lineEnd) {
+        int i = lineStart;
+        boolean atLineStart = true;
+        while (i < lineEnd) {
+            while (i < lineEnd && Character.isWhitespace(text.charAt(i))) {
+                atLineStart = false;
+                i++;
+            }
+
+            if (i == lineEnd || text.charAt(i) == ';') {
+                return null;
+            }
+
+            final int wordStart = i;
+            while (i < lineEnd && !Character.isWhitespace(text.charAt(i)) && text.charAt(i) != ':' && text.charAt(i) != ';') {
+                i++;
+            }
+
+            final int wordEnd = i;
+            if (i < lineEnd && text.charAt(i) == ':') {
+                i++;
+                atLineStart = false;
+                continue;
+            }
+
+            if (atLineStart) {
+                atLineStart = false;
+                continue;
+            }
+
+            int mnemonicStart = wordStart;
+            if (mnemonicStart < wordEnd && text.charAt(mnemonicStart) == '!') {
+                mnemonicStart++;
+            }
+
+            final StringBuilder mnemonic = new StringBuilder(wordEnd - mnemonicStart);
+            for (int j = mnemonicStart; j < wordEnd; j++) {
+                mnemonic.append(text.charAt(j));
+            }
+
+            return Z80BlockDirectives.MAP.get(mnemonic.toString());
+        }
+
+        return null;
+    }
+
+    private static boolean isBlockEnd(@Nonnull BlockDirective blockDirective) {
+        return blockDirective == Z80BlockDirectives.DEPHASE || blockDirective == Z80BlockDirectives.ENDCYCLES
+                || blockDirective == Z80BlockDirectives.ENDIF || blockDirective == Z80BlockDirectives.ENDM
+                || blockDirective == Z80BlockDirectives.ENDNS || blockDirective == Z80BlockDirectives.ENDR
+                || blockDirective == Z80BlockDirectives.ENDTRANSFORM || blockDirective == Z80BlockDirectives.ENDW
+                || blockDirective == Z80BlockDirectives.NEXT || blockDirective == Z80BlockDirectives.UNTIL;
+    }
+
+    private static boolean isBlockStart(@Nonnull BlockDirective blockDirective) {
+        return blockDirective == Z80BlockDirectives.CYCLES || blockDirective == Z80BlockDirectives.DO
+                || blockDirective == Z80BlockDirectives.FOR || blockDirective == Z80BlockDirectives.IF
+                || blockDirective == Z80BlockDirectives.MACRO || blockDirective == Z80BlockDirectives.NAMESPACE
+                || blockDirective == Z80BlockDirectives.PHASE || blockDirective == Z80BlockDirectives.REPT
+                || blockDirective == Z80BlockDirectives.TRANSFORM || blockDirective == Z80BlockDirectives.WHILE;
+    }
+
+    /**
+     * Concatenates the top-level nodes of the parsed chunks.
+     *
+     * @return the concatenated nodes, or <code>null</code> if a chunk ends inside a block or has an unexpected root node
+     */
+    @CheckForNull
+    private static List<SourceNode> stitch(@Nonnull List<ParseTask> tasks) {
+        final ArrayList<SourceNode> childNodes = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            final SourceNode root = tasks.get(i).join();
+            if (root.getClass() != SimpleCompositeSourceNode.class || root.getParseError() != null) {
+                return null;
+            }
+
+            final List<SourceNode> chunkNodes = ((CompositeSourceNode) root).getChildNodes();
+            int numberOfNodes = chunkNodes.size();
+            if (i != tasks.size() - 1 && numberOfNodes != 0) {
+                final SourceNode lastNode = chunkNodes.get(numberOfNodes - 1);
+
+                // A block that is still open at the end of a chunk means the scan split the document inside a block.
+                if (lastNode.getParseError() instanceof UnclosedBlockParseError) {
+                    return null;
+                }
+
+                // The parser produces an empty logical line after the final line break of a document. In a chunk other than
+                // the last one, that line is really the start of the next chunk.
+                if (lastNode instanceof Z80LogicalLine && lastNode.getLength() == 0) {
+                    numberOfNodes--;
+                }
+            }
+
+            childNodes.addAll(chunkNodes.subList(0, numberOfNodes));
+        }
+
+        return childNodes;
+    }
+
+    // This class is not meant to be instantiated.
+    private Z80ParallelParser() {
+    }
+
+}
@@ -0,0 +1,266 @@
+package org.reasm.z80.source;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.reasm.source.SourceNode;
+
+import ca.fragag.text.Document;
+
+/**
+ * A process-wide cache of parsed Z80 source trees, keyed by a hash of the source text.
+ * <p>
+ * The nodes produced by {@link Z80Parser} are immutable, so a tree parsed for one assembly can be shared with any other assembly,
+ * on any thread, that parses the same text. The cache is bounded by the total length of the cached texts and evicts the least
+ * recently used trees first.
+ *
+ * @author Francis Gagné
+ */
+@ThreadSafe
+public final class Z80ParseCache {
+
+    @Immutable
+    private static final class Key {
+
+        @Nonnull
+        private final byte[] hash;
+        private final int length;
+        private final int hashCode;
+
+        Key(@Nonnull byte[] hash, int length) {
+            this.hash = hash;
+            this.length = length;
+            this.hashCode = Arrays.hashCode(hash);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            final Key other = (Key) obj;
+            return this.length == other.length && Arrays.equals(this.hash, other.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+    }
+
+    /**
+     * The name of the system property that sets the maximum total length, in characters, of the source texts whose parsed trees
+     * are kept in the {@linkplain #INSTANCE process-wide cache}.
+     */
+    @Nonnull
+    public static final String MAXIMUM_SIZE_PROPERTY = "reasm.z80.parseCacheSize";
+
+    /**
+     * The name of the system property that sets the directory of the {@link Z80ParseTreeStore} that the
+     * {@linkplain #INSTANCE process-wide cache} falls back to on a miss. If the property is not set, misses are parsed directly.
+     */
+    @Nonnull
+    public static final String STORE_DIRECTORY_PROPERTY = "reasm.z80.parseTreeStore";
+
+    /** The process-wide parse cache. */
+    @Nonnull
+    public static final Z80ParseCache INSTANCE = new Z80ParseCache(Long.getLong(MAXIMUM_SIZE_PROPERTY, 64L * 1024 * 1024),
+            createDefaultStore());
+
+    @CheckForNull
+    private static Z80ParseTreeStore createDefaultStore() {
+        final String directory = System.getProperty(STORE_DIRECTORY_PROPERTY);
+        return directory == null ? null : new Z80ParseTreeStore(Paths.get(directory));
+    }
+
+    /**
+     * Computes the content hash of a document.
+     *
+     * @param text
+     *            the document
+     * @return the SHA-256 hash of the document's characters
+     */
+    @Nonnull
+    static byte[] hash(@Nonnull Document text) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform implementation is required to support SHA-256.
+            throw new AssertionError(e);
+        }
+
+        final byte[] chunk = new byte[8192];
+        final int length = text.length();
+        int chunkLength = 0;
+        for (int i = 0; i < length; i++) {
+            final char ch = text.charAt(i);
+            chunk[chunkLength++] = (byte) (ch >>> 8);
+            chunk[chunkLength++] = (byte) ch;
+            if (chunkLength == chunk.length) {
+                digest.update(chunk, 0, chunkLength);
+                chunkLength = 0;
+            }
+        }
+
+        digest.update(chunk, 0, chunkLength);
+        return digest.digest();
+    }
+
+    private final long maximumSize;
+    @CheckForNull
+    private final Z80ParseTreeStore store;
+    @Nonnull
+    private final LinkedHashMap<Key, SourceNode> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+    @Nonnull
+    private final AtomicLong hitCount = new AtomicLong();
+    @Nonnull
+    private final AtomicLong missCount = new AtomicLong();
+
+    Z80ParseCache(long maximumSize, @CheckForNull Z80ParseTreeStore store) {
+        this.maximumSize = maximumSize;
+        this.store = store;
+    }
+
+    /**
+     * Removes all the parsed trees from this cache. The hit and miss counters are not reset.
+     */
+    public final synchronized void clear() {
+        this.entries.clear();
+        this.size = 0;
+    }
+
+    /**
+     * Gets the number of calls to {@link #parse(Document)} that returned a cached tree.
+     *
+     * @return the number of cache hits
+     */
+    public final long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * Gets the maximum total length, in characters, of the source texts whose parsed trees are kept in this cache.
+     *
+     * @return the maximum size of this cache
+     */
+    public final long getMaximumSize() {
+        return this.maximumSize;
+    }
+
+    /**
+     * Gets the number of calls to {@link #parse(Document)} that had to parse the source text.
+     *
+     * @return the number of cache misses
+     */
+    public final long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * Gets the total length, in characters, of the source texts whose parsed trees are currently in this cache.
+     *
+     * @return the current size of this cache
+     */
+    public final synchronized long getSize() {
+        return this.size;
+    }
+
+    /**
+     * Parses a document with {@link Z80ParallelParser}, or returns the tree that was parsed from an identical document earlier.
+     * If this cache has a {@link Z80ParseTreeStore}, the tree is loaded from the store instead of being parsed when possible.
+     *
+     * @param text
+     *            the document to parse
+     * @return the parsed tree
+     */
+    @Nonnull
+    public final SourceNode parse(@Nonnull Document text) {
+        final byte[] hash = hash(text);
+        final Key key = new Key(hash, text.length());
+
+        SourceNode node;
+        synchronized (this) {
+            node = this.entries.get(key);
+        }
+
+        if (node != null) {
+            this.hitCount.incrementAndGet();
+            return node;
+        }
+
+        // Parse outside the lock, so that other threads can use the cache in the meantime. If two threads parse the same text
+        // concurrently, the first tree to be stored wins.
+        this.missCount.incrementAndGet();
+        node = this.store != null ? this.store.parse(text, hash) : Z80ParallelParser.parse(text);
+
+        synchronized (this) {
+            final SourceNode existingNode = this.entries.get(key);
+            if (existingNode != null) {
+                return existingNode;
+            }
+
+            if (key.length <= this.maximumSize) {
+                this.entries.put(key, node);
+                this.size += key.length;
+                this.evict();
+            }
+        }
+
+        return node;
+    }
+
+    /**
+     * Adds a tree that was parsed from a document by other means, such as {@link Z80Reparser}, to this cache. A later call to
+     * {@link #parse(Document)} with an identical document returns this tree.
+     *
+     * @param text
+     *            the document
+     * @param node
+     *            the tree parsed from the document
+     */
+    public final void put(@Nonnull Document text, @Nonnull SourceNode node) {
+        if (node == null) {
+            throw new NullPointerException("node");
+        }
+
+        final Key key = new Key(hash(text), text.length());
+        if (key.length > this.maximumSize) {
+            return;
+        }
+
+        synchronized (this) {
+            if (this.entries.put(key, node) == null) {
+                this.size += key.length;
+                this.evict();
+            }
+        }
+    }
+
+    private void evict() {
+        final Iterator<Map.Entry<Key, SourceNode>> iterator = this.entries.entrySet().iterator();
+        while (this.size > this.maximumSize && iterator.hasNext()) {
+            this.size -= iterator.next().getKey().length;
+            iterator.remove();
+        }
+    }
+
+}
@@ -0,0 +1,382 @@
+package org.reasm.z80.source;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.reasm.SubstringBounds;
+import org.reasm.commons.parseerrors.ElseOrElseIfAfterElseParseError;
+import org.reasm.commons.parseerrors.UnclosedBlockParseError;
+import org.reasm.commons.source.BlockDirective;
+import org.reasm.commons.source.LogicalLine;
+import org.reasm.commons.source.LogicalLineAttributes;
+import org.reasm.source.CompositeSourceNode;
+import org.reasm.source.ParseError;
+import org.reasm.source.SimpleCompositeSourceNode;
+import org.reasm.source.SourceNode;
+
+/**
+ * Encodes and decodes the trees produced by {@link Z80Parser} in a compact binary form.
+ * <p>
+ * Each node is written as a tag byte followed by the node's data. Integers are written as variable-length quantities, since most
+ * offsets and lengths in a logical line are small. Trees that contain a node or a parse error that this codec doesn't know about
+ * cannot be encoded; {@link #write(SourceNode, DataOutput)} throws {@link UnsupportedNodeException} for them.
+ *
+ * @author Francis Gagné
+ */
+final class Z80ParseTreeCodec {
+
+    /**
+     * Thrown by {@link Z80ParseTreeCodec#write(SourceNode, DataOutput)} when a tree contains a node or a parse error that cannot be
+     * encoded.
+     */
+    static final class UnsupportedNodeException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedNodeException(@Nonnull Class<?> type) {
+            super("Unsupported type: " + type.getName());
+        }
+
+    }
+
+    /**
+     * The version of the encoding. It must be incremented whenever the encoding or the structure of the trees produced by the
+     * parser changes.
+     */
+    static final int FORMAT_VERSION = 2;
+
+    private static final int TAG_LOGICAL_LINE = 0;
+    private static final int TAG_BLOCK_DIRECTIVE_LINE = 1;
+    private static final int TAG_SIMPLE_COMPOSITE = 2;
+    private static final int TAG_DO_BLOCK = 3;
+    private static final int TAG_FOR_BLOCK = 4;
+    private static final int TAG_IF_BLOCK = 5;
+    private static final int TAG_MACRO_BLOCK = 6;
+    private static final int TAG_MACRO_BODY = 7;
+    private static final int TAG_NAMESPACE_BLOCK = 8;
+    private static final int TAG_PHASE_BLOCK = 9;
+    private static final int TAG_REPT_BLOCK = 10;
+    private static final int TAG_REPT_BODY = 11;
+    private static final int TAG_TRANSFORM_BLOCK = 12;
+    private static final int TAG_WHILE_BLOCK = 13;
+    private static final int TAG_CYCLES_BLOCK = 14;
+
+    private static final int ERROR_NONE = 0;
+    private static final int ERROR_UNCLOSED_BLOCK = 1;
+    private static final int ERROR_ELSE_OR_ELSEIF_AFTER_ELSE = 2;
+
+    @Nonnull
+    static SourceNode read(@Nonnull DataInput in) throws IOException {
+        final int tag = in.readUnsignedByte();
+        switch (tag) {
+        case TAG_LOGICAL_LINE:
+            return new Z80LogicalLine(readLogicalLineAttributes(in));
+
+        case TAG_BLOCK_DIRECTIVE_LINE:
+            final BlockDirective blockDirective = readBlockDirective(in);
+            return new Z80BlockDirectiveLine(new Z80LogicalLine(readLogicalLineAttributes(in)), blockDirective);
+
+        case TAG_SIMPLE_COMPOSITE: {
+            final ParseError parseError = readParseError(in);
+            return new SimpleCompositeSourceNode(readChildNodes(in), parseError);
+        }
+
+        case TAG_MACRO_BODY:
+            return new MacroBody(readChildNodes(in));
+
+        case TAG_REPT_BODY:
+            return new ReptBody(readChildNodes(in));
+
+        default:
+            break;
+        }
+
+        final ParseError parseError = readParseError(in);
+        final List<SourceNode> childNodes = readChildNodes(in);
+        switch (tag) {
+        case TAG_CYCLES_BLOCK:
+            return new CyclesBlock(childNodes, parseError);
+
+        case TAG_DO_BLOCK:
+            return new DoBlock(childNodes, parseError);
+
+        case TAG_FOR_BLOCK:
+            return new ForBlock(childNodes, parseError);
+
+        case TAG_IF_BLOCK:
+            return new IfBlock(childNodes, parseError);
+
+        case TAG_MACRO_BLOCK:
+            return new MacroBlock(childNodes, parseError);
+
+        case TAG_NAMESPACE_BLOCK:
+            return new NamespaceBlock(childNodes, parseError);
+
+        case TAG_PHASE_BLOCK:
+            return new PhaseBlock(childNodes, parseError);
+
+        case TAG_REPT_BLOCK:
+            return new ReptBlock(childNodes, parseError);
+
+        case TAG_TRANSFORM_BLOCK:
+            return new TransformBlock(childNodes, parseError);
+
+        case TAG_WHILE_BLOCK:
+            return new WhileBlock(childNodes, parseError);
+
+        default:
+            throw new IOException("Invalid node tag: " + tag);
+        }
+    }
+
+    static int readVarInt(@Nonnull DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    static void write(@Nonnull SourceNode node, @Nonnull DataOutput out) throws IOException {
+        final Class<?> type = node.getClass();
+        if (type == Z80LogicalLine.class) {
+            out.writeByte(TAG_LOGICAL_LINE);
+            writeLogicalLineAttributes((LogicalLine) node, out);
+        } else if (type == Z80BlockDirectiveLine.class) {
+            final Z80BlockDirectiveLine blockDirectiveLine = (Z80BlockDirectiveLine) node;
+            out.writeByte(TAG_BLOCK_DIRECTIVE_LINE);
+            writeBlockDirective(blockDirectiveLine.getBlockDirective(), out);
+            writeLogicalLineAttributes(blockDirectiveLine.getLogicalLine(), out);
+        } else if (type == SimpleCompositeSourceNode.class) {
+            out.writeByte(TAG_SIMPLE_COMPOSITE);
+            writeParseError(node.getParseError(), out);
+            writeChildNodes((CompositeSourceNode) node, out);
+        } else if (type == MacroBody.class) {
+            out.writeByte(TAG_MACRO_BODY);
+            writeChildNodes((CompositeSourceNode) node, out);
+        } else if (type == ReptBody.class) {
+            out.writeByte(TAG_REPT_BODY);
+            writeChildNodes((CompositeSourceNode) node, out);
+        } else {
+            out.writeByte(getBlockTag(type));
+            writeParseError(node.getParseError(), out);
+            writeChildNodes((CompositeSourceNode) node, out);
+        }
+    }
+
+    static void writeVarInt(int value, @Nonnull DataOutput out) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+
+        out.writeByte(value);
+    }
+
+    private static int getBlockTag(@Nonnull Class<?> type) throws UnsupportedNodeException {
+        if (type == CyclesBlock.class) {
+            return TAG_CYCLES_BLOCK;
+        }
+
+        if (type == DoBlock.class) {
+            return TAG_DO_BLOCK;
+        }
+
+        if (type == ForBlock.class) {
+            return TAG_FOR_BLOCK;
+        }
+
+        if (type == IfBlock.class) {
+            return TAG_IF_BLOCK;
+        }
+
+        if (type == MacroBlock.class) {
+            return TAG_MACRO_BLOCK;
+        }
+
+        if (type == NamespaceBlock.class) {
+            return TAG_NAMESPACE_BLOCK;
+        }
+
+        if (type == PhaseBlock.class) {
+            return TAG_PHASE_BLOCK;
+        }
+
+        if (type == ReptBlock.class) {
+            return TAG_REPT_BLOCK;
+        }
+
+        if (type == TransformBlock.class) {
+            return TAG_TRANSFORM_BLOCK;
+        }
+
+        if (type == WhileBlock.class) {
+            return TAG_WHILE_BLOCK;
+        }
+
+        throw new UnsupportedNodeException(type);
+    }
+
+    @Nonnull
+    private static BlockDirective readBlockDirective(@Nonnull DataInput in) throws IOException {
+        final String mnemonic = in.readUTF();
+        final BlockDirective blockDirective = Z80BlockDirectives.MAP.get(mnemonic);
+        if (blockDirective == null) {
+            throw new IOException("Unknown block directive: " + mnemonic);
+        }
+
+        return blockDirective;
+    }
+
+    @CheckForNull
+    private static SubstringBounds readBounds(@Nonnull DataInput in) throws IOException {
+        final int start = readVarInt(in) - 1;
+        if (start < 0) {
+            return null;
+        }
+
+        return SubstringBoundsPool.get(start, start + readVarInt(in));
+    }
+
+    @Nonnull
+    private static SubstringBounds[] readBoundsArray(@Nonnull DataInput in, int lineLength) throws IOException {
+        final SubstringBounds[] bounds = new SubstringBounds[readCount(in, lineLength + 1)];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = readBounds(in);
+        }
+
+        return bounds;
+    }
+
+    @Nonnull
+    private static List<SourceNode> readChildNodes(@Nonnull DataInput in) throws IOException {
+        final int numberOfChildNodes = readCount(in, Integer.MAX_VALUE);
+        // Don't trust the count for the initial capacity; a corrupted count would allocate a huge array.
+        final ArrayList<SourceNode> childNodes = new ArrayList<>(Math.min(numberOfChildNodes, 64));
+        for (int i = 0; i < numberOfChildNodes; i++) {
+            childNodes.add(read(in));
+        }
+
+        return childNodes;
+    }
+
+    // Reads a count, rejecting negative counts and counts above the given maximum, which can only come from a corrupted stream.
+    private static int readCount(@Nonnull DataInput in, int maximum) throws IOException {
+        final int count = readVarInt(in);
+        if (count < 0 || count > maximum) {
+            throw new IOException("Invalid count: " + count);
+        }
+
+        return count;
+    }
+
+    @Nonnull
+    private static LogicalLineAttributes readLogicalLineAttributes(@Nonnull DataInput in) throws IOException {
+        final int length = readCount(in, Integer.MAX_VALUE - 1);
+        final ParseError parseError = readParseError(in);
+        final SubstringBounds[] labels = readBoundsArray(in, length);
+        final SubstringBounds mnemonic = readBounds(in);
+        final SubstringBounds[] operands = readBoundsArray(in, length);
+        final SubstringBounds comment = readBounds(in);
+        final int[] continuationCharacters = new int[readCount(in, length)];
+        for (int i = 0; i < continuationCharacters.length; i++) {
+            continuationCharacters[i] = readVarInt(in);
+        }
+
+        return new LogicalLineAttributes(length, parseError, labels, mnemonic, operands, comment, continuationCharacters);
+    }
+
+    @CheckForNull
+    private static ParseError readParseError(@Nonnull DataInput in) throws IOException {
+        final int kind = in.readUnsignedByte();
+        switch (kind) {
+        case ERROR_NONE:
+            return null;
+
+        case ERROR_UNCLOSED_BLOCK:
+            return new UnclosedBlockParseError(readBlockDirective(in));
+
+        case ERROR_ELSE_OR_ELSEIF_AFTER_ELSE:
+            return new ElseOrElseIfAfterElseParseError(readBlockDirective(in));
+
+        default:
+            throw new IOException("Invalid parse error kind: " + kind);
+        }
+    }
+
+    private static void writeBlockDirective(@Nonnull BlockDirective blockDirective, @Nonnull DataOutput out) throws IOException {
+        out.writeUTF(blockDirective.getMnemonic());
+    }
+
+    private static void writeBounds(@CheckForNull SubstringBounds bounds, @Nonnull DataOutput out) throws IOException {
+        // The start is offset by 1 so that 0 can represent the absence of bounds.
+        if (bounds == null) {
+            writeVarInt(0, out);
+        } else {
+            writeVarInt(bounds.getStart() + 1, out);
+            writeVarInt(bounds.getEnd() - bounds.getStart(), out);
+        }
+    }
+
+    private static void writeChildNodes(@Nonnull CompositeSourceNode node, @Nonnull DataOutput out) throws IOException {
+        final List<SourceNode> childNodes = node.getChildNodes();
+        writeVarInt(childNodes.size(), out);
+        for (SourceNode childNode : childNodes) {
+            write(childNode, out);
+        }
+    }
+
+    private static void writeLogicalLineAttributes(@Nonnull LogicalLine line, @Nonnull DataOutput out) throws IOException {
+        writeVarInt(line.getLength(), out);
+        writeParseError(line.getParseError(), out);
+
+        writeVarInt(line.getNumberOfLabels(), out);
+        for (int i = 0; i < line.getNumberOfLabels(); i++) {
+            writeBounds(line.getLabelBounds(i), out);
+        }
+
+        writeBounds(line.getMnemonicBounds(), out);
+
+        writeVarInt(line.getNumberOfOperands(), out);
+        for (int i = 0; i < line.getNumberOfOperands(); i++) {
+            writeBounds(line.getOperandBounds(i), out);
+        }
+
+        writeBounds(line.getCommentBounds(), out);
+
+        writeVarInt(line.getNumberOfContinuationCharacters(), out);
+        for (int i = 0; i < line.getNumberOfContinuationCharacters(); i++) {
+            writeVarInt(line.getContinuationCharacter(i), out);
+        }
+    }
+
+    private static void writeParseError(@CheckForNull ParseError parseError, @Nonnull DataOutput out) throws IOException {
+        if (parseError == null) {
+            out.writeByte(ERROR_NONE);
+        } else if (parseError.getClass() == UnclosedBlockParseError.class) {
+            out.writeByte(ERROR_UNCLOSED_BLOCK);
+            writeBlockDirective(((UnclosedBlockParseError) parseError).getBlockDirective(), out);
+        } else if (parseError.getClass() == ElseOrElseIfAfterElseParseError.class) {
+            out.writeByte(ERROR_ELSE_OR_ELSEIF_AFTER_ELSE);
+            writeBlockDirective(((ElseOrElseIfAfterElseParseError) parseError).getBlockDirective(), out);
+        } else {
+            throw new UnsupportedNodeException(parseError.getClass());
+        }
+    }
+
+    // This class is not meant to be instantiated.
+    private Z80ParseTreeCodec() {
+    }
+
+}
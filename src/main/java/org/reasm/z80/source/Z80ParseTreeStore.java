@@ -0,0 +1,173 @@
+package org.reasm.z80.source;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.reasm.source.SourceNode;
+
+import ca.fragag.text.Document;
+
+/**
+ * A persistent store of parsed Z80 source trees in a directory on disk.
+ * <p>
+ * Each tree is stored in a file named after the hash of the source text. The file's header records the encoding version, the
+ * parser version, the length and the hash of the source text; a file whose header doesn't match is ignored and replaced with a
+ * freshly parsed tree, so the store never needs to be invalidated by hand.
+ *
+ * @author Francis Gagné
+ */
+@ThreadSafe
+public final class Z80ParseTreeStore {
+
+    private static final int MAGIC = 0x5A383054; // "Z80T"
+    private static final String FILE_EXTENSION = ".z80t";
+
+    // The version of the parser. It must be incremented whenever the parser produces a different tree for the same source text,
+    // even if the encoding doesn't change (e.g. when a mnemonic starts or stops being parsed as a block directive), so that the
+    // trees stored by earlier versions are parsed again.
+    private static final int PARSER_VERSION = 1;
+
+    @Nonnull
+    private static String toHexString(@Nonnull byte[] hash) {
+        final StringBuilder sb = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >>> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return sb.toString();
+    }
+
+    @Nonnull
+    private final Path directory;
+
+    /**
+     * Initializes a new Z80ParseTreeStore.
+     *
+     * @param directory
+     *            the directory in which the parsed trees are stored; it is created if it doesn't exist
+     */
+    public Z80ParseTreeStore(@Nonnull Path directory) {
+        if (directory == null) {
+            throw new NullPointerException("directory");
+        }
+
+        this.directory = directory;
+    }
+
+    /**
+     * Gets the directory in which the parsed trees are stored.
+     *
+     * @return the directory
+     */
+    @Nonnull
+    public final Path getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Loads the parsed tree for a document from this store, or parses the document with {@link Z80ParallelParser} and stores the
+     * resulting tree if it is not in this store.
+     *
+     * @param text
+     *            the document to parse
+     * @return the parsed tree
+     */
+    @Nonnull
+    public final SourceNode parse(@Nonnull Document text) {
+        return this.parse(text, Z80ParseCache.hash(text));
+    }
+
+    @Nonnull
+    final SourceNode parse(@Nonnull Document text, @Nonnull byte[] hash) {
+        final Path file = this.directory.resolve(toHexString(hash) + FILE_EXTENSION);
+
+        SourceNode node = this.load(file, text.length(), hash);
+        if (node == null) {
+            node = Z80ParallelParser.parse(text);
+            this.store(file, text.length(), hash, node);
+        }
+
+        return node;
+    }
+
+    @CheckForNull
+    private SourceNode load(@Nonnull Path file, int length, @Nonnull byte[] hash) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try (InputStream stream = Files.newInputStream(file)) {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+            if (in.readInt() != MAGIC || in.readInt() != Z80ParseTreeCodec.FORMAT_VERSION || in.readInt() != PARSER_VERSION
+                    || Z80ParseTreeCodec.readVarInt(in) != length) {
+                return null;
+            }
+
+            final byte[] storedHash = new byte[hash.length];
+            in.readFully(storedHash);
+            if (!Arrays.equals(storedHash, hash)) {
+                return null;
+            }
+
+            return Z80ParseTreeCodec.read(in);
+        } catch (IOException | RuntimeException e) {
+            // The file is unreadable, truncated or corrupted; treat it as missing. A corrupted file may also contain values that
+            // the constructors of the nodes reject (e.g. bounds that lie outside of their line).
+            return null;
+        }
+    }
+
+    private void store(@Nonnull Path file, int length, @Nonnull byte[] hash, @Nonnull SourceNode node) {
+        Path temporaryFile = null;
+        try {
+            Files.createDirectories(this.directory);
+            temporaryFile = Files.createTempFile(this.directory, null, FILE_EXTENSION + ".tmp");
+
+            try (OutputStream stream = Files.newOutputStream(temporaryFile)) {
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+                out.writeInt(MAGIC);
+                out.writeInt(Z80ParseTreeCodec.FORMAT_VERSION);
+                out.writeInt(PARSER_VERSION);
+                Z80ParseTreeCodec.writeVarInt(length, out);
+                out.write(hash);
+                Z80ParseTreeCodec.write(node, out);
+                out.flush();
+            }
+
+            // Publish the file atomically, so that concurrent readers never see a partially written tree.
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            temporaryFile = null;
+        } catch (IOException e) {
+            // The store is only an optimization; the tree was parsed successfully, so failing to store it is not an error.
+        } finally {
+            if (temporaryFile != null) {
+                try {
+                    Files.deleteIfExists(temporaryFile);
+                } catch (IOException e) {
+                    // Ignore.
+                }
+            }
+        }
+    }
+
+}
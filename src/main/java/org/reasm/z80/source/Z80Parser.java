@@ -67,6 +67,7 @@ public final class Z80Parser {
 
     static {
         final ImmutableMap.Builder<BlockDirective, BlockParser> blocks = ImmutableMap.builder();
+        blocks.put(Z80BlockDirectives.CYCLES, BlockParsers.CYCLES);
         blocks.put(Z80BlockDirectives.DO, BlockParsers.DO);
         blocks.put(Z80BlockDirectives.FOR, BlockParsers.FOR);
         blocks.put(Z80BlockDirectives.IF, BlockParsers.IF);
@@ -0,0 +1,264 @@
+package org.reasm.z80.source;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.reasm.source.CompositeSourceNode;
+import org.reasm.source.ParseError;
+import org.reasm.source.SimpleCompositeSourceNode;
+import org.reasm.source.SourceNode;
+
+import ca.fragag.text.Document;
+
+/**
+ * Reparses Z80 source documents after an edit, reusing the nodes of the old tree that the edit doesn't touch.
+ * <p>
+ * Nodes only store their length, not their offset, so any node outside the edited range can be reused as is. The reparser
+ * descends into the block that contains the edit, down to the logical lines that the edit touches, reparses only those lines and
+ * rebuilds the blocks along the path to the root around the new lines; every sibling subtree along that path is reused. When the
+ * edit touches a block directive line or creates one, the block structure may change, so the reparser falls back to
+ * {@link Z80Parser#INSTANCE}'s reparse.
+ *
+ * @author Francis Gagné
+ */
+public final class Z80Reparser {
+
+    /**
+     * Reparses a document after an edit.
+     *
+     * @param text
+     *            the new document
+     * @param oldTree
+     *            the tree parsed from the document before the edit
+     * @param replaceOffset
+     *            the offset of the edit
+     * @param lengthToRemove
+     *            the number of characters removed from the old document
+     * @param lengthToInsert
+     *            the number of characters inserted in the new document
+     * @return the parsed tree, identical to the tree that {@link Z80Parser#INSTANCE} would produce for the new document
+     */
+    @Nonnull
+    public static SourceNode reparse(@Nonnull Document text, @Nonnull SourceNode oldTree, int replaceOffset, int lengthToRemove,
+            int lengthToInsert) {
+        final Z80Reparser reparser = new Z80Reparser(text, replaceOffset, lengthToRemove, lengthToInsert);
+        final SourceNode newTree = reparser.reparse(oldTree, 0);
+        if (newTree != null) {
+            return newTree;
+        }
+
+        return Z80Parser.INSTANCE.reparse(text, oldTree, replaceOffset, lengthToRemove, lengthToInsert);
+    }
+
+    /**
+     * Creates a composite node of the same type as the specified node, with the specified child nodes.
+     *
+     * @return the new node, or <code>null</code> if the node's type is unknown
+     */
+    @CheckForNull
+    static CompositeSourceNode withChildNodes(@Nonnull CompositeSourceNode node, @Nonnull List<SourceNode> childNodes) {
+        final Class<?> type = node.getClass();
+        final ParseError parseError = node.getParseError();
+        if (type == SimpleCompositeSourceNode.class) {
+            return new SimpleCompositeSourceNode(childNodes, parseError);
+        }
+
+        if (type == CyclesBlock.class) {
+            return new CyclesBlock(childNodes, parseError);
+        }
+
+        if (type == DoBlock.class) {
+            return new DoBlock(childNodes, parseError);
+        }
+
+        if (type == ForBlock.class) {
+            return new ForBlock(childNodes, parseError);
+        }
+
+        if (type == IfBlock.class) {
+            return new IfBlock(childNodes, parseError);
+        }
+
+        if (type == MacroBlock.class) {
+            return new MacroBlock(childNodes, parseError);
+        }
+
+        if (type == MacroBody.class) {
+            return new MacroBody(childNodes);
+        }
+
+        if (type == NamespaceBlock.class) {
+            return new NamespaceBlock(childNodes, parseError);
+        }
+
+        if (type == PhaseBlock.class) {
+            return new PhaseBlock(childNodes, parseError);
+        }
+
+        if (type == ReptBlock.class) {
+            return new ReptBlock(childNodes, parseError);
+        }
+
+        if (type == ReptBody.class) {
+            return new ReptBody(childNodes);
+        }
+
+        if (type == TransformBlock.class) {
+            return new TransformBlock(childNodes, parseError);
+        }
+
+        if (type == WhileBlock.class) {
+            return new WhileBlock(childNodes, parseError);
+        }
+
+        return null;
+    }
+
+    private static boolean isLineBreak(char ch) {
+        return ch == '\n' || ch == '\r';
+    }
+
+    @Nonnull
+    private final Document text;
+    private final int editStart;
+    private final int editEnd;
+    private final int lengthDelta;
+
+    private Z80Reparser(@Nonnull Document text, int replaceOffset, int lengthToRemove, int lengthToInsert) {
+        this.text = text;
+        this.editStart = replaceOffset;
+        this.editEnd = replaceOffset + lengthToRemove;
+        this.lengthDelta = lengthToInsert - lengthToRemove;
+    }
+
+    /**
+     * Checks that the new text of a range of logical lines ends where a logical line must end: at the end of the document, or
+     * after a line break that doesn't follow a continuation character.
+     */
+    private boolean endsLogicalLine(int newEnd) {
+        if (newEnd == this.text.length()) {
+            return true;
+        }
+
+        if (newEnd == 0 || !isLineBreak(this.text.charAt(newEnd - 1))) {
+            return false;
+        }
+
+        int i = newEnd - 1;
+        if (i > 0 && this.text.charAt(i) == '\n' && this.text.charAt(i - 1) == '\r') {
+            i--;
+        }
+
+        while (i > 0 && (this.text.charAt(i - 1) == ' ' || this.text.charAt(i - 1) == '\t')) {
+            i--;
+        }
+
+        return i == 0 || this.text.charAt(i - 1) != '&';
+    }
+
+    @CheckForNull
+    private SourceNode reparse(@Nonnull SourceNode node, int nodeStart) {
+        if (!(node instanceof CompositeSourceNode)) {
+            return null;
+        }
+
+        final List<SourceNode> childNodes = ((CompositeSourceNode) node).getChildNodes();
+        final int numberOfChildNodes = childNodes.size();
+
+        // Find the range of child nodes that the edit touches.
+        int first = -1;
+        int last = -1;
+        int firstStart = 0;
+        int lastEnd = 0;
+        int childStart = nodeStart;
+        for (int i = 0; i < numberOfChildNodes; i++) {
+            final int childEnd = childStart + childNodes.get(i).getLength();
+            final boolean isLastChild = i == numberOfChildNodes - 1;
+            if (first == -1 && (this.editStart < childEnd || isLastChild)) {
+                first = i;
+                firstStart = childStart;
+            }
+
+            if (first != -1 && (this.editEnd < childEnd || isLastChild)) {
+                last = i;
+                lastEnd = childEnd;
+                break;
+            }
+
+            childStart = childEnd;
+        }
+
+        if (first == -1) {
+            return null;
+        }
+
+        final ArrayList<SourceNode> newChildNodes = new ArrayList<>(numberOfChildNodes + 4);
+        newChildNodes.addAll(childNodes.subList(0, first));
+
+        final SourceNode firstChild = childNodes.get(first);
+        if (first == last && firstChild instanceof CompositeSourceNode) {
+            // The edit is inside a single block; descend into it.
+            final SourceNode newChild = this.reparse(firstChild, firstStart);
+            if (newChild == null) {
+                return null;
+            }
+
+            newChildNodes.add(newChild);
+        } else {
+            for (int i = first; i <= last; i++) {
+                if (childNodes.get(i).getClass() != Z80LogicalLine.class) {
+                    return null;
+                }
+            }
+
+            final List<SourceNode> newLines = this.reparseLines(firstStart, lastEnd + this.lengthDelta);
+            if (newLines == null) {
+                return null;
+            }
+
+            newChildNodes.addAll(newLines);
+        }
+
+        newChildNodes.addAll(childNodes.subList(last + 1, numberOfChildNodes));
+        return withChildNodes((CompositeSourceNode) node, newChildNodes);
+    }
+
+    @CheckForNull
+    private List<SourceNode> reparseLines(int newStart, int newEnd) {
+        if (newEnd < newStart || !this.endsLogicalLine(newEnd)) {
+            return null;
+        }
+
+        final StringBuilder sb = new StringBuilder(newEnd - newStart);
+        for (int i = newStart; i < newEnd; i++) {
+            sb.append(this.text.charAt(i));
+        }
+
+        final SourceNode parsed = Z80Parser.INSTANCE.parse(new Document(sb.toString()));
+        if (!(parsed instanceof CompositeSourceNode)) {
+            return null;
+        }
+
+        final List<SourceNode> lines = ((CompositeSourceNode) parsed).getChildNodes();
+        int numberOfLines = lines.size();
+
+        // The parser produces an empty logical line after the final line break of a document. Unless the range extends to the
+        // end of the document, that line is really the start of the next node.
+        if (newEnd != this.text.length() && numberOfLines != 0 && lines.get(numberOfLines - 1).getLength() == 0) {
+            numberOfLines--;
+        }
+
+        for (int i = 0; i < numberOfLines; i++) {
+            if (lines.get(i).getClass() != Z80LogicalLine.class) {
+                // A block directive may change the block structure.
+                return null;
+            }
+        }
+
+        return lines.subList(0, numberOfLines);
+    }
+
+}
@@ -0,0 +1,117 @@
+package org.reasm.z80;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reasm.Environment;
+
+/**
+ * Test class for {@link Z80AssemblerDaemon}.
+ *
+ * @author Francis Gagné
+ */
+public class Z80AssemblerDaemonTest {
+
+    /** A temporary folder for the source files. */
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Asserts that {@link Z80AssemblerDaemon} assembles the requested file and the files it includes, and that it reads a file
+     * again after it is modified.
+     */
+    @Test
+    public void request() throws IOException {
+        final Path main = this.temporaryFolder.getRoot().toPath().resolve("main.asm");
+        Files.write(main, " LD A,5\n INCLUDE \"inc.asm\"".getBytes(StandardCharsets.UTF_8));
+        Files.write(main.resolveSibling("inc.asm"), " NOP".getBytes(StandardCharsets.UTF_8));
+
+        try (Z80AssemblerDaemon daemon = new Z80AssemblerDaemon(Environment.DEFAULT, 0, this.getTokenFile())) {
+            daemon.start();
+
+            Z80AssemblerDaemon.Reply reply = Z80AssemblerDaemon.request(daemon.getPort(), this.getTokenFile(), main.toString());
+            assertThat(reply.getError(), is(nullValue()));
+            assertThat(reply.getOutput(), is(new byte[] { 0x3E, 0x05, 0x00 }));
+            assertThat(reply.getMessages(), is(empty()));
+
+            Files.write(main, " HALT\n JP UNDEFINED".getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(main, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+            reply = Z80AssemblerDaemon.request(daemon.getPort(), this.getTokenFile(), main.toString());
+            assertThat(reply.getOutput()[0], is((byte) 0x76));
+            assertThat(reply.getMessages(), is(not(empty())));
+        }
+    }
+
+    /**
+     * Asserts that {@link Z80AssemblerDaemon} replies with an error and doesn't assemble the requested file when the client sends
+     * the wrong token.
+     */
+    @Test
+    public void requestInvalidToken() throws IOException {
+        final Path main = this.temporaryFolder.getRoot().toPath().resolve("main.asm");
+        Files.write(main, " NOP".getBytes(StandardCharsets.UTF_8));
+        final Path wrongTokenFile = this.temporaryFolder.getRoot().toPath().resolve("wrong-token");
+        Files.write(wrongTokenFile, "0123456789abcdef".getBytes(StandardCharsets.UTF_8));
+
+        try (Z80AssemblerDaemon daemon = new Z80AssemblerDaemon(Environment.DEFAULT, 0, this.getTokenFile())) {
+            daemon.start();
+
+            final Z80AssemblerDaemon.Reply reply = Z80AssemblerDaemon.request(daemon.getPort(), wrongTokenFile, main.toString());
+            assertThat(reply.getError(), is("Invalid token"));
+            assertThat(reply.getOutput(), is(nullValue()));
+        }
+    }
+
+    /**
+     * Asserts that {@link Z80AssemblerDaemon} replies with an error when the requested file doesn't exist.
+     */
+    @Test
+    public void requestMissingFile() throws IOException {
+        try (Z80AssemblerDaemon daemon = new Z80AssemblerDaemon(Environment.DEFAULT, 0, this.getTokenFile())) {
+            daemon.start();
+
+            final Z80AssemblerDaemon.Reply reply = Z80AssemblerDaemon.request(daemon.getPort(),
+                    this.temporaryFolder.getRoot().toPath().resolve("missing.asm").toString());
+            assertThat(reply.getError(), is(not(nullValue())));
+            assertThat(reply.getOutput(), is(nullValue()));
+        }
+    }
+
+    /**
+     * Asserts that {@link Z80AssemblerDaemon} writes its token file with permissions that only allow the owner to read and write
+     * it, and deletes it when it is closed.
+     */
+    @Test
+    public void tokenFile() throws IOException {
+        final Path tokenFile = this.getTokenFile();
+        try (Z80AssemblerDaemon daemon = new Z80AssemblerDaemon(Environment.DEFAULT, 0, tokenFile)) {
+            assertThat(Files.size(tokenFile), is(64L));
+            if (Files.getFileStore(tokenFile).supportsFileAttributeView("posix")) {
+                assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile)), is("rw-------"));
+            }
+        }
+
+        assertThat(Files.exists(tokenFile), is(false));
+    }
+
+    @Nonnull
+    private Path getTokenFile() {
+        return this.temporaryFolder.getRoot().toPath().resolve("token");
+    }
+
+}
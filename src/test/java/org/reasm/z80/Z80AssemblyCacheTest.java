@@ -0,0 +1,171 @@
+package org.reasm.z80;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reasm.Environment;
+import org.reasm.FileFetcher;
+import org.reasm.source.SourceFile;
+
+/**
+ * Test class for {@link Z80AssemblyCache}.
+ *
+ * @author Francis Gagné
+ */
+public class Z80AssemblyCacheTest {
+
+    private static class MapFileFetcher implements FileFetcher {
+
+        final HashMap<String, String> files = new HashMap<>();
+
+        MapFileFetcher() {
+        }
+
+        @Override
+        public byte[] fetchBinaryFile(String filePath) throws IOException {
+            final String text = this.files.get(filePath);
+            return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public SourceFile fetchSourceFile(String filePath) throws IOException {
+            final String text = this.files.get(filePath);
+            return text == null ? null : new SourceFile(text, filePath);
+        }
+
+    }
+
+    /** A temporary directory for the cache. */
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Asserts that {@link Z80AssemblyCache#get(Environment, String, String, FileFetcher)} returns a cached result when the main
+     * source file and the files it includes are unchanged, and assembles the source file again when an included file changes.
+     */
+    @Test
+    public void get() throws IOException {
+        final Z80AssemblyCache cache = new Z80AssemblyCache(this.temporaryFolder.newFolder().toPath(), 1024 * 1024);
+        final MapFileFetcher fileFetcher = new MapFileFetcher();
+        fileFetcher.files.put("inc.asm", " DB 5");
+        final String text = " INCLUDE \"inc.asm\"\nLABEL: LD A,LABEL";
+
+        Z80AssemblyCache.Entry entry = cache.get(Environment.DEFAULT, text, "main.asm", fileFetcher);
+        assertThat(entry.isHit(), is(false));
+        assertThat(entry.getOutput(), is(new byte[] { 0x05, 0x3E, 0x01 }));
+        assertThat(entry.getSymbols().get("LABEL"), is(1L));
+
+        entry = cache.get(Environment.DEFAULT, text, "main.asm", fileFetcher);
+        assertThat(entry.isHit(), is(true));
+        assertThat(entry.getOutput(), is(new byte[] { 0x05, 0x3E, 0x01 }));
+        assertThat(entry.getSymbols().get("LABEL"), is(1L));
+
+        fileFetcher.files.put("inc.asm", " DB 6");
+        entry = cache.get(Environment.DEFAULT, text, "main.asm", fileFetcher);
+        assertThat(entry.isHit(), is(false));
+        assertThat(entry.getOutput(), is(new byte[] { 0x06, 0x3E, 0x01 }));
+
+        // Both versions of the included file are cached.
+        fileFetcher.files.put("inc.asm", " DB 5");
+        assertThat(cache.get(Environment.DEFAULT, text, "main.asm", fileFetcher).isHit(), is(true));
+    }
+
+    /**
+     * Asserts that {@link Z80AssemblyCache#get(Environment, String, String, FileFetcher)} doesn't store the result of an assembly
+     * that failed to read a file, and assembles the source file again once the file can be read.
+     */
+    @Test
+    public void getDoesNotStoreFileReadErrors() throws IOException {
+        final Z80AssemblyCache cache = new Z80AssemblyCache(this.temporaryFolder.newFolder().toPath(), 1024 * 1024);
+        final MapFileFetcher fileFetcher = new MapFileFetcher();
+        final String text = " NOP\n INCLUDE \"inc.asm\"";
+
+        assertThat(cache.get(Environment.DEFAULT, text, "main.asm", fileFetcher).isHit(), is(false));
+        assertThat(cache.get(Environment.DEFAULT, text, "main.asm", fileFetcher).isHit(), is(false));
+
+        fileFetcher.files.put("inc.asm", " DB 5");
+        final Z80AssemblyCache.Entry entry = cache.get(Environment.DEFAULT, text, "main.asm", fileFetcher);
+        assertThat(entry.isHit(), is(false));
+        assertThat(entry.getOutput(), is(new byte[] { 0x00, 0x05 }));
+        assertThat(cache.get(Environment.DEFAULT, text, "main.asm", fileFetcher).isHit(), is(true));
+    }
+
+    /**
+     * Asserts that {@link Z80AssemblyCache#get(Environment, String, String, FileFetcher)} keeps the total size of the cached files
+     * under the maximum size.
+     */
+    @Test
+    public void getEvicts() throws IOException {
+        final File directory = this.temporaryFolder.newFolder();
+        final Z80AssemblyCache cache = new Z80AssemblyCache(directory.toPath(), 1024);
+        for (int i = 0; i < 20; i++) {
+            cache.get(Environment.DEFAULT, " DS 100," + i, null, null);
+        }
+
+        long totalSize = 0;
+        for (File file : directory.listFiles()) {
+            totalSize += file.length();
+        }
+
+        assertThat(totalSize, is(lessThanOrEqualTo(1024L)));
+    }
+
+    /**
+     * Asserts that {@link Z80AssemblyCache#get(Environment, String, String, FileFetcher)} hashes the files included with the
+     * <code>INCLUDE</code> directive as the file fetcher returns them as source files.
+     */
+    @Test
+    public void getHashesSourceFiles() throws IOException {
+        final Z80AssemblyCache cache = new Z80AssemblyCache(this.temporaryFolder.newFolder().toPath(), 1024 * 1024);
+        final MapFileFetcher fileFetcher = new MapFileFetcher() {
+            @Override
+            public byte[] fetchBinaryFile(String filePath) throws IOException {
+                // Only serve source files.
+                return null;
+            }
+        };
+
+        fileFetcher.files.put("inc.asm", " DB 5");
+        final String text = " INCLUDE \"inc.asm\"";
+        assertThat(cache.get(Environment.DEFAULT, text, "main.asm", fileFetcher).isHit(), is(false));
+        assertThat(cache.get(Environment.DEFAULT, text, "main.asm", fileFetcher).isHit(), is(true));
+
+        fileFetcher.files.put("inc.asm", " DB 6");
+        final Z80AssemblyCache.Entry entry = cache.get(Environment.DEFAULT, text, "main.asm", fileFetcher);
+        assertThat(entry.isHit(), is(false));
+        assertThat(entry.getOutput(), is(new byte[] { 0x06 }));
+    }
+
+    /**
+     * Asserts that {@link Z80AssemblyCache#get(Environment, String, String, FileFetcher, Z80AssemblyOptions)} doesn't return a
+     * result that was assembled with different options.
+     */
+    @Test
+    public void getWithOptions() throws IOException {
+        final Z80AssemblyCache cache = new Z80AssemblyCache(this.temporaryFolder.newFolder().toPath(), 1024 * 1024);
+        final String text = "i FOR 1,3\n DB i\n NEXT";
+
+        Z80AssemblyCache.Entry entry = cache.get(Environment.DEFAULT, text, "main.asm", null);
+        assertThat(entry.isHit(), is(false));
+        assertThat(entry.getOutput(), is(new byte[] { 1, 2, 3 }));
+
+        final Z80AssemblyOptions options = new Z80AssemblyOptions().setMaximumNumberOfLoopIterations(2);
+        entry = cache.get(Environment.DEFAULT, text, "main.asm", null, options);
+        assertThat(entry.isHit(), is(false));
+        assertThat(entry.getOutput(), is(new byte[] { 1, 2 }));
+
+        assertThat(cache.get(Environment.DEFAULT, text, "main.asm", null, options).isHit(), is(true));
+        assertThat(cache.get(Environment.DEFAULT, text, "main.asm", null, options.setSizingPass(true)).isHit(), is(false));
+        assertThat(cache.get(Environment.DEFAULT, text, "main.asm", null).isHit(), is(true));
+    }
+
+}
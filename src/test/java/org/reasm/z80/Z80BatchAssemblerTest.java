@@ -0,0 +1,118 @@
+package org.reasm.z80;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.annotation.Nonnull;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.reasm.Configuration;
+import org.reasm.Environment;
+import org.reasm.FileFetcher;
+import org.reasm.source.SourceFile;
+
+/**
+ * Test class for {@link Z80BatchAssembler}.
+ *
+ * @author Francis Gagné
+ */
+public class Z80BatchAssemblerTest {
+
+    @Nonnull
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    /**
+     * Shuts down the fork-join pool used by the tests.
+     */
+    @AfterClass
+    public static void shutDownPool() {
+        POOL.shutdown();
+    }
+
+    @Nonnull
+    private static Configuration createConfiguration(@Nonnull String code) {
+        return new Configuration(Environment.DEFAULT, new SourceFile(code, null), Z80Architecture.INSTANCE);
+    }
+
+    /**
+     * Asserts that {@link Z80BatchAssembler#assemble(List, ForkJoinPool)} performs every assembly and returns the results in the
+     * order of the configurations.
+     */
+    @Test
+    public void assemble() {
+        final ArrayList<Configuration> configurations = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            configurations.add(createConfiguration(" LD A," + i + "\n DS 100"));
+        }
+
+        final List<Z80BatchAssembler.Result> results = Z80BatchAssembler.assemble(configurations, POOL);
+        assertThat(results.size(), is(20));
+        for (int i = 0; i < 20; i++) {
+            final Z80BatchAssembler.Result result = results.get(i);
+            assertThat(result.getConfiguration(), is(configurations.get(i)));
+            assertThat(result.getException(), is(nullValue()));
+            assertThat(result.getMessages(), is(empty()));
+            assertThat(result.getWallTime(), is(greaterThanOrEqualTo(0L)));
+
+            final byte[] output = result.getOutput();
+            assertThat(output.length, is(102));
+            assertThat(output[0], is((byte) 0x3E));
+            assertThat(output[1], is((byte) i));
+        }
+    }
+
+    /**
+     * Asserts that {@link Z80BatchAssembler#assemble(List, ForkJoinPool)} reports an unchecked exception thrown by an assembly in
+     * that assembly's result and still performs the other assemblies.
+     */
+    @Test
+    public void assembleException() {
+        final FileFetcher fileFetcher = new FileFetcher() {
+            @Override
+            public byte[] fetchBinaryFile(String filePath) throws IOException {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public SourceFile fetchSourceFile(String filePath) throws IOException {
+                return null;
+            }
+        };
+
+        final ArrayList<Configuration> configurations = new ArrayList<>();
+        configurations.add(createConfiguration(" NOP"));
+        configurations.add(createConfiguration(" INCBIN \"data.bin\"").setFileFetcher(fileFetcher));
+
+        final List<Z80BatchAssembler.Result> results = Z80BatchAssembler.assemble(configurations, POOL);
+        assertThat(results.get(0).getException(), is(nullValue()));
+        assertThat(results.get(0).getOutput(), is(new byte[] { 0x00 }));
+        assertThat(results.get(1).getException(), is(instanceOf(IllegalStateException.class)));
+        assertThat(results.get(1).getOutput(), is(nullValue()));
+    }
+
+    /**
+     * Asserts that {@link Z80BatchAssembler#assemble(List, ForkJoinPool)} reports the messages of each assembly separately.
+     */
+    @Test
+    public void assembleMessages() {
+        final ArrayList<Configuration> configurations = new ArrayList<>();
+        configurations.add(createConfiguration(" NOP"));
+        configurations.add(createConfiguration(" JP UNDEFINED"));
+
+        final List<Z80BatchAssembler.Result> results = Z80BatchAssembler.assemble(configurations, POOL);
+        assertThat(results.get(0).getMessages(), is(empty()));
+        assertThat(results.get(1).getMessages(), is(not(empty())));
+    }
+
+}
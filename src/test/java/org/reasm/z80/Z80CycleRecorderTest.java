@@ -0,0 +1,57 @@
+package org.reasm.z80;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.reasm.Assembly;
+import org.reasm.AssemblyCompletionStatus;
+import org.reasm.Configuration;
+import org.reasm.Environment;
+import org.reasm.source.SourceFile;
+
+/**
+ * Test class for {@link Z80CycleRecorder}.
+ *
+ * @author Francis Gagné
+ */
+public class Z80CycleRecorderTest {
+
+    /**
+     * Asserts that {@link Z80CycleRecorder} records the timings of the instructions on each line and sums them over a block.
+     */
+    @Test
+    public void record() throws IOException {
+        final SourceFile sourceFile = new SourceFile(" LD A,5\n JR NZ,0\nL: DJNZ L\n LDIR\n DB 1\n LD (IX+1),5", null);
+        final Configuration configuration = new Configuration(Environment.DEFAULT, sourceFile, Z80Architecture.INSTANCE);
+        final Assembly assembly = new Assembly(configuration);
+
+        final Z80CycleRecorder recorder = new Z80CycleRecorder(sourceFile);
+        new Z80AssemblyOptions().addListener(recorder).attachTo(assembly);
+        AssemblyCompletionStatus status;
+        do {
+            status = assembly.step();
+        } while (status != AssemblyCompletionStatus.COMPLETE);
+
+        assertThat(recorder.getNumberOfLines(), is(5));
+        assertLine(recorder, 0, 0, 7, 7);
+        assertLine(recorder, 1, 8, 7, 12);
+        assertLine(recorder, 2, 17, 8, 13);
+        assertLine(recorder, 3, 27, 16, 21);
+        assertLine(recorder, 4, 39, 19, 19);
+
+        assertThat(recorder.getBlockCycles(0, 39), is(38L));
+        assertThat(recorder.getBlockTakenCycles(0, 39), is(53L));
+        assertThat(recorder.getBlockCycles(8, 28), is(31L));
+        assertThat(recorder.getBlockTakenCycles(8, 28), is(46L));
+    }
+
+    private static void assertLine(Z80CycleRecorder recorder, int index, int textPosition, long cycles, long takenCycles) {
+        assertThat(recorder.getTextPosition(index), is(textPosition));
+        assertThat(recorder.getCycles(index), is(cycles));
+        assertThat(recorder.getTakenCycles(index), is(takenCycles));
+    }
+
+}
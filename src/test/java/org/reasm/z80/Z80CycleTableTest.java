@@ -0,0 +1,78 @@
+package org.reasm.z80;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+/**
+ * Test class for {@link Z80CycleTable}.
+ *
+ * @author Francis Gagné
+ */
+public class Z80CycleTableTest {
+
+    private static void assertTiming(int cycles, int takenCycles, int length, int... code) {
+        final byte[] bytes = new byte[code.length];
+        for (int i = 0; i < code.length; i++) {
+            bytes[i] = (byte) code[i];
+        }
+
+        assertThat(Z80CycleTable.getCycles(bytes, 0), is(cycles));
+        assertThat(Z80CycleTable.getTakenCycles(bytes, 0), is(takenCycles));
+        assertThat(Z80CycleTable.getLength(bytes, 0), is(length));
+    }
+
+    /**
+     * Asserts that {@link Z80CycleTable} has two timings for the conditional branches and the repeating block instructions.
+     */
+    @Test
+    public void conditional() {
+        assertTiming(8, 13, 2, 0x10, 0xFE); // DJNZ $
+        assertTiming(7, 12, 2, 0x20, 0xFE); // JR NZ,$
+        assertTiming(12, 12, 2, 0x18, 0xFE); // JR $
+        assertTiming(10, 17, 3, 0xC4, 0x00, 0x00); // CALL NZ,0
+        assertTiming(5, 11, 1, 0xC8); // RET Z
+        assertTiming(10, 10, 3, 0xCA, 0x00, 0x00); // JP Z,0
+        assertTiming(16, 21, 2, 0xED, 0xB0); // LDIR
+        assertTiming(16, 21, 2, 0xED, 0xB1); // CPIR
+        assertTiming(16, 21, 2, 0xED, 0xB3); // OTIR
+        assertTiming(16, 16, 2, 0xED, 0xA0); // LDI
+    }
+
+    /**
+     * Asserts that {@link Z80CycleTable} returns the timings of the IX- and IY-prefixed instructions.
+     */
+    @Test
+    public void indexed() {
+        assertTiming(14, 14, 4, 0xDD, 0x21, 0x00, 0x00); // LD IX,0
+        assertTiming(19, 19, 3, 0xDD, 0x7E, 0x01); // LD A,(IX+1)
+        assertTiming(19, 19, 4, 0xFD, 0x36, 0x01, 0x05); // LD (IY+1),5
+        assertTiming(23, 23, 3, 0xDD, 0x34, 0x01); // INC (IX+1)
+        assertTiming(8, 8, 2, 0xDD, 0xE9); // JP (IX)
+        assertTiming(20, 20, 4, 0xDD, 0xCB, 0x01, 0x46); // BIT 0,(IX+1)
+        assertTiming(23, 23, 4, 0xFD, 0xCB, 0x01, 0xC6); // SET 0,(IY+1)
+    }
+
+    /**
+     * Asserts that {@link Z80CycleTable} returns the timings of the unprefixed, CB-prefixed and ED-prefixed instructions.
+     */
+    @Test
+    public void simple() {
+        assertTiming(4, 4, 1, 0x00); // NOP
+        assertTiming(7, 7, 2, 0x3E, 0x05); // LD A,5
+        assertTiming(7, 7, 1, 0x7E); // LD A,(HL)
+        assertTiming(16, 16, 3, 0x22, 0x00, 0x00); // LD (0),HL
+        assertTiming(17, 17, 3, 0xCD, 0x00, 0x00); // CALL 0
+        assertTiming(11, 11, 1, 0xE5); // PUSH HL
+        assertTiming(8, 8, 2, 0xCB, 0x00); // RLC B
+        assertTiming(12, 12, 2, 0xCB, 0x46); // BIT 0,(HL)
+        assertTiming(15, 15, 2, 0xCB, 0x86); // RES 0,(HL)
+        assertTiming(20, 20, 4, 0xED, 0x43, 0x00, 0x00); // LD (0),BC
+        assertTiming(15, 15, 2, 0xED, 0x42); // SBC HL,BC
+        assertTiming(14, 14, 2, 0xED, 0x4D); // RETI
+        assertTiming(18, 18, 2, 0xED, 0x6F); // RLD
+        assertTiming(8, 8, 2, 0xED, 0x00); // undefined
+    }
+
+}
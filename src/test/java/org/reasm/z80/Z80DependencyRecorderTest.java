@@ -0,0 +1,132 @@
+package org.reasm.z80;
+
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reasm.Assembly;
+import org.reasm.AssemblyCompletionStatus;
+import org.reasm.Configuration;
+import org.reasm.Environment;
+import org.reasm.FileFetcher;
+import org.reasm.source.SourceFile;
+
+/**
+ * Test class for {@link Z80DependencyRecorder}.
+ *
+ * @author Francis Gagné
+ */
+public class Z80DependencyRecorderTest {
+
+    /** A temporary folder for the <code>.d</code> files. */
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Asserts that {@link Z80DependencyRecorder} records the files read by the <code>INCLUDE</code> and <code>INCBIN</code>
+     * directives and writes them as make rules.
+     */
+    @Test
+    public void record() throws IOException {
+        final FileFetcher fileFetcher = new FileFetcher() {
+            @Override
+            public byte[] fetchBinaryFile(String filePath) throws IOException {
+                return filePath.equals("data$.bin") ? new byte[] { 1, 2 } : null;
+            }
+
+            @Override
+            public SourceFile fetchSourceFile(String filePath) throws IOException {
+                return filePath.equals("my file.asm") ? new SourceFile(" NOP", filePath) : null;
+            }
+        };
+
+        final Configuration configuration = new Configuration(Environment.DEFAULT, new SourceFile(
+                " INCLUDE \"my file.asm\"\n INCBIN \"data$.bin\"\n INCBIN \"data$.bin\"\n INCBIN \"missing.bin\"", null),
+                Z80Architecture.INSTANCE).setFileFetcher(fileFetcher);
+        final Assembly assembly = new Assembly(configuration);
+
+        final Z80DependencyRecorder recorder = new Z80DependencyRecorder();
+        new Z80AssemblyOptions().addListener(recorder).attachTo(assembly);
+        AssemblyCompletionStatus status;
+        do {
+            status = assembly.step();
+        } while (status != AssemblyCompletionStatus.COMPLETE);
+
+        assertThat(recorder.getFilePaths(), contains("my file.asm", "data$.bin", "missing.bin"));
+
+        final StringBuilder sb = new StringBuilder();
+        recorder.writeMakeRules(sb, "out.bin", "main.asm");
+        assertThat(sb.toString(), is("out.bin: main.asm \\\n my\\ file.asm \\\n data$$.bin \\\n missing.bin\n\nmy\\ file.asm:\n\n"
+                + "data$$.bin:\n\nmissing.bin:\n"));
+    }
+
+    /**
+     * Asserts that a {@link Z80DependencyRecorder} that is given a {@link Z80LocalFileFetcher} records the local paths of the
+     * files, including the files that cannot be read.
+     */
+    @Test
+    public void recordLocalPaths() throws IOException {
+        final Path directory = this.temporaryFolder.getRoot().toPath();
+        Files.write(directory.resolve("inc.asm"), " NOP".getBytes(StandardCharsets.UTF_8));
+        final Z80LocalFileFetcher fileFetcher = new Z80LocalFileFetcher() {
+            @Override
+            public byte[] fetchBinaryFile(String filePath) throws IOException {
+                return Files.readAllBytes(this.getLocalPath(filePath));
+            }
+
+            @Override
+            public SourceFile fetchSourceFile(String filePath) throws IOException {
+                final Path path = this.getLocalPath(filePath);
+                return Files.isRegularFile(path) ? new SourceFile(new String(Files.readAllBytes(path), StandardCharsets.UTF_8),
+                        filePath) : null;
+            }
+
+            @Override
+            public Path getLocalPath(String filePath) {
+                return directory.resolve(filePath);
+            }
+        };
+
+        final Configuration configuration = new Configuration(Environment.DEFAULT, new SourceFile(
+                " INCLUDE \"inc.asm\"\n INCLUDE \"missing.asm\"", null), Z80Architecture.INSTANCE).setFileFetcher(fileFetcher);
+        final Assembly assembly = new Assembly(configuration);
+
+        final Z80DependencyRecorder recorder = new Z80DependencyRecorder(fileFetcher);
+        new Z80AssemblyOptions().addListener(recorder).attachTo(assembly);
+        AssemblyCompletionStatus status;
+        do {
+            status = assembly.step();
+        } while (status != AssemblyCompletionStatus.COMPLETE);
+
+        assertThat(recorder.getFilePaths(),
+                contains(directory.resolve("inc.asm").toString(), directory.resolve("missing.asm").toString()));
+    }
+
+    /**
+     * Asserts that {@link Z80DependencyRecorder#writeMakeRules(Path, String, String)} replaces the file with the make rules and
+     * doesn't leave a temporary file behind.
+     */
+    @Test
+    public void writeMakeRulesToFile() throws IOException {
+        final Path file = this.temporaryFolder.getRoot().toPath().resolve("out.bin.d");
+        Files.write(file, "old rules\n".getBytes(StandardCharsets.UTF_8));
+
+        final Z80DependencyRecorder recorder = new Z80DependencyRecorder();
+        recorder.fileRead("inc.asm", Z80AssemblyListener.FileKind.SOURCE);
+        recorder.writeMakeRules(file, "out.bin", "main.asm");
+
+        assertThat(new String(Files.readAllBytes(file), StandardCharsets.UTF_8),
+                is("out.bin: main.asm \\\n inc.asm\n\ninc.asm:\n"));
+        assertThat(this.temporaryFolder.getRoot().list(), arrayContaining("out.bin.d"));
+    }
+
+}
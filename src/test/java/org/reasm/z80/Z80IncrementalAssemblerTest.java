@@ -0,0 +1,105 @@
+package org.reasm.z80;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+import org.reasm.Environment;
+
+/**
+ * Test class for {@link Z80IncrementalAssembler}.
+ *
+ * @author Francis Gagné
+ */
+public class Z80IncrementalAssemblerTest {
+
+    @Nonnull
+    private static Z80IncrementalAssembler createAssembler(@Nonnull String text) throws IOException {
+        return new Z80IncrementalAssembler(Environment.DEFAULT, text, null, null);
+    }
+
+    /**
+     * Asserts that {@link Z80IncrementalAssembler#Z80IncrementalAssembler(Environment, String, String, org.reasm.FileFetcher)}
+     * assembles the source text.
+     */
+    @Test
+    public void assemble() throws IOException {
+        final Z80IncrementalAssembler assembler = createAssembler(" LD A,5\n NOP");
+        assertThat(assembler.getOutput(), is(new byte[] { 0x3E, 0x05, 0x00 }));
+        assertThat(assembler.getMessages(), is(empty()));
+    }
+
+    /**
+     * Asserts that {@link Z80IncrementalAssembler#replaceText(int, int, String)} assembles the whole source text again when the
+     * edited line is in a <code>CYCLES</code> block, so that the block's budget is checked again.
+     */
+    @Test
+    public void replaceTextInCyclesBlock() throws IOException {
+        final Z80IncrementalAssembler assembler = createAssembler(" CYCLES 13,13\n LD A,(1234h)\n ENDCYCLES");
+        assertThat(assembler.getMessages(), is(empty()));
+        assertThat(assembler.replaceText(18, 9, "HL,1234h"), is(false));
+        assertThat(assembler.getOutput(), is(new byte[] { 0x21, 0x34, 0x12 }));
+        assertThat(assembler.getMessages().size(), is(1));
+    }
+
+    /**
+     * Asserts that {@link Z80IncrementalAssembler#replaceText(int, int, String)} assembles the whole source text again when the
+     * edit changes the length of a line.
+     */
+    @Test
+    public void replaceTextLengthChanged() throws IOException {
+        final Z80IncrementalAssembler assembler = createAssembler(" LD A,5\nL: JP L");
+        assertThat(assembler.replaceText(4, 3, "BC,1234h"), is(false));
+        assertThat(assembler.getText(), is(" LD BC,1234h\nL: JP L"));
+        assertThat(assembler.getOutput(), is(new byte[] { 0x01, 0x34, 0x12, (byte) 0xC3, 0x03, 0x00 }));
+    }
+
+    /**
+     * Asserts that {@link Z80IncrementalAssembler#replaceText(int, int, String)} assembles the whole source text again when the
+     * edit changes the mnemonic of a line.
+     */
+    @Test
+    public void replaceTextMnemonic() throws IOException {
+        final Z80IncrementalAssembler assembler = createAssembler(" NOP\n HALT");
+        assertThat(assembler.replaceText(1, 3, "HALT"), is(false));
+        assertThat(assembler.getOutput(), is(new byte[] { 0x76, 0x76 }));
+    }
+
+    /**
+     * Asserts that {@link Z80IncrementalAssembler#replaceText(int, int, String)} patches the output when the edit changes the
+     * operand of a line without changing its length.
+     */
+    @Test
+    public void replaceTextOperand() throws IOException {
+        final Z80IncrementalAssembler assembler = createAssembler(" LD A,5\n LD B,1");
+        assertThat(assembler.replaceText(6, 1, "6"), is(true));
+        assertThat(assembler.getText(), is(" LD A,6\n LD B,1"));
+        assertThat(assembler.getOutput(), is(new byte[] { 0x3E, 0x06, 0x06, 0x01 }));
+
+        // The positions of the following lines are updated.
+        assertThat(assembler.replaceText(6, 1, "10"), is(true));
+        assertThat(assembler.replaceText(15, 1, "2"), is(true));
+        assertThat(assembler.getText(), is(" LD A,10\n LD B,2"));
+        assertThat(assembler.getOutput(), is(new byte[] { 0x3E, 0x0A, 0x06, 0x02 }));
+    }
+
+    /**
+     * Asserts that {@link Z80IncrementalAssembler#replaceText(int, int, String)} patches the output with the values of the labels
+     * of the last assembly, including labels that are defined after the edited line.
+     */
+    @Test
+    public void replaceTextSymbols() throws IOException {
+        final Z80IncrementalAssembler assembler = createAssembler("START: NOP\n JP START\n PHASE 8000h\nEND: JR END\n DEPHASE");
+        assertThat(assembler.replaceText(15, 5, "END"), is(true));
+        assertThat(assembler.getOutput(), is(new byte[] { 0x00, (byte) 0xC3, 0x00, (byte) 0x80, 0x18, (byte) 0xFE }));
+
+        assertThat(assembler.replaceText(40, 3, "START"), is(false));
+        assertThat(assembler.getMessages().size(), is(1));
+    }
+
+}
@@ -0,0 +1,82 @@
+package org.reasm.z80;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reasm.Assembly;
+import org.reasm.AssemblyCompletionStatus;
+import org.reasm.Configuration;
+import org.reasm.Environment;
+import org.reasm.source.SourceFile;
+
+/**
+ * Test class for {@link Z80ListingWriter}.
+ *
+ * @author Francis Gagné
+ */
+public class Z80ListingWriterTest {
+
+    /** A temporary directory for the listing file. */
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Asserts that {@link Z80ListingWriter} writes a record for each physical line of a logical line that has continuation
+     * characters.
+     */
+    @Test
+    public void writeContinuationLines() throws IOException {
+        final Path file = this.temporaryFolder.getRoot().toPath().resolve("out.lst");
+        final Configuration configuration = new Configuration(Environment.DEFAULT, new SourceFile(" DB 1,&\r\n 2\n NOP", null),
+                Z80Architecture.INSTANCE);
+        final Assembly assembly = new Assembly(configuration);
+
+        try (Z80ListingWriter listingWriter = new Z80ListingWriter(file)) {
+            new Z80AssemblyOptions().addListener(listingWriter).attachTo(assembly);
+            AssemblyCompletionStatus status;
+            do {
+                status = assembly.step();
+            } while (status != AssemblyCompletionStatus.COMPLETE);
+        }
+
+        assertThat(Files.readAllLines(file, StandardCharsets.UTF_8), contains(
+                "0000  01 02                 DB 1,&",
+                "                            2",
+                "0002  00           4        NOP"));
+    }
+
+    /**
+     * Asserts that {@link Z80ListingWriter} writes a record for each line assembled in the last pass.
+     */
+    @Test
+    public void write() throws IOException {
+        final Path file = this.temporaryFolder.getRoot().toPath().resolve("out.lst");
+        final Configuration configuration = new Configuration(Environment.DEFAULT, new SourceFile(
+                " LD A,5\nL: JR NZ,L\n DB 1,2,3,4,5\n JP M\nM: NOP", null), Z80Architecture.INSTANCE);
+        final Assembly assembly = new Assembly(configuration);
+
+        try (Z80ListingWriter listingWriter = new Z80ListingWriter(file)) {
+            new Z80AssemblyOptions().addListener(listingWriter).attachTo(assembly);
+            AssemblyCompletionStatus status;
+            do {
+                status = assembly.step();
+            } while (status != AssemblyCompletionStatus.COMPLETE);
+        }
+
+        assertThat(Files.readAllLines(file, StandardCharsets.UTF_8), contains(
+                "0000  3E 05        7        LD A,5",
+                "0002  20 FE        7/12    L: JR NZ,L",
+                "0004  01 02 03 04 +         DB 1,2,3,4,5",
+                "0009  C3 0C 00     10       JP M",
+                "000C  00           4       M: NOP"));
+    }
+
+}
@@ -0,0 +1,143 @@
+package org.reasm.z80;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+import org.reasm.Assembly;
+import org.reasm.AssemblyCompletionStatus;
+import org.reasm.Configuration;
+import org.reasm.Environment;
+import org.reasm.source.SourceFile;
+
+/**
+ * Test class for {@link Z80Simulator}.
+ *
+ * @author Francis Gagné
+ */
+public class Z80SimulatorTest {
+
+    @Nonnull
+    private static Z80Simulator assembleAndRun(@Nonnull SourceFile sourceFile, @Nonnull Z80SourceMapRecorder sourceMap)
+            throws IOException {
+        final Configuration configuration = new Configuration(Environment.DEFAULT, sourceFile, Z80Architecture.INSTANCE);
+        final Assembly assembly = new Assembly(configuration);
+        new Z80AssemblyOptions().addListener(sourceMap).attachTo(assembly);
+
+        AssemblyCompletionStatus status;
+        do {
+            status = assembly.step();
+        } while (status != AssemblyCompletionStatus.COMPLETE);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assembly.writeAssembledDataTo(out);
+
+        final Z80Simulator simulator = new Z80Simulator();
+        simulator.load(out.toByteArray(), 0);
+        simulator.setPC(0);
+        simulator.run(1000);
+        assertThat(simulator.isHalted(), is(true));
+        return simulator;
+    }
+
+    /**
+     * Asserts that {@link Z80Simulator} executes a subroutine call with a conditional return that is not taken.
+     */
+    @Test
+    public void callAndReturn() throws IOException {
+        final SourceFile sourceFile = new SourceFile(" LD SP,0\n CALL F\n HALT\nF: XOR A\n RET NZ\n INC A\n RET", null);
+        final Z80Simulator simulator = assembleAndRun(sourceFile, new Z80SourceMapRecorder());
+        assertThat(simulator.getAF() >>> 8, is(1));
+        assertThat(simulator.getSP(), is(0));
+        assertThat(simulator.getTotalCycles(), is(54L));
+        assertThat(simulator.getInstructionCount(), is(7L));
+    }
+
+    /**
+     * Asserts that {@link Z80Simulator} computes the flags of an 8-bit addition that overflows.
+     */
+    @Test
+    public void flags() throws IOException {
+        final SourceFile sourceFile = new SourceFile(" LD A,80h\n ADD A,80h\n HALT", null);
+        final Z80Simulator simulator = assembleAndRun(sourceFile, new Z80SourceMapRecorder());
+
+        // Z, P/V and C are set.
+        assertThat(simulator.getAF(), is(0x0045));
+    }
+
+    /**
+     * Asserts that {@link Z80Simulator} reports the lines in which a loop spends its time.
+     */
+    @Test
+    public void hotSpots() throws IOException {
+        final SourceFile sourceFile = new SourceFile(" LD B,10\nL: DJNZ L\n HALT", null);
+        final Z80SourceMapRecorder sourceMap = new Z80SourceMapRecorder();
+        final Z80Simulator simulator = assembleAndRun(sourceFile, sourceMap);
+        assertThat(simulator.getTotalCycles(), is(136L));
+        assertThat(simulator.getInstructionCount(), is(12L));
+        assertThat(simulator.getExecutionCount(2), is(10L));
+        assertThat(simulator.getCycles(2), is(125L));
+
+        final List<Z80Simulator.HotSpot> hotSpots = simulator.getHotSpots(sourceMap, 2);
+        assertThat(hotSpots.size(), is(2));
+        assertThat(hotSpots.get(0).getFile(), is(sameInstance((Object) sourceFile)));
+        assertThat(hotSpots.get(0).getTextPosition(), is(9));
+        assertThat(hotSpots.get(0).getExecutionCount(), is(10L));
+        assertThat(hotSpots.get(0).getCycles(), is(125L));
+        assertThat(hotSpots.get(1).getTextPosition(), is(0));
+        assertThat(hotSpots.get(1).getCycles(), is(7L));
+    }
+
+    /**
+     * Asserts that {@link Z80Simulator} takes the timing of an instruction that wraps around to address 0 from the bytes at the
+     * start of the memory.
+     */
+    @Test
+    public void instructionAtEndOfMemory() {
+        final Z80Simulator simulator = new Z80Simulator();
+
+        // BIT 0,(IX+0); HALT
+        simulator.load(new byte[] { (byte) 0xDD }, 0xFFFF);
+        simulator.load(new byte[] { (byte) 0xCB, 0x00, 0x46, 0x76 }, 0);
+        simulator.setPC(0xFFFF);
+        simulator.run(10);
+        assertThat(simulator.isHalted(), is(true));
+        assertThat(simulator.getCycles(0xFFFF), is(20L));
+        assertThat(simulator.getTotalCycles(), is(24L));
+    }
+
+    /**
+     * Asserts that {@link Z80Simulator} repeats a block instruction and counts the T-states of each iteration.
+     */
+    @Test
+    public void ldir() throws IOException {
+        final SourceFile sourceFile = new SourceFile(
+                " LD HL,SRC\n LD DE,8000h\n LD BC,3\n LDIR\n LD A,(8001h)\n HALT\nSRC: DB 11h,22h,33h", null);
+        final Z80Simulator simulator = assembleAndRun(sourceFile, new Z80SourceMapRecorder());
+        assertThat(simulator.getAF() >>> 8, is(0x22));
+        assertThat(simulator.getBC(), is(0));
+        assertThat(simulator.getMemory()[0x8000], is((byte) 0x11));
+        assertThat(simulator.getMemory()[0x8001], is((byte) 0x22));
+        assertThat(simulator.getMemory()[0x8002], is((byte) 0x33));
+        assertThat(simulator.getTotalCycles(), is(105L));
+        assertThat(simulator.getInstructionCount(), is(8L));
+    }
+
+    /**
+     * Asserts that {@link Z80Simulator} increments R once for each opcode and prefix fetch.
+     */
+    @Test
+    public void refreshRegister() throws IOException {
+        final SourceFile sourceFile = new SourceFile(" LD B,0\n BIT 0,B\n LD IX,0\n LD A,R\n HALT", null);
+        final Z80Simulator simulator = assembleAndRun(sourceFile, new Z80SourceMapRecorder());
+        assertThat(simulator.getAF() >>> 8, is(7));
+    }
+
+}
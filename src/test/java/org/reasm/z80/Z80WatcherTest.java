@@ -0,0 +1,102 @@
+package org.reasm.z80;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reasm.Environment;
+
+/**
+ * Test class for {@link Z80Watcher}.
+ *
+ * @author Francis Gagné
+ */
+public class Z80WatcherTest {
+
+    private static void write(@Nonnull Path path, @Nonnull String text) throws IOException {
+        Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** A temporary folder for the source files. */
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Asserts that {@link Z80Watcher} assembles the main source file again when a file that it includes is modified.
+     */
+    @Test
+    public void run() throws IOException, InterruptedException {
+        final Path main = this.temporaryFolder.getRoot().toPath().resolve("main.asm");
+        final Path include = main.resolveSibling("inc.asm");
+        write(main, " LD A,5\n INCLUDE \"inc.asm\"");
+        write(include, " NOP");
+
+        final BlockingQueue<Z80BatchAssembler.Result> results = new LinkedBlockingQueue<>();
+        try (Z80Watcher watcher = new Z80Watcher(Environment.DEFAULT, main, new Z80Watcher.Listener() {
+            @Override
+            public void assembled(Z80BatchAssembler.Result result) {
+                results.add(result);
+            }
+        })) {
+            watcher.start();
+
+            Z80BatchAssembler.Result result = results.poll(10, TimeUnit.SECONDS);
+            assertThat(result, is(notNullValue()));
+            assertThat(result.getOutput(), is(new byte[] { 0x3E, 0x05, 0x00 }));
+
+            // The directory is registered before the result is reported, so the file can be modified right away.
+            write(include, " HALT\n HALT");
+
+            result = results.poll(10, TimeUnit.SECONDS);
+            assertThat(result, is(notNullValue()));
+            assertThat(result.getOutput(), is(new byte[] { 0x3E, 0x05, 0x76, 0x76 }));
+        }
+    }
+
+    /**
+     * Asserts that {@link Z80Watcher} assembles the main source file again when a binary file that it includes with the
+     * <code>INCBIN</code> directive is modified.
+     */
+    @Test
+    public void runWithBinaryFile() throws IOException, InterruptedException {
+        final Path main = this.temporaryFolder.getRoot().toPath().resolve("main.asm");
+        final Path data = main.resolveSibling("data.bin");
+        write(main, " NOP\n INCBIN \"data.bin\"");
+        Files.write(data, new byte[] { 1 });
+
+        final BlockingQueue<Z80BatchAssembler.Result> results = new LinkedBlockingQueue<>();
+        try (Z80Watcher watcher = new Z80Watcher(Environment.DEFAULT, main, new Z80Watcher.Listener() {
+            @Override
+            public void assembled(Z80BatchAssembler.Result result) {
+                results.add(result);
+            }
+        })) {
+            watcher.start();
+
+            Z80BatchAssembler.Result result = results.poll(10, TimeUnit.SECONDS);
+            assertThat(result, is(notNullValue()));
+            assertThat(result.getOutput(), is(new byte[] { 0x00, 1 }));
+
+            // The directory is registered before the result is reported, so the file can be modified right away.
+            Files.write(data, new byte[] { 2, 3 });
+
+            result = results.poll(10, TimeUnit.SECONDS);
+            assertThat(result, is(notNullValue()));
+            assertThat(result.getOutput(), is(new byte[] { 0x00, 2, 3 }));
+        }
+    }
+
+}
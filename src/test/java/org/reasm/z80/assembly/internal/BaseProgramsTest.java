@@ -29,6 +29,7 @@ import org.reasm.source.SourceFile;
 import org.reasm.testhelpers.EquivalentAssemblyMessage;
 import org.reasm.testhelpers.UserSymbolMatcher;
 import org.reasm.z80.Z80Architecture;
+import org.reasm.z80.Z80AssemblyOptions;
 
 /**
  * Base test class for short Z80 programs.
@@ -103,6 +104,7 @@ public abstract class BaseProgramsTest {
             final Configuration configuration = new Configuration(environment, mainSourceFile, Z80Architecture.INSTANCE)
                     .setFileFetcher(this.getFileFetcher());
             final Assembly assembly = new Assembly(configuration);
+            this.getOptions().attachTo(assembly);
 
             int steps = 0;
             AssemblyCompletionStatus status;
@@ -164,4 +166,14 @@ public abstract class BaseProgramsTest {
         return null;
     }
 
+    /**
+     * Gets the {@link Z80AssemblyOptions} to attach to the assembly.
+     *
+     * @return the {@link Z80AssemblyOptions}
+     */
+    @Nonnull
+    protected Z80AssemblyOptions getOptions() {
+        return new Z80AssemblyOptions();
+    }
+
 }
@@ -0,0 +1,135 @@
+package org.reasm.z80.assembly.internal;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reasm.FileFetcher;
+import org.reasm.source.SourceFile;
+import org.reasm.z80.Z80LocalFileFetcher;
+
+/**
+ * Test class for {@link BinaryFileCache}.
+ *
+ * @author Francis Gagné
+ */
+public class BinaryFileCacheTest {
+
+    private static final class DirectoryFileFetcher implements Z80LocalFileFetcher {
+
+        @Nonnull
+        private final Path directory;
+        int numberOfFetches;
+
+        DirectoryFileFetcher(@Nonnull Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public byte[] fetchBinaryFile(String filePath) throws IOException {
+            this.numberOfFetches++;
+            final Path path = this.getLocalPath(filePath);
+            return Files.isRegularFile(path) ? Files.readAllBytes(path) : null;
+        }
+
+        @Override
+        public SourceFile fetchSourceFile(String filePath) throws IOException {
+            return null;
+        }
+
+        @Override
+        public Path getLocalPath(String filePath) {
+            return this.directory.resolve(filePath);
+        }
+
+    }
+
+    @Nonnull
+    private static byte[] toArray(@Nonnull ByteBuffer buffer) {
+        final byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    /** A temporary folder for the binary files. */
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Asserts that {@link BinaryFileCache#get(String, FileFetcher)} maps a local file again when its modification time changes.
+     */
+    @Test
+    public void getModifiedLocalFile() throws IOException {
+        final Path directory = this.temporaryFolder.getRoot().toPath();
+        final Path file = directory.resolve("data.bin");
+        Files.write(file, new byte[] { 1, 2 });
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000000000000L));
+
+        final BinaryFileCache cache = new BinaryFileCache();
+        final DirectoryFileFetcher fileFetcher = new DirectoryFileFetcher(directory);
+        assertThat(toArray(cache.get("data.bin", fileFetcher)), is(new byte[] { 1, 2 }));
+        assertThat(toArray(cache.get("data.bin", fileFetcher)), is(new byte[] { 1, 2 }));
+
+        Files.write(file, new byte[] { 3, 4, 5 });
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000000001000L));
+        assertThat(toArray(cache.get("data.bin", fileFetcher)), is(new byte[] { 3, 4, 5 }));
+
+        // Local files are mapped, not fetched.
+        assertThat(fileFetcher.numberOfFetches, is(0));
+    }
+
+    /**
+     * Asserts that {@link BinaryFileCache#get(String, FileFetcher)} returns <code>null</code> for a file that the file fetcher
+     * doesn't resolve to an existing local file.
+     */
+    @Test
+    public void getMissingLocalFile() throws IOException {
+        final BinaryFileCache cache = new BinaryFileCache();
+        final DirectoryFileFetcher fileFetcher = new DirectoryFileFetcher(this.temporaryFolder.getRoot().toPath());
+
+        assertThat(cache.get("missing.bin", fileFetcher), is(nullValue()));
+        assertThat(fileFetcher.numberOfFetches, is(1));
+    }
+
+    /**
+     * Asserts that {@link BinaryFileCache#get(String, FileFetcher)} reads a file through the file fetcher when the file fetcher
+     * doesn't resolve files to local files, even if the path names an existing local file.
+     */
+    @Test
+    public void getWithoutLocalFileFetcher() throws IOException {
+        final Path file = this.temporaryFolder.newFile("data.bin").toPath();
+        Files.write(file, new byte[] { 1, 2 });
+        final String filePath = file.toAbsolutePath().toString();
+
+        final BinaryFileCache cache = new BinaryFileCache();
+        assertThat(cache.get(filePath, null), is(nullValue()));
+
+        final ByteBuffer contents = cache.get(filePath, new FileFetcher() {
+            @Override
+            public byte[] fetchBinaryFile(String path) throws IOException {
+                return new byte[] { 6 };
+            }
+
+            @Override
+            public SourceFile fetchSourceFile(String path) throws IOException {
+                return null;
+            }
+        });
+
+        assertThat(contents, is(notNullValue()));
+        assertThat(toArray(contents), is(new byte[] { 6 }));
+    }
+
+}
@@ -0,0 +1,96 @@
+package org.reasm.z80.assembly.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.reasm.AssemblyMessage;
+import org.reasm.FileFetcher;
+import org.reasm.commons.messages.ValueOutOfRangeErrorMessage;
+import org.reasm.source.SourceFile;
+import org.reasm.z80.messages.FileReadErrorMessage;
+
+/**
+ * Test class for short Z80 programs that use the <code>INCBIN</code> directive.
+ *
+ * @author Francis Gagné
+ */
+@RunWith(Parameterized.class)
+public class IncbinTest extends BaseProgramsTest {
+
+    @Nonnull
+    private static final FileFetcher FILE_FETCHER = new FileFetcher() {
+        @Override
+        public byte[] fetchBinaryFile(String filePath) throws IOException {
+            return filePath.equals("data.bin") ? new byte[] { 1, 2, 3, 4 } : null;
+        }
+
+        @Override
+        public SourceFile fetchSourceFile(String filePath) throws IOException {
+            return null;
+        }
+    };
+
+    @Nonnull
+    private static final ArrayList<Object[]> TEST_DATA = new ArrayList<>();
+
+    static {
+        addDataItem(" INCBIN \"data.bin\"", 2, new byte[] { 1, 2, 3, 4 });
+        addDataItem(" INCBIN \"data.bin\",1", 2, new byte[] { 2, 3, 4 });
+        addDataItem(" INCBIN \"data.bin\",1,2", 2, new byte[] { 2, 3 });
+        addDataItem(" INCBIN \"data.bin\",4", 2, NO_DATA);
+        addDataItem(" INCBIN \"data.bin\",5", 2, NO_DATA, new ValueOutOfRangeErrorMessage(5));
+        addDataItem(" INCBIN \"data.bin\",1,4", 2, NO_DATA, new ValueOutOfRangeErrorMessage(4));
+        addDataItem(" INCBIN \"data.bin\",1,7FFFFFFFFFFFFFFFh", 2, NO_DATA, new ValueOutOfRangeErrorMessage(0x7FFFFFFFFFFFFFFFL));
+        addDataItem(" INCBIN \"missing.bin\"", 2, NO_DATA, new FileReadErrorMessage("missing.bin"));
+        addDataItem(" INCBIN", 2, NO_DATA, WRONG_NUMBER_OF_OPERANDS);
+    }
+
+    /**
+     * Gets the test data for this parameterized test.
+     *
+     * @return the test data
+     */
+    @Nonnull
+    @Parameters
+    public static List<Object[]> data() {
+        return TEST_DATA;
+    }
+
+    private static void addDataItem(@Nonnull String code, int steps, @Nonnull byte[] output) {
+        addDataItem(code, steps, output, null);
+    }
+
+    private static void addDataItem(@Nonnull String code, int steps, @Nonnull byte[] output,
+            @CheckForNull AssemblyMessage expectedMessage) {
+        TEST_DATA.add(new Object[] { code, steps, output, expectedMessage });
+    }
+
+    /**
+     * Initializes a new IncbinTest.
+     *
+     * @param code
+     *            assembly code to assemble
+     * @param steps
+     *            the number of steps the program is expected to take to assemble completely
+     * @param output
+     *            the program's output
+     * @param expectedMessage
+     *            an {@link AssemblyMessage} that is expected to be generated while assembling the code
+     */
+    public IncbinTest(@Nonnull String code, int steps, @Nonnull byte[] output, @CheckForNull AssemblyMessage expectedMessage) {
+        super(code, steps, output, expectedMessage, null, null);
+    }
+
+    @Override
+    protected FileFetcher getFileFetcher() {
+        return FILE_FETCHER;
+    }
+
+}
@@ -0,0 +1,87 @@
+package org.reasm.z80.assembly.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.reasm.AssemblyMessage;
+import org.reasm.z80.Z80AssemblyOptions;
+import org.reasm.z80.messages.LoopIterationLimitExceededErrorMessage;
+
+/**
+ * Test class for short Z80 programs whose loops are assembled with a small maximum number of iterations.
+ *
+ * @author Francis Gagné
+ */
+@RunWith(Parameterized.class)
+public class LoopIterationLimitTest extends BaseProgramsTest {
+
+    private static final int MAXIMUM_NUMBER_OF_LOOP_ITERATIONS = 3;
+
+    @Nonnull
+    private static final AssemblyMessage LOOP_ITERATION_LIMIT_EXCEEDED = new LoopIterationLimitExceededErrorMessage(
+            MAXIMUM_NUMBER_OF_LOOP_ITERATIONS);
+
+    @Nonnull
+    private static final ArrayList<Object[]> TEST_DATA = new ArrayList<>();
+
+    static {
+        // loops within the limit
+        addDataItem(" WHILE 0\n NOP\n ENDW", 4, NO_DATA);
+        addDataItem("i FOR 1,3\n DB i\n NEXT", 10, new byte[] { 1, 2, 3 });
+        addDataItem(" DO\n NOP\n UNTIL 1", 5, new byte[] { 0x00 });
+
+        // loops that exceed the limit
+        addDataItem(" WHILE 1\n NOP\n ENDW", 10, new byte[] { 0x00, 0x00, 0x00 }, LOOP_ITERATION_LIMIT_EXCEEDED);
+        addDataItem("i FOR 1,5\n DB i\n NEXT", 10, new byte[] { 1, 2, 3 }, LOOP_ITERATION_LIMIT_EXCEEDED);
+        addDataItem(" DO\n NOP\n UNTIL 0", 9, new byte[] { 0x00, 0x00, 0x00 }, LOOP_ITERATION_LIMIT_EXCEEDED);
+    }
+
+    /**
+     * Gets the test data for this parameterized test.
+     *
+     * @return the test data
+     */
+    @Nonnull
+    @Parameters
+    public static List<Object[]> data() {
+        return TEST_DATA;
+    }
+
+    private static void addDataItem(@Nonnull String code, int steps, @Nonnull byte[] output) {
+        addDataItem(code, steps, output, null);
+    }
+
+    private static void addDataItem(@Nonnull String code, int steps, @Nonnull byte[] output,
+            @CheckForNull AssemblyMessage expectedMessage) {
+        TEST_DATA.add(new Object[] { code, steps, output, expectedMessage });
+    }
+
+    /**
+     * Initializes a new LoopIterationLimitTest.
+     *
+     * @param code
+     *            assembly code to assemble
+     * @param steps
+     *            the number of steps the program is expected to take to assemble completely
+     * @param output
+     *            the program's output
+     * @param expectedMessage
+     *            an {@link AssemblyMessage} that is expected to be generated while assembling the code
+     */
+    public LoopIterationLimitTest(@Nonnull String code, int steps, @Nonnull byte[] output,
+            @CheckForNull AssemblyMessage expectedMessage) {
+        super(code, steps, output, expectedMessage, null, null);
+    }
+
+    @Override
+    protected Z80AssemblyOptions getOptions() {
+        return new Z80AssemblyOptions().setMaximumNumberOfLoopIterations(MAXIMUM_NUMBER_OF_LOOP_ITERATIONS);
+    }
+
+}
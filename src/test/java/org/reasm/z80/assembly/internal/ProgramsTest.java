@@ -10,6 +10,9 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
 import org.reasm.AssemblyMessage;
+import org.reasm.z80.messages.CycleBudgetErrorMessage;
+import org.reasm.z80.messages.InvalidCycleBudgetErrorMessage;
+import org.reasm.z80.messages.InvalidNamespaceNameErrorMessage;
 
 /**
  * Test class for short M68000 programs.
@@ -25,23 +28,87 @@ public class ProgramsTest extends BaseProgramsTest {
     static {
         // undefined mnemonic
         addDataItem(" UNDEFINED", 2, NO_DATA, UNDEFINED_SYMBOL);
-        // TODO: Reactivate this test when the DW directive is implemented
-        //addDataItem("A: UNDEFINED\n DW A", 3, new byte[] { 0x00, 0x00 }, UNDEFINED_SYMBOL);
+        addDataItem("A: UNDEFINED\n DW A", 3, new byte[] { 0x00, 0x00 }, UNDEFINED_SYMBOL);
 
         // ! prefix on a block directive
-        // TODO: Reactivate this test when IF blocks and the DW directive are implemented
-        //addDataItem(" !IF 0\n DW $0123\n !ELSEIF 1\n DW $1234\n !ENDIF", 6, new byte[] { 0x12, 0x34 });
+        addDataItem(" !IF 0\n DW 0123h\n !ELSEIF 1\n DW 1234h\n !ENDIF", 6, new byte[] { 0x34, 0x12 });
 
         // continuation characters
-        // TODO: Reactivate this test when the DB directive is implemented
-        //addDataItem(" DB &\n1", 2, new byte[] { 1 });
-        //addDataItem(" D&\nB 1", 2, new byte[] { 1 });
-        //addDataItem(" D&\rB 1", 2, new byte[] { 1 });
-        //addDataItem(" D&\r\nB 1", 2, new byte[] { 1 });
-        //addDataItem(" D&\n B 1", 2, new byte[] { 1 });
-        //addDataItem(" D&\n\tB 1", 2, new byte[] { 1 });
-        //addDataItem(" D&\n\t\t  B 1", 2, new byte[] { 1 });
-        //addDataItem(" DB 1&\n1", 2, new byte[] { 11 });
+        addDataItem(" DB &\n1", 2, new byte[] { 1 });
+        addDataItem(" D&\nB 1", 2, new byte[] { 1 });
+        addDataItem(" D&\rB 1", 2, new byte[] { 1 });
+        addDataItem(" D&\r\nB 1", 2, new byte[] { 1 });
+        addDataItem(" D&\n B 1", 2, new byte[] { 1 });
+        addDataItem(" D&\n\tB 1", 2, new byte[] { 1 });
+        addDataItem(" D&\n\t\t  B 1", 2, new byte[] { 1 });
+        addDataItem(" DB 1&\n1", 2, new byte[] { 11 });
+
+        // data directives
+        addDataItem(" DB 1,2,3", 2, new byte[] { 1, 2, 3 });
+        addDataItem(" DB \"AB\",0", 2, new byte[] { 0x41, 0x42, 0 });
+        addDataItem(" DEFM \"Hi\"", 2, new byte[] { 0x48, 0x69 });
+        addDataItem(" DW 1234h,5", 2, new byte[] { 0x34, 0x12, 5, 0 });
+        addDataItem(" DS 3", 2, new byte[] { 0, 0, 0 });
+        addDataItem(" DS 2,0FFh", 2, new byte[] { (byte) 0xFF, (byte) 0xFF });
+
+        // CYCLES blocks
+        addDataItem(" CYCLES 14\n LD A,5\n LD B,A\n ENDCYCLES", 6, new byte[] { 0x3E, 0x05, 0x47 });
+        addDataItem(" CYCLES 11,11\n LD A,5\n LD B,A\n ENDCYCLES", 6, new byte[] { 0x3E, 0x05, 0x47 });
+        addDataItem(" CYCLES 10\n LD A,5\n LD B,A\n ENDCYCLES", 6, new byte[] { 0x3E, 0x05, 0x47 }, new CycleBudgetErrorMessage(11,
+                0, 10));
+        addDataItem(" CYCLES 12,12\n LD A,5\n LD B,A\n ENDCYCLES", 6, new byte[] { 0x3E, 0x05, 0x47 }, new CycleBudgetErrorMessage(
+                11, 12, 12));
+        addDataItem(" CYCLES 8\n NOP\n CYCLES 4\n NOP\n ENDCYCLES\n ENDCYCLES", 9, new byte[] { 0x00, 0x00 });
+        addDataItem(" CYCLES\n NOP\n ENDCYCLES", 5, new byte[] { 0x00 }, WRONG_NUMBER_OF_OPERANDS);
+        addDataItem(" CYCLES 12,4\n NOP\n ENDCYCLES", 5, new byte[] { 0x00 }, new InvalidCycleBudgetErrorMessage(12, 4));
+
+        // DO blocks
+        addDataItem(" DO\n NOP\n UNTIL 1", 5, new byte[] { 0x00 });
+        addDataItem(" DO\n NOP\n UNTIL", 5, new byte[] { 0x00 }, WRONG_NUMBER_OF_OPERANDS);
+
+        // FOR blocks
+        addDataItem("i FOR 1,3\n NOP\n NEXT", 10, new byte[] { 0x00, 0x00, 0x00 });
+        addDataItem("i FOR 3,1,-1\n NOP\n NEXT", 10, new byte[] { 0x00, 0x00, 0x00 });
+        addDataItem("i FOR 1,0\n NOP\n NEXT", 4, NO_DATA);
+        addDataItem("i FOR 1\n NOP\n NEXT", 4, NO_DATA, WRONG_NUMBER_OF_OPERANDS);
+        addDataItem("i FOR 1,3\n DB i\n NEXT", 10, new byte[] { 1, 2, 3 });
+        addDataItem("i FOR 10h,30h,10h\n DB i+1\n NEXT", 10, new byte[] { 0x11, 0x21, 0x31 });
+
+        // IF blocks
+        addDataItem(" IF 1\n NOP\n ELSE\n HALT\n ENDIF", 5, new byte[] { 0x00 });
+        addDataItem(" IF 0\n NOP\n ELSE\n HALT\n ENDIF", 6, new byte[] { 0x76 });
+        addDataItem(" IF 0\n NOP\n ELSEIF 1\n HALT\n ENDIF", 6, new byte[] { 0x76 });
+        addDataItem(" IF 1\n NOP\n ELSEIF 1\n HALT\n ENDIF", 5, new byte[] { 0x00 });
+        addDataItem(" IF 0\n NOP\n ENDIF", 4, NO_DATA);
+        addDataItem(" IF\n NOP\n ENDIF", 4, NO_DATA, WRONG_NUMBER_OF_OPERANDS);
+
+        // IF blocks whose condition refers to constants: the result is reused while the constants keep their values
+        addDataItem("BASE: NOP\n IF BASE=0\n JP TAIL\n ENDIF\nTAIL: NOP", 14, new byte[] { 0x00, (byte) 0xC3, 0x04, 0x00, 0x00 });
+        addDataItem(" IF TAIL>=0\n NOP\n ENDIF\nMID:\n IF MID=1\n HALT\n ENDIF\nTAIL:", 31, new byte[] { 0x00, 0x76 });
+
+        // NAMESPACE blocks: a label defined after a reference shadows the label of the enclosing namespace on the next pass
+        addDataItem("x: NOP\n NAMESPACE foo\n JP x\nx: NOP\n ENDNS", 14, new byte[] { 0x00, (byte) 0xC3, 0x04, 0x00, 0x00 });
+        addDataItem(" NAMESPACE a..b\n NOP\n ENDNS", 5, new byte[] { 0x00 }, new InvalidNamespaceNameErrorMessage("a..b"));
+        addDataItem(" NAMESPACE 1a\n NOP\n ENDNS", 5, new byte[] { 0x00 }, new InvalidNamespaceNameErrorMessage("1a"));
+
+        // PHASE blocks
+        addDataItem(" PHASE 8000h\n JR 8000h\n DEPHASE", 5, new byte[] { 0x18, (byte) 0xFE });
+        addDataItem(" NOP\n PHASE 8000h\n NOP\n PHASE 9000h\n JR 9000h\n DEPHASE\n JR 8000h\n DEPHASE", 11, new byte[] { 0x00, 0x00,
+                0x18, (byte) 0xFE, 0x18, (byte) 0xFB });
+
+        // TRANSFORM blocks
+        addDataItem(" TRANSFORM XOR,0FFh\n NOP\n ENDTRANSFORM", 5, new byte[] { (byte) 0xFF });
+        addDataItem(" TRANSFORM NIBBLESWAP\n RLCA\n ENDTRANSFORM", 5, new byte[] { 0x70 });
+        addDataItem(" TRANSFORM PACKBITS\n NOP\n NOP\n NOP\n NOP\n ENDTRANSFORM", 8, new byte[] { (byte) 0xFD, 0x00 });
+        addDataItem(" TRANSFORM PACKBITS\n RLCA\n NOP\n ENDTRANSFORM", 6, new byte[] { 0x01, 0x07, 0x00 });
+        addDataItem(" TRANSFORM XOR,0FFh\n TRANSFORM NIBBLESWAP\n RLCA\n ENDTRANSFORM\n ENDTRANSFORM", 8, new byte[] { (byte) 0x8F });
+
+        // WHILE blocks
+        addDataItem(" WHILE 0\n NOP\n ENDW", 4, NO_DATA);
+        addDataItem(" WHILE\n NOP\n ENDW", 4, NO_DATA, WRONG_NUMBER_OF_OPERANDS);
+
+        // WHILE block whose condition changes through a variable, assigned by a FOR block with a single iteration
+        addDataItem("i FOR 0,0\n NEXT\n WHILE i<3\ni FOR i+1,i+1\n NEXT\n DB i\n ENDW", 26, new byte[] { 1, 2, 3 });
     }
 
     /**
@@ -55,9 +122,9 @@ public class ProgramsTest extends BaseProgramsTest {
         return TEST_DATA;
     }
 
-    //private static void addDataItem(@Nonnull String code, int steps, @Nonnull byte[] output) {
-    //    addDataItem(code, steps, output, null);
-    //}
+    private static void addDataItem(@Nonnull String code, int steps, @Nonnull byte[] output) {
+        addDataItem(code, steps, output, null);
+    }
 
     private static void addDataItem(@Nonnull String code, int steps, @Nonnull byte[] output,
             @CheckForNull AssemblyMessage expectedMessage) {
@@ -0,0 +1,83 @@
+package org.reasm.z80.assembly.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.reasm.AssemblyMessage;
+import org.reasm.z80.Z80AssemblyOptions;
+
+/**
+ * Test class for short Z80 programs assembled with the sizing pass enabled.
+ *
+ * @author Francis Gagné
+ */
+@RunWith(Parameterized.class)
+public class SizingPassTest extends BaseProgramsTest {
+
+    @Nonnull
+    private static final ArrayList<Object[]> TEST_DATA = new ArrayList<>();
+
+    static {
+        // no deferred values: a single pass
+        addDataItem(" NOP", 2, new byte[] { 0x00 });
+
+        // immediate values: the emission pass adds a pass, except to programs that need a second pass anyway (JR NEXT)
+        addDataItem(" LD A,5", 4, new byte[] { 0x3E, 0x05 });
+        addDataItem("START: NOP\n JP START", 6, new byte[] { 0x00, (byte) 0xC3, 0x00, 0x00 });
+        addDataItem(" JR NEXT\nNEXT: NOP", 6, new byte[] { 0x18, 0x00, 0x00 });
+
+        // displacements
+        addDataItem(" LD (IX+5),7", 4, new byte[] { (byte) 0xDD, 0x36, 0x05, 0x07 });
+
+        // words
+        addDataItem(" DW 1234h", 4, new byte[] { 0x34, 0x12 });
+    }
+
+    /**
+     * Gets the test data for this parameterized test.
+     *
+     * @return the test data
+     */
+    @Nonnull
+    @Parameters
+    public static List<Object[]> data() {
+        return TEST_DATA;
+    }
+
+    private static void addDataItem(@Nonnull String code, int steps, @Nonnull byte[] output) {
+        addDataItem(code, steps, output, null);
+    }
+
+    private static void addDataItem(@Nonnull String code, int steps, @Nonnull byte[] output,
+            @CheckForNull AssemblyMessage expectedMessage) {
+        TEST_DATA.add(new Object[] { code, steps, output, expectedMessage });
+    }
+
+    /**
+     * Initializes a new SizingPassTest.
+     *
+     * @param code
+     *            assembly code to assemble
+     * @param steps
+     *            the number of steps the program is expected to take to assemble completely
+     * @param output
+     *            the program's output
+     * @param expectedMessage
+     *            an {@link AssemblyMessage} that is expected to be generated while assembling the code
+     */
+    public SizingPassTest(@Nonnull String code, int steps, @Nonnull byte[] output, @CheckForNull AssemblyMessage expectedMessage) {
+        super(code, steps, output, expectedMessage, null, null);
+    }
+
+    @Override
+    protected Z80AssemblyOptions getOptions() {
+        return new Z80AssemblyOptions().setSizingPass(true);
+    }
+
+}
@@ -44,6 +44,19 @@ public class SymbolsTest extends BaseProgramsTest {
                 UINT_0) });
         addDataItem("foo:", 2, new UserSymbolMatcher[] { new UserSymbolMatcher<>(SymbolContext.VALUE, "foo", SymbolType.CONSTANT,
                 UINT_0) });
+        // NAMESPACE blocks
+        addDataItem(" NAMESPACE foo\nbar\n ENDNS", 5, new UserSymbolMatcher[] { new UserSymbolMatcher<>(SymbolContext.VALUE,
+                "foo.bar", SymbolType.CONSTANT, UINT_0) });
+        addDataItem(" NAMESPACE foo\n NAMESPACE bar\nbaz\n ENDNS\n ENDNS", 8, new UserSymbolMatcher[] { new UserSymbolMatcher<>(
+                SymbolContext.VALUE, "foo.bar.baz", SymbolType.CONSTANT, UINT_0) });
+        addDataItem(" NAMESPACE foo\n ENDNS\nbar", 5, new UserSymbolMatcher[] { new UserSymbolMatcher<>(SymbolContext.VALUE, "bar",
+                SymbolType.CONSTANT, UINT_0) });
+
+        // PHASE blocks
+        addDataItem(" PHASE 8000h\nfoo\n DEPHASE", 5, new UserSymbolMatcher[] { new UserSymbolMatcher<>(SymbolContext.VALUE, "foo",
+                SymbolType.CONSTANT, new UnsignedIntValue(0x8000)) });
+        addDataItem(" PHASE 8000h\n DEPHASE\nfoo", 5, new UserSymbolMatcher[] { FOO_CONSTANT_UINT_0 });
+
         // TODO: Reactivate this test when ORG is implemented
         //addDataItem(" ORG $456\nfoo", 3, new UserSymbolMatcher[] { new UserSymbolMatcher<>(SymbolContext.VALUE, "foo",
         //        SymbolType.CONSTANT, new UnsignedIntValue(0x456)) });
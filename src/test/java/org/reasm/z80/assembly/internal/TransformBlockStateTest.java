@@ -0,0 +1,47 @@
+package org.reasm.z80.assembly.internal;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.reasm.Assembly;
+import org.reasm.AssemblyCompletionStatus;
+import org.reasm.Configuration;
+import org.reasm.Environment;
+import org.reasm.source.SourceFile;
+import org.reasm.z80.Z80Architecture;
+
+/**
+ * Test class for {@link TransformBlockState}.
+ *
+ * @author Francis Gagné
+ */
+public class TransformBlockStateTest {
+
+    /**
+     * Asserts that a <code>TRANSFORM</code> block without an <code>ENDTRANSFORM</code> directive writes the data that is held by
+     * its transform stage when the block ends.
+     *
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    @Test
+    public void exitUnclosedBlock() throws IOException {
+        final SourceFile sourceFile = new SourceFile(" TRANSFORM PACKBITS\n NOP\n NOP\n NOP\n NOP", null);
+        final Configuration configuration = new Configuration(Environment.DEFAULT, sourceFile, Z80Architecture.INSTANCE);
+        final Assembly assembly = new Assembly(configuration);
+
+        AssemblyCompletionStatus status;
+        do {
+            status = assembly.step();
+        } while (status != AssemblyCompletionStatus.COMPLETE);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assembly.writeAssembledDataTo(out);
+        assertThat(out.toByteArray(), is(new byte[] { (byte) 0xFD, 0x00 }));
+    }
+
+}
@@ -236,6 +236,23 @@ public class TokenizerTest {
             assertThat(i, is(this.expectedResult.length));
         }
 
+        /**
+         * Asserts that {@link Tokenizer#advance()} replays the correct tokens from a {@link TokenizedOperand}.
+         */
+        @Test
+        public void testTokenizedOperand() {
+            Tokenizer tokenizer = new Tokenizer();
+            tokenizer.setTokenizedOperand(TokenizedOperand.tokenize(this.input));
+
+            int i = 0;
+            for (; tokenizer.getTokenType() != TokenType.END; tokenizer.advance(), i++) {
+                assertThat(i, is(not(this.expectedResult.length)));
+                assertThat(tokenizer, this.expectedResult[i]);
+            }
+
+            assertThat(i, is(this.expectedResult.length));
+        }
+
     }
 
     /**
@@ -259,6 +276,27 @@ public class TokenizerTest {
         assertThat(tokenizer, new TokenMatcher(TokenType.END, 4, 4));
     }
 
+    /**
+     * Asserts that {@link Tokenizer#breakSequence()} breaks a {@link TokenType#PLUS_OR_MINUS_SEQUENCE} token replayed from a
+     * {@link TokenizedOperand} into a series of {@link TokenType#OPERATOR} tokens.
+     */
+    @Test
+    public void breakSequenceTokenizedOperand() {
+        final Tokenizer tokenizer = new Tokenizer();
+        tokenizer.setTokenizedOperand(TokenizedOperand.tokenize("+++2"));
+        assertThat(tokenizer, new TokenMatcher(TokenType.PLUS_OR_MINUS_SEQUENCE, 0, 3));
+        tokenizer.breakSequence();
+        assertThat(tokenizer, new TokenMatcher(TokenType.OPERATOR, 0, 1));
+        tokenizer.advance();
+        assertThat(tokenizer, new TokenMatcher(TokenType.OPERATOR, 1, 2));
+        tokenizer.advance();
+        assertThat(tokenizer, new TokenMatcher(TokenType.OPERATOR, 2, 3));
+        tokenizer.advance();
+        assertThat(tokenizer, new TokenMatcher(TokenType.DECIMAL_INTEGER, 3, 4));
+        tokenizer.advance();
+        assertThat(tokenizer, new TokenMatcher(TokenType.END, 4, 4));
+    }
+
     /**
      * Asserts that {@link Tokenizer#breakSequence()} throws an {@link IllegalStateException} when the current token has the wrong
      * type.
@@ -328,6 +366,15 @@ public class TokenizerTest {
         new Tokenizer().setCharSequence(null);
     }
 
+    /**
+     * Asserts that {@link Tokenizer#setTokenizedOperand(TokenizedOperand)} throws a {@link NullPointerException} when the
+     * <code>tokenizedOperand</code> argument is <code>null</code>.
+     */
+    @Test(expected = NullPointerException.class)
+    public void setTokenizedOperandNull() {
+        new Tokenizer().setTokenizedOperand(null);
+    }
+
     /**
      * Asserts that {@link Tokenizer#tokenEqualsString(String)} returns <code>false</code> when the tokenizer's current token text's
      * length is different from the specified string's length.
@@ -0,0 +1,210 @@
+package org.reasm.z80.object;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+import org.reasm.Assembly;
+import org.reasm.AssemblyCompletionStatus;
+import org.reasm.Configuration;
+import org.reasm.Environment;
+import org.reasm.source.SourceFile;
+import org.reasm.testhelpers.EquivalentAssemblyMessage;
+import org.reasm.z80.Z80Architecture;
+import org.reasm.z80.messages.NonRelocatableExpressionErrorMessage;
+import org.reasm.z80.messages.ObjectFileDirectiveErrorMessage;
+
+/**
+ * Test class for {@link Z80ObjectAssembler}, {@link Z80ObjectFile} and {@link Z80Linker}.
+ *
+ * @author Francis Gagné
+ */
+public class Z80LinkerTest {
+
+    @Nonnull
+    private static Assembly createAssembly(@Nonnull String code) {
+        return new Assembly(new Configuration(Environment.DEFAULT, new SourceFile(code, null), Z80Architecture.INSTANCE));
+    }
+
+    @Nonnull
+    private static Z80ObjectFile assembleObjectFile(@Nonnull String code) throws IOException, ObjectFileException {
+        final Assembly assembly = createAssembly(code);
+        final Z80ObjectFile objectFile = Z80ObjectAssembler.assemble(assembly);
+        assertThat(assembly.getMessages(), is(empty()));
+        return objectFile;
+    }
+
+    /**
+     * Asserts that {@link Z80ObjectAssembler#assemble(Assembly)} records the relocations, imports and exports of an assembly.
+     */
+    @Test
+    public void assemble() throws IOException, ObjectFileException {
+        final Z80ObjectFile objectFile = assembleObjectFile(" EXTERN FUNC\n PUBLIC START\nSTART: CALL FUNC+1\n JP START\n"
+                + " LD A,5\n DW START+2");
+        assertThat(objectFile.getImports(), contains("FUNC"));
+        assertThat(objectFile.getExports().size(), is(1));
+        assertThat(objectFile.getExports().get(0).getName(), is("START"));
+        assertThat(objectFile.getExports().get(0).getSectionIndex(), is(0));
+        assertThat(objectFile.getExports().get(0).getValue(), is(0L));
+
+        final Z80ObjectFile.Section section = objectFile.getSections().get(0);
+        assertThat(section.getData(), is(new byte[] { (byte) 0xCD, 0x01, 0x00, (byte) 0xC3, 0x00, 0x00, 0x3E, 0x05, 0x02, 0x00 }));
+        assertThat(section.getRelocations().size(), is(3));
+        assertThat(section.getRelocations().get(0).getOffset(), is(1));
+        assertThat(section.getRelocations().get(0).getSymbolName(), is("FUNC"));
+        assertThat(section.getRelocations().get(1).getOffset(), is(4));
+        assertThat(section.getRelocations().get(1).getSymbolName(), is(nullValue()));
+        assertThat(section.getRelocations().get(2).getOffset(), is(8));
+        assertThat(section.getRelocations().get(2).getSize(), is(2));
+    }
+
+    /**
+     * Asserts that {@link Z80ObjectAssembler#assemble(Assembly)} reports an error for an expression that cannot be described with
+     * a relocation.
+     */
+    @Test
+    public void assembleNonRelocatableExpression() throws IOException, ObjectFileException {
+        final Assembly assembly = createAssembly("L1: NOP\nL2: NOP\n DW L1+L2");
+        Z80ObjectAssembler.assemble(assembly);
+        assertThat(assembly.getMessages(), contains(new EquivalentAssemblyMessage(new NonRelocatableExpressionErrorMessage())));
+    }
+
+    /**
+     * Asserts that the <code>EXTERN</code> directive is rejected when the assembly doesn't produce an object file.
+     */
+    @Test
+    public void externOutsideObjectFile() throws IOException {
+        final Assembly assembly = createAssembly(" EXTERN FUNC");
+        AssemblyCompletionStatus status;
+        do {
+            status = assembly.step();
+        } while (status != AssemblyCompletionStatus.COMPLETE);
+
+        assertThat(assembly.getMessages(), contains(new EquivalentAssemblyMessage(new ObjectFileDirectiveErrorMessage("EXTERN"))));
+    }
+
+    /**
+     * Asserts that {@link Z80Linker#link(java.util.List, long)} places the sections one after the other and resolves the
+     * relocations.
+     */
+    @Test
+    public void link() throws IOException, ObjectFileException {
+        final Z80ObjectFile a = assembleObjectFile(" EXTERN FUNC\n PUBLIC START\nSTART: CALL FUNC\n JP START");
+        final Z80ObjectFile b = assembleObjectFile(" PUBLIC FUNC\nFUNC: RET");
+        assertThat(Z80Linker.link(Arrays.asList(a, b), 0x8000),
+                is(new byte[] { (byte) 0xCD, 0x06, (byte) 0x80, (byte) 0xC3, 0x00, (byte) 0x80, (byte) 0xC9 }));
+    }
+
+    /**
+     * Asserts that {@link Z80Linker#link(java.util.List, long)} relocates the program counter (<code>*</code>) like a label,
+     * except in <code>PHASE</code> blocks.
+     */
+    @Test
+    public void linkProgramCounter() throws IOException, ObjectFileException {
+        final Z80ObjectFile a = assembleObjectFile(" NOP\n JR *\n DJNZ *\n JP *+3\n DW *\n PHASE 100h\n DW *\n DEPHASE");
+        assertThat(a.getSections().get(0).getRelocations().size(), is(2));
+        assertThat(Z80Linker.link(Arrays.asList(a), 0x8000), is(new byte[] { 0x00, 0x18, (byte) 0xFE, 0x10, (byte) 0xFE,
+                (byte) 0xC3, 0x08, (byte) 0x80, 0x08, (byte) 0x80, 0x00, 0x01 }));
+    }
+
+    /**
+     * Asserts that {@link Z80Linker#link(java.util.List, long)} throws an {@link ObjectFileException} when a symbol is exported by
+     * more than one object file.
+     */
+    @Test(expected = ObjectFileException.class)
+    public void linkDuplicateExport() throws IOException, ObjectFileException {
+        final Z80ObjectFile a = assembleObjectFile(" PUBLIC FUNC\nFUNC: RET");
+        Z80Linker.link(Arrays.asList(a, a), 0);
+    }
+
+    /**
+     * Asserts that {@link Z80Linker#link(java.util.List, long)} throws an {@link ObjectFileException} when a symbol is exported
+     * relative to a section that doesn't exist.
+     */
+    @Test(expected = ObjectFileException.class)
+    public void linkExportInvalidSection() throws ObjectFileException {
+        final Z80ObjectFile a = new Z80ObjectFile(Collections.<Z80ObjectFile.Section> emptyList(),
+                Arrays.asList(new Z80ObjectFile.Export("FUNC", 1, 0)), Collections.<String> emptyList());
+        Z80Linker.link(Arrays.asList(a), 0);
+    }
+
+    /**
+     * Asserts that {@link Z80Linker#link(java.util.List, long)} throws an {@link ObjectFileException} when an imported symbol is
+     * not exported by any object file.
+     */
+    @Test(expected = ObjectFileException.class)
+    public void linkUnresolvedImport() throws IOException, ObjectFileException {
+        final Z80ObjectFile a = assembleObjectFile(" EXTERN FUNC\n JP FUNC");
+        Z80Linker.link(Arrays.asList(a), 0);
+    }
+
+    /**
+     * Asserts that {@link Z80ObjectFile#read(java.io.InputStream)} throws an {@link IOException} when a relocation has an invalid
+     * size.
+     */
+    @Test(expected = IOException.class)
+    public void readInvalidRelocationSize() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(0x5A38304F);
+        dataOut.writeInt(1);
+        dataOut.writeInt(1);
+        dataOut.writeUTF(Z80ObjectAssembler.SECTION_NAME);
+        dataOut.writeInt(2);
+        dataOut.write(new byte[2]);
+        dataOut.writeInt(1);
+        dataOut.writeInt(0);
+        dataOut.writeByte(3);
+        dataOut.writeBoolean(false);
+        dataOut.writeInt(0);
+        dataOut.writeInt(0);
+        Z80ObjectFile.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    /**
+     * Asserts that {@link Z80ObjectFile#read(java.io.InputStream)} throws an {@link IOException} when a count is negative.
+     */
+    @Test(expected = IOException.class)
+    public void readNegativeCount() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(0x5A38304F);
+        dataOut.writeInt(1);
+        dataOut.writeInt(-1);
+        Z80ObjectFile.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    /**
+     * Asserts that {@link Z80ObjectFile#writeTo(java.io.OutputStream)} and {@link Z80ObjectFile#read(java.io.InputStream)}
+     * preserve the contents of an object file.
+     */
+    @Test
+    public void writeToAndRead() throws IOException, ObjectFileException {
+        final Z80ObjectFile objectFile = assembleObjectFile(" EXTERN FUNC\n PUBLIC START\nSTART: NOP\n JP START");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        objectFile.writeTo(out);
+
+        final Z80ObjectFile copy = Z80ObjectFile.read(new ByteArrayInputStream(out.toByteArray()));
+        assertThat(copy.getImports(), is(objectFile.getImports()));
+        assertThat(copy.getExports().get(0).getName(), is("START"));
+        assertThat(copy.getSections().get(0).getName(), is(Z80ObjectAssembler.SECTION_NAME));
+        assertThat(copy.getSections().get(0).getData(), is(objectFile.getSections().get(0).getData()));
+        assertThat(copy.getSections().get(0).getRelocations().size(), is(1));
+
+        final Z80ObjectFile b = assembleObjectFile(" PUBLIC FUNC\nFUNC: RET");
+        assertThat(Z80Linker.link(Arrays.asList(copy, b), 0x100), is(new byte[] { 0x00, (byte) 0xC3, 0x00, 0x01, (byte) 0xC9 }));
+    }
+
+}
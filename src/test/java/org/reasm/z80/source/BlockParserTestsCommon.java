@@ -2,6 +2,7 @@ package org.reasm.z80.source;
 
 import static ca.fragag.testhelpers.HasType.hasType;
 import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasProperty;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
@@ -27,6 +28,23 @@ final class BlockParserTestsCommon {
     @Nonnull
     static final Matcher<Object> INCOMPLETE_BLOCK = hasType(UnclosedBlockParseError.class);
 
+    /**
+     * Asserts that two trees have the same structure: the same node types, lengths and presence of parse errors.
+     */
+    static void assertSameTree(@Nonnull SourceNode actual, @Nonnull SourceNode expected) {
+        assertThat(actual.getClass(), is(equalTo((Object) expected.getClass())));
+        assertThat(actual.getLength(), is(expected.getLength()));
+        assertThat(actual.getParseError() == null, is(expected.getParseError() == null));
+        if (expected instanceof CompositeSourceNode) {
+            final List<SourceNode> actualChildNodes = ((CompositeSourceNode) actual).getChildNodes();
+            final List<SourceNode> expectedChildNodes = ((CompositeSourceNode) expected).getChildNodes();
+            assertThat(actualChildNodes.size(), is(expectedChildNodes.size()));
+            for (int i = 0; i < expectedChildNodes.size(); i++) {
+                assertSameTree(actualChildNodes.get(i), expectedChildNodes.get(i));
+            }
+        }
+    }
+
     static void parseBasicBlock(@Nonnull String code, @Nonnull Class<?> blockType, @Nonnull Class<?> bodyType,
             @Nonnull Matcher<? super ParseError> blockParseErrorMatcher,
             @CheckForNull Matcher<? super SourceNode> thirdChildNodeMatcher) {
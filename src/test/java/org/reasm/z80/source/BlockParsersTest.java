@@ -26,6 +26,11 @@ public class BlockParsersTest {
         BlockParserTestsCommon.parseBasicBlock(code, blockType, bodyType, blockParseErrorMatcher, thirdChildNodeMatcher);
     }
 
+    private static void parseCyclesBlock(@Nonnull String code, @Nonnull Matcher<? super ParseError> blockParseErrorMatcher,
+            @CheckForNull Matcher<? super SourceNode> thirdChildNodeMatcher) {
+        parseBasicBlock(code, CyclesBlock.class, SimpleCompositeSourceNode.class, blockParseErrorMatcher, thirdChildNodeMatcher);
+    }
+
     private static void parseDoBlock(@Nonnull String code, @Nonnull Matcher<? super ParseError> blockParseErrorMatcher,
             @CheckForNull Matcher<? super SourceNode> thirdChildNodeMatcher) {
         parseBasicBlock(code, DoBlock.class, SimpleCompositeSourceNode.class, blockParseErrorMatcher, thirdChildNodeMatcher);
@@ -66,6 +71,14 @@ public class BlockParsersTest {
         parseBasicBlock(code, WhileBlock.class, SimpleCompositeSourceNode.class, blockParseErrorMatcher, thirdChildNodeMatcher);
     }
 
+    /**
+     * Asserts that {@link Z80Parser} correctly parses a complete <code>CYCLES</code> block.
+     */
+    @Test
+    public void parseCompleteCyclesBlock() {
+        parseCyclesBlock(" CYCLES\n NOP\n ENDCYCLES", COMPLETE_BLOCK, hasType(Z80BlockDirectiveLine.class));
+    }
+
     /**
      * Asserts that {@link Z80Parser} correctly parses a complete <code>DO</code> block.
      */
@@ -130,6 +143,14 @@ public class BlockParsersTest {
         parseWhileBlock(" WHILE\n NOP\n ENDW", COMPLETE_BLOCK, hasType(Z80BlockDirectiveLine.class));
     }
 
+    /**
+     * Asserts that {@link Z80Parser} correctly parses an incomplete <code>CYCLES</code> block.
+     */
+    @Test
+    public void parseIncompleteCyclesBlock() {
+        parseCyclesBlock(" CYCLES\n NOP", INCOMPLETE_BLOCK, null);
+    }
+
     /**
      * Asserts that {@link Z80Parser} correctly parses an incomplete <code>DO</code> block.
      */
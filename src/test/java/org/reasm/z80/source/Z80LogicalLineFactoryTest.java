@@ -0,0 +1,101 @@
+package org.reasm.z80.source;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+import org.openjdk.jol.info.GraphLayout;
+import org.reasm.SubstringBounds;
+import org.reasm.commons.source.LogicalLine;
+import org.reasm.commons.source.LogicalLineAttributes;
+import org.reasm.source.CompositeSourceNode;
+import org.reasm.source.SourceNode;
+
+import ca.fragag.text.Document;
+
+/**
+ * Test class for {@link Z80LogicalLineFactory}.
+ *
+ * @author Francis Gagné
+ */
+public class Z80LogicalLineFactoryTest {
+
+    @CheckForNull
+    private static SubstringBounds copy(@CheckForNull SubstringBounds bounds) {
+        return bounds == null ? null : new SubstringBounds(bounds.getStart(), bounds.getEnd());
+    }
+
+    /**
+     * Creates a logical line equivalent to the specified logical line, with its own bounds objects and arrays, like the lines that
+     * the parser creates before they are compacted.
+     */
+    @Nonnull
+    private static LogicalLine copy(@Nonnull LogicalLine line) {
+        final SubstringBounds[] labels = new SubstringBounds[line.getNumberOfLabels()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = copy(line.getLabelBounds(i));
+        }
+
+        final SubstringBounds[] operands = new SubstringBounds[line.getNumberOfOperands()];
+        for (int i = 0; i < operands.length; i++) {
+            operands[i] = copy(line.getOperandBounds(i));
+        }
+
+        final int[] continuationCharacters = new int[line.getNumberOfContinuationCharacters()];
+        for (int i = 0; i < continuationCharacters.length; i++) {
+            continuationCharacters[i] = line.getContinuationCharacter(i);
+        }
+
+        return new Z80LogicalLine(new LogicalLineAttributes(line.getLength(), line.getParseError(), labels,
+                copy(line.getMnemonicBounds()), operands, copy(line.getCommentBounds()), continuationCharacters));
+    }
+
+    @Nonnull
+    private static List<SourceNode> parseLines(@Nonnull String line, int count) {
+        final StringBuilder sb = new StringBuilder(line.length() * count);
+        for (int i = 0; i < count; i++) {
+            sb.append(line);
+        }
+
+        return ((CompositeSourceNode) Z80Parser.INSTANCE.parse(new Document(sb.toString()))).getChildNodes();
+    }
+
+    /**
+     * Asserts that logical lines created by {@link Z80LogicalLineFactory} share their bounds objects.
+     */
+    @Test
+    public void createLogicalLineSharesBounds() {
+        final List<SourceNode> lines = parseLines(" LD A,1\n", 2);
+        final LogicalLine first = (LogicalLine) lines.get(0);
+        final LogicalLine second = (LogicalLine) lines.get(1);
+        assertThat(second.getMnemonicBounds(), is(sameInstance(first.getMnemonicBounds())));
+        assertThat(second.getOperandBounds(0), is(sameInstance(first.getOperandBounds(0))));
+        assertThat(second.getOperandBounds(1), is(sameInstance(first.getOperandBounds(1))));
+    }
+
+    /**
+     * Asserts that logical lines created by {@link Z80LogicalLineFactory} use at most half the heap of logical lines that own
+     * their bounds objects, as measured by JOL.
+     */
+    @Test
+    public void createLogicalLineHalvesHeapUsage() {
+        final List<SourceNode> compactLines = new ArrayList<>(parseLines("foo: LD A,(IX+1) ; load\n ADD A,B\n NOP\n", 10000));
+        final ArrayList<SourceNode> copiedLines = new ArrayList<>(compactLines.size());
+        for (SourceNode line : compactLines) {
+            copiedLines.add(copy((LogicalLine) line));
+        }
+
+        final long compactSize = GraphLayout.parseInstance(compactLines).totalSize();
+        final long copiedSize = GraphLayout.parseInstance(copiedLines).totalSize();
+        assertThat(compactSize * 2, is(lessThanOrEqualTo(copiedSize)));
+    }
+
+}
@@ -0,0 +1,71 @@
+package org.reasm.z80.source;
+
+import java.util.concurrent.ForkJoinPool;
+
+import javax.annotation.Nonnull;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import ca.fragag.text.Document;
+
+/**
+ * Test class for {@link Z80ParallelParser}.
+ *
+ * @author Francis Gagné
+ */
+public class Z80ParallelParserTest {
+
+    @Nonnull
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    /**
+     * Shuts down the fork-join pool used by the tests.
+     */
+    @AfterClass
+    public static void shutDownPool() {
+        POOL.shutdown();
+    }
+
+    private static void parse(@Nonnull String code) {
+        final Document text = new Document(code);
+        BlockParserTestsCommon.assertSameTree(Z80ParallelParser.parse(text, POOL, 16), Z80Parser.INSTANCE.parse(text));
+    }
+
+    @Nonnull
+    private static String repeat(@Nonnull String code, int count) {
+        final StringBuilder sb = new StringBuilder(code.length() * count);
+        for (int i = 0; i < count; i++) {
+            sb.append(code);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Asserts that {@link Z80ParallelParser} produces the same tree as the sequential parser for a document with blocks.
+     */
+    @Test
+    public void parseBlocks() {
+        parse(repeat("foo: NOP\n IF 1\n NOP\n NOP\n ELSE\n HALT\n ENDIF\ni FOR 1,2\n WHILE 0\n NOP\n ENDW\n NEXT\n", 50));
+    }
+
+    /**
+     * Asserts that {@link Z80ParallelParser} produces the same tree as the sequential parser for a document with continuation
+     * characters and mixed line separators.
+     */
+    @Test
+    public void parseContinuationCharacters() {
+        parse(repeat(" DB 1,&\n2\r\n DB 3,&\r4\r NOP\n", 100));
+    }
+
+    /**
+     * Asserts that {@link Z80ParallelParser} produces the same tree as the sequential parser for a document whose last block is
+     * not closed.
+     */
+    @Test
+    public void parseUnclosedBlock() {
+        parse(repeat(" NOP\n", 50) + " WHILE 1\n" + repeat(" NOP\n", 50));
+    }
+
+}
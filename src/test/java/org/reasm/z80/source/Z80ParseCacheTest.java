@@ -0,0 +1,65 @@
+package org.reasm.z80.source;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+import org.reasm.source.SourceNode;
+
+import ca.fragag.text.Document;
+
+/**
+ * Test class for {@link Z80ParseCache}.
+ *
+ * @author Francis Gagné
+ */
+public class Z80ParseCacheTest {
+
+    /**
+     * Asserts that {@link Z80ParseCache#parse(Document)} evicts the least recently used trees when the cache exceeds its maximum
+     * size.
+     */
+    @Test
+    public void parseEvictsLeastRecentlyUsed() {
+        final Z80ParseCache cache = new Z80ParseCache(8, null);
+        final SourceNode first = cache.parse(new Document(" NOP"));
+        cache.parse(new Document(" HALT"));
+        assertThat(cache.getSize(), is(5L));
+
+        assertThat(cache.parse(new Document(" NOP")), is(not(sameInstance(first))));
+        assertThat(cache.getHitCount(), is(0L));
+        assertThat(cache.getMissCount(), is(3L));
+    }
+
+    /**
+     * Asserts that {@link Z80ParseCache#parse(Document)} returns the same tree for documents with identical contents.
+     */
+    @Test
+    public void parseReturnsCachedTree() {
+        final Z80ParseCache cache = new Z80ParseCache(1024, null);
+        final SourceNode first = cache.parse(new Document(" NOP\n HALT"));
+        assertThat(cache.parse(new Document(" NOP\n HALT")), is(sameInstance(first)));
+        assertThat(cache.parse(new Document(" NOP\n HALT ")), is(not(sameInstance(first))));
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.getMissCount(), is(2L));
+        assertThat(cache.getSize(), is(20L));
+    }
+
+    /**
+     * Asserts that {@link Z80ParseCache#parse(Document)} returns a tree that was added with
+     * {@link Z80ParseCache#put(Document, SourceNode)}.
+     */
+    @Test
+    public void putAddsTree() {
+        final Z80ParseCache cache = new Z80ParseCache(1024, null);
+        final SourceNode node = Z80Parser.INSTANCE.parse(new Document(" NOP"));
+        cache.put(new Document(" NOP"), node);
+        assertThat(cache.parse(new Document(" NOP")), is(sameInstance(node)));
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.getMissCount(), is(0L));
+        assertThat(cache.getSize(), is(4L));
+    }
+
+}
@@ -0,0 +1,99 @@
+package org.reasm.z80.source;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reasm.source.SourceNode;
+
+import ca.fragag.text.Document;
+
+/**
+ * Test class for {@link Z80ParseTreeStore}.
+ *
+ * @author Francis Gagné
+ */
+public class Z80ParseTreeStoreTest {
+
+    /** A temporary directory for the store. */
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Asserts that {@link Z80ParseTreeStore#parse(Document)} ignores a stored tree whose file was overwritten with garbage.
+     *
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    @Test
+    public void parseIgnoresCorruptedFile() throws IOException {
+        final File directory = this.temporaryFolder.newFolder();
+        final Document text = new Document(" NOP\n HALT");
+        new Z80ParseTreeStore(directory.toPath()).parse(text);
+
+        for (File file : directory.listFiles()) {
+            Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+        }
+
+        BlockParserTestsCommon.assertSameTree(new Z80ParseTreeStore(directory.toPath()).parse(text), Z80Parser.INSTANCE.parse(text));
+    }
+
+    /**
+     * Asserts that {@link Z80ParseTreeStore#parse(Document)} ignores a stored tree whose header is valid but whose body contains
+     * a negative count.
+     *
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    @Test
+    public void parseIgnoresCorruptedBody() throws IOException {
+        final File directory = this.temporaryFolder.newFolder();
+        final Document text = new Document(" NOP\n HALT");
+        new Z80ParseTreeStore(directory.toPath()).parse(text);
+
+        // The header consists of 3 ints, the length of the text (1 byte here) and the hash of the text.
+        final int headerLength = 12 + 1 + Z80ParseCache.hash(text).length;
+        for (File file : directory.listFiles()) {
+            final byte[] contents = Arrays.copyOf(Files.readAllBytes(file.toPath()), headerLength + 7);
+            // A simple composite node without a parse error and with -1 child nodes.
+            final byte[] body = new byte[] { 2, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F };
+            System.arraycopy(body, 0, contents, headerLength, body.length);
+            Files.write(file.toPath(), contents);
+        }
+
+        BlockParserTestsCommon.assertSameTree(new Z80ParseTreeStore(directory.toPath()).parse(text), Z80Parser.INSTANCE.parse(text));
+    }
+
+    /**
+     * Asserts that {@link Z80ParseTreeStore#parse(Document)} loads a tree that is identical to the tree produced by the parser,
+     * including block nodes and parse errors.
+     *
+     * @throws IOException
+     *             an I/O exception occurred
+     */
+    @Test
+    public void parseLoadsStoredTree() throws IOException {
+        final File directory = this.temporaryFolder.newFolder();
+        final Document text = new Document("foo: LD A,(IX+1) ; comment\n IF 1\n NOP\n ELSE\n HALT\n ELSE\n ENDIF\n REPT 2\n DB 1,&\n2\n"
+                + " ENDR\n WHILE 0\n");
+        final SourceNode expected = Z80Parser.INSTANCE.parse(text);
+
+        final SourceNode first = new Z80ParseTreeStore(directory.toPath()).parse(text);
+        BlockParserTestsCommon.assertSameTree(first, expected);
+        assertThat(directory.list().length, is(1));
+
+        final SourceNode second = new Z80ParseTreeStore(directory.toPath()).parse(text);
+        assertThat(second, is(not(sameInstance(first))));
+        BlockParserTestsCommon.assertSameTree(second, expected);
+    }
+
+}
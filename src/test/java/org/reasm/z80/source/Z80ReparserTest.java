@@ -0,0 +1,153 @@
+package org.reasm.z80.source;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+import org.reasm.source.CompositeSourceNode;
+import org.reasm.source.SourceNode;
+
+import ca.fragag.text.Document;
+
+/**
+ * Test class for {@link Z80Reparser}.
+ *
+ * @author Francis Gagné
+ */
+public class Z80ReparserTest {
+
+    /**
+     * The name of the system property that enables the reparse latency benchmark, which is too slow to run on every build.
+     */
+    @Nonnull
+    private static final String BENCHMARKS_PROPERTY = "reasm.z80.benchmarks";
+
+    @Nonnull
+    private static final String NESTED_CODE = " NOP\n MACRO\n REPT 2\n IF 1\n LD A,1\n LD B,2\n ELSE\n LD C,3\n ENDIF\n ENDR\n ENDM\n HALT\n";
+
+    @Nonnull
+    private static SourceNode child(@Nonnull SourceNode node, int... indices) {
+        for (int index : indices) {
+            node = ((CompositeSourceNode) node).getChildNodes().get(index);
+        }
+
+        return node;
+    }
+
+    @Nonnull
+    private static SourceNode reparse(@Nonnull String oldCode, int offset, int lengthToRemove, @Nonnull String insertedText) {
+        final SourceNode oldTree = Z80Parser.INSTANCE.parse(new Document(oldCode));
+        final String newCode = oldCode.substring(0, offset) + insertedText + oldCode.substring(offset + lengthToRemove);
+        final Document newText = new Document(newCode);
+        final SourceNode newTree = Z80Reparser.reparse(newText, oldTree, offset, lengthToRemove, insertedText.length());
+        BlockParserTestsCommon.assertSameTree(newTree, Z80Parser.INSTANCE.parse(newText));
+        return newTree;
+    }
+
+    /**
+     * Asserts that {@link Z80Reparser#reparse(Document, SourceNode, int, int, int)} produces the same tree as a full parse for
+     * edits that change the block structure.
+     */
+    @Test
+    public void reparseBlockStructureChange() {
+        reparse(NESTED_CODE, NESTED_CODE.indexOf("ENDIF"), 5, "NOP");
+        reparse(NESTED_CODE, NESTED_CODE.indexOf("LD B"), 0, "ENDIF\n ");
+        reparse(NESTED_CODE, NESTED_CODE.indexOf("LD A,1") + 6, 0, "&");
+        reparse(NESTED_CODE, NESTED_CODE.indexOf(" IF"), 1, "");
+    }
+
+    /**
+     * Asserts that {@link Z80Reparser#reparse(Document, SourceNode, int, int, int)} reuses the sibling subtrees of the nested
+     * block that contains the edit.
+     */
+    @Test
+    public void reparseInsideNestedBlocks() {
+        final SourceNode oldTree = Z80Parser.INSTANCE.parse(new Document(NESTED_CODE));
+        final int offset = NESTED_CODE.indexOf("LD B,2") + 5;
+        final String newCode = NESTED_CODE.substring(0, offset) + "3" + NESTED_CODE.substring(offset + 1);
+        final SourceNode newTree = Z80Reparser.reparse(new Document(newCode), oldTree, offset, 1, 1);
+        BlockParserTestsCommon.assertSameTree(newTree, Z80Parser.INSTANCE.parse(new Document(newCode)));
+
+        // The first and last top-level lines are reused.
+        final List<SourceNode> oldChildNodes = ((CompositeSourceNode) oldTree).getChildNodes();
+        final List<SourceNode> newChildNodes = ((CompositeSourceNode) newTree).getChildNodes();
+        assertThat(newChildNodes.get(0), is(sameInstance(oldChildNodes.get(0))));
+        assertThat(newChildNodes.get(2), is(sameInstance(oldChildNodes.get(2))));
+
+        // The ELSE clause of the IF block is reused.
+        final SourceNode oldIf = child(oldTree, 1, 1, 0, 1, 0);
+        final SourceNode newIf = child(newTree, 1, 1, 0, 1, 0);
+        assertThat(child(newIf, 3), is(sameInstance(child(oldIf, 3))));
+        assertThat(child(newIf, 1, 0), is(sameInstance(child(oldIf, 1, 0))));
+    }
+
+    /**
+     * Asserts that {@link Z80Reparser#reparse(Document, SourceNode, int, int, int)} produces the same tree as a full parse for
+     * edits on plain logical lines.
+     */
+    @Test
+    public void reparseLines() {
+        final String code = " NOP\n LD A,1\n LD B,2\r\n HALT";
+        reparse(code, 5, 0, "x");
+        reparse(code, 4, 1, "");
+        reparse(code, 4, 0, "\n NOP\n");
+        reparse(code, code.length(), 0, "\n");
+        reparse(code, code.length(), 0, " ; comment");
+        reparse(code, 0, code.length(), "");
+        reparse(code + "\n", code.length() + 1, 0, " NOP");
+    }
+
+    /**
+     * Measures the latency of single-keystroke edits at random positions in a 100,000-line document and asserts that the 99th
+     * percentile is under 2 ms. This benchmark only runs when the <code>reasm.z80.benchmarks</code> system property is
+     * <code>true</code>.
+     */
+    @Test
+    public void reparseLatencyBenchmark() {
+        assumeTrue(Boolean.getBoolean(BENCHMARKS_PROPERTY));
+
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100000 / 12; i++) {
+            sb.append(NESTED_CODE);
+        }
+
+        String code = sb.toString();
+        SourceNode tree = Z80Parser.INSTANCE.parse(new Document(code));
+
+        final Random random = new Random(42);
+        final int warmUpEdits = 2000;
+        final int measuredEdits = 10000;
+        final long[] latencies = new long[measuredEdits];
+        for (int i = 0; i < warmUpEdits + measuredEdits; i++) {
+            final int offset = random.nextInt(code.length());
+            final boolean delete = random.nextBoolean() && code.charAt(offset) != '\n';
+            final String newCode = delete ? code.substring(0, offset) + code.substring(offset + 1) : code.substring(0, offset)
+                    + 'x' + code.substring(offset);
+            final Document newText = new Document(newCode);
+
+            final long start = System.nanoTime();
+            tree = Z80Reparser.reparse(newText, tree, offset, delete ? 1 : 0, delete ? 0 : 1);
+            final long latency = System.nanoTime() - start;
+            if (i >= warmUpEdits) {
+                latencies[i - warmUpEdits] = latency;
+            }
+
+            code = newCode;
+        }
+
+        Arrays.sort(latencies);
+        final long p99 = latencies[latencies.length * 99 / 100];
+        System.out.println("Z80Reparser: p50 = " + latencies[latencies.length / 2] / 1000 + " us, p99 = " + p99 / 1000 + " us");
+        assertThat(p99, is(lessThan(2000000L)));
+    }
+
+}